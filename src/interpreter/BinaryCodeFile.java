@@ -0,0 +1,363 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.Operands;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads and writes the compact binary form of a .x.cod program.
+ *
+ * The layout is: the magic number, the format version, a flags byte, a pool
+ * holding every distinct token once, and then one record per byte code made
+ * of the pool index of its mnemonic, its argument count, and the pool index
+ * of each argument. Counts, lengths, and indices are written as unsigned varints, so
+ * most of them take a single byte.
+ *
+ * A resolved file, as the program cache writes, also follows each record with
+ * the address of its jump plus one, or zero if it has none, so loading it
+ * needs no label resolution.
+ *
+ * Note: Every file read here, text or binary, may also be compressed with
+ * gzip; it is recognized by its magic bytes, not its name.
+ *
+ * @author mandynoto
+ */
+public class BinaryCodeFile
+{
+
+	// The first four bytes of every binary code file, "XCOD".
+	public static final int MAGIC = 0x58434F44;
+
+	// The version of the layout written by this class.
+	public static final short VERSION = 2;
+
+	// The flag set when each record is followed by its resolved address.
+	private static final int RESOLVED = 0x1;
+
+	// The first two bytes of every gzip file.
+	private static final int GZIP_MAGIC_1 = 0x1f;
+	private static final int GZIP_MAGIC_2 = 0x8b;
+
+	/**
+	 * Takes each byte code read from a binary code file.
+	 */
+	public interface CodeConsumer
+	{
+
+		/**
+		 * Takes the specified mnemonic, arguments, and resolved address.
+		 *
+		 * Note: The arguments are reused for the next byte code.
+		 *
+		 * @param code the specified mnemonic.
+		 * @param operands the specified arguments.
+		 * @param address the specified resolved address, or -1 if there is
+		 * none.
+		 */
+		void accept(String code, Operands operands, int address);
+	}
+
+	/**
+	 * Manages construction since this only holds static helpers.
+	 */
+	private BinaryCodeFile()
+	{
+		// Intentionally left empty.
+	}
+
+	/**
+	 * Returns {@code true} if the specified file starts with the binary code
+	 * file magic number.
+	 *
+	 * @param file the specified file.
+	 * @return {@code true} if the specified file is a binary code file.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public static boolean isBinary(String file) throws IOException
+	{
+		try ( DataInputStream input = new DataInputStream(openStream(file)))
+		{
+			return input.readInt() == MAGIC;
+		} catch (EOFException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Compiles the specified text code file into the specified binary file.
+	 *
+	 * @param codeFile the specified .x.cod text file.
+	 * @param binaryFile the specified binary file to write.
+	 * @throws IOException if either file cannot be accessed.
+	 */
+	public static void compile(String codeFile, String binaryFile) throws IOException
+	{
+		// Each record holds the mnemonic followed by the arguments.
+		ArrayList<String[]> records = new ArrayList<>();
+
+		try ( BufferedReader reader = new BufferedReader(new InputStreamReader(openStream(codeFile))))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				StringTokenizer tokens = new StringTokenizer(line);
+				if (!tokens.hasMoreTokens())
+				{
+					continue;
+				}
+
+				String[] record = new String[tokens.countTokens()];
+				for (int i = 0; i < record.length; i++)
+				{
+					record[i] = tokens.nextToken();
+				}
+				records.add(record);
+			}
+		}
+
+		write(binaryFile, records, null);
+	}
+
+	/**
+	 * Writes the specified records, each a mnemonic followed by its
+	 * arguments, into the specified binary file. If the specified addresses
+	 * are not null, each record is followed by its resolved address.
+	 *
+	 * @param binaryFile the specified binary file to write.
+	 * @param records the specified records.
+	 * @param addresses the specified resolved addresses, -1 for none, or null.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static void write(String binaryFile, List<String[]> records, int[] addresses) throws IOException
+	{
+		// Every distinct token mapped to its index in the pool.
+		LinkedHashMap<String, Integer> pool = new LinkedHashMap<>();
+		for (String[] record : records)
+		{
+			for (String token : record)
+			{
+				pool.putIfAbsent(token, pool.size());
+			}
+		}
+
+		try ( DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binaryFile))))
+		{
+			output.writeInt(MAGIC);
+			output.writeShort(VERSION);
+			output.writeByte(addresses == null ? 0 : RESOLVED);
+
+			writeVarInt(output, pool.size());
+			for (String token : pool.keySet())
+			{
+				byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+				writeVarInt(output, bytes.length);
+				output.write(bytes);
+			}
+
+			writeVarInt(output, records.size());
+			for (int i = 0; i < records.size(); i++)
+			{
+				String[] record = records.get(i);
+				writeVarInt(output, pool.get(record[0]));
+				writeVarInt(output, record.length - 1);
+				for (int arg = 1; arg < record.length; arg++)
+				{
+					writeVarInt(output, pool.get(record[arg]));
+				}
+
+				if (addresses != null)
+				{
+					writeVarInt(output, addresses[i] + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Maps the specified binary file and passes each of its byte codes, as a
+	 * mnemonic, its arguments, and its resolved address, to the specified
+	 * consumer in file order.
+	 *
+	 * Note: Only one string is created per distinct token, not per line.
+	 *
+	 * @param binaryFile the specified binary file.
+	 * @param constantPool the specified pool that shares each token.
+	 * @param codeConsumer the specified consumer of byte codes.
+	 * @throws IOException if the file cannot be mapped or is not supported.
+	 */
+	public static void read(String binaryFile, ConstantPool constantPool, CodeConsumer codeConsumer) throws IOException
+	{
+		ByteBuffer buffer = open(binaryFile);
+
+		if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION)
+		{
+			throw new IOException("Unsupported binary code file " + binaryFile);
+		}
+		boolean isResolved = (buffer.get() & RESOLVED) != 0;
+
+		// Decode each distinct token, and its integer value, only once.
+		Operands pool = new Operands();
+		int poolSize = readVarInt(buffer);
+		for (int i = 0; i < poolSize; i++)
+		{
+			byte[] bytes = new byte[readVarInt(buffer)];
+			buffer.get(bytes);
+			pool.add(constantPool.intern(new String(bytes, StandardCharsets.UTF_8)));
+		}
+
+		Operands operands = new Operands();
+		int codeCount = readVarInt(buffer);
+		for (int i = 0; i < codeCount; i++)
+		{
+			String code = pool.getName(readVarInt(buffer));
+			int argCount = readVarInt(buffer);
+
+			operands.clear();
+			for (int arg = 0; arg < argCount; arg++)
+			{
+				int index = readVarInt(buffer);
+				boolean isNumber = pool.isInt(index);
+				operands.add(pool.getName(index), isNumber ? pool.getInt(index) : 0, isNumber);
+			}
+
+			int address = isResolved ? readVarInt(buffer) - 1 : -1;
+
+			codeConsumer.accept(code, operands, address);
+		}
+	}
+
+	/**
+	 * Writes the specified non-negative value seven bits at a time, lowest
+	 * bits first, setting the high bit of every byte but the last.
+	 *
+	 * @param output the specified output.
+	 * @param value the specified non-negative value.
+	 * @throws IOException if the output cannot be written.
+	 */
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	/**
+	 * Returns the next value written by writeVarInt from the specified
+	 * buffer.
+	 *
+	 * @param buffer the specified buffer.
+	 * @return the next value written by writeVarInt.
+	 */
+	private static int readVarInt(ByteBuffer buffer)
+	{
+		int value = 0;
+		int shift = 0;
+		byte next;
+
+		do
+		{
+			next = buffer.get();
+			value |= (next & 0x7F) << shift;
+			shift += 7;
+		} while (next < 0);
+
+		return value;
+	}
+
+	/**
+	 * Returns {@code true} if the specified file starts with the gzip magic
+	 * bytes, whatever its name is.
+	 *
+	 * @param file the specified file.
+	 * @return {@code true} if the specified file is compressed with gzip.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public static boolean isCompressed(String file) throws IOException
+	{
+		try ( FileInputStream input = new FileInputStream(file))
+		{
+			return input.read() == GZIP_MAGIC_1 && input.read() == GZIP_MAGIC_2;
+		}
+	}
+
+	/**
+	 * Returns a stream of the contents of the specified file, decompressing
+	 * it while it is read if it is compressed with gzip.
+	 *
+	 * @param file the specified file.
+	 * @return a stream of the contents of the specified file.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public static InputStream openStream(String file) throws IOException
+	{
+		InputStream input = new BufferedInputStream(new FileInputStream(file));
+		try
+		{
+			// Look at the magic bytes through the stream itself, then read them again.
+			input.mark(2);
+			boolean isCompressed = input.read() == GZIP_MAGIC_1 && input.read() == GZIP_MAGIC_2;
+			input.reset();
+
+			return isCompressed ? new GZIPInputStream(input, 64 * 1024) : input;
+		} catch (IOException e)
+		{
+			input.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the contents of the whole specified file: a read-only mapping
+	 * of it, or its decompressed bytes if it is compressed with gzip.
+	 *
+	 * Note: Only for a reader that needs every byte at once, e.g. to seek
+	 * back or to split the file; the text loader reads openStream instead.
+	 *
+	 * @param file the specified file.
+	 * @return the contents of the whole specified file.
+	 * @throws IOException if the file cannot be mapped or decompressed.
+	 */
+	public static ByteBuffer open(String file) throws IOException
+	{
+		if (isCompressed(file))
+		{
+			try ( InputStream input = openStream(file))
+			{
+				return ByteBuffer.wrap(input.readAllBytes());
+			}
+		}
+
+		try ( FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+		{
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+}
@@ -1,12 +1,21 @@
 package interpreter;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import interpreter.bytecode.BranchCode;
 import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.Operands;
 
 /*
  * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
@@ -20,86 +29,534 @@ import interpreter.bytecode.ByteCode;
 public class ByteCodeLoader
 {
 
-	private final BufferedReader bufferedReader;
+	// The smallest number of bytes worth parsing on its own thread.
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+	private final String programFile;
+	// True when the program file is in the binary format.
+	private final boolean isBinary;
 	private Program program;
-	// The container for each byte code argument.
-	ArrayList<String> byteCodeArgs;
+	// True if text files are split into chunks parsed at the same time.
+	private boolean isParallel;
+	// The cache of resolved programs, or null if there is none.
+	private ProgramCache cache;
+	// The tokens of each added byte code while recording for the cache.
+	private ArrayList<String[]> records;
+	// The container for each byte code argument, reused for every line.
+	private final Operands operands = new Operands();
 
 	/**
-	 * Takes in a new specified program file to initialize scanner filled with
-	 * code.
+	 * Takes in a new specified program file to load code from.
+	 *
+	 * Note: The file may be either a .x.cod text file or a binary file written
+	 * by {@link BinaryCodeFile#compile}.
 	 *
 	 * @param programFile
-	 * @throws IOException
+	 * @throws IOException if the program file cannot be opened.
 	 */
 	public ByteCodeLoader(String programFile) throws IOException
 	{
-		// Read the file ...
-		FileReader fileReader = new FileReader(programFile);
-		// ... and pass it into buffered reader.
-		this.bufferedReader = new BufferedReader(fileReader);
+		this.programFile = programFile;
+		this.isBinary = BinaryCodeFile.isBinary(programFile);
+	}
+
+	/**
+	 * Sets whether text program files are parsed in chunks on several threads
+	 * via the specified parallel status.
+	 *
+	 * @param isParallel the specified parallel status.
+	 */
+	public void setParallel(boolean isParallel)
+	{
+		this.isParallel = isParallel;
 	}
 
 	/**
-	 * Returns a program with parsed source code.
+	 * Sets the specified cache of resolved programs, which loadCodes checks
+	 * before parsing and fills after resolving.
+	 *
+	 * @param cache the specified cache, or null for none.
+	 */
+	public void setCache(ProgramCache cache)
+	{
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns a program with parsed source code, or null if it jumps to a
+	 * label it does not define or the Verifier rejects it.
+	 *
+	 * Note: With a cache, a program file seen before is loaded already
+	 * resolved. A new one is parsed sequentially, since its tokens are
+	 * recorded in order for the cache.
 	 *
 	 * @return a program with parsed source code.
 	 */
 	public Program loadCodes()
 	{
-		String line;
 		program = new Program();
 
 		try
 		{
-			while ((line = bufferedReader.readLine()) != null)
+			String cacheKey = null;
+			if (cache != null)
 			{
-				try
+				cacheKey = cache.getKey(programFile, getClass().getName());
+				if (loadCachedCodes(cacheKey))
 				{
-					StringTokenizer str = new StringTokenizer(line);
-					String token = str.nextToken();
-
-					String[] code = line.split("\\s", 2);
-
-					String codeClass = "interpreter.bytecode." + getCodeClass(code[0]);
-
-					ByteCode byteCode = (ByteCode) (Class.forName(codeClass).newInstance());
-
-					// Create an arrayList for this this byte code and its argument/s.
-					byteCodeArgs = new ArrayList<>();
-					while (str.hasMoreTokens())
-					{
-						byteCodeArgs.add(str.nextToken());
-					}
-					
-					// Initialize the byte code arguments via dynamic binding.
-					byteCode.init(byteCodeArgs);
-					program.add(byteCode);
-				} catch (Exception e)
-				{
-					continue;
+					return verify();
 				}
+				records = new ArrayList<>();
+			}
+
+			if (isBinary)
+			{
+				BinaryCodeFile.read(programFile, program.getConstantPool(), this::addCode);
+			} else if (isParallel && records == null)
+			{
+				return link(loadTextCodesInParallel());
+			} else
+			{
+				loadTextCodes();
+			}
 
+			List<Integer> unresolved = program.resolveAddress(program);
+			if (!unresolved.isEmpty())
+			{
+				return link(unresolved);
+			}
+
+			if (records != null)
+			{
+				storeCachedCodes(cacheKey);
 			}
+		} catch (IOException e)
+		{
+			e.printStackTrace(System.out);
+		}
+
+		return verify();
+	}
 
-			program.resolveAddress(program);
+	/**
+	 * Returns a program whose functions are parsed from the text program file
+	 * only when they first run, or null if the file cannot be read.
+	 *
+	 * Note: The program is neither verified nor cached. A binary program file
+	 * is loaded by loadCodes instead.
+	 *
+	 * @return a program whose functions are parsed when they first run.
+	 */
+	public Program loadLazyCodes()
+	{
+		if (isBinary)
+		{
+			return loadCodes();
+		}
+
+		try
+		{
+			program = new LazyProgram(BinaryCodeFile.open(programFile), this);
+			return program;
 		} catch (IOException e)
 		{
 			e.printStackTrace(System.out);
+			return null;
 		}
+	}
+
+	/**
+	 * Returns a program linked from this loader's program file, the specified
+	 * module files, and the shared prelude, or null if a label is not
+	 * defined or the Verifier rejects it.
+	 *
+	 * Note: Modules are parsed sequentially and are not cached.
+	 *
+	 * @param moduleFiles the specified module files.
+	 * @return a program linked from every module.
+	 */
+	public Program linkCodes(List<String> moduleFiles)
+	{
+		program = new Program();
+		ModuleLinker linker = new ModuleLinker(program, Prelude.getCodes(this));
+
+		try
+		{
+			linker.addModule(loadModule(programFile));
+			for (String moduleFile : moduleFiles)
+			{
+				linker.addModule(loadModule(moduleFile));
+			}
+		} catch (IOException e)
+		{
+			e.printStackTrace(System.out);
+		}
+
+		return link(linker.link());
+	}
+
+	/**
+	 * Returns the unresolved byte codes of the specified module file, with
+	 * their names in the constant pool of this loader's program.
+	 *
+	 * @param moduleFile the specified module file.
+	 * @return the byte codes of the module.
+	 * @throws IOException if the module file cannot be read.
+	 */
+	private Program loadModule(String moduleFile) throws IOException
+	{
+		Program linked = program;
+		program = new Program(linked.getConstantPool());
+
+		try
+		{
+			if (BinaryCodeFile.isBinary(moduleFile))
+			{
+				BinaryCodeFile.read(moduleFile, program.getConstantPool(), this::addCode);
+			} else
+			{
+				loadTextCodes(moduleFile);
+			}
+
+			return program;
+		} finally
+		{
+			program = linked;
+		}
+	}
+
+	/**
+	 * Returns this program verified if the specified program counters of its
+	 * unresolved byte codes are empty, or null after printing each of them.
+	 *
+	 * @param unresolved the specified program counters of unresolved codes.
+	 * @return this program, or null if it is not resolved or is rejected.
+	 */
+	private Program link(List<Integer> unresolved)
+	{
+		if (unresolved.isEmpty())
+		{
+			return verify();
+		}
+
+		for (int pc : unresolved)
+		{
+			Linker.printUnresolved(program, pc);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns this resolved program with its stack map set and its tail calls
+	 * marked, or null after printing why the Verifier rejects it.
+	 *
+	 * @return this program, or null if it is rejected.
+	 */
+	private Program verify()
+	{
+		try
+		{
+			program.setStackMap(Verifier.verify(program));
+		} catch (VerificationException e)
+		{
+			System.out.println("**** " + e);
+			return null;
+		}
+		program.markTailCalls();
 
 		return program;
 	}
 
 	/**
-	 * Returns the class name of a specified bytecode.
+	 * Loads the resolved program of the specified key from the cache.
+	 *
+	 * @param cacheKey the specified key.
+	 * @return {@code true} if the program was loaded from the cache.
+	 */
+	private boolean loadCachedCodes(String cacheKey)
+	{
+		Path entry = cache.find(cacheKey);
+		if (entry == null)
+		{
+			return false;
+		}
+
+		try
+		{
+			BinaryCodeFile.read(entry.toString(), program.getConstantPool(), this::addCode);
+			return true;
+		} catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e)
+		{
+			// A damaged entry is parsed again and replaced.
+			program = new Program();
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the recorded tokens and resolved addresses of this program in
+	 * the cache under the specified key.
+	 *
+	 * @param cacheKey the specified key.
+	 */
+	private void storeCachedCodes(String cacheKey)
+	{
+		int[] addresses = new int[program.getSize()];
+		for (int pc = 0; pc < addresses.length; pc++)
+		{
+			addresses[pc] = program.getAddress(pc);
+		}
+
+		try
+		{
+			cache.store(cacheKey, records, addresses);
+		} catch (IOException e)
+		{
+			System.out.println("**** " + e);
+		} finally
+		{
+			records = null;
+		}
+	}
+
+	/**
+	 * Parses every byte code into the specified streaming program, which may
+	 * already be running, and then marks it complete.
+	 *
+	 * Note: Meant to run on its own thread; the program resolves its own
+	 * labels as they arrive.
+	 *
+	 * @param streamingProgram the specified streaming program.
+	 */
+	public void streamCodes(StreamingProgram streamingProgram)
+	{
+		program = streamingProgram;
+
+		try
+		{
+			if (isBinary)
+			{
+				BinaryCodeFile.read(programFile, program.getConstantPool(), this::addCode);
+			} else
+			{
+				loadTextCodes();
+			}
+		} catch (IOException e)
+		{
+			e.printStackTrace(System.out);
+		} finally
+		{
+			streamingProgram.finish();
+		}
+	}
+
+	/**
+	 * Parses each line of the text program file into this program.
+	 *
+	 * @throws IOException if the program file cannot be read.
+	 */
+	private void loadTextCodes() throws IOException
+	{
+		loadTextCodes(programFile);
+	}
+
+	/**
+	 * Parses each line of the specified text file into this program.
+	 *
+	 * @param textFile the specified text file.
+	 * @throws IOException if the text file cannot be read.
+	 */
+	private void loadTextCodes(String textFile) throws IOException
+	{
+		// A compressed file is decompressed as its lines are parsed, never as a whole.
+		try ( InputStream input = BinaryCodeFile.openStream(textFile))
+		{
+			ByteCodeTokenizer tokenizer = new ByteCodeTokenizer(input, program.getConstantPool());
+
+			String code;
+			while ((code = tokenizer.next(operands)) != null)
+			{
+				addCode(code, operands, -1);
+			}
+		} catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Parses line-aligned chunks of the text program file on the common
+	 * fork-join pool, then merges their labels and resolves the addresses of
+	 * each chunk at the same time.
+	 *
+	 * Note: The result is the same program the sequential loader builds.
+	 *
+	 * @return the program counters of the unresolved byte codes, in order.
+	 * @throws IOException if the program file cannot be read.
+	 */
+	private List<Integer> loadTextCodesInParallel() throws IOException
+	{
+		ByteBuffer text = BinaryCodeFile.open(programFile);
+		int length = text.limit();
+
+		// Split the text at the first line break past each chunk size.
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, length / (4 * ForkJoinPool.getCommonPoolParallelism()));
+		ArrayList<int[]> ranges = new ArrayList<>();
+		int start = 0;
+		while (start < length)
+		{
+			int end = Math.min(start + chunkSize, length);
+			while (end < length && text.get(end - 1) != '\n')
+			{
+				end += 1;
+			}
+			ranges.add(new int[]
+			{
+				start, end
+			});
+			start = end;
+		}
+
+		List<List<ByteCode>> chunks = ranges.parallelStream()
+				.map(range -> parseChunk(text.duplicate().position(range[0]).limit(range[1])))
+				.collect(Collectors.toList());
+
+		// Merge the chunks in file order so later labels replace earlier ones.
+		int[] chunkStarts = new int[chunks.size() + 1];
+		Linker linker = new Linker();
+		for (int i = 0; i < chunks.size(); i++)
+		{
+			chunkStarts[i] = program.getSize();
+			program.addAll(chunks.get(i));
+			chunkStarts[i + 1] = program.getSize();
+
+			// Like the sequential loader, skip a label at the first byte code.
+			linker.addLabels(program, Math.max(1, chunkStarts[i]), chunkStarts[i + 1]);
+		}
+
+		return IntStream.range(0, chunks.size()).parallel()
+				.mapToObj(i -> linker.link(program, chunkStarts[i], chunkStarts[i + 1]))
+				.flatMap(List::stream)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the byte codes parsed from the remaining bytes of the specified
+	 * text.
+	 *
+	 * @param text the specified text.
+	 * @return the byte codes parsed from the text, in order.
+	 */
+	private List<ByteCode> parseChunk(ByteBuffer text)
+	{
+		return parseCodes(text, program.getConstantPool());
+	}
+
+	/**
+	 * Returns the byte codes parsed from the remaining bytes of the specified
+	 * text, with their names in the specified constant pool. Nothing is added
+	 * to this loader's program.
+	 *
+	 * @param text the specified text.
+	 * @param constantPool the specified constant pool.
+	 * @return the byte codes parsed from the text, in order.
+	 */
+	List<ByteCode> parseCodes(ByteBuffer text, ConstantPool constantPool)
+	{
+		ArrayList<ByteCode> chunk = new ArrayList<>();
+		ByteCodeTokenizer tokenizer = new ByteCodeTokenizer(text, constantPool);
+		Operands chunkOperands = new Operands();
+
+		String code;
+		while ((code = tokenizer.next(chunkOperands)) != null)
+		{
+			ByteCode byteCode = createCode(code, chunkOperands);
+			if (byteCode != null)
+			{
+				chunk.add(byteCode);
+			}
+		}
+
+		return chunk;
+	}
+
+	/**
+	 * Adds a new instance of the specified code, initialized with the
+	 * specified arguments and, if it is a jump, the specified resolved
+	 * address, to this program.
+	 *
+	 * @param code the specified code.
+	 * @param operands the specified arguments.
+	 * @param address the specified resolved address, or -1 if there is none.
+	 */
+	private void addCode(String code, Operands operands, int address)
+	{
+		ByteCode byteCode = createCode(code, operands);
+		if (byteCode == null)
+		{
+			return;
+		}
+
+		if (address >= 0 && byteCode instanceof BranchCode)
+		{
+			((BranchCode) byteCode).setAddress(address);
+		}
+
+		if (records != null)
+		{
+			String[] record = new String[operands.size() + 1];
+			record[0] = code;
+			for (int i = 0; i < operands.size(); i++)
+			{
+				record[i + 1] = operands.getName(i);
+			}
+			records.add(record);
+		}
+
+		program.add(byteCode);
+	}
+
+	/**
+	 * Returns a new instance of the specified code initialized with the
+	 * specified arguments. Codes without a factory in this loader's mode, or
+	 * with bad arguments, are skipped by returning null.
+	 *
+	 * @param code the specified code.
+	 * @param operands the specified arguments.
+	 * @return the new byte code, or null if it is skipped.
+	 */
+	ByteCode createCode(String code, Operands operands)
+	{
+		Supplier<ByteCode> factory = getCodeFactory(code);
+		if (factory == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			ByteCode byteCode = factory.get();
+
+			// Initialize the byte code arguments via dynamic binding.
+			byteCode.init(operands);
+			return byteCode;
+		} catch (RuntimeException e)
+		{
+			// Intentionally skipped, like codes this mode does not run.
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the factory of a specified bytecode.
 	 *
 	 * Note: These other bytecodes can be for debugging.
 	 *
 	 * @param	code the specified bytecode.
-	 * @return	the class name of a specified bytecode.
+	 * @return	the factory of a specified bytecode, or null if there is none.
 	 */
-	protected String getCodeClass(String code)
+	protected Supplier<ByteCode> getCodeFactory(String code)
 	{
 		return CodeTable.get(code);
 	}
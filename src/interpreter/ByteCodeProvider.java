@@ -0,0 +1,34 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Adds byte codes from another jar to the CodeTable.
+ *
+ * Implementations are found with {@link java.util.ServiceLoader}, so a jar
+ * lists them in META-INF/services/interpreter.ByteCodeProvider.
+ *
+ * Note: A code whose factory makes a fused byte code is dropped, since only
+ * the Fuser makes those, from the byte codes they replace.
+ *
+ * @author mandynoto
+ */
+public interface ByteCodeProvider
+{
+
+	/**
+	 * Puts this provider's factories, keyed by code, into the specified
+	 * table.
+	 *
+	 * @param codeTable the specified table of codes and factories.
+	 * @param isDebugging {@code true} if the table is the debugger's.
+	 */
+	void registerCodes(Map<String, Supplier<ByteCode>> codeTable, boolean isDebugging);
+}
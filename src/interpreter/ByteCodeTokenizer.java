@@ -0,0 +1,461 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.Operands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits the lines of a .x.cod text into a mnemonic and decoded arguments
+ * straight from its bytes.
+ *
+ * Lines end like BufferedReader.readLine ends them, and tokens are separated
+ * like StringTokenizer separates them. Each distinct token becomes a string,
+ * shared through the program's constant pool, only the first time it is
+ * seen, and integer arguments such as the 1 of LIT 1 are decoded while they
+ * are scanned, so no string is created per line or per token.
+ *
+ * A tokenizer over a stream, e.g. of a file decompressed while it is read,
+ * holds only the whole lines read so far that it has not returned yet.
+ *
+ * @author mandynoto
+ */
+public class ByteCodeTokenizer
+{
+
+	// How many bytes a tokenizer over a stream reads at a time.
+	private static final int WINDOW_SIZE = 64 * 1024;
+
+	private ByteBuffer buffer;
+	private final ConstantPool constantPool;
+	// The stream the lines come from, or null once it ends or if there is none.
+	private InputStream input;
+	// The end of the bytes read from the stream; limit is the end of their last whole line.
+	private int end;
+	private int limit;
+	private int position;
+	// The start of the mnemonic nextCode returned last.
+	private int codePosition;
+	// True while the rest of the line after nextCode is not read yet.
+	private boolean isInLine;
+
+	// The interned tokens, by the hash of their bytes, using open addressing.
+	private byte[][] keys = new byte[1024][];
+	private String[] names = new String[1024];
+	private int nameCount;
+
+	/**
+	 * Constructs a tokenizer over the remaining bytes of the specified
+	 * buffer that shares names through the specified constant pool.
+	 *
+	 * @param buffer the specified buffer, which is read but not moved.
+	 * @param constantPool the specified constant pool.
+	 */
+	public ByteCodeTokenizer(ByteBuffer buffer, ConstantPool constantPool)
+	{
+		this.buffer = buffer;
+		this.constantPool = constantPool;
+		this.position = buffer.position();
+		this.limit = buffer.limit();
+	}
+
+	/**
+	 * Constructs a tokenizer over the bytes of the specified stream, which it
+	 * reads only as far as the lines it returns, that shares names through
+	 * the specified constant pool.
+	 *
+	 * Note: The stream is not closed; the caller that opened it closes it.
+	 *
+	 * @param input the specified stream.
+	 * @param constantPool the specified constant pool.
+	 */
+	public ByteCodeTokenizer(InputStream input, ConstantPool constantPool)
+	{
+		this(ByteBuffer.allocate(WINDOW_SIZE).limit(0), constantPool);
+		this.input = input;
+	}
+
+	/**
+	 * Moves this tokenizer to the line at the specified position, reading up
+	 * to the specified limit, while keeping the tokens it interned so far.
+	 *
+	 * Note: Only a tokenizer over a buffer can seek.
+	 *
+	 * @param position the specified position, the start of a line.
+	 * @param limit the specified limit, exclusive.
+	 */
+	public void seek(int position, int limit)
+	{
+		this.position = position;
+		this.limit = limit;
+		isInLine = false;
+	}
+
+	/**
+	 * Returns the mnemonic of the next line that is not blank, putting its
+	 * arguments into the specified operands, or null at the end of the text.
+	 *
+	 * @param operands the specified operands, cleared first.
+	 * @return the mnemonic of the next line, or null at the end of the text.
+	 */
+	public String next(Operands operands)
+	{
+		skipLine();
+		operands.clear();
+		String code = null;
+
+		while (position < limit || fill())
+		{
+			byte b = buffer.get(position);
+			if (isLineEnd(b))
+			{
+				position += 1;
+				if (code != null)
+				{
+					return code;
+				}
+				continue;
+			}
+			if (isWhitespace(b))
+			{
+				position += 1;
+				continue;
+			}
+
+			int start = position;
+			while (position < limit && !isWhitespace(buffer.get(position)) && !isLineEnd(buffer.get(position)))
+			{
+				position += 1;
+			}
+
+			String name = intern(start, position);
+			if (code == null)
+			{
+				code = name;
+			} else
+			{
+				addOperand(operands, name, start, position);
+			}
+		}
+
+		return code;
+	}
+
+	/**
+	 * Returns the mnemonic of the next line that is not blank, or null at the
+	 * end of the text, leaving its arguments to nextName.
+	 *
+	 * Note: Meant for scanning a text quickly; the arguments nextName does not
+	 * read are skipped without being interned.
+	 *
+	 * @return the mnemonic of the next line, or null at the end of the text.
+	 */
+	public String nextCode()
+	{
+		skipLine();
+		while (position < limit || fill())
+		{
+			byte b = buffer.get(position);
+			if (isLineEnd(b) || isWhitespace(b))
+			{
+				position += 1;
+				continue;
+			}
+
+			codePosition = position;
+			isInLine = true;
+			return nextName();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the next argument on the line of the mnemonic nextCode returned
+	 * last, or null if the line has no more.
+	 *
+	 * @return the next argument on the line, or null if there is none.
+	 */
+	public String nextName()
+	{
+		while (isInLine && position < limit && isWhitespace(buffer.get(position)))
+		{
+			position += 1;
+		}
+		if (!isInLine || position >= limit || isLineEnd(buffer.get(position)))
+		{
+			return null;
+		}
+
+		int start = position;
+		while (position < limit && !isWhitespace(buffer.get(position)) && !isLineEnd(buffer.get(position)))
+		{
+			position += 1;
+		}
+
+		return intern(start, position);
+	}
+
+	/**
+	 * Returns the position in the buffer of the mnemonic nextCode returned
+	 * last, where a tokenizer can start parsing that line.
+	 *
+	 * @return the position of the mnemonic nextCode returned last.
+	 */
+	public int getCodePosition()
+	{
+		return codePosition;
+	}
+
+	/**
+	 * Skips the rest of the line of the mnemonic nextCode returned last, if
+	 * it is not read yet.
+	 */
+	private void skipLine()
+	{
+		while (isInLine && position < limit && !isLineEnd(buffer.get(position)))
+		{
+			position += 1;
+		}
+		isInLine = false;
+	}
+
+	/**
+	 * Reads the next whole lines of the stream, after the ones this tokenizer
+	 * returned, into its buffer.
+	 *
+	 * Note: Called only where a line ends, so no token spans two reads.
+	 *
+	 * @return {@code true} if there is another line, {@code false} at the end
+	 * of the stream or if there is no stream.
+	 * @throws UncheckedIOException if the stream cannot be read.
+	 */
+	private boolean fill()
+	{
+		if (input == null)
+		{
+			return false;
+		}
+
+		// Keep the part of a line the last read ended in.
+		byte[] window = buffer.array();
+		System.arraycopy(window, limit, window, 0, end - limit);
+		end -= limit;
+		position = 0;
+		limit = 0;
+
+		try
+		{
+			while (limit == 0)
+			{
+				if (end == window.length)
+				{
+					// A line longer than the window.
+					window = Arrays.copyOf(window, window.length * 2);
+					buffer = ByteBuffer.wrap(window);
+				}
+
+				int count = input.read(window, end, window.length - end);
+				if (count < 0)
+				{
+					// The last line may not end with a line break.
+					input = null;
+					limit = end;
+					break;
+				}
+
+				int start = end;
+				end += count;
+				for (int i = end - 1; i >= start && limit == 0; i--)
+				{
+					if (isLineEnd(window[i]))
+					{
+						limit = i + 1;
+					}
+				}
+			}
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		buffer.limit(end);
+
+		return position < limit;
+	}
+
+	/**
+	 * Adds the specified token, decoding it like Integer.parseInt if it is an
+	 * integer, to the specified operands.
+	 *
+	 * @param operands the specified operands.
+	 * @param name the specified token.
+	 * @param start the specified start of the token, inclusive.
+	 * @param end the specified end of the token, exclusive.
+	 */
+	private void addOperand(Operands operands, String name, int start, int end)
+	{
+		int index = start;
+		boolean isNegative = false;
+		byte first = buffer.get(index);
+		if (first == '-' || first == '+')
+		{
+			isNegative = first == '-';
+			index += 1;
+		}
+
+		// Decode as a long so ints that overflow, like parseInt, are names.
+		long value = 0;
+		boolean isNumber = index < end && end - index <= 10;
+		for (; isNumber && index < end; index++)
+		{
+			byte digit = buffer.get(index);
+			isNumber = digit >= '0' && digit <= '9';
+			value = value * 10 + (digit - '0');
+		}
+		if (isNegative)
+		{
+			value = -value;
+		}
+		isNumber = isNumber && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+
+		operands.add(name, (int) value, isNumber);
+	}
+
+	/**
+	 * Returns the shared string of the bytes from the specified start up to
+	 * the specified end, creating it only the first time.
+	 *
+	 * @param start the specified start, inclusive.
+	 * @param end the specified end, exclusive.
+	 * @return the shared string of the bytes.
+	 */
+	private String intern(int start, int end)
+	{
+		int hash = 1;
+		for (int i = start; i < end; i++)
+		{
+			hash = 31 * hash + buffer.get(i);
+		}
+
+		int mask = keys.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (keys[slot] != null)
+		{
+			if (isSame(keys[slot], start, end))
+			{
+				return names[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		byte[] key = new byte[end - start];
+		for (int i = 0; i < key.length; i++)
+		{
+			key[i] = buffer.get(start + i);
+		}
+		String name = constantPool.intern(new String(key, StandardCharsets.UTF_8));
+		keys[slot] = key;
+		names[slot] = name;
+
+		// Keep the table at most half full.
+		nameCount += 1;
+		if (nameCount * 2 > keys.length)
+		{
+			grow();
+		}
+
+		return name;
+	}
+
+	/**
+	 * Returns {@code true} if the specified key holds the same bytes as the
+	 * buffer from the specified start up to the specified end.
+	 *
+	 * @param key the specified key.
+	 * @param start the specified start, inclusive.
+	 * @param end the specified end, exclusive.
+	 * @return {@code true} if the bytes are the same.
+	 */
+	private boolean isSame(byte[] key, int start, int end)
+	{
+		if (key.length != end - start)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < key.length; i++)
+		{
+			if (key[i] != buffer.get(start + i))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Doubles the interned token table.
+	 */
+	private void grow()
+	{
+		byte[][] oldKeys = keys;
+		String[] oldNames = names;
+		keys = new byte[oldKeys.length * 2][];
+		names = new String[oldKeys.length * 2];
+
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldKeys[i] == null)
+			{
+				continue;
+			}
+
+			int hash = 1;
+			for (byte b : oldKeys[i])
+			{
+				hash = 31 * hash + b;
+			}
+
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (keys[slot] != null)
+			{
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = oldKeys[i];
+			names[slot] = oldNames[i];
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the specified byte separates tokens on a line,
+	 * like the default delimiters of StringTokenizer.
+	 *
+	 * @param b the specified byte.
+	 * @return {@code true} if the byte separates tokens.
+	 */
+	private static boolean isWhitespace(byte b)
+	{
+		return b == ' ' || b == '\t' || b == '\f';
+	}
+
+	/**
+	 * Returns {@code true} if the specified byte ends a line.
+	 *
+	 * @param b the specified byte.
+	 * @return {@code true} if the byte ends a line.
+	 */
+	private static boolean isLineEnd(byte b)
+	{
+		return b == '\n' || b == '\r';
+	}
+}
@@ -4,56 +4,133 @@
  */
 package interpreter;
 
+import interpreter.bytecode.*;
+import interpreter.bytecode.debuggerByteCodes.FormalCode;
+import interpreter.bytecode.debuggerByteCodes.FunctionCode;
+import interpreter.bytecode.debuggerByteCodes.LineCode;
+
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Supplier;
 
 /**
- * Holds and initializes the Hashtable that ByteCodeLoader uses to create
+ * Holds and initializes the tables that ByteCodeLoader uses to create
  * instances of the bytecode classes.
  *
+ * Each table maps a code to a factory resolved once at start up, so loading
+ * never looks classes up by name. Codes from other jars are added through
+ * {@link ByteCodeProvider}.
+ *
  * @author mandynoto
  */
 public class CodeTable extends Object
 {
-	// The key-value pair of a class name and its file absent of an extension.
+	// The key-value pair of a code and the factory of its byte code.
 	// From Source Reader page 133
 
-	private static HashMap<String, String> codeTableHashMap;
+	private static volatile Map<String, Supplier<ByteCode>> codeTableHashMap;
+
+	// The same table with the byte codes the debugger runs instead.
+	private static volatile Map<String, Supplier<ByteCode>> debugCodeTableHashMap;
+
+	/**
+	 * Initializes this CodeTable's hash maps, once.
+	 */
+	public static synchronized void init()
+	{
+		if (codeTableHashMap != null)
+		{
+			return;
+		}
+
+		// Codes without state are flyweights, one instance for every use.
+		ByteCode halt = new HaltCode();
+		ByteCode read = new ReadCode();
+		ByteCode write = new WriteCode();
+
+		HashMap<String, Supplier<ByteCode>> codes = new HashMap<>();
+		codes.put("ARGS", ArgsCode::new);
+		codes.put("BOP", BopCode::new);
+		codes.put("CALL", CallCode::new);
+		codes.put("Dump", DumpCode::new);
+		codes.put("FALSEBRANCH", FalseBranchCode::new);
+		codes.put("GOTO", GotoCode::new);
+		codes.put("HALT", () -> halt);
+		codes.put("LABEL", LabelCode::new);
+		codes.put("LIT", LitCode::new);
+		codes.put("LOAD", LoadCode::new);
+		codes.put("POP", PopCode::new);
+		codes.put("READ", () -> read);
+		codes.put("RETURN", ReturnCode::new);
+		codes.put("STORE", StoreCode::new);
+		codes.put("WRITE", () -> write);
+		codes.put("DUMP", DumpCode::new);
+
+		HashMap<String, Supplier<ByteCode>> debugCodes = new HashMap<>(codes);
+		debugCodes.put("FORMAL", FormalCode::new);
+		debugCodes.put("FUNCTION", FunctionCode::new);
+		debugCodes.put("LINE", LineCode::new);
+		debugCodes.put("LIT", interpreter.bytecode.debuggerByteCodes.LitCode::new);
+		debugCodes.put("POP", interpreter.bytecode.debuggerByteCodes.PopCode::new);
+		debugCodes.put("RETURN", interpreter.bytecode.debuggerByteCodes.ReturnCode::new);
+
+		// Let codes from other jars add to, or replace, the codes above.
+		for (ByteCodeProvider provider : ServiceLoader.load(ByteCodeProvider.class))
+		{
+			provider.registerCodes(codes, false);
+			provider.registerCodes(debugCodes, true);
+		}
+		removeFusedCodes(codes);
+		removeFusedCodes(debugCodes);
+
+		debugCodeTableHashMap = Collections.unmodifiableMap(debugCodes);
+		codeTableHashMap = Collections.unmodifiableMap(codes);
+	}
 
 	/**
-	 * Initializes this CodeTable's hash map.
+	 * Removes every code of the specified table whose factory makes a fused
+	 * byte code, which has no text form to be initialized from.
+	 *
+	 * @param codes the specified table of codes and factories.
 	 */
-	public static void init()
+	private static void removeFusedCodes(Map<String, Supplier<ByteCode>> codes)
 	{
-		codeTableHashMap = new HashMap<>();
-		codeTableHashMap.put("ARGS", "ArgsCode");
-		codeTableHashMap.put("BOP", "BopCode");
-		codeTableHashMap.put("CALL", "CallCode");
-		codeTableHashMap.put("Dump", "DumpCode");
-		codeTableHashMap.put("FALSEBRANCH", "FalseBranchCode");
-		codeTableHashMap.put("GOTO", "GotoCode");
-		codeTableHashMap.put("HALT", "HaltCode");
-		codeTableHashMap.put("LABEL", "LabelCode");
-		codeTableHashMap.put("LIT", "LitCode");
-		codeTableHashMap.put("LOAD", "LoadCode");
-		codeTableHashMap.put("POP", "PopCode");
-		codeTableHashMap.put("READ", "ReadCode");
-		codeTableHashMap.put("RETURN", "ReturnCode");
-		codeTableHashMap.put("STORE", "StoreCode");
-		codeTableHashMap.put("WRITE", "WriteCode");
-		codeTableHashMap.put("DUMP", "DumpCode");
-		codeTableHashMap.put("FORMAL", "FormalCode");
-		codeTableHashMap.put("FUNCTION", "FunctionCode");
-		codeTableHashMap.put("LINE", "LineCode");
+		codes.values().removeIf(factory -> factory.get() instanceof FusedCode);
 	}
 
 	/**
-	 * Returns the class name to which the specied code is mapped.
+	 * Returns the factory to which the specified code is mapped, or null if
+	 * the code does not run outside of the debugger.
 	 *
-	 * @param	code the code whose associated clalss name is to be returned.
-	 * @return the class name to which the specified code is mapped.
+	 * @param	code the code whose associated factory is to be returned.
+	 * @return the factory to which the specified code is mapped.
 	 */
-	public static String get(String code)
+	public static Supplier<ByteCode> get(String code)
 	{
+		if (codeTableHashMap == null)
+		{
+			init();
+		}
+
 		return codeTableHashMap.get(code);
 	}
+
+	/**
+	 * Returns the debugging factory to which the specified code is mapped, or
+	 * null if there is none.
+	 *
+	 * @param	code the code whose associated factory is to be returned.
+	 * @return the debugging factory to which the specified code is mapped.
+	 */
+	public static Supplier<ByteCode> getDebug(String code)
+	{
+		if (debugCodeTableHashMap == null)
+		{
+			init();
+		}
+
+		return debugCodeTableHashMap.get(code);
+	}
 }
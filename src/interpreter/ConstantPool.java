@@ -0,0 +1,47 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one shared copy of every name in a program, such as the labels
+ * fib<<2>> and the variable names of LOAD and STORE, so byte codes that
+ * mention the same name point at the same string.
+ *
+ * Note: Chunks parsed at the same time share one pool safely.
+ *
+ * @author mandynoto
+ */
+public class ConstantPool
+{
+
+	// Each name mapped to its shared copy.
+	private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the shared copy of the specified name, making the specified
+	 * name the shared copy if there is none yet.
+	 *
+	 * @param name the specified name.
+	 * @return the shared copy of the specified name.
+	 */
+	public String intern(String name)
+	{
+		String shared = names.putIfAbsent(name, name);
+
+		return shared == null ? name : shared;
+	}
+
+	/**
+	 * Returns the number of distinct names in this pool.
+	 *
+	 * @return the number of distinct names in this pool.
+	 */
+	public int size()
+	{
+		return names.size();
+	}
+}
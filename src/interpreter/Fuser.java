@@ -0,0 +1,234 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.util.Arrays;
+
+/**
+ * Fuses common sequences of byte codes into superinstructions, which the
+ * virtual machine runs in one dispatch, e.g. LOAD 0 n; LIT 1; BOP <=;
+ * FALSEBRANCH else into one LoadCompareBranchCode.
+ *
+ * The superinstructions are chosen from a static profile of the program:
+ * every site where a kind matches is counted, and the sites that do not
+ * overlap and remove the most dispatches together are fused. A program with
+ * a recorded profile weighs each site by how often it ran instead, so only
+ * the sites that ran are fused, the hottest first.
+ *
+ * Note: Only a verified program without a DUMP that can run is fused, since
+ * a fused sequence prints no DUMP output between its byte codes.
+ *
+ * @author mandynoto
+ */
+public class Fuser
+{
+
+	// The kinds of superinstructions.
+	private static final int LOAD_COMPARE_BRANCH = 0;
+	private static final int LOAD_BOP = 1;
+	private static final int LIT_BOP = 2;
+	private static final int STORE_LOAD = 3;
+
+	// The sequence of each kind, and its number of byte codes.
+	private static final String[] SEQUENCES =
+	{
+		"LOAD LIT BOP FALSEBRANCH", "LOAD LIT BOP", "LIT BOP", "STORE LOAD"
+	};
+	private static final int[] LENGTHS =
+	{
+		4, 3, 2, 2
+	};
+
+	private final Program program;
+	// The sites where each kind matches, overlapping or not.
+	private final int[] matches = new int[SEQUENCES.length];
+	// The sites where each kind is fused.
+	private final int[] fused = new int[SEQUENCES.length];
+	// The dispatches of the recorded run that fusing removes, and all of them.
+	private long removedRuns;
+	private long runs;
+
+	/**
+	 * Constructs a fuser of the specified program.
+	 *
+	 * @param program the specified program.
+	 */
+	public Fuser(Program program)
+	{
+		this.program = program;
+	}
+
+	/**
+	 * Fuses the sequences of this program in place, and returns whether it
+	 * could be fused at all.
+	 *
+	 * @return {@code true} if the program is verified and never dumps.
+	 */
+	public boolean fuse()
+	{
+		StackMap stackMap = program.getStackMap();
+		if (stackMap == null || stackMap.hasDump())
+		{
+			return false;
+		}
+
+		// The static profile: every site where each kind matches.
+		int size = program.getSize();
+		int[] bestKinds = new int[size];
+		Arrays.fill(bestKinds, -1);
+		for (int pc = 0; pc < size; pc++)
+		{
+			for (int kind = 0; kind < SEQUENCES.length; kind++)
+			{
+				if (matches(kind, pc))
+				{
+					matches[kind] += 1;
+				}
+			}
+		}
+
+		// Choose the sites that remove the most dispatches without overlapping,
+		// from the last byte code back, since a short sequence may hide a long one.
+		Profile profile = program.getProfile();
+		long[] removed = new long[size + 1];
+		for (int pc = size - 1; pc >= 0; pc--)
+		{
+			long weight = profile != null ? profile.getCount(pc) : 1;
+			removed[pc] = removed[pc + 1];
+			for (int kind = 0; kind < SEQUENCES.length; kind++)
+			{
+				if (matches(kind, pc) && (LENGTHS[kind] - 1) * weight + removed[pc + LENGTHS[kind]] > removed[pc])
+				{
+					removed[pc] = (LENGTHS[kind] - 1) * weight + removed[pc + LENGTHS[kind]];
+					bestKinds[pc] = kind;
+				}
+			}
+			runs += profile != null ? profile.getCount(pc) : 0;
+		}
+		removedRuns = profile != null ? removed[0] : 0;
+
+		int pc = 0;
+		while (pc < size)
+		{
+			int kind = bestKinds[pc];
+			if (kind < 0)
+			{
+				pc += 1;
+				continue;
+			}
+
+			program.setCode(pc, newCode(kind, pc));
+			fused[kind] += 1;
+			pc += LENGTHS[kind];
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns {@code true} if the specified kind of superinstruction matches
+	 * the byte codes at the specified program counter.
+	 *
+	 * @param kind the specified kind.
+	 * @param pc the specified program counter.
+	 * @return {@code true} if the kind matches there.
+	 */
+	private boolean matches(int kind, int pc)
+	{
+		if (pc + LENGTHS[kind] > program.getSize())
+		{
+			return false;
+		}
+
+		switch (kind)
+		{
+			case LOAD_COMPARE_BRANCH:
+				return isCode(pc, LoadCode.class) && isCode(pc + 1, LitCode.class) && isKnownBop(pc + 2)
+						&& isCode(pc + 3, FalseBranchCode.class) && program.getAddress(pc + 3) >= 0;
+			case LOAD_BOP:
+				return isCode(pc, LoadCode.class) && isCode(pc + 1, LitCode.class) && isKnownBop(pc + 2);
+			case LIT_BOP:
+				return isCode(pc, LitCode.class) && isKnownBop(pc + 1);
+			default:
+				return isCode(pc, StoreCode.class) && isCode(pc + 1, LoadCode.class)
+						&& ((StoreCode) program.getCode(pc)).getOffset() == ((LoadCode) program.getCode(pc + 1)).getOffset();
+		}
+	}
+
+	/**
+	 * Returns the superinstruction of the specified kind for the byte codes
+	 * at the specified program counter.
+	 *
+	 * @param kind the specified kind.
+	 * @param pc the specified program counter.
+	 * @return the superinstruction.
+	 */
+	private ByteCode newCode(int kind, int pc)
+	{
+		switch (kind)
+		{
+			case LOAD_COMPARE_BRANCH:
+				return new LoadCompareBranchCode((LoadCode) program.getCode(pc), (LitCode) program.getCode(pc + 1),
+						(BopCode) program.getCode(pc + 2), (FalseBranchCode) program.getCode(pc + 3));
+			case LOAD_BOP:
+				return new LoadBopCode((LoadCode) program.getCode(pc), (LitCode) program.getCode(pc + 1),
+						(BopCode) program.getCode(pc + 2));
+			case LIT_BOP:
+				return new LitBopCode((LitCode) program.getCode(pc), (BopCode) program.getCode(pc + 1));
+			default:
+				return new StoreLoadCode((StoreCode) program.getCode(pc), (LoadCode) program.getCode(pc + 1));
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the byte code at the specified program counter
+	 * is exactly of the specified class, not a debugger or fused one.
+	 */
+	private boolean isCode(int pc, Class<? extends ByteCode> type)
+	{
+		return program.getCode(pc).getClass() == type;
+	}
+
+	/**
+	 * Returns {@code true} if the byte code at the specified program counter
+	 * is a BOP whose operator is known.
+	 */
+	private boolean isKnownBop(int pc)
+	{
+		return isCode(pc, BopCode.class) && ((BopCode) program.getCode(pc)).getOperator() != BopCode.UNKNOWN;
+	}
+
+	/**
+	 * Returns a report of the superinstructions of each kind, and how many
+	 * dispatches of the program they remove.
+	 *
+	 * @return a report of the fused sequences.
+	 */
+	public String getReport()
+	{
+		int sites = 0;
+		int removed = 0;
+		StringBuilder kinds = new StringBuilder();
+		for (int kind = 0; kind < SEQUENCES.length; kind++)
+		{
+			kinds.append(String.format("%s: %d of %d sites\n", SEQUENCES[kind], fused[kind], matches[kind]));
+			sites += fused[kind];
+			removed += fused[kind] * (LENGTHS[kind] - 1);
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append("****Fused byte codes****\n");
+		report.append(kinds);
+		report.append(String.format("Fused %d sequences, removing %d of %d dispatches\n", sites, removed, program.getSize()));
+		if (program.getProfile() != null)
+		{
+			report.append(String.format("Profiled run: removing %d of %d dispatches\n", removedRuns, runs));
+		}
+
+		return report.toString();
+	}
+}
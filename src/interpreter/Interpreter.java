@@ -8,9 +8,22 @@ import interpreter.debugger.DebugByteCodeLoader;
 import interpreter.debugger.DebugVM;
 import interpreter.debugger.DebugSourceReader;
 import interpreter.debugger.DebugSourceLineMapEntry;
+import interpreter.debugger.HotReloader;
 import interpreter.debugger.ui.DebugConsoleUI;
+import interpreter.compiler.AotCompiler;
+import interpreter.compiler.JitCompiler;
+import interpreter.engine.ClosureEngine;
+import interpreter.engine.LoweredProgram;
+import interpreter.engine.RegisterEngine;
+import interpreter.engine.RegisterProgram;
+import interpreter.engine.SwitchEngine;
+import interpreter.optimizer.Optimizer;
+import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * <pre>
@@ -36,11 +49,34 @@ import java.util.List;
 public class Interpreter
 {
 
+	// The options that take a value, e.g. --cache <directory>.
+	private static final Set<String> VALUE_OPTIONS = Set.of("--cache", "--cache-size", "--link", "--engine", "--jit-threshold",
+			"--profile-out", "--profile-in");
+
+	// The options that take no value.
+	private static final Set<String> FLAG_OPTIONS = Set.of("--parallel", "--stream", "--memory", "--prelude", "--lazy", "--time", "--jit", "--fuse",
+			"--no-optimize", "--stats", "--no-memo");
+
+	// The engines of the --engine option.
+	private static final Set<String> ENGINES = Set.of("vm", "switch", "closure", "register");
+
+	// The options each option would ignore, e.g. --lazy parses on the main thread, so neither --stream nor --parallel.
+	private static final Map<String, List<String>> CONFLICTS = Map.of(
+			"--link", List.of("--lazy", "--stream", "--parallel", "--cache"),
+			"--prelude", List.of("--lazy", "--stream", "--parallel", "--cache"),
+			"--lazy", List.of("--stream", "--parallel", "--cache"),
+			"--stream", List.of("--parallel", "--cache"),
+			"--jit", List.of("--fuse"));
+
 	// True if there the debugging flag '-d' is set.
 	private Boolean isDebugging = false;
 	ByteCodeLoader bcl;
+	// The '--' options given before the file, mapped to their values.
+	Map<String, String> options = new HashMap<>();
 	// The list of code lines mapped to whether they have a break point or not.
 	private List<DebugSourceLineMapEntry> sourceCode;
+	// Swaps changed functions into the debugging session, or null if none.
+	private HotReloader reloader;
 
 	/**
 	 * Constructor for printing out byte codes of the specified code file.
@@ -63,7 +99,8 @@ public class Interpreter
 	 * Constructor for debugging the specified code file when the specified
 	 * debugging flag is set.
 	 *
-	 * Note: Assumes that the code file has a .x and a .x.cod created.
+	 * Note: Assumes that the code file has a .x and a .x.cod, or a compressed
+	 * .x.cod.gz, created.
 	 *
 	 * @param baseSourceFileName the specified code file.
 	 * @param isDebugging the specified debugging flag.
@@ -83,9 +120,14 @@ public class Interpreter
 				// Get the source and code files.
 				sourceFile = baseSourceFileName + ".x";
 				codeFile = baseSourceFileName + ".x.cod";
+				if (!new File(codeFile).exists() && new File(codeFile + ".gz").exists())
+				{
+					codeFile += ".gz";
+				}
 
 				bcl = new DebugByteCodeLoader(codeFile);
 				sourceCode = DebugSourceReader.load(sourceFile);
+				reloader = new HotReloader(codeFile, sourceFile);
 				System.out.printf("****Debugging %s****\n\n", sourceFile);
 				return;
 			}
@@ -100,20 +142,330 @@ public class Interpreter
 
 	void run()
 	{
-		Program program = bcl.loadCodes();
+		Program program;
+
+		if (options.containsKey("--link") || options.containsKey("--prelude"))
+		{
+			// Link the program with its modules and the shared prelude.
+			program = bcl.linkCodes(getModuleFiles());
+			if (program == null)
+			{
+				return;
+			}
+		} else if (options.containsKey("--lazy"))
+		{
+			// Parse each function only when it first runs.
+			program = bcl.loadLazyCodes();
+			if (program == null)
+			{
+				return;
+			}
+		} else if (options.containsKey("--stream"))
+		{
+			// Parse on another thread while the virtual machine starts running.
+			StreamingProgram streamingProgram = new StreamingProgram();
+			Thread loader = new Thread(() -> bcl.streamCodes(streamingProgram), "ByteCodeLoader");
+			loader.setDaemon(true);
+			loader.start();
+			program = streamingProgram;
+		} else
+		{
+			bcl.setParallel(options.containsKey("--parallel"));
+			bcl.setCache(openCache());
+			program = bcl.loadCodes();
+			if (program == null)
+			{
+				return;
+			}
+		}
+
+		if (options.containsKey("--memory"))
+		{
+			System.out.print(program.getMemoryReport());
+		}
+
 		VirtualMachine vm;
 
 		// Run to print byte codes if we're not debugging, otherwise ...
 		if (!isDebugging)
 		{
-			vm = new VirtualMachine(program);
-			vm.executeProgram();
+			// The profile counts the program as loaded, so a later --profile-in finds the same byte codes.
+			if (options.containsKey("--profile-out"))
+			{
+				runProfiled(program);
+				return;
+			}
+			if (options.containsKey("--profile-in"))
+			{
+				program.setProfile(loadProfile(program));
+			}
+			if (!options.containsKey("--no-optimize"))
+			{
+				program = optimize(program);
+			}
+
+			long start = System.nanoTime();
+			if (!runEngine(program))
+			{
+				vm = new VirtualMachine(program);
+				Memoizer memoizer = null;
+				if (options.containsKey("--jit"))
+				{
+					vm.setCompiler(new JitCompiler(program, getJitThreshold()));
+				} else
+				{
+					// Analyzed before fusing, so every byte code is one the Memoizer knows.
+					memoizer = options.containsKey("--no-memo") ? null : Memoizer.analyze(program);
+					vm.setMemoizer(memoizer);
+					if (options.containsKey("--fuse"))
+					{
+						fuse(program);
+					}
+				}
+				vm.executeProgram();
+
+				if (memoizer != null && options.containsKey("--stats"))
+				{
+					System.out.print(memoizer.getReport());
+				}
+			}
+
+			if (options.containsKey("--time"))
+			{
+				System.out.printf("****Ran in %d ms****\n", (System.nanoTime() - start) / 1000000);
+			}
 			return;
 		}
 
 		// ... activate debugging functionalities.
 		vm = new DebugVM(program, sourceCode);
-		DebugConsoleUI.showPrompt((DebugVM) vm);
+
+		// A linked program is not laid out like its file, so it is not reloaded.
+		boolean isLinked = options.containsKey("--link") || options.containsKey("--prelude");
+		DebugConsoleUI.showPrompt((DebugVM) vm, isLinked ? null : reloader);
+	}
+
+	/**
+	 * Runs the specified program on the virtual machine, counting how often
+	 * each byte code runs, and saves the profile into the file of the
+	 * --profile-out option.
+	 *
+	 * Note: A program that is not verified, or that dumps, runs without
+	 * being counted.
+	 *
+	 * @param program the specified program.
+	 */
+	private void runProfiled(Program program)
+	{
+		StackMap stackMap = program.getStackMap();
+		Profile profile = stackMap != null && !stackMap.hasDump() ? new Profile(program.getSize()) : null;
+		if (profile == null)
+		{
+			System.out.println("***Only a verified program that never dumps is profiled");
+		}
+
+		long start = System.nanoTime();
+		VirtualMachine vm = new VirtualMachine(program);
+		vm.setProfile(profile);
+		vm.executeProgram();
+		if (options.containsKey("--time"))
+		{
+			System.out.printf("****Ran in %d ms****\n", (System.nanoTime() - start) / 1000000);
+		}
+		if (profile == null)
+		{
+			return;
+		}
+
+		if (options.containsKey("--stats"))
+		{
+			System.out.print(profile.getReport(program));
+		}
+		try
+		{
+			profile.save(options.get("--profile-out"), program);
+		} catch (IOException e)
+		{
+			System.out.println("**** " + e);
+		}
+	}
+
+	/**
+	 * Returns the profile of the specified program in the file of the
+	 * --profile-in option, or null if it cannot be read.
+	 *
+	 * @param program the specified program.
+	 * @return the profile of the program, or null if there is none.
+	 */
+	private Profile loadProfile(Program program)
+	{
+		try
+		{
+			return Profile.load(options.get("--profile-in"), program);
+		} catch (IOException e)
+		{
+			System.out.println("**** " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Runs the specified program on the engine named by the --engine option,
+	 * e.g. --engine switch, --engine closure, or --engine register
+	 *
+	 * @param program the specified program.
+	 * @return true if an engine ran the program, or false if the virtual
+	 * machine should run it instead.
+	 */
+	private boolean runEngine(Program program)
+	{
+		String engine = options.getOrDefault("--engine", "vm");
+		switch (engine)
+		{
+			case "vm":
+				return false;
+			case "switch":
+				// A program that cannot be lowered, e.g. one that dumps, runs on the virtual machine.
+				LoweredProgram loweredProgram = LoweredProgram.lower(program);
+				if (loweredProgram == null)
+				{
+					return false;
+				}
+
+				new SwitchEngine(loweredProgram).executeProgram();
+				return true;
+			case "closure":
+				loweredProgram = LoweredProgram.lower(program);
+				if (loweredProgram == null)
+				{
+					return false;
+				}
+
+				new ClosureEngine(loweredProgram).executeProgram();
+				return true;
+			case "register":
+				// A program that cannot be translated, e.g. one with debugger byte codes, runs on the virtual machine.
+				RegisterProgram registerProgram = RegisterProgram.translate(program);
+				if (registerProgram == null)
+				{
+					return false;
+				}
+
+				if (options.containsKey("--stats"))
+				{
+					System.out.print(registerProgram.getReport());
+				}
+				new RegisterEngine(registerProgram, program).executeProgram();
+				return true;
+			default:
+				System.out.println("***Unknown engine: " + engine);
+				return true;
+		}
+	}
+
+	/**
+	 * Returns the specified program optimized, printing what each pass did if
+	 * the --stats option is set.
+	 *
+	 * @param program the specified program.
+	 * @return the optimized program.
+	 */
+	private Program optimize(Program program)
+	{
+		Optimizer optimizer = Optimizer.getDefault();
+		Program optimized = optimizer.optimize(program);
+		if (options.containsKey("--stats"))
+		{
+			System.out.print(optimizer.getReport());
+		}
+
+		return optimized;
+	}
+
+	/**
+	 * Fuses common sequences of the specified program into superinstructions,
+	 * printing how much dispatch that removed if the --stats option is set.
+	 *
+	 * Note: A program that cannot be fused, e.g. one that dumps, runs like it
+	 * always has.
+	 *
+	 * @param program the specified program.
+	 */
+	private void fuse(Program program)
+	{
+		Fuser fuser = new Fuser(program);
+		if (fuser.fuse() && options.containsKey("--stats"))
+		{
+			System.out.print(fuser.getReport());
+		}
+	}
+
+	/**
+	 * Returns the calls of a function before --jit compiles it, from the
+	 * --jit-threshold option.
+	 *
+	 * @return the calls of a function before it is compiled.
+	 */
+	private int getJitThreshold()
+	{
+		if (!options.containsKey("--jit-threshold"))
+		{
+			return JitCompiler.DEFAULT_THRESHOLD;
+		}
+
+		try
+		{
+			return Integer.parseInt(options.get("--jit-threshold"));
+		} catch (NumberFormatException e)
+		{
+			System.out.println("**** " + e);
+			return JitCompiler.DEFAULT_THRESHOLD;
+		}
+	}
+
+	/**
+	 * Returns the module files of the --link option, which are separated like
+	 * a class path, e.g. --link lib.x.cod:math.x.cod
+	 *
+	 * @return the module files, or none if there is no --link option.
+	 */
+	private List<String> getModuleFiles()
+	{
+		if (!options.containsKey("--link"))
+		{
+			return List.of();
+		}
+
+		return List.of(options.get("--link").split(File.pathSeparator));
+	}
+
+	/**
+	 * Returns the program cache named by the --cache option, limited to the
+	 * megabytes of the --cache-size option, or null if there is none.
+	 *
+	 * @return the program cache, or null if there is none.
+	 */
+	private ProgramCache openCache()
+	{
+		if (!options.containsKey("--cache"))
+		{
+			return null;
+		}
+
+		try
+		{
+			long maxBytes = ProgramCache.DEFAULT_MAX_BYTES;
+			if (options.containsKey("--cache-size"))
+			{
+				maxBytes = Long.parseLong(options.get("--cache-size")) * 1024 * 1024;
+			}
+
+			return new ProgramCache(options.get("--cache"), maxBytes);
+		} catch (IOException | NumberFormatException e)
+		{
+			System.out.println("**** " + e);
+			return null;
+		}
 	}
 
 	/**
@@ -131,21 +483,175 @@ public class Interpreter
 			System.exit(1);
 		}
 
+		// Compile a text code file into the binary format and stop.
+		if (args[0].equals("--compile"))
+		{
+			compile(args);
+			return;
+		}
+
+		// Compile a code file into a runnable JAR and stop.
+		if (args[0].equals("--aot"))
+		{
+			compileAheadOfTime(args);
+			return;
+		}
+
+		// Collect the options that come before the file.
+		HashMap<String, String> options = new HashMap<>();
+		int index = 0;
+		while (index < args.length && args[index].startsWith("--"))
+		{
+			String option = args[index];
+			if (VALUE_OPTIONS.contains(option))
+			{
+				if (index + 1 == args.length)
+				{
+					System.out.printf("***Incorrect usage, try: java interpreter.Interpreter %s <value> <file>%n", option);
+
+					System.exit(1);
+				}
+				index += 1;
+				options.put(option, args[index]);
+			} else if (FLAG_OPTIONS.contains(option))
+			{
+				options.put(option, "");
+			} else
+			{
+				System.out.println("***Unknown option: " + option);
+
+				System.exit(1);
+			}
+			index += 1;
+		}
+		String conflict = checkOptions(options);
+		if (conflict != null)
+		{
+			System.out.println(conflict);
+
+			System.exit(1);
+		}
+		// The file, or -d and the file, must follow the options.
+		if (index == args.length || args[index].equals("-d") && index + 1 == args.length)
+		{
+			System.out.println("***Incorrect usage, try: java interpreter.Interpreter [options] <file>");
+
+			System.exit(1);
+		}
+
 		Interpreter interpreter;
 
 		// Decide which overloaded constructor to use: debug or normal and ...
-		if (args[0].equals("-d"))
+		if (args[index].equals("-d") && index + 1 < args.length)
 		{
 			// Go in debugging mode.
-			interpreter = new Interpreter(args[1], true);
+			interpreter = new Interpreter(args[index + 1], true);
 		} else
 		{
 			// Just view byte codes.
-			interpreter = new Interpreter(args[0]);
+			interpreter = new Interpreter(args[index]);
 		}
 
 		// ... then run this interpreter.
+		interpreter.options = options;
 		interpreter.run();
 	}
 
+	/**
+	 * Returns the usage message for the specified options if one of them
+	 * names an unknown engine, or two of them cannot be used together, e.g.
+	 * --jit, which compiles the byte codes --fuse would fuse, and --fuse.
+	 *
+	 * @param options the specified options mapped to their values.
+	 * @return the usage message, or null if the options can be used.
+	 */
+	static String checkOptions(Map<String, String> options)
+	{
+		String engine = options.getOrDefault("--engine", "vm");
+		if (!ENGINES.contains(engine))
+		{
+			return "***Unknown engine: " + engine + ", try: java interpreter.Interpreter --engine vm|switch|closure|register <file>";
+		}
+
+		for (Map.Entry<String, List<String>> entry : CONFLICTS.entrySet())
+		{
+			if (!options.containsKey(entry.getKey()))
+			{
+				continue;
+			}
+			for (String option : entry.getValue())
+			{
+				if (options.containsKey(option))
+				{
+					return String.format("***Incorrect usage, %s cannot be used with %s", entry.getKey(), option);
+				}
+			}
+		}
+
+		// Only the virtual machine compiles or fuses byte codes.
+		for (String option : List.of("--jit", "--fuse"))
+		{
+			if (options.containsKey(option) && !engine.equals("vm"))
+			{
+				return String.format("***Incorrect usage, %s cannot be used with --engine %s", option, engine);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Compiles the code file named by the specified command line arguments
+	 * into a runnable JAR, e.g. --aot fib.x.cod fib.jar
+	 *
+	 * @param args the specified command line arguments.
+	 */
+	private static void compileAheadOfTime(String[] args)
+	{
+		if (args.length < 3)
+		{
+			System.out.println("***Incorrect usage, try: java interpreter.Interpreter --aot <file> <jar file>");
+
+			System.exit(1);
+		}
+
+		try
+		{
+			CodeTable.init();
+			Program program = new ByteCodeLoader(args[1]).loadCodes();
+			if (program != null && AotCompiler.compile(program, args[2]))
+			{
+				System.out.printf("****Compiled %s into %s****\n", args[1], args[2]);
+			}
+		} catch (IOException e)
+		{
+			System.out.println("**** " + e);
+		}
+	}
+
+	/**
+	 * Compiles the text code file named by the specified command line
+	 * arguments into a binary code file, e.g. --compile fib.x.cod fib.x.bin
+	 *
+	 * @param args the specified command line arguments.
+	 */
+	private static void compile(String[] args)
+	{
+		if (args.length < 3)
+		{
+			System.out.println("***Incorrect usage, try: java interpreter.Interpreter --compile <file> <binary file>");
+
+			System.exit(1);
+		}
+
+		try
+		{
+			BinaryCodeFile.compile(args[1], args[2]);
+			System.out.printf("****Compiled %s into %s****\n", args[1], args[2]);
+		} catch (IOException e)
+		{
+			System.out.println("**** " + e);
+		}
+	}
+
 }
@@ -0,0 +1,291 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.Operands;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A program whose functions are parsed only the first time control reaches
+ * them, e.g. when a CALL transfers control into them.
+ *
+ * Constructing it scans the text once for its LABEL lines, without creating
+ * any byte code. Each label starts a block, i.e. a function or a part of one
+ * such as the body of a while, and the position of its line in the text is
+ * kept so the block can be parsed on its own the first time one of its byte
+ * codes is fetched.
+ *
+ * Note: A lazy program is not verified. A line with bad arguments, which the
+ * other loaders skip, stops the program when its block is parsed.
+ *
+ * @author mandynoto
+ */
+public class LazyProgram extends Program
+{
+
+	// The text of the program.
+	private final ByteBuffer text;
+	// The loader that creates the byte codes of this program's mode.
+	private final ByteCodeLoader loader;
+	// The tokenizer of the text, moved to each block it parses.
+	private final ByteCodeTokenizer tokenizer;
+	// The container for each byte code argument, reused for every line.
+	private final Operands operands = new Operands();
+	// The address of every label, after the first byte code.
+	private final Linker linker = new Linker();
+
+	// The byte codes of this program, or null until their block is parsed.
+	private ByteCode[] codes;
+	// The first program counter of each block, in order.
+	private int[] blockStarts;
+	// The position in the text of the first byte code of each block.
+	private int[] blockPositions;
+	// The number of blocks parsed so far.
+	private int loadedBlocks;
+
+	/**
+	 * Constructs a lazy program over the specified text, whose byte codes are
+	 * created by the specified loader.
+	 *
+	 * @param text the specified text, which is read but not moved.
+	 * @param loader the specified loader.
+	 */
+	public LazyProgram(ByteBuffer text, ByteCodeLoader loader)
+	{
+		super();
+		this.text = text;
+		this.loader = loader;
+		this.tokenizer = new ByteCodeTokenizer(text, getConstantPool());
+
+		index();
+	}
+
+	/**
+	 * Scans the text for the program counter of every byte code, and the
+	 * address and position of every label.
+	 */
+	private void index()
+	{
+		blockStarts = new int[64];
+		blockPositions = new int[64];
+
+		// Main's block starts at the first byte code.
+		blockPositions[0] = text.position();
+		int blockCount = 1;
+
+		int pc = 0;
+		String code;
+		while ((code = tokenizer.nextCode()) != null)
+		{
+			if (loader.getCodeFactory(code) == null)
+			{
+				continue;
+			}
+
+			String label = code.equals("LABEL") ? tokenizer.nextName() : null;
+			// Like resolveAddress, a label at the first byte code is never a target.
+			if (label != null && pc > 0)
+			{
+				linker.put(label, pc);
+
+				if (blockCount == blockStarts.length)
+				{
+					blockStarts = Arrays.copyOf(blockStarts, 2 * blockCount);
+					blockPositions = Arrays.copyOf(blockPositions, 2 * blockCount);
+				}
+				blockStarts[blockCount] = pc;
+				blockPositions[blockCount] = tokenizer.getCodePosition();
+				blockCount += 1;
+			}
+			pc += 1;
+		}
+
+		codes = new ByteCode[pc];
+		blockStarts = Arrays.copyOf(blockStarts, blockCount);
+		blockPositions = Arrays.copyOf(blockPositions, blockCount);
+	}
+
+	/**
+	 * Returns the ByteCode of the specified program counter, parsing its
+	 * block first if it is not parsed yet.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the ByteCode based on the specified program counter.
+	 */
+	@Override
+	public ByteCode getCode(int pc)
+	{
+		ByteCode byteCode = codes[pc];
+		if (byteCode == null)
+		{
+			load(getBlock(pc));
+			byteCode = codes[pc];
+		}
+
+		return byteCode;
+	}
+
+	/**
+	 * Returns the ByteCode of the specified program counter if its block is
+	 * parsed already.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the ByteCode of the program counter, or null if it is not parsed.
+	 */
+	@Override
+	protected ByteCode getLoadedCode(int pc)
+	{
+		return codes[pc];
+	}
+
+	/**
+	 * Returns the size of this program, including the blocks that are not
+	 * parsed yet.
+	 *
+	 * @return the size of this program.
+	 */
+	@Override
+	public int getSize()
+	{
+		return codes.length;
+	}
+
+	/**
+	 * Replaces the ByteCode of the specified program counter with the
+	 * specified one, parsing only its block first so parsing it later does
+	 * not undo the replacement.
+	 *
+	 * @param pc the specified program counter.
+	 * @param byteCode the specified byte code.
+	 */
+	@Override
+	public void setCode(int pc, ByteCode byteCode)
+	{
+		getCode(pc);
+		codes[pc] = byteCode;
+	}
+
+	/**
+	 * Returns the byte codes of this program as an array, in order, parsing
+	 * every block that is not parsed yet, since the array holds all of them.
+	 *
+	 * @return the byte codes of this program as an array.
+	 */
+	@Override
+	public ByteCode[] toArray()
+	{
+		for (int block = 0; block < blockStarts.length; block++)
+		{
+			if (blockStarts[block] < codes.length && codes[blockStarts[block]] == null)
+			{
+				load(block);
+			}
+		}
+
+		return codes.clone();
+	}
+
+	/**
+	 * Adds a byte code after the last one of this program.
+	 *
+	 * @param byteCode the specified byte code.
+	 */
+	@Override
+	public void add(ByteCode byteCode)
+	{
+		addAll(List.of(byteCode));
+	}
+
+	/**
+	 * Adds the specified byte codes, in order, after the last one of this
+	 * program, parsing only the last block first, which they then belong to.
+	 *
+	 * @param byteCodes the specified byte codes.
+	 */
+	@Override
+	public void addAll(List<ByteCode> byteCodes)
+	{
+		if (codes.length > 0)
+		{
+			getCode(codes.length - 1);
+		}
+
+		int pc = codes.length;
+		codes = Arrays.copyOf(codes, pc + byteCodes.size());
+		for (ByteCode byteCode : byteCodes)
+		{
+			codes[pc++] = byteCode;
+		}
+	}
+
+	/**
+	 * Returns a report of the memory the parsed byte codes of this program
+	 * use, and how many of its blocks are parsed.
+	 *
+	 * @return a report of the memory this program uses.
+	 */
+	@Override
+	public String getMemoryReport()
+	{
+		return super.getMemoryReport()
+				+ String.format("Blocks loaded: %d of %d\n", loadedBlocks, blockStarts.length);
+	}
+
+	/**
+	 * Returns the block the specified program counter belongs to.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the index of the block.
+	 */
+	private int getBlock(int pc)
+	{
+		int block = Arrays.binarySearch(blockStarts, pc);
+
+		return block >= 0 ? block : -block - 2;
+	}
+
+	/**
+	 * Parses the byte codes of the specified block and resolves their labels.
+	 *
+	 * @param block the specified index of the block.
+	 */
+	private void load(int block)
+	{
+		int start = blockStarts[block];
+		int end = block + 1 < blockStarts.length ? blockStarts[block + 1] : codes.length;
+		int limit = block + 1 < blockStarts.length ? blockPositions[block + 1] : text.limit();
+
+		tokenizer.seek(blockPositions[block], limit);
+
+		int pc = start;
+		String code;
+		while (pc < end && (code = tokenizer.next(operands)) != null)
+		{
+			if (loader.getCodeFactory(code) == null)
+			{
+				continue;
+			}
+
+			ByteCode byteCode = loader.createCode(code, operands);
+			if (byteCode == null)
+			{
+				System.out.printf("***Bad arguments for %s at byte code %d%n", code, pc);
+				byteCode = loader.getCodeFactory("HALT").get();
+			}
+			codes[pc] = byteCode;
+			pc += 1;
+		}
+		loadedBlocks += 1;
+
+		for (int unresolvedPC : linker.link(this, start, end))
+		{
+			Linker.printUnresolved(this, unresolvedPC);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.BranchCode;
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.LabelCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves the label of every CALL, GOTO, and FALSEBRANCH byte code to the
+ * program counter of its LABEL byte code.
+ *
+ * Labels are indexed in an open addressing table of strings and primitive
+ * addresses, so millions of labels cost two arrays instead of a boxed map
+ * entry each.
+ *
+ * Note: Once every label is added, ranges that do not overlap can be linked
+ * at the same time.
+ *
+ * @author mandynoto
+ */
+public class Linker
+{
+
+	// The labels of the table, or null for an empty slot.
+	private String[] labels;
+	// The address of the label in the same slot.
+	private int[] addresses;
+	// The number of labels in the table.
+	private int size;
+
+	/**
+	 * Constructs a linker with room for a few labels.
+	 */
+	public Linker()
+	{
+		this(16);
+	}
+
+	/**
+	 * Constructs a linker with room for the specified number of labels.
+	 *
+	 * @param expectedLabels the specified number of labels.
+	 */
+	public Linker(int expectedLabels)
+	{
+		int capacity = 16;
+		while (capacity < 2 * expectedLabels)
+		{
+			capacity <<= 1;
+		}
+		labels = new String[capacity];
+		addresses = new int[capacity];
+	}
+
+	/**
+	 * Resolves every label of the specified program, and returns the program
+	 * counters of the byte codes whose label it does not define.
+	 *
+	 * @param program the specified program.
+	 * @return the program counters of the unresolved byte codes, in order.
+	 */
+	public static List<Integer> link(Program program)
+	{
+		Linker linker = new Linker();
+
+		// A label at the first byte code is never a target.
+		linker.addLabels(program, 1, program.getSize());
+
+		return linker.link(program, 0, program.getSize());
+	}
+
+	/**
+	 * Adds the address of every label code from the specified start up to
+	 * the specified end of the specified program. Later labels replace
+	 * earlier ones of the same name.
+	 *
+	 * @param program the specified program.
+	 * @param from the specified first program counter, inclusive.
+	 * @param to the specified last program counter, exclusive.
+	 */
+	public void addLabels(Program program, int from, int to)
+	{
+		for (int pc = from; pc < to; pc++)
+		{
+			ByteCode byteCode = program.getCode(pc);
+			if (byteCode instanceof LabelCode)
+			{
+				put(((LabelCode) byteCode).getLabel(), pc);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the CALL, GOTO, and FALSEBRANCH byte codes from the specified
+	 * start up to the specified end of the specified program. Byte codes that
+	 * are already resolved are left alone.
+	 *
+	 * @param program the specified program.
+	 * @param from the specified first program counter, inclusive.
+	 * @param to the specified last program counter, exclusive.
+	 * @return the program counters of the unresolved byte codes, in order.
+	 */
+	public List<Integer> link(Program program, int from, int to)
+	{
+		ArrayList<Integer> unresolved = new ArrayList<>(0);
+		for (int pc = from; pc < to; pc++)
+		{
+			ByteCode byteCode = program.getCode(pc);
+			if (!(byteCode instanceof BranchCode))
+			{
+				continue;
+			}
+
+			BranchCode branch = (BranchCode) byteCode;
+			if (branch.getAddress() >= 0)
+			{
+				continue;
+			}
+
+			int address = getAddress(branch.getLabel());
+			if (address >= 0)
+			{
+				branch.setAddress(address);
+			} else
+			{
+				unresolved.add(pc);
+			}
+		}
+
+		return unresolved;
+	}
+
+	/**
+	 * Puts the specified address of the specified label into this linker,
+	 * replacing any earlier address of it.
+	 *
+	 * @param label the specified label.
+	 * @param address the specified address.
+	 */
+	public void put(String label, int address)
+	{
+		int slot = findSlot(label);
+		if (labels[slot] == null)
+		{
+			labels[slot] = label;
+			size += 1;
+		}
+		addresses[slot] = address;
+
+		// Keep the table at most half full.
+		if (2 * size > labels.length)
+		{
+			grow();
+		}
+	}
+
+	/**
+	 * Returns the address of the specified label.
+	 *
+	 * @param label the specified label.
+	 * @return the address of the label, or -1 if it has none.
+	 */
+	public int getAddress(String label)
+	{
+		int slot = findSlot(label);
+
+		return labels[slot] == null ? -1 : addresses[slot];
+	}
+
+	/**
+	 * Returns the number of labels in this linker.
+	 *
+	 * @return the number of labels in this linker.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Prints that the byte code at the specified program counter of the
+	 * specified program jumps to a label no LABEL byte code defines.
+	 *
+	 * @param program the specified program.
+	 * @param pc the specified program counter.
+	 */
+	public static void printUnresolved(Program program, int pc)
+	{
+		BranchCode branch = (BranchCode) program.getCode(pc);
+		System.out.printf("***Unresolved label %s at byte code %d%n", branch.getLabel(), pc);
+	}
+
+	/**
+	 * Returns the slot of the specified label, or the empty slot it belongs
+	 * in.
+	 *
+	 * @param label the specified label.
+	 * @return the slot of the specified label.
+	 */
+	private int findSlot(String label)
+	{
+		int mask = labels.length - 1;
+		int hash = label.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (labels[slot] != null && !labels[slot].equals(label))
+		{
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Doubles the table, putting every label back in its new slot.
+	 */
+	private void grow()
+	{
+		String[] oldLabels = labels;
+		int[] oldAddresses = addresses;
+		labels = new String[oldLabels.length << 1];
+		addresses = new int[oldLabels.length << 1];
+
+		for (int i = 0; i < oldLabels.length; i++)
+		{
+			if (oldLabels[i] != null)
+			{
+				int slot = findSlot(oldLabels[i]);
+				labels[slot] = oldLabels[i];
+				addresses[slot] = oldAddresses[i];
+			}
+		}
+	}
+}
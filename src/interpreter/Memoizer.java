@@ -0,0 +1,286 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers what calls to the pure functions of a program return, so the
+ * VirtualMachine runs each call with the same arguments once, e.g. fib(n-1)
+ * and fib(n-2) of fib.x.
+ *
+ * A function is pure if it never does a READ, WRITE, HALT, or DUMP, and only
+ * calls pure functions. The Verifier keeps every LOAD and STORE inside its
+ * frame, so what a pure function returns only depends on its arguments.
+ *
+ * Note: The results are kept in a cache of at most CAPACITY calls, which
+ * evicts the call used longest ago.
+ *
+ * @author mandynoto
+ */
+public class Memoizer
+{
+
+	// The most calls whose results are kept.
+	private static final int CAPACITY = 1 << 16;
+
+	// True at the entry of each pure function.
+	private final boolean[] isPure;
+	private final StackMap stackMap;
+	private final int functionCount;
+	private final int pureCount;
+	private final LinkedHashMap<Call, Integer> results;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Constructs a memoizer of the pure functions at the specified entries.
+	 *
+	 * @param isPure true at the entry of each pure function.
+	 * @param stackMap the specified stack map of the program.
+	 * @param pureCount the specified number of pure functions.
+	 */
+	private Memoizer(boolean[] isPure, StackMap stackMap, int pureCount)
+	{
+		this.isPure = isPure;
+		this.stackMap = stackMap;
+		this.functionCount = stackMap.getFunctionEntries().size() - 1;
+		this.pureCount = pureCount;
+		this.results = new LinkedHashMap<Call, Integer>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Call, Integer> eldest)
+			{
+				if (size() > CAPACITY)
+				{
+					evictions += 1;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns a memoizer of the pure functions of the specified program, or
+	 * null if it is not verified, a DUMP can run, or none of its functions is
+	 * pure.
+	 *
+	 * @param program the specified program.
+	 * @return a memoizer of the program, or null if there is nothing to memoize.
+	 */
+	public static Memoizer analyze(Program program)
+	{
+		StackMap stackMap = program.getStackMap();
+		if (stackMap == null || stackMap.hasDump())
+		{
+			return null;
+		}
+
+		// What makes each function impure by itself, and what it calls.
+		HashMap<Integer, Boolean> isImpure = new HashMap<>();
+		HashMap<Integer, List<Integer>> callees = new HashMap<>();
+		for (int entry : stackMap.getFunctionEntries())
+		{
+			isImpure.put(entry, entry == 0);
+			callees.put(entry, new ArrayList<>());
+		}
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			int function = stackMap.getFunction(pc);
+			if (function <= 0)
+			{
+				continue;
+			}
+
+			ByteCode code = program.getCode(pc);
+			if (code instanceof CallCode)
+			{
+				callees.get(function).add(((CallCode) code).getAddress());
+			} else if (!isPure(code))
+			{
+				isImpure.put(function, true);
+			}
+		}
+
+		// A function that calls an impure function is impure too.
+		boolean isChanged = true;
+		while (isChanged)
+		{
+			isChanged = false;
+			for (Map.Entry<Integer, List<Integer>> function : callees.entrySet())
+			{
+				if (isImpure.get(function.getKey()))
+				{
+					continue;
+				}
+				for (int callee : function.getValue())
+				{
+					if (isImpure.get(callee))
+					{
+						isImpure.put(function.getKey(), true);
+						isChanged = true;
+						break;
+					}
+				}
+			}
+		}
+
+		boolean[] isPure = new boolean[program.getSize()];
+		int pureCount = 0;
+		for (Map.Entry<Integer, Boolean> function : isImpure.entrySet())
+		{
+			if (!function.getValue())
+			{
+				isPure[function.getKey()] = true;
+				pureCount += 1;
+			}
+		}
+
+		return pureCount == 0 ? null : new Memoizer(isPure, stackMap, pureCount);
+	}
+
+	/**
+	 * Returns {@code true} if the specified byte code, other than a CALL,
+	 * leaves everything outside its frame alone.
+	 *
+	 * @param code the specified byte code.
+	 * @return {@code true} if the byte code is pure.
+	 */
+	private static boolean isPure(ByteCode code)
+	{
+		Class<?> type = code.getClass();
+
+		return type == LabelCode.class || type == LitCode.class || type == LoadCode.class || type == StoreCode.class
+				|| type == BopCode.class || type == PopCode.class || type == ArgsCode.class || type == ReturnCode.class
+				|| type == FalseBranchCode.class || type == GotoCode.class || code instanceof FusedCode;
+	}
+
+	/**
+	 * Returns {@code true} if the function at the specified entry is pure.
+	 *
+	 * @param entry the specified entry, i.e. the address of a CALL.
+	 * @return {@code true} if the function is pure.
+	 */
+	public boolean isPure(int entry)
+	{
+		return isPure[entry];
+	}
+
+	/**
+	 * Returns the call of the pure function at the specified entry with the
+	 * arguments in the current frame of the specified virtual machine, i.e.
+	 * right after its ARGS.
+	 *
+	 * @param entry the specified entry.
+	 * @param vm the specified virtual machine.
+	 * @return the call.
+	 */
+	public Call getCall(int entry, VirtualMachine vm)
+	{
+		int[] args = new int[stackMap.getArgCount(entry)];
+		for (int i = 0; i < args.length; i++)
+		{
+			args[i] = vm.getValue(i);
+		}
+
+		return new Call(entry, args);
+	}
+
+	/**
+	 * Returns what the specified call returned, or null if it is not known.
+	 *
+	 * @param call the specified call.
+	 * @return the result of the call, or null if it is not known.
+	 */
+	public Integer get(Call call)
+	{
+		Integer result = results.get(call);
+		if (result == null)
+		{
+			misses += 1;
+		} else
+		{
+			hits += 1;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Remembers that the specified call returned the specified value.
+	 *
+	 * @param call the specified call.
+	 * @param result the specified value it returned.
+	 */
+	public void put(Call call, int result)
+	{
+		results.put(call, result);
+	}
+
+	/**
+	 * Returns a report of the pure functions, and how often a call to them
+	 * was found in the cache.
+	 *
+	 * @return a report of the memoized calls.
+	 */
+	public String getReport()
+	{
+		StringBuilder report = new StringBuilder();
+		report.append("****Memoization****\n");
+		report.append(String.format("Pure functions: %d of %d\n", pureCount, functionCount));
+		report.append(String.format("Calls: %d hits, %d misses, %d evicted\n", hits, misses, evictions));
+
+		return report.toString();
+	}
+
+	/**
+	 * A call of a function with its argument values.
+	 */
+	public static final class Call
+	{
+
+		private final int entry;
+		private final int[] args;
+		private final int hash;
+
+		/**
+		 * Constructs a call of the function at the specified entry with the
+		 * specified arguments.
+		 */
+		Call(int entry, int[] args)
+		{
+			this.entry = entry;
+			this.args = args;
+			this.hash = 31 * entry + Arrays.hashCode(args);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof Call))
+			{
+				return false;
+			}
+
+			Call call = (Call) other;
+			return entry == call.entry && Arrays.equals(args, call.args);
+		}
+	}
+}
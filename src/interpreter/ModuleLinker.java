@@ -0,0 +1,140 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.CallCode;
+import interpreter.bytecode.LabelCode;
+import interpreter.bytecode.ReturnCode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Links several byte code modules, and the shared prelude, into one program.
+ *
+ * Labels are local to their module: a GOTO or FALSEBRANCH only jumps within
+ * its module, and a CALL first looks in its module and then in every module
+ * in the order they were added, with the prelude last.
+ * A module's own copy of a prelude function is dropped.
+ *
+ * Note: The first module added runs first, so it should be the main program.
+ *
+ * @author mandynoto
+ */
+public class ModuleLinker
+{
+
+	// The program the modules are linked into.
+	private final Program program;
+	// The byte codes of the shared prelude.
+	private final List<ByteCode> prelude;
+	// The functions the prelude defines.
+	private final Set<String> preludeFunctions;
+	// The first and last program counter of each module, in order.
+	private final ArrayList<int[]> modules = new ArrayList<>();
+
+	/**
+	 * Constructs a linker that links modules into the specified program,
+	 * followed by the specified prelude.
+	 *
+	 * @param program the specified program.
+	 * @param prelude the specified prelude byte codes.
+	 */
+	public ModuleLinker(Program program, List<ByteCode> prelude)
+	{
+		this.program = program;
+		this.prelude = prelude;
+		this.preludeFunctions = Prelude.getFunctions(prelude);
+	}
+
+	/**
+	 * Adds the byte codes of the specified module to the program, leaving out
+	 * its own copies of the prelude functions.
+	 *
+	 * @param module the specified module.
+	 */
+	public void addModule(Program module)
+	{
+		int start = program.getSize();
+		ArrayList<ByteCode> codes = new ArrayList<>(module.getSize());
+
+		boolean isDropping = false;
+		for (int pc = 0; pc < module.getSize(); pc++)
+		{
+			ByteCode byteCode = module.getCode(pc);
+			if (byteCode instanceof LabelCode && preludeFunctions.contains(((LabelCode) byteCode).getLabel()))
+			{
+				isDropping = true;
+			}
+
+			if (!isDropping)
+			{
+				codes.add(byteCode);
+			} else if (byteCode instanceof ReturnCode)
+			{
+				isDropping = false;
+			}
+		}
+
+		program.addAll(codes);
+		modules.add(new int[]
+		{
+			start, program.getSize()
+		});
+	}
+
+	/**
+	 * Adds the prelude to the program and resolves the labels of every
+	 * module.
+	 *
+	 * @return the program counters of the unresolved byte codes, in order.
+	 */
+	public List<Integer> link()
+	{
+		int start = program.getSize();
+		program.addAll(prelude);
+		modules.add(new int[]
+		{
+			start, program.getSize()
+		});
+
+		// Earlier modules are added last so their functions win.
+		Linker functions = new Linker();
+		for (int i = modules.size() - 1; i >= 0; i--)
+		{
+			int[] module = modules.get(i);
+			functions.addLabels(program, Math.max(1, module[0]), module[1]);
+		}
+
+		ArrayList<Integer> unresolved = new ArrayList<>();
+		for (int[] module : modules)
+		{
+			Linker labels = new Linker();
+			labels.addLabels(program, Math.max(1, module[0]), module[1]);
+
+			for (int pc : labels.link(program, module[0], module[1]))
+			{
+				ByteCode byteCode = program.getCode(pc);
+				int address = -1;
+				if (byteCode instanceof CallCode)
+				{
+					address = functions.getAddress(((CallCode) byteCode).getLabel());
+				}
+
+				if (address >= 0)
+				{
+					((CallCode) byteCode).setAddress(address);
+				} else
+				{
+					unresolved.add(pc);
+				}
+			}
+		}
+
+		return unresolved;
+	}
+}
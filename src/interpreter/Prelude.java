@@ -0,0 +1,77 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.LabelCode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Holds the intrinsic functions Read and Write, which every program file
+ * carries its own copy of, so linked modules can share one copy instead.
+ *
+ * The prelude is parsed again for each link, by the loader doing the link,
+ * since linking sets the addresses of branches and marks tail calls in
+ * place, and a debug loader keeps the LINE, FUNCTION, and FORMAL codes a
+ * normal one skips.
+ *
+ * @author mandynoto
+ */
+public class Prelude
+{
+
+	// The intrinsic functions, exactly as the X compiler writes them.
+	private static final byte[] TEXT = (""
+			+ "LABEL Read\n"
+			+ "LINE -1\n"
+			+ "FUNCTION Read -1 -1\n"
+			+ "READ\n"
+			+ "RETURN\n"
+			+ "LABEL Write\n"
+			+ "LINE -1\n"
+			+ "FUNCTION Write -1 -1\n"
+			+ "FORMAL dummyFormal 0\n"
+			+ "LOAD 0 dummyFormal\n"
+			+ "WRITE\n"
+			+ "RETURN\n").getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Returns new byte codes of the prelude as the specified loader parses
+	 * them, which no other program shares.
+	 *
+	 * @param loader the specified loader.
+	 * @return the byte codes of the prelude, in order.
+	 */
+	public static List<ByteCode> getCodes(ByteCodeLoader loader)
+	{
+		return loader.parseCodes(ByteBuffer.wrap(TEXT).asReadOnlyBuffer(), new ConstantPool());
+	}
+
+	/**
+	 * Returns the names of the functions the specified prelude byte codes
+	 * define.
+	 *
+	 * @param codes the specified prelude byte codes.
+	 * @return the names of the functions the prelude defines.
+	 */
+	public static Set<String> getFunctions(List<ByteCode> codes)
+	{
+		HashSet<String> functions = new HashSet<>();
+		for (ByteCode byteCode : codes)
+		{
+			if (byteCode instanceof LabelCode)
+			{
+				functions.add(((LabelCode) byteCode).getLabel());
+			}
+		}
+
+		return functions;
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * How often each byte code of a program ran, and how often each FALSEBRANCH
+ * jumped, e.g. recorded by --profile-out and read back by --profile-in.
+ *
+ * The count of a CALL is how often it called, and the count of the first
+ * byte code of a block is how often the block ran.
+ *
+ * Note: A profile is saved with a fingerprint of the program it counted, so
+ * it is only read back for the same byte codes.
+ *
+ * @author mandynoto
+ */
+public class Profile
+{
+
+	// The first word of a profile file.
+	private static final String MAGIC = "PROFILE";
+
+	// The times each byte code ran, and each FALSEBRANCH jumped, by program counter.
+	private final long[] counts;
+	private final long[] taken;
+
+	/**
+	 * Constructs an empty profile of a program of the specified size.
+	 *
+	 * @param size the specified number of byte codes.
+	 */
+	public Profile(int size)
+	{
+		this(new long[size], new long[size]);
+	}
+
+	/**
+	 * Constructs a profile of the specified counts.
+	 *
+	 * @param counts the specified times each byte code ran.
+	 * @param taken the specified times each FALSEBRANCH jumped.
+	 */
+	public Profile(long[] counts, long[] taken)
+	{
+		this.counts = counts;
+		this.taken = taken;
+	}
+
+	/**
+	 * Returns the number of byte codes this profile counts.
+	 *
+	 * @return the number of byte codes.
+	 */
+	public int getSize()
+	{
+		return counts.length;
+	}
+
+	/**
+	 * Returns the times the byte code at the specified program counter ran.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the times the byte code ran.
+	 */
+	public long getCount(int pc)
+	{
+		return counts[pc];
+	}
+
+	/**
+	 * Returns the times the FALSEBRANCH at the specified program counter
+	 * jumped.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the times the byte code jumped.
+	 */
+	public long getTaken(int pc)
+	{
+		return taken[pc];
+	}
+
+	/**
+	 * Returns the times each byte code ran, for the VirtualMachine to count
+	 * into.
+	 */
+	long[] getCounts()
+	{
+		return counts;
+	}
+
+	/**
+	 * Returns the times each FALSEBRANCH jumped, for the VirtualMachine to
+	 * count into.
+	 */
+	long[] getTaken()
+	{
+		return taken;
+	}
+
+	/**
+	 * Saves this profile of the specified program into the specified file,
+	 * one line per byte code that ran.
+	 *
+	 * @param file the specified file.
+	 * @param program the specified program this profile counted.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void save(String file, Program program) throws IOException
+	{
+		try ( BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+		{
+			writer.write(String.format("%s %d %d\n", MAGIC, counts.length, fingerprint(program)));
+			for (int pc = 0; pc < counts.length; pc++)
+			{
+				if (counts[pc] > 0)
+				{
+					writer.write(String.format("%d %d %d\n", pc, counts[pc], taken[pc]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the profile of the specified program saved in the specified
+	 * file.
+	 *
+	 * @param file the specified file.
+	 * @param program the specified program.
+	 * @return the profile of the program.
+	 * @throws IOException if the file cannot be read, or is the profile of
+	 * another program.
+	 */
+	public static Profile load(String file, Program program) throws IOException
+	{
+		try ( BufferedReader reader = new BufferedReader(new FileReader(file)))
+		{
+			String[] header = String.valueOf(reader.readLine()).split(" ");
+			if (header.length != 3 || !header[0].equals(MAGIC))
+			{
+				throw new IOException("Not a profile " + file);
+			}
+			if (Integer.parseInt(header[1]) != program.getSize() || Long.parseLong(header[2]) != fingerprint(program))
+			{
+				throw new IOException("The profile " + file + " is of another program");
+			}
+
+			Profile profile = new Profile(program.getSize());
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				String[] fields = line.split(" ");
+				int pc = Integer.parseInt(fields[0]);
+				profile.counts[pc] = Long.parseLong(fields[1]);
+				profile.taken[pc] = Long.parseLong(fields[2]);
+			}
+
+			return profile;
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+		{
+			throw new IOException("Malformed profile " + file, e);
+		}
+	}
+
+	/**
+	 * Returns a fingerprint of the kind and jump address of every byte code
+	 * of the specified program.
+	 */
+	private static long fingerprint(Program program)
+	{
+		long fingerprint = program.getSize();
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			fingerprint = 31 * fingerprint + program.getCode(pc).getClass().getName().hashCode();
+			fingerprint = 31 * fingerprint + program.getAddress(pc);
+		}
+
+		return fingerprint;
+	}
+
+	/**
+	 * Returns a report of the byte codes that ran, the branches that jumped,
+	 * and the calls.
+	 *
+	 * @param program the specified program this profile counted.
+	 * @return a report of this profile.
+	 */
+	public String getReport(Program program)
+	{
+		long runs = 0;
+		int reached = 0;
+		long branches = 0;
+		long jumps = 0;
+		long calls = 0;
+		for (int pc = 0; pc < counts.length; pc++)
+		{
+			runs += counts[pc];
+			reached += counts[pc] > 0 ? 1 : 0;
+			ByteCode code = program.getCode(pc);
+			if (code instanceof FalseBranchCode)
+			{
+				branches += counts[pc];
+				jumps += taken[pc];
+			} else if (code instanceof CallCode)
+			{
+				calls += counts[pc];
+			}
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append("****Profile****\n");
+		report.append(String.format("Byte codes: %d runs, %d of %d reached\n", runs, reached, counts.length));
+		report.append(String.format("Branches: %d of %d jumped\n", jumps, branches));
+		report.append(String.format("Calls: %d\n", calls));
+
+		return report.toString();
+	}
+}
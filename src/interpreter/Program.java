@@ -6,8 +6,13 @@ package interpreter;
 
 import interpreter.bytecode.*;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Holds generated byte codes.
@@ -19,13 +24,128 @@ public class Program
 
 	// A container for a list of byte codes.
 	private final ArrayList<ByteCode> program;
+	// One shared copy of every name in this program.
+	private final ConstantPool constantPool;
+	// What the Verifier learned about this program, or null if unverified.
+	private StackMap stackMap;
+	// How often each byte code ran in a recorded run, or null if none.
+	private Profile profile;
+
+	// The String fields of each byte code class, found once per class.
+	private static final ClassValue<List<Field>> STRING_FIELDS = new ClassValue<List<Field>>()
+	{
+		@Override
+		protected List<Field> computeValue(Class<?> type)
+		{
+			ArrayList<Field> fields = new ArrayList<>();
+			for (Class<?> c = type; c != null; c = c.getSuperclass())
+			{
+				for (Field field : c.getDeclaredFields())
+				{
+					if (field.getType() == String.class && !Modifier.isStatic(field.getModifiers()))
+					{
+						try
+						{
+							field.setAccessible(true);
+							fields.add(field);
+						} catch (RuntimeException e)
+						{
+							// Intentionally skipped, the field cannot be read.
+						}
+					}
+				}
+			}
+			return fields;
+		}
+	};
 
 	/**
 	 * Constructs an empty program.
 	 */
 	public Program()
+	{
+		this(new ConstantPool());
+	}
+
+	/**
+	 * Constructs an empty program that shares the specified constant pool,
+	 * e.g. with the other modules it is linked with.
+	 *
+	 * @param constantPool the specified constant pool.
+	 */
+	public Program(ConstantPool constantPool)
 	{
 		program = new ArrayList<>();
+		this.constantPool = constantPool;
+	}
+
+	/**
+	 * Returns the pool that holds one shared copy of every name in this
+	 * program.
+	 *
+	 * @return the constant pool of this program.
+	 */
+	public ConstantPool getConstantPool()
+	{
+		return constantPool;
+	}
+
+	/**
+	 * Returns what the Verifier learned about this program, or null if it was
+	 * not verified.
+	 *
+	 * @return the stack map of this program, or null if it was not verified.
+	 */
+	public StackMap getStackMap()
+	{
+		return stackMap;
+	}
+
+	/**
+	 * Sets what the Verifier learned about this program.
+	 *
+	 * @param stackMap the specified stack map, or null if it was not verified.
+	 */
+	public void setStackMap(StackMap stackMap)
+	{
+		this.stackMap = stackMap;
+	}
+
+	/**
+	 * Returns how often each byte code of this program ran in a recorded run,
+	 * or null if there is no profile.
+	 *
+	 * @return the profile of this program, or null if there is none.
+	 */
+	public Profile getProfile()
+	{
+		return profile;
+	}
+
+	/**
+	 * Sets how often each byte code of this program ran in a recorded run.
+	 *
+	 * @param profile the specified profile, or null if there is none.
+	 */
+	public void setProfile(Profile profile)
+	{
+		this.profile = profile;
+	}
+
+	/**
+	 * Returns the byte codes of this program as an array, in order.
+	 *
+	 * @return the byte codes of this program as an array.
+	 */
+	public ByteCode[] toArray()
+	{
+		ByteCode[] codes = new ByteCode[getSize()];
+		for (int pc = 0; pc < codes.length; pc++)
+		{
+			codes[pc] = getCode(pc);
+		}
+
+		return codes;
 	}
 
 	/**
@@ -39,6 +159,18 @@ public class Program
 		return this.program.get(pc);
 	}
 
+	/**
+	 * Replaces the ByteCode of the specified program counter with the
+	 * specified one.
+	 *
+	 * @param pc the specified program counter.
+	 * @param byteCode the specified byte code.
+	 */
+	public void setCode(int pc, ByteCode byteCode)
+	{
+		this.program.set(pc, byteCode);
+	}
+
 	/**
 	 * Returns the size of this program.
 	 *
@@ -59,62 +191,195 @@ public class Program
 		program.add(byteCode);
 	}
 
+	/**
+	 * Adds the specified byte codes, in order, into this program's array list.
+	 *
+	 * @param byteCodes the specified byte codes.
+	 */
+	public void addAll(List<ByteCode> byteCodes)
+	{
+		program.addAll(byteCodes);
+	}
+
 	/**
 	 * Resolves the address of the specified program. Basically, it discovers
-	 * and returns the address of the specified program.
+	 * the address of every label the specified program jumps to.
 	 *
 	 * @param program the specified program.
+	 * @return the program counters of the byte codes whose label is not
+	 * defined, in order.
+	 */
+	public List<Integer> resolveAddress(Program program)
+	{
+		return Linker.link(program);
+	}
+
+	/**
+	 * Returns the resolved address of the CALL, GOTO, or FALSEBRANCH byte code
+	 * at the specified program counter, or -1 if it has none.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the resolved address of the byte code, or -1 if it has none.
 	 */
-	public void resolveAddress(Program program)
+	public int getAddress(int pc)
 	{
-		// A mapping of an address and its associated program counter.
-		HashMap<String, Integer> labelAddressToCount = new HashMap<>();
+		ByteCode byteCode = getCode(pc);
 
-		// An address index for the byte codes: call, false branch, and go to.
-		int addressPC = 1;
+		return byteCode instanceof BranchCode ? ((BranchCode) byteCode).getAddress() : -1;
+	}
 
-		// Add label codes into the labelAddressToCount hashmap.
-		while (addressPC < program.getSize())
+	/**
+	 * Marks every CALL of this verified program that a RETURN follows in a
+	 * function as a tail call, which replaces the function it is made from.
+	 *
+	 * @return the number of tail calls.
+	 */
+	public int markTailCalls()
+	{
+		int count = 0;
+		for (int pc = 0; stackMap != null && pc + 1 < getSize(); pc++)
 		{
-			ByteCode Address = program.getCode(addressPC);
-			if (Address instanceof LabelCode)
+			if (getCode(pc) instanceof CallCode)
 			{
-				labelAddressToCount.put(((LabelCode) Address).getAddress(), addressPC);
+				boolean isTailCall = getCode(pc + 1) instanceof ReturnCode && stackMap.getFunction(pc) > 0;
+				((CallCode) getCode(pc)).setTailCall(isTailCall);
+				count += isTailCall ? 1 : 0;
 			}
-			addressPC += 1;
-
 		}
 
-		// Swap the address of the hash map values with ...
-		// ... discovered CALL, GOTO, and FALSEBRANCH byte codes.
-		addressPC = 0;
-		while (addressPC < program.getSize())
+		return count;
+	}
+
+	/**
+	 * Returns a report of the memory this program's byte codes and their
+	 * names use: how many byte codes are shared instances, how many names
+	 * are shared strings, and an estimate of the bytes they take.
+	 *
+	 * Note: The estimate assumes compressed references, 12 byte object
+	 * headers, and 8 byte alignment.
+	 *
+	 * @return a report of the memory this program uses.
+	 */
+	public String getMemoryReport()
+	{
+		Set<ByteCode> codes = Collections.newSetFromMap(new IdentityHashMap<>());
+		Set<String> names = Collections.newSetFromMap(new IdentityHashMap<>());
+		int nameReferences = 0;
+		int loaded = 0;
+		long codeBytes = 0;
+		long nameBytes = 0;
+
+		for (int pc = 0; pc < getSize(); pc++)
 		{
-			ByteCode address = program.getCode(addressPC);
-			if (address instanceof CallCode)
+			ByteCode byteCode = getLoadedCode(pc);
+			if (byteCode == null)
 			{
-				if (labelAddressToCount.containsKey(((CallCode) address).getFunctionNameAddress()))
-				{
-					((CallCode) address).setFunctionNameAddress(labelAddressToCount.get(((CallCode) address).getFunctionNameAddress()));
-				}
+				continue;
+			}
+			loaded += 1;
+			if (!codes.add(byteCode))
+			{
+				continue;
 			}
-			if (address instanceof FalseBranchCode)
+			codeBytes += getShallowSize(byteCode.getClass());
+
+			for (Field field : STRING_FIELDS.get(byteCode.getClass()))
 			{
-				if (labelAddressToCount.containsKey(((FalseBranchCode) address).getLabelAddress()))
+				String name;
+				try
+				{
+					name = (String) field.get(byteCode);
+				} catch (IllegalAccessException e)
+				{
+					continue;
+				}
+
+				if (name != null)
 				{
-					((FalseBranchCode) address).setLabelAddress(labelAddressToCount.get(((FalseBranchCode) address).getLabelAddress()));
+					nameReferences += 1;
+					if (names.add(name))
+					{
+						// The String itself, then its byte array.
+						nameBytes += 24 + align(16 + name.length());
+					}
 				}
 			}
-			if (address instanceof GotoCode)
+		}
+		long listBytes = align(16 + 4L * getSize());
+
+		StringBuilder report = new StringBuilder();
+		report.append("****Program memory****\n");
+		report.append(String.format("Byte codes: %d (%d objects, %d shared)\n", getSize(), codes.size(), loaded - codes.size()));
+		if (loaded < getSize())
+		{
+			report.append(String.format("Not loaded: %d byte codes\n", getSize() - loaded));
+		}
+		report.append(String.format("Names: %d references to %d strings (%d in the constant pool)\n", nameReferences, names.size(), constantPool.size()));
+		report.append(String.format("Estimated size: %d bytes (byte codes %d, names %d, list %d)\n", codeBytes + nameBytes + listBytes, codeBytes, nameBytes, listBytes));
+
+		return report.toString();
+	}
+
+	/**
+	 * Returns the ByteCode of the specified program counter if it is loaded
+	 * already, without loading it.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the ByteCode of the program counter, or null if it is not loaded.
+	 */
+	protected ByteCode getLoadedCode(int pc)
+	{
+		return getCode(pc);
+	}
+
+	/**
+	 * Returns the estimated size of one instance of the specified class, not
+	 * counting the objects its fields point to.
+	 *
+	 * @param type the specified class.
+	 * @return the estimated size of one instance, in bytes.
+	 */
+	private static long getShallowSize(Class<?> type)
+	{
+		long size = 12;
+		for (Class<?> c = type; c != null; c = c.getSuperclass())
+		{
+			for (Field field : c.getDeclaredFields())
 			{
-				if (labelAddressToCount.containsKey(((GotoCode) address).getLabelAddress()))
+				if (Modifier.isStatic(field.getModifiers()))
+				{
+					continue;
+				}
+
+				Class<?> fieldType = field.getType();
+				if (fieldType == long.class || fieldType == double.class)
+				{
+					size += 8;
+				} else if (fieldType == byte.class || fieldType == boolean.class)
+				{
+					size += 1;
+				} else if (fieldType == short.class || fieldType == char.class)
 				{
-					((GotoCode) address).setLabelAddress(labelAddressToCount.get(((GotoCode) address).getLabelAddress()));
+					size += 2;
+				} else
+				{
+					size += 4;
 				}
 			}
-		
-			addressPC += 1;
 		}
+
+		return align(size);
+	}
+
+	/**
+	 * Returns the specified size rounded up to a multiple of 8 bytes.
+	 *
+	 * @param size the specified size.
+	 * @return the specified size rounded up to a multiple of 8 bytes.
+	 */
+	private static long align(long size)
+	{
+		return (size + 7) & ~7L;
 	}
 
 }
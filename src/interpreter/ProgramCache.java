@@ -0,0 +1,216 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps fully resolved programs on disk, keyed by a hash of their program
+ * file, so running an unchanged program again skips tokenizing and label
+ * resolution.
+ *
+ * Entries are resolved binary code files. Each hit marks its entry as used,
+ * and once the entries outgrow the size limit the least recently used ones
+ * are removed.
+ *
+ * @author mandynoto
+ */
+public class ProgramCache
+{
+
+	// The size limit used when none is given, in bytes.
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	// The file extension of every cache entry.
+	private static final String ENTRY_SUFFIX = ".xcache";
+
+	private final Path directory;
+	private final long maxBytes;
+
+	/**
+	 * Constructs a cache in the specified directory, creating it if needed,
+	 * that holds at most the specified number of bytes.
+	 *
+	 * @param directory the specified directory.
+	 * @param maxBytes the specified size limit, in bytes.
+	 * @throws IOException if the directory cannot be created.
+	 */
+	public ProgramCache(String directory, long maxBytes) throws IOException
+	{
+		this.directory = Files.createDirectories(Paths.get(directory));
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the key of the specified program file loaded in the specified
+	 * mode: a SHA-256 hash of the mode, the binary format version, and the
+	 * file contents.
+	 *
+	 * Note: The mode keeps normal and debugging programs apart, since they
+	 * are built from different byte codes.
+	 *
+	 * @param programFile the specified program file.
+	 * @param mode the specified mode.
+	 * @return the key of the program file.
+	 * @throws IOException if the program file cannot be read.
+	 */
+	public String getKey(String programFile, String mode) throws IOException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e)
+		{
+			throw new IOException(e);
+		}
+
+		digest.update((mode + "\n" + BinaryCodeFile.VERSION + "\n").getBytes(StandardCharsets.UTF_8));
+		try ( FileChannel channel = FileChannel.open(Paths.get(programFile), StandardOpenOption.READ))
+		{
+			MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			digest.update(contents);
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest())
+		{
+			key.append(String.format("%02x", b));
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * Returns the entry of the specified key, marking it as just used, or
+	 * null if there is none.
+	 *
+	 * @param key the specified key.
+	 * @return the entry of the specified key, or null if there is none.
+	 */
+	public Path find(String key)
+	{
+		Path entry = directory.resolve(key + ENTRY_SUFFIX);
+		if (!Files.isRegularFile(entry))
+		{
+			return null;
+		}
+
+		try
+		{
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e)
+		{
+			// Intentionally ignored, the entry is only evicted sooner.
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Stores the specified records and resolved addresses as the entry of the
+	 * specified key, then evicts the least recently used entries past the
+	 * size limit.
+	 *
+	 * Note: The entry is written to a temporary file first and moved into
+	 * place, so other runs never read a partial entry.
+	 *
+	 * @param key the specified key.
+	 * @param records the specified records, each a mnemonic and arguments.
+	 * @param addresses the specified resolved addresses, -1 for none.
+	 * @throws IOException if the entry cannot be written.
+	 */
+	public void store(String key, List<String[]> records, int[] addresses) throws IOException
+	{
+		Path temporary = Files.createTempFile(directory, key, ".tmp");
+		try
+		{
+			BinaryCodeFile.write(temporary.toString(), records, addresses);
+			Files.move(temporary, directory.resolve(key + ENTRY_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally
+		{
+			Files.deleteIfExists(temporary);
+		}
+
+		evict();
+	}
+
+	/**
+	 * Removes the least recently used entries until the entries fit within
+	 * the size limit.
+	 *
+	 * @throws IOException if the directory cannot be listed.
+	 */
+	private void evict() throws IOException
+	{
+		ArrayList<Path> entries = new ArrayList<>();
+		long totalBytes = 0;
+
+		try ( DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX))
+		{
+			for (Path entry : stream)
+			{
+				entries.add(entry);
+				totalBytes += Files.size(entry);
+			}
+		}
+
+		if (totalBytes <= maxBytes)
+		{
+			return;
+		}
+
+		entries.sort(Comparator.comparingLong(ProgramCache::getLastUsed));
+		for (Path entry : entries)
+		{
+			if (totalBytes <= maxBytes)
+			{
+				break;
+			}
+
+			try
+			{
+				long size = Files.size(entry);
+				Files.delete(entry);
+				totalBytes -= size;
+			} catch (IOException e)
+			{
+				// Intentionally ignored, another run may have removed it.
+			}
+		}
+	}
+
+	/**
+	 * Returns when the specified entry was last used, in milliseconds.
+	 *
+	 * @param entry the specified entry.
+	 * @return when the specified entry was last used, or 0 if unknown.
+	 */
+	private static long getLastUsed(Path entry)
+	{
+		try
+		{
+			return Files.getLastModifiedTime(entry).toMillis();
+		} catch (IOException e)
+		{
+			return 0;
+		}
+	}
+}
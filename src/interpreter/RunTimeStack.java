@@ -5,33 +5,56 @@
 package interpreter;
 
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.Objects;
 
 /**
- * ArrayList implementation of the run time stack, which records and processes
+ * Array implementation of the run time stack, which records and processes
  * the stack of active frames.
  *
+ * Note: The values are kept as ints, so pushing and popping never box, and
+ * a stack constructed with the capacity of a verified program never grows.
+ *
  * @author mandynoto
  */
 public class RunTimeStack
 {
 
 	// A stack of frames needed to access all locations in a current frame.
-	private final ArrayList<Integer> runTimeStack;
+	private int[] runTimeStack;
+	// The number of items on the stack.
+	private int size;
 
 	// The pointer to where the current frame in memory begins.
 	// It's used to record prior frame numbers when calling functions.
-	private final Stack<Integer> framePointer;
+	// Kept as a stack of ints, so calls neither box nor lock.
+	private int[] framePointer;
+	private int frameCount;
 
 	/**
 	 * Constructs a RunTimeStack.
 	 */
 	public RunTimeStack()
 	{
-		runTimeStack = new ArrayList<>();
-		framePointer = new Stack<>();
+		runTimeStack = new int[16];
+		framePointer = new int[16];
 
-		framePointer.add(0);
+		pushFrame(0);
+	}
+
+	/**
+	 * Constructs a RunTimeStack with room for the specified number of items
+	 * before it has to grow.
+	 *
+	 * @param capacity the specified number of items.
+	 */
+	public RunTimeStack(int capacity)
+	{
+		runTimeStack = new int[capacity];
+		framePointer = new int[16];
+
+		pushFrame(0);
 	}
 
 	/**
@@ -42,11 +65,11 @@ public class RunTimeStack
 	{ // Start dump
 
 		int nonMainFramesIndex = 0;
-		int runTimeStackSize = runTimeStack.size();
+		int runTimeStackSize = size;
 		boolean hasComma = true;
 
 		// Leave this method if runtime stack and framePointer are empty.
-		if (runTimeStack.isEmpty() && framePointer.isEmpty())
+		if (size == 0 && frameCount == 0)
 		{
 			return;
 		}
@@ -54,9 +77,9 @@ public class RunTimeStack
 		// Record non-main frames from framePointer for analysis ...
 		// ... to record the index of where they begin to represent with separate brackets.
 		ArrayList<Integer> nonMainFrames = new ArrayList<>();
-		for (int i = 0; i < framePointer.size(); i++)
+		for (int i = 0; i < frameCount; i++)
 		{
-			int frame = framePointer.get(i);
+			int frame = framePointer[i];
 			if (frame > 0)
 			{
 				nonMainFrames.add(frame);
@@ -89,12 +112,12 @@ public class RunTimeStack
 			}
 
 			// Print the current runtime stack element.
-			System.out.print(runTimeStack.get(i));
+			System.out.print(runTimeStack[i]);
 
 			// if runtimestack doesn't only have a single element
 			//  and the current runtimestack index is not the last element
 			//  and we've detected we need to add a comma 
-			if ((runTimeStack.size() != 1) && ((runTimeStack.size() - 1) != i) && hasComma)
+			if ((size != 1) && ((size - 1) != i) && hasComma)
 			{
 				System.out.print(",");
 			}
@@ -116,7 +139,7 @@ public class RunTimeStack
 	 */
 	public int peek()
 	{
-		return runTimeStack.get(runTimeStack.size() - 1);
+		return runTimeStack[Objects.checkIndex(size - 1, size)];
 	}
 
 	/**
@@ -126,7 +149,10 @@ public class RunTimeStack
 	 */
 	public int pop()
 	{
-		return runTimeStack.remove(runTimeStack.size() - 1);
+		int i = runTimeStack[Objects.checkIndex(size - 1, size)];
+		size -= 1;
+
+		return i;
 	}
 
 	/**
@@ -137,7 +163,11 @@ public class RunTimeStack
 	 */
 	public int push(int i)
 	{
-		runTimeStack.add(i);
+		if (size == runTimeStack.length)
+		{
+			runTimeStack = Arrays.copyOf(runTimeStack, Math.max(16, 2 * size));
+		}
+		runTimeStack[size++] = i;
 
 		return i;
 	}
@@ -149,7 +179,7 @@ public class RunTimeStack
 	 */
 	public int size()
 	{
-		return runTimeStack.size();
+		return size;
 	}
 
 	/**
@@ -159,7 +189,7 @@ public class RunTimeStack
 	 */
 	public int elementAt(int index)
 	{
-		return runTimeStack.get(index);
+		return runTimeStack[Objects.checkIndex(index, size)];
 	}
 
 	// ************** FRAME POINTER ********************************** //
@@ -172,8 +202,8 @@ public class RunTimeStack
 	 */
 	public void newFrameAt(int offset)
 	{
-		int newFrame = runTimeStack.size() - offset;
-		framePointer.push(newFrame);
+		int newFrame = size - offset;
+		pushFrame(newFrame);
 	}
 
 	/**
@@ -185,17 +215,64 @@ public class RunTimeStack
 	 */
 	public void popFrame()
 	{
-		framePointer.pop();
+		currentFrame();
+		frameCount -= 1;
+	}
+
+	/**
+	 * Ends the frame below the current one, moving the values of the current
+	 * frame down to where that frame began, e.g. for a tail call, whose
+	 * arguments replace the frame of the function that makes it.
+	 */
+	public void replaceFrame()
+	{
+		int from = currentFrame();
+		frameCount -= 1;
+		int to = currentFrame();
+
+		int count = size - from;
+		System.arraycopy(runTimeStack, from, runTimeStack, to, count);
+		size = to + count;
 	}
 
 	public int peekFrame()
 	{
-		if (framePointer.isEmpty())
+		if (frameCount == 0)
 		{
 			return -1;
 		}
 
-		return framePointer.peek();
+		return framePointer[frameCount - 1];
+	}
+
+	/**
+	 * Pushes the specified frame pointer.
+	 *
+	 * @param frame the specified index where the frame begins.
+	 */
+	private void pushFrame(int frame)
+	{
+		if (frameCount == framePointer.length)
+		{
+			framePointer = Arrays.copyOf(framePointer, 2 * frameCount);
+		}
+		framePointer[frameCount++] = frame;
+	}
+
+	/**
+	 * Returns where the current frame begins.
+	 *
+	 * @return the index where the current frame begins.
+	 * @throws EmptyStackException if there is no frame.
+	 */
+	private int currentFrame()
+	{
+		if (frameCount == 0)
+		{
+			throw new EmptyStackException();
+		}
+
+		return framePointer[frameCount - 1];
 	}
 
 	/**
@@ -210,8 +287,8 @@ public class RunTimeStack
 	 */
 	public int store(int offset)
 	{
-		int val = runTimeStack.remove(runTimeStack.size() - 1);
-		runTimeStack.set(offset + framePointer.peek(), val);
+		int val = pop();
+		runTimeStack[Objects.checkIndex(offset + currentFrame(), size)] = val;
 
 		return val;
 		// Overwrite the value at index 'offset' with the top element of the "stack", which is then removed.
@@ -232,10 +309,34 @@ public class RunTimeStack
 //        runTimeStack.add(data);
 //
 //        return data;
-		int frameOffset = framePointer.peek() + offset;
-		runTimeStack.add(runTimeStack.get(frameOffset));
-		int lastElement = runTimeStack.lastIndexOf(this);
-		return lastElement;
+		int frameOffset = currentFrame() + offset;
+		int data = runTimeStack[Objects.checkIndex(frameOffset, size)];
+
+		return push(data);
+	}
+
+	/**
+	 * Returns the value at the specified offset of the current frame, without
+	 * pushing it.
+	 *
+	 * @param offset the specified offset.
+	 * @return the value at the offset.
+	 */
+	public int getValue(int offset)
+	{
+		return runTimeStack[Objects.checkIndex(currentFrame() + offset, size)];
+	}
+
+	/**
+	 * Sets the value at the specified offset of the current frame to the
+	 * specified value.
+	 *
+	 * @param offset the specified offset.
+	 * @param value the specified value.
+	 */
+	public void setValue(int offset, int value)
+	{
+		runTimeStack[Objects.checkIndex(currentFrame() + offset, size)] = value;
 	}
 
 	/**
@@ -248,7 +349,7 @@ public class RunTimeStack
 	 */
 	public Integer push(Integer i)
 	{
-		runTimeStack.add(i);
+		push(i.intValue());
 
 		return i;
 	}
@@ -262,15 +363,15 @@ public class RunTimeStack
 	{
 		ArrayList<String> recentItems = new ArrayList<>();
 		// Get the the last framePointer value to know where to start getting items on current stack.
-		int startFrameIndex = framePointer.peek();
+		int startFrameIndex = currentFrame();
 		// Get the values corresponding to those items.
 		/**
 		 * for (int i = runTimeStack.size() - argCount; i < runTimeStack.size();
 		 * i++) { recentItems.add(String.valueOf(runTimeStack.get(i))); }
 		 */
-		for (int i = startFrameIndex; i < runTimeStack.size(); i++)
+		for (int i = startFrameIndex; i < size; i++)
 		{
-			recentItems.add(String.valueOf(runTimeStack.get(i)));
+			recentItems.add(String.valueOf(runTimeStack[i]));
 		}
 
 		return recentItems;
@@ -281,15 +382,12 @@ public class RunTimeStack
 	 */
 	public void reset()
 	{
-		int data = runTimeStack.remove(runTimeStack.size() - 1);
+		int data = pop();
 
-		while (runTimeStack.size() > framePointer.peek())
-		{
-			runTimeStack.remove(runTimeStack.size() - 1);
-		}
+		size = Math.min(size, currentFrame());
 
-		framePointer.pop();
-		runTimeStack.add(data);
+		popFrame();
+		push(data);
 	}
 
 	/**
@@ -299,6 +397,6 @@ public class RunTimeStack
 	 */
 	public int frames()
 	{
-		return framePointer.size();
+		return frameCount;
 	}
 }
@@ -0,0 +1,173 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Holds what the Verifier learned about a program: the stack depth before
+ * each byte code, the function each byte code belongs to, and the argument
+ * count and deepest stack of each function.
+ *
+ * Depths count the values in the current frame, so the arguments of a
+ * function are its first values.
+ *
+ * @author mandynoto
+ */
+public class StackMap
+{
+
+	// The depth before each byte code, or -1 if it is never reached.
+	private final int[] depths;
+	// The entry of the function each byte code belongs to, or -1.
+	private final int[] functions;
+	// The entry of each function, in the order they were found.
+	private final List<Integer> entries;
+	// The argument count of each function by its entry.
+	private final HashMap<Integer, Integer> argCounts;
+	// The deepest stack of each function by its entry.
+	private final HashMap<Integer, Integer> maxDepths;
+	// The most values the whole stack holds at once, or -1 if unbounded.
+	private final int stackBound;
+	// True if a reachable byte code is a DUMP.
+	private final boolean hasDump;
+
+	/**
+	 * Constructs a stack map from the specified results of the Verifier.
+	 *
+	 * @param depths the specified depth before each byte code.
+	 * @param functions the specified function of each byte code.
+	 * @param entries the specified function entries.
+	 * @param argCounts the specified argument count of each function.
+	 * @param maxDepths the specified deepest stack of each function.
+	 * @param stackBound the specified bound on the whole stack, or -1.
+	 * @param hasDump {@code true} if a reachable byte code is a DUMP.
+	 */
+	StackMap(int[] depths, int[] functions, List<Integer> entries, HashMap<Integer, Integer> argCounts,
+			HashMap<Integer, Integer> maxDepths, int stackBound, boolean hasDump)
+	{
+		this.depths = depths;
+		this.functions = functions;
+		this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+		this.argCounts = argCounts;
+		this.maxDepths = maxDepths;
+		this.stackBound = stackBound;
+		this.hasDump = hasDump;
+	}
+
+	/**
+	 * Returns the depth of the current frame before the byte code at the
+	 * specified program counter runs.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the depth before the byte code, or -1 if it is never reached.
+	 */
+	public int getDepth(int pc)
+	{
+		return depths[pc];
+	}
+
+	/**
+	 * Returns the entry of the function the byte code at the specified
+	 * program counter belongs to, where main's entry is 0.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the entry of the function, or -1 if it is never reached.
+	 */
+	public int getFunction(int pc)
+	{
+		return functions[pc];
+	}
+
+	/**
+	 * Returns the entry of every function, starting with main's.
+	 *
+	 * @return the entry of every function.
+	 */
+	public List<Integer> getFunctionEntries()
+	{
+		return entries;
+	}
+
+	/**
+	 * Returns the argument count, i.e. the frame size on entry, of the
+	 * function at the specified entry.
+	 *
+	 * @param entry the specified entry.
+	 * @return the argument count of the function.
+	 */
+	public int getArgCount(int entry)
+	{
+		return argCounts.get(entry);
+	}
+
+	/**
+	 * Returns the deepest the frame of the function at the specified entry
+	 * gets.
+	 *
+	 * @param entry the specified entry.
+	 * @return the deepest frame of the function.
+	 */
+	public int getMaxDepth(int entry)
+	{
+		return maxDepths.get(entry);
+	}
+
+	/**
+	 * Returns the most values the whole run time stack holds at once, or -1
+	 * if recursion leaves it unbounded.
+	 *
+	 * @return the bound on the run time stack, or -1 if it is unbounded.
+	 */
+	public int getStackBound()
+	{
+		return stackBound;
+	}
+
+	/**
+	 * Returns a starting capacity for the run time stack: its bound if there
+	 * is one, otherwise room for main and the deepest function.
+	 *
+	 * @return a starting capacity for the run time stack.
+	 */
+	public int getStackCapacity()
+	{
+		if (stackBound >= 0)
+		{
+			return stackBound;
+		}
+
+		int deepest = 0;
+		for (int entry : entries)
+		{
+			deepest = Math.max(deepest, maxDepths.get(entry));
+		}
+
+		return maxDepths.get(0) + deepest;
+	}
+
+	/**
+	 * Returns {@code true} if a reachable byte code is a DUMP.
+	 *
+	 * @return {@code true} if a reachable byte code is a DUMP.
+	 */
+	public boolean hasDump()
+	{
+		return hasDump;
+	}
+
+	/**
+	 * Returns the number of byte codes this stack map covers.
+	 *
+	 * @return the number of byte codes this stack map covers.
+	 */
+	public int getSize()
+	{
+		return depths.length;
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A program that a loader thread fills while a virtual machine already runs
+ * it.
+ *
+ * Labels are resolved as they are parsed: jumps to earlier labels get their
+ * address right away, and jumps to later labels are patched when that label
+ * arrives. Fetching a byte code that has not been parsed yet, or a jump whose
+ * label has not been parsed yet, waits for the loader.
+ *
+ * @author mandynoto
+ */
+public class StreamingProgram extends Program
+{
+
+	// The labels parsed so far and their program counters.
+	private final Linker linker = new Linker();
+
+	// The program counters of the jumps waiting for a later label, by that
+	// label.
+	private final HashMap<String, ArrayList<Integer>> pendingJumps = new HashMap<>();
+
+	// The same jumps, to check if a fetched byte code is still waiting.
+	private final Set<ByteCode> pendingCodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	// True once the loader has added every byte code.
+	private volatile boolean isComplete = false;
+
+	// The program counter a fetch is waiting for, or -1 if none is.
+	private int waitingPC = -1;
+
+	/**
+	 * Constructs an empty streaming program.
+	 */
+	public StreamingProgram()
+	{
+		super();
+	}
+
+	/**
+	 * Adds a byte code, resolving its label, or the jumps waiting for it, if
+	 * possible.
+	 *
+	 * @param byteCode the specified byte code.
+	 */
+	@Override
+	public synchronized void add(ByteCode byteCode)
+	{
+		int addressPC = super.getSize();
+		super.add(byteCode);
+
+		// Like resolveAddress, a label at the first byte code is never a target.
+		if (byteCode instanceof LabelCode && addressPC > 0)
+		{
+			String label = ((LabelCode) byteCode).getLabel();
+			linker.put(label, addressPC);
+
+			ArrayList<Integer> jumps = pendingJumps.remove(label);
+			if (jumps != null)
+			{
+				for (int jumpPC : jumps)
+				{
+					BranchCode jump = (BranchCode) super.getCode(jumpPC);
+					jump.setAddress(addressPC);
+					pendingCodes.remove(jump);
+				}
+			}
+		}
+
+		// Jumps loaded already resolved need nothing.
+		if (byteCode instanceof BranchCode && ((BranchCode) byteCode).getAddress() < 0)
+		{
+			BranchCode branch = (BranchCode) byteCode;
+			int address = linker.getAddress(branch.getLabel());
+			if (address >= 0)
+			{
+				branch.setAddress(address);
+			} else
+			{
+				pendingJumps.computeIfAbsent(branch.getLabel(), key -> new ArrayList<>()).add(addressPC);
+				pendingCodes.add(byteCode);
+			}
+		}
+
+		// Only wake a waiting fetch once its byte code is ready.
+		if (waitingPC >= 0 && isReady(waitingPC))
+		{
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Marks this program as complete, waking any fetch still waiting. Jumps
+	 * whose label never arrived are reported and left unresolved, since the
+	 * program may already be running.
+	 */
+	public synchronized void finish()
+	{
+		isComplete = true;
+		pendingJumps.values().stream()
+				.flatMap(ArrayList::stream)
+				.sorted()
+				.forEach(pc -> Linker.printUnresolved(this, pc));
+		pendingJumps.clear();
+		pendingCodes.clear();
+
+		notifyAll();
+	}
+
+	/**
+	 * Returns the ByteCode of the specified program counter, waiting until it
+	 * is parsed and, for a jump, until its label is parsed.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the ByteCode based on the specified program counter.
+	 */
+	@Override
+	public ByteCode getCode(int pc)
+	{
+		if (isComplete)
+		{
+			return super.getCode(pc);
+		}
+
+		synchronized (this)
+		{
+			while (!isComplete && !isReady(pc))
+			{
+				waitingPC = pc;
+				try
+				{
+					wait();
+				} catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				} finally
+				{
+					waitingPC = -1;
+				}
+			}
+
+			return super.getCode(pc);
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the byte code at the specified program counter
+	 * is parsed and is not a jump waiting for its label.
+	 *
+	 * @param pc the specified program counter.
+	 * @return {@code true} if the byte code can be run.
+	 */
+	private boolean isReady(int pc)
+	{
+		return pc < super.getSize() && !pendingCodes.contains(super.getCode(pc));
+	}
+
+	/**
+	 * Returns the size of this program, waiting until it is complete.
+	 *
+	 * @return the size of this program.
+	 */
+	@Override
+	public synchronized int getSize()
+	{
+		while (!isComplete)
+		{
+			try
+			{
+				wait();
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		return super.getSize();
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+/**
+ * Thrown when a program is not well formed, e.g. its stack is unbalanced
+ * where two paths meet or a byte code pops more than its frame holds.
+ *
+ * @author mandynoto
+ */
+public class VerificationException extends Exception
+{
+
+	private static final long serialVersionUID = 1L;
+
+	// The program counter of the byte code that failed.
+	private final int pc;
+
+	/**
+	 * Constructs an exception for the byte code at the specified program
+	 * counter with the specified message.
+	 *
+	 * @param pc the specified program counter.
+	 * @param message the specified message.
+	 */
+	public VerificationException(int pc, String message)
+	{
+		super(String.format("Byte code %d: %s", pc, message));
+		this.pc = pc;
+	}
+
+	/**
+	 * Returns the program counter of the byte code that failed.
+	 *
+	 * @return the program counter of the byte code that failed.
+	 */
+	public int getProgramCounter()
+	{
+		return pc;
+	}
+}
@@ -0,0 +1,411 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.*;
+import interpreter.bytecode.debuggerByteCodes.FormalCode;
+import interpreter.bytecode.debuggerByteCodes.FunctionCode;
+import interpreter.bytecode.debuggerByteCodes.LineCode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Checks that a resolved program is well formed by following the stack
+ * depth of every function through every path, without running it.
+ *
+ * Main starts at byte code 0 with an empty frame, and every CALL target
+ * starts a function whose frame holds the arguments of the ARGS before the
+ * CALL. Where paths meet, the depths must agree, and no byte code may take
+ * more values than its frame holds.
+ *
+ * Note: POP n only pops when n is less than the whole stack's size. In main
+ * the frame is the whole stack, so this is followed exactly; in a function
+ * the caller's values lie below, so a POP of the whole frame is taken to pop.
+ *
+ * @author mandynoto
+ */
+public class Verifier
+{
+
+	private final Program program;
+	private final int[] depths;
+	private final int[] functions;
+	private final ArrayList<Integer> entries = new ArrayList<>();
+	private final HashMap<Integer, Integer> argCounts = new HashMap<>();
+	private final HashMap<Integer, Integer> maxDepths = new HashMap<>();
+	// The call sites of each function as {ARGS pc, callee entry}.
+	private final HashMap<Integer, ArrayList<int[]>> calls = new HashMap<>();
+	// The byte codes still to follow in the current function.
+	private final ArrayDeque<Integer> work = new ArrayDeque<>();
+	// The deepest stack of the current function so far.
+	private int maxDepth;
+	private boolean hasDump;
+
+	/**
+	 * Constructs a verifier of the specified program.
+	 *
+	 * @param program the specified program.
+	 */
+	private Verifier(Program program)
+	{
+		this.program = program;
+		this.depths = new int[program.getSize()];
+		this.functions = new int[program.getSize()];
+		Arrays.fill(depths, -1);
+		Arrays.fill(functions, -1);
+	}
+
+	/**
+	 * Returns the stack map of the specified resolved program, or null if it
+	 * holds byte codes whose stack effect is not known, such as ones added by
+	 * a ByteCodeProvider.
+	 *
+	 * @param program the specified resolved program.
+	 * @return the stack map of the program, or null if it cannot be checked.
+	 * @throws VerificationException if the program is not well formed.
+	 */
+	public static StackMap verify(Program program) throws VerificationException
+	{
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			if (!isKnown(program.getCode(pc)))
+			{
+				return null;
+			}
+		}
+
+		Verifier verifier = new Verifier(program);
+		verifier.addFunction(0, 0, 0);
+		for (int i = 0; i < verifier.entries.size(); i++)
+		{
+			verifier.verifyFunction(verifier.entries.get(i));
+		}
+
+		int stackBound = verifier.getStackBound();
+
+		return new StackMap(verifier.depths, verifier.functions, verifier.entries, verifier.argCounts,
+				verifier.maxDepths, stackBound, verifier.hasDump);
+	}
+
+	/**
+	 * Returns {@code true} if the stack effect of the specified byte code is
+	 * known.
+	 *
+	 * @param byteCode the specified byte code.
+	 * @return {@code true} if the stack effect is known.
+	 */
+	private static boolean isKnown(ByteCode byteCode)
+	{
+		return byteCode instanceof ArgsCode || byteCode instanceof BopCode || byteCode instanceof CallCode
+				|| byteCode instanceof DumpCode || byteCode instanceof FalseBranchCode || byteCode instanceof GotoCode
+				|| byteCode instanceof HaltCode || byteCode instanceof LabelCode || byteCode instanceof LitCode
+				|| byteCode instanceof LoadCode || byteCode instanceof PopCode || byteCode instanceof ReadCode
+				|| byteCode instanceof ReturnCode || byteCode instanceof StoreCode || byteCode instanceof WriteCode
+				|| byteCode instanceof FormalCode || byteCode instanceof FunctionCode || byteCode instanceof LineCode;
+	}
+
+	/**
+	 * Adds the function at the specified entry with the specified argument
+	 * count, called from the specified program counter, if it is new.
+	 *
+	 * @param entry the specified entry.
+	 * @param argCount the specified argument count.
+	 * @param pc the specified program counter of the call.
+	 * @throws VerificationException if the function was called with a
+	 * different argument count before.
+	 */
+	private void addFunction(int entry, int argCount, int pc) throws VerificationException
+	{
+		Integer knownCount = argCounts.get(entry);
+		if (knownCount == null)
+		{
+			entries.add(entry);
+			argCounts.put(entry, argCount);
+			maxDepths.put(entry, argCount);
+			calls.put(entry, new ArrayList<>());
+			return;
+		}
+
+		if (knownCount != argCount)
+		{
+			throw new VerificationException(pc, String.format("calls byte code %d with %d arguments, but it was called with %d", entry, argCount, knownCount));
+		}
+	}
+
+	/**
+	 * Follows every path of the function at the specified entry.
+	 *
+	 * @param entry the specified entry.
+	 * @throws VerificationException if the function is not well formed.
+	 */
+	private void verifyFunction(int entry) throws VerificationException
+	{
+		if (entry >= depths.length)
+		{
+			throw new VerificationException(entry, "the program is empty");
+		}
+		maxDepth = argCounts.get(entry);
+		flow(entry, entry, maxDepth, entry);
+
+		while (!work.isEmpty())
+		{
+			int pc = work.pop();
+			verifyCode(entry, pc, depths[pc]);
+		}
+
+		maxDepths.put(entry, maxDepth);
+	}
+
+	/**
+	 * Checks the byte code at the specified program counter of the function
+	 * at the specified entry with the specified depth, then follows it.
+	 *
+	 * @param entry the specified entry.
+	 * @param pc the specified program counter.
+	 * @param depth the specified depth before the byte code.
+	 * @throws VerificationException if the byte code is not well formed.
+	 */
+	private void verifyCode(int entry, int pc, int depth) throws VerificationException
+	{
+		ByteCode byteCode = program.getCode(pc);
+
+		if (byteCode instanceof LitCode || byteCode instanceof ReadCode)
+		{
+			flow(entry, pc + 1, depth + 1, pc);
+		} else if (byteCode instanceof LoadCode)
+		{
+			int offset = ((LoadCode) byteCode).getOffset();
+			if (offset < 0 || offset >= depth)
+			{
+				throw new VerificationException(pc, String.format("LOAD %d outside of a frame of %d", offset, depth));
+			}
+			flow(entry, pc + 1, depth + 1, pc);
+		} else if (byteCode instanceof StoreCode)
+		{
+			int offset = ((StoreCode) byteCode).getOffset();
+			if (offset < 0 || offset >= depth - 1)
+			{
+				throw new VerificationException(pc, String.format("STORE %d outside of a frame of %d", offset, depth));
+			}
+			flow(entry, pc + 1, depth - 1, pc);
+		} else if (byteCode instanceof PopCode)
+		{
+			int levels = ((PopCode) byteCode).getLevels();
+			if (levels < 0 || (entry != 0 && levels > depth))
+			{
+				throw new VerificationException(pc, String.format("POP %d outside of a frame of %d", levels, depth));
+			}
+			// Main's frame is the whole stack, so this matches the VM exactly.
+			flow(entry, pc + 1, levels < depth || entry != 0 ? depth - levels : depth, pc);
+		} else if (byteCode instanceof BopCode)
+		{
+			need(pc, "BOP", 2, depth);
+			// An operator that is not known pops both values and pushes nothing.
+			boolean isKnown = ((BopCode) byteCode).getOperator() != BopCode.UNKNOWN;
+			flow(entry, pc + 1, isKnown ? depth - 1 : depth - 2, pc);
+		} else if (byteCode instanceof WriteCode)
+		{
+			need(pc, "WRITE", 1, depth);
+			flow(entry, pc + 1, depth, pc);
+		} else if (byteCode instanceof FalseBranchCode)
+		{
+			need(pc, "FALSEBRANCH", 1, depth);
+			flow(entry, pc + 1, depth - 1, pc);
+			flow(entry, getTarget(pc, byteCode) + 1, depth - 1, pc);
+		} else if (byteCode instanceof GotoCode)
+		{
+			flow(entry, getTarget(pc, byteCode) + 1, depth, pc);
+		} else if (byteCode instanceof ArgsCode)
+		{
+			int argCount = ((ArgsCode) byteCode).getArgCount();
+			need(pc, "ARGS", argCount, depth);
+			if (argCount < 0 || pc + 1 >= depths.length || !(program.getCode(pc + 1) instanceof CallCode))
+			{
+				throw new VerificationException(pc, "ARGS is not followed by a CALL");
+			}
+
+			// The CALL runs with the same depth, and the callee leaves its value.
+			int callee = getTarget(pc + 1, program.getCode(pc + 1));
+			addFunction(callee, argCount, pc + 1);
+			calls.get(entry).add(new int[]
+			{
+				pc, callee
+			});
+			setDepth(entry, pc + 1, depth, pc);
+			flow(entry, pc + 2, depth - argCount + 1, pc + 1);
+		} else if (byteCode instanceof CallCode)
+		{
+			throw new VerificationException(pc, "CALL is not preceded by an ARGS");
+		} else if (byteCode instanceof ReturnCode)
+		{
+			if (entry == 0)
+			{
+				throw new VerificationException(pc, "RETURN outside of a function");
+			}
+			need(pc, "RETURN", 1, depth);
+		} else if (byteCode instanceof HaltCode)
+		{
+			// Intentionally left empty since nothing runs after it.
+		} else
+		{
+			// DUMP, LABEL, FORMAL, FUNCTION, and LINE leave the stack alone.
+			hasDump |= byteCode instanceof DumpCode;
+			flow(entry, pc + 1, depth, pc);
+		}
+	}
+
+	/**
+	 * Checks that the specified depth holds the specified count of values.
+	 *
+	 * @param pc the specified program counter.
+	 * @param code the specified name of the byte code.
+	 * @param count the specified count of values it takes.
+	 * @param depth the specified depth.
+	 * @throws VerificationException if the depth is too small.
+	 */
+	private static void need(int pc, String code, int count, int depth) throws VerificationException
+	{
+		if (depth < count)
+		{
+			throw new VerificationException(pc, String.format("%s needs %d values but the frame holds %d", code, count, depth));
+		}
+	}
+
+	/**
+	 * Returns the resolved address of the specified jump at the specified
+	 * program counter.
+	 *
+	 * @param pc the specified program counter.
+	 * @param byteCode the specified jump.
+	 * @return the resolved address of the jump.
+	 * @throws VerificationException if the jump is not resolved.
+	 */
+	private int getTarget(int pc, ByteCode byteCode) throws VerificationException
+	{
+		BranchCode branch = (BranchCode) byteCode;
+		int address = branch.getAddress();
+		if (address < 0 || address >= depths.length)
+		{
+			throw new VerificationException(pc, "jumps to the unresolved label " + branch.getLabel());
+		}
+
+		return address;
+	}
+
+	/**
+	 * Continues the function at the specified entry at the specified program
+	 * counter with the specified depth, coming from the specified program
+	 * counter.
+	 *
+	 * @param entry the specified entry.
+	 * @param to the specified program counter to continue at.
+	 * @param depth the specified depth.
+	 * @param from the specified program counter coming from.
+	 * @throws VerificationException if the depth disagrees with another path.
+	 */
+	private void flow(int entry, int to, int depth, int from) throws VerificationException
+	{
+		if (to >= depths.length)
+		{
+			throw new VerificationException(from, "runs past the end of the program");
+		}
+
+		if (setDepth(entry, to, depth, from))
+		{
+			work.push(to);
+		}
+	}
+
+	/**
+	 * Sets the depth before the specified program counter, returning
+	 * {@code true} if it was not reached before.
+	 *
+	 * @param entry the specified entry of the function.
+	 * @param pc the specified program counter.
+	 * @param depth the specified depth.
+	 * @param from the specified program counter coming from.
+	 * @return {@code true} if the program counter was not reached before.
+	 * @throws VerificationException if the depth disagrees with another path.
+	 */
+	private boolean setDepth(int entry, int pc, int depth, int from) throws VerificationException
+	{
+		if (depths[pc] >= 0)
+		{
+			if (depths[pc] != depth)
+			{
+				throw new VerificationException(from, String.format("reaches byte code %d with %d values, but another path has %d", pc, depth, depths[pc]));
+			}
+			return false;
+		}
+
+		depths[pc] = depth;
+		functions[pc] = entry;
+		maxDepth = Math.max(maxDepth, depth);
+		return true;
+	}
+
+	/**
+	 * Returns the most values the whole stack holds while main runs, or -1
+	 * if a function can recurse.
+	 *
+	 * Note: Callees are bounded before their callers with an explicit stack,
+	 * so long call chains cannot overflow the Java stack.
+	 *
+	 * @return the bound of the whole stack, or -1 if it is unbounded.
+	 */
+	private int getStackBound()
+	{
+		// The bound of each function, or -2 while its callees are visited.
+		HashMap<Integer, Integer> bounds = new HashMap<>();
+		// Each function being visited as {entry, index of its next call}.
+		ArrayDeque<int[]> visits = new ArrayDeque<>();
+
+		bounds.put(0, -2);
+		visits.push(new int[]
+		{
+			0, 0
+		});
+		while (!visits.isEmpty())
+		{
+			int[] visit = visits.peek();
+			ArrayList<int[]> functionCalls = calls.get(visit[0]);
+
+			if (visit[1] < functionCalls.size())
+			{
+				int callee = functionCalls.get(visit[1])[1];
+				visit[1] += 1;
+
+				Integer calleeBound = bounds.get(callee);
+				if (calleeBound == null)
+				{
+					bounds.put(callee, -2);
+					visits.push(new int[]
+					{
+						callee, 0
+					});
+				} else if (calleeBound == -2)
+				{
+					// The callee is still being visited, so it recurses.
+					return -1;
+				}
+				continue;
+			}
+
+			visits.pop();
+			int bound = maxDepths.get(visit[0]);
+			for (int[] call : functionCalls)
+			{
+				// The callee's frame starts where the caller's arguments do.
+				bound = Math.max(bound, depths[call[0]] - argCounts.get(call[1]) + bounds.get(call[1]));
+			}
+			bounds.put(visit[0], bound);
+		}
+
+		return bounds.get(0);
+	}
+}
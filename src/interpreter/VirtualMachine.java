@@ -6,10 +6,15 @@ package interpreter;
 
 import interpreter.bytecode.ByteCode;
 import interpreter.bytecode.CallCode;
+import interpreter.bytecode.FalseBranchCode;
 import interpreter.bytecode.ReadCode;
+import interpreter.bytecode.ReturnCode;
+import interpreter.compiler.CompiledFunction;
+import interpreter.compiler.JitCompiler;
 
 import java.util.Stack;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Maintains the state of the running program by executing each byte code that
@@ -42,6 +47,21 @@ public class VirtualMachine
 	// The bytecode program.
 	protected Program program;
 
+	// The stack of the thread that runs compiled functions, so deep recursion fits.
+	private static final long COMPILED_STACK_SIZE = 1L << 30;
+
+	// Compiles the hot functions of a verified program, or null if none.
+	private JitCompiler compiler;
+
+	// The byte codes of the verified program being run.
+	private ByteCode[] codes;
+
+	// Remembers what calls to pure functions return, or null if none are.
+	private Memoizer memoizer;
+
+	// Counts how often each byte code runs, or null if nothing is counted.
+	private Profile profile;
+
 	/**
 	 * Constructs a virtual machine with the specified program.
 	 *
@@ -58,10 +78,81 @@ public class VirtualMachine
 	public void executeProgram()
 	{
 		pc = 0;
-		runStack = new RunTimeStack();
+		StackMap stackMap = program.getStackMap();
+		runStack = stackMap == null ? new RunTimeStack() : new RunTimeStack(stackMap.getStackCapacity());
 		returnAddrs = new Stack();
 		isRunning = true;
 
+		// A verified program without a DUMP never dumps, so skip checking.
+		if (stackMap != null && !stackMap.hasDump())
+		{
+			if (profile != null)
+			{
+				executeProfiledProgram();
+				return;
+			}
+			if (compiler != null)
+			{
+				executeCompiledProgram();
+				return;
+			}
+			if (memoizer != null)
+			{
+				executeMemoizedProgram();
+				return;
+			}
+			executeVerifiedProgram();
+			return;
+		}
+
+		executeDumpingProgram();
+	}
+
+	/**
+	 * Executes this program from the specified program counter, on a run time
+	 * stack of the specified values and frames, with the specified return
+	 * addresses, e.g. where an engine stopped so this machine dumps.
+	 *
+	 * @param pc the specified program counter.
+	 * @param values the specified values of the run time stack, main's first.
+	 * @param frames the specified index where each frame after main's begins.
+	 * @param returnAddrs the specified program counter of each CALL, the
+	 * outermost first.
+	 */
+	public void resumeProgram(int pc, int[] values, int[] frames, int[] returnAddrs)
+	{
+		this.pc = pc;
+		runStack = new RunTimeStack(values.length);
+		this.returnAddrs = new Stack<>();
+		isRunning = true;
+
+		int frame = 0;
+		for (int i = 0; i <= values.length; i++)
+		{
+			while (frame < frames.length && frames[frame] == i)
+			{
+				runStack.newFrameAt(0);
+				frame += 1;
+			}
+			if (i < values.length)
+			{
+				runStack.push(values[i]);
+			}
+		}
+		for (int returnAddr : returnAddrs)
+		{
+			this.returnAddrs.push(returnAddr);
+		}
+
+		executeDumpingProgram();
+	}
+
+	/**
+	 * Executes this program, printing each byte code and the run time stack
+	 * after it while dumping is on.
+	 */
+	private void executeDumpingProgram()
+	{
 		while (isRunning)
 		{
 			ByteCode code = program.getCode(pc);
@@ -90,6 +181,246 @@ public class VirtualMachine
 		}
 	}
 
+	/**
+	 * Executes this verified program, which never dumps, straight from an
+	 * array of its byte codes.
+	 */
+	private void executeVerifiedProgram()
+	{
+		ByteCode[] codes = program.toArray();
+
+		while (isRunning)
+		{
+			ByteCode code = codes[pc];
+			code.execute(this);
+
+			if (!(code instanceof CallCode))
+			{
+				pc += 1;
+			}
+		}
+	}
+
+	/**
+	 * Executes this verified program, which never dumps, counting how often
+	 * each byte code runs and each FALSEBRANCH jumps.
+	 */
+	private void executeProfiledProgram()
+	{
+		ByteCode[] codes = program.toArray();
+		long[] counts = profile.getCounts();
+		long[] taken = profile.getTaken();
+
+		while (isRunning)
+		{
+			int codePC = pc;
+			ByteCode code = codes[pc];
+			counts[codePC] += 1;
+			code.execute(this);
+
+			if (!(code instanceof CallCode))
+			{
+				pc += 1;
+				if (code instanceof FalseBranchCode && pc != codePC + 1)
+				{
+					taken[codePC] += 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes this verified program, which never dumps, running each call of
+	 * a pure function whose result is remembered in one step.
+	 */
+	private void executeMemoizedProgram()
+	{
+		ByteCode[] codes = program.toArray();
+		// The calls to pure functions that have not returned, and the return addresses under each.
+		Memoizer.Call[] calls = new Memoizer.Call[16];
+		int[] callDepths = new int[16];
+		int callCount = 0;
+
+		while (isRunning)
+		{
+			ByteCode code = codes[pc];
+			if (code instanceof CallCode && memoizer.isPure(((CallCode) code).getAddress()))
+			{
+				Memoizer.Call call = memoizer.getCall(((CallCode) code).getAddress(), this);
+				Integer result = memoizer.get(call);
+				if (result != null)
+				{
+					// The frame the ARGS began ends as if the function returned.
+					returnValue(result);
+					pc += 1;
+					continue;
+				}
+
+				// A tail call returns for the call it replaces, which remembers the result.
+				if (!((CallCode) code).isTailCall())
+				{
+					if (callCount == calls.length)
+					{
+						calls = Arrays.copyOf(calls, 2 * callCount);
+						callDepths = Arrays.copyOf(callDepths, 2 * callCount);
+					}
+					calls[callCount] = call;
+					callDepths[callCount++] = returnAddrs.size();
+				}
+				code.execute(this);
+				continue;
+			}
+
+			code.execute(this);
+			if (!(code instanceof CallCode))
+			{
+				pc += 1;
+			}
+
+			if (code instanceof ReturnCode && callCount > 0 && returnAddrs.size() == callDepths[callCount - 1])
+			{
+				memoizer.put(calls[--callCount], runStack.peek());
+				calls[callCount] = null;
+			}
+		}
+	}
+
+	/**
+	 * Executes this verified program, running each function compiled once the
+	 * compiler finds it hot.
+	 */
+	private void executeCompiledProgram()
+	{
+		codes = program.toArray();
+
+		// Compiled functions recurse on the JVM stack, so give them a large one.
+		Thread thread = new Thread(null, () ->
+		{
+			try
+			{
+				interpret(-1);
+			} catch (Halt e)
+			{
+				// The program halted inside a call from a compiled function.
+			}
+		}, Thread.currentThread().getName(), COMPILED_STACK_SIZE);
+		thread.start();
+
+		try
+		{
+			thread.join();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Executes byte codes until the specified number of return addresses is
+	 * left, i.e. until the call that began at that depth returns.
+	 *
+	 * @param depth the specified number of return addresses, or -1 to execute
+	 * until the program halts.
+	 */
+	private void interpret(int depth)
+	{
+		while (isRunning && returnAddrs.size() > depth)
+		{
+			ByteCode code = codes[pc];
+			if (code instanceof CallCode)
+			{
+				CompiledFunction function = compiler.enter(((CallCode) code).getAddress());
+				if (function != null)
+				{
+					function.execute(this);
+					pc += 1;
+					continue;
+				}
+				code.execute(this);
+			} else
+			{
+				code.execute(this);
+				pc += 1;
+			}
+		}
+	}
+
+	/**
+	 * Calls the function at the specified entry for a compiled function,
+	 * compiled if it is hot, otherwise interpreted until it returns.
+	 *
+	 * @param entry the specified entry, i.e. the LABEL of the function.
+	 */
+	public void callFunction(int entry)
+	{
+		CompiledFunction function = compiler.enter(entry);
+		if (function != null)
+		{
+			function.execute(this);
+			return;
+		}
+
+		// The RETURN goes back to the CALL that entered the compiled code.
+		int callerPC = pc;
+		int depth = returnAddrs.size();
+		returnAddrs.push(callerPC);
+		pc = entry;
+		interpret(depth);
+		if (!isRunning)
+		{
+			throw new Halt();
+		}
+		pc = callerPC;
+	}
+
+	/**
+	 * Compiles the hot functions of this program with the specified compiler,
+	 * if this program is verified and never dumps.
+	 *
+	 * @param compiler the specified compiler, or null to interpret only.
+	 */
+	public void setCompiler(JitCompiler compiler)
+	{
+		this.compiler = compiler;
+	}
+
+	/**
+	 * Remembers what calls to the pure functions of this program return with
+	 * the specified memoizer, if this program is verified and never dumps.
+	 *
+	 * @param memoizer the specified memoizer, or null to run every call.
+	 */
+	public void setMemoizer(Memoizer memoizer)
+	{
+		this.memoizer = memoizer;
+	}
+
+	/**
+	 * Counts how often each byte code of this program runs into the specified
+	 * profile, if this program is verified and never dumps; every call then
+	 * runs, neither compiled nor memoized.
+	 *
+	 * @param profile the specified profile, or null to count nothing.
+	 */
+	public void setProfile(Profile profile)
+	{
+		this.profile = profile;
+	}
+
+	/**
+	 * Unwinds the compiled functions when the program halts inside a call.
+	 */
+	private static final class Halt extends RuntimeException
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		Halt()
+		{
+			super(null, null, false, false);
+		}
+	}
+
 	/**
 	 * Determines whether to print out dumping information based on the
 	 * specified Boolean value.
@@ -114,6 +445,25 @@ public class VirtualMachine
 		returnAddrs.push(pc);
 	}
 
+	/**
+	 * Replaces the current function with the callee of a tail call, whose
+	 * arguments the ARGS before it put in a frame of their own, unless this
+	 * machine is dumping, so its output shows every call.
+	 *
+	 * @return {@code true} if the current frame was replaced, or false if the
+	 * call has to save its return address, e.g. one made from main.
+	 */
+	public boolean tailCall()
+	{
+		if (isDumping || wasDumping || returnAddrs.isEmpty())
+		{
+			return false;
+		}
+
+		runStack.replaceFrame();
+		return true;
+	}
+
 	/**
 	 * Returns the previous program counter, to continue from where a function
 	 * was called.
@@ -259,6 +609,28 @@ public class VirtualMachine
 		runStack.reset();
 	}
 
+	/**
+	 * Returns from the current frame with the specified value, like pushing
+	 * it and then resetting.
+	 *
+	 * @param value the specified return value.
+	 */
+	public void returnValue(int value)
+	{
+		runStack.push(value);
+		runStack.reset();
+	}
+
+	public int getValue(int offset)
+	{
+		return runStack.getValue(offset);
+	}
+
+	public void setValue(int offset, int value)
+	{
+		runStack.setValue(offset, value);
+	}
+
 	public int runStackSize()
 	{
 		return runStack.size();
@@ -31,6 +31,18 @@ public class ArgsCode extends ByteCode
 		argCount = Integer.parseInt(byteCodeArgs.get(0));
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		argCount = operands.getInt(0);
+	}
+
 	/**
 	 * Creates a new frame with a value assigned, argCount, down from the
 	 * current frame.
@@ -41,6 +53,16 @@ public class ArgsCode extends ByteCode
 		vm.newFrameAt(argCount);
 	}
 
+	/**
+	 * Returns the number of arguments of the next call.
+	 *
+	 * @return the number of arguments of the next call.
+	 */
+	public int getArgCount()
+	{
+		return argCount;
+	}
+
 	/**
 	 * Returns the string representation of initializing this code.
 	 */
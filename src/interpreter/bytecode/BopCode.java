@@ -16,7 +16,30 @@ import java.util.ArrayList;
 public class BopCode extends ByteCode
 {
 
-	private String operator;
+	// The operators, each at the index of its code.
+	private static final String[] SYMBOLS =
+	{
+		"+", "-", "*", "/", "==", "!=", "<=", ">", ">=", "<", "|", "&"
+	};
+
+	public static final int UNKNOWN = -1;
+	public static final int ADD = 0;
+	public static final int SUBTRACT = 1;
+	public static final int MULTIPLY = 2;
+	public static final int DIVIDE = 3;
+	public static final int EQUAL = 4;
+	public static final int NOT_EQUAL = 5;
+	public static final int LESS_EQUAL = 6;
+	public static final int GREATER = 7;
+	public static final int GREATER_EQUAL = 8;
+	public static final int LESS = 9;
+	public static final int OR = 10;
+	public static final int AND = 11;
+
+	// The code of the operator.
+	private int operator = UNKNOWN;
+	// The operator as written, kept only if it is not known.
+	private String unknownSymbol;
 
 	/**
 	 * Assigns the first argument of the specified array list to operator.
@@ -26,7 +49,115 @@ public class BopCode extends ByteCode
 	@Override
 	public void init(ArrayList<String> byteCodeArgs)
 	{
-		operator = byteCodeArgs.get(0);
+		setOperator(byteCodeArgs.get(0));
+	}
+
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		setOperator(operands.getName(0));
+	}
+
+	/**
+	 * Sets the operator of this code to the specified symbol.
+	 *
+	 * @param symbol the specified symbol.
+	 */
+	private void setOperator(String symbol)
+	{
+		operator = getOperator(symbol);
+		unknownSymbol = operator == UNKNOWN ? symbol : null;
+	}
+
+	/**
+	 * Returns the code of the operator of this byte code.
+	 *
+	 * @return the code of the operator, or UNKNOWN.
+	 */
+	public int getOperator()
+	{
+		return operator;
+	}
+
+	/**
+	 * Returns the code of the specified operator symbol.
+	 *
+	 * @param symbol the specified operator symbol, e.g. "+".
+	 * @return the code of the operator, or UNKNOWN if there is none.
+	 */
+	public static int getOperator(String symbol)
+	{
+		for (int i = 0; i < SYMBOLS.length; i++)
+		{
+			if (SYMBOLS[i].equals(symbol))
+			{
+				return i;
+			}
+		}
+
+		return UNKNOWN;
+	}
+
+	/**
+	 * Returns the symbol of the specified operator code.
+	 *
+	 * @param operator the specified operator code.
+	 * @return the symbol of the operator.
+	 */
+	public static String getSymbol(int operator)
+	{
+		return SYMBOLS[operator];
+	}
+
+	/**
+	 * Returns the result of the specified operator on the specified left and
+	 * right values, where comparisons and logic give 1 for true and 0 for
+	 * false.
+	 *
+	 * @param operator the specified operator code.
+	 * @param left the specified left value, the lower one on the stack.
+	 * @param right the specified right value, the top of the stack.
+	 * @return the result of the operator.
+	 * @throws ArithmeticException if a division is by zero.
+	 * @throws IllegalArgumentException if the operator is not known.
+	 */
+	public static int evaluate(int operator, int left, int right)
+	{
+		switch (operator)
+		{
+			case ADD:
+				return left + right;
+			case SUBTRACT:
+				return left - right;
+			case MULTIPLY:
+				return left * right;
+			case DIVIDE:
+				return left / right;
+			case EQUAL:
+				return left == right ? 1 : 0;
+			case NOT_EQUAL:
+				return left != right ? 1 : 0;
+			case LESS_EQUAL:
+				return left <= right ? 1 : 0;
+			case GREATER:
+				return left > right ? 1 : 0;
+			case GREATER_EQUAL:
+				return left >= right ? 1 : 0;
+			case LESS:
+				return left < right ? 1 : 0;
+			case OR:
+				return left == 1 || right == 1 ? 1 : 0;
+			case AND:
+				return left == 1 && right == 1 ? 1 : 0;
+			default:
+				throw new IllegalArgumentException("Unknown operator " + operator);
+		}
 	}
 
 	/**
@@ -38,94 +169,10 @@ public class BopCode extends ByteCode
 		int argOne = vm.popRunStack();
 		int argTwo = vm.popRunStack();
 
-		switch (operator)
+		// Like always, an operator that is not known pushes nothing.
+		if (operator != UNKNOWN)
 		{
-			case "+":
-				vm.pushRunStack(argOne + argTwo);
-				break;
-			case "*":
-				vm.pushRunStack(argTwo * argOne);
-				break;
-			case "-":
-				vm.pushRunStack(argTwo - argOne);
-				break;
-			case "/":
-				vm.pushRunStack(argTwo / argOne);
-				break;
-			case "==":
-				if (argTwo == argOne)
-				{
-					vm.pushRunStack(1);
-				} else
-				{
-					vm.pushRunStack(0);
-				}
-				break;
-			case "!=":
-				if (argTwo != argOne)
-				{
-					vm.pushRunStack(1);
-				} else
-				{
-					vm.pushRunStack(0);
-				}
-				break;
-			case "<=":
-				if (argTwo <= argOne)
-				{
-					vm.pushRunStack(1);
-				} else
-				{
-					vm.pushRunStack(0);
-				}
-				break;
-			case ">":
-				if (argTwo > argOne)
-				{
-					vm.pushRunStack(1);
-				} else
-				{
-					vm.pushRunStack(0);
-				}
-				break;
-			case ">=":
-				if (argTwo >= argOne)
-				{
-					vm.pushRunStack(1);
-				} else
-				{
-					vm.pushRunStack(0);
-				}
-				break;
-			case "<":
-				if (argTwo < argOne)
-				{
-					vm.pushRunStack(1);
-				} else
-				{
-					vm.pushRunStack(0);
-				}
-				break;
-			case "|":
-				if (argTwo == 1 || argOne == 1)
-				{
-					vm.pushRunStack(1);
-				} else
-				{
-					vm.pushRunStack(0);
-				}
-				break;
-			case "&":
-				if (argTwo == 1 && argOne == 1)
-				{
-					vm.pushRunStack(1);
-				} else
-				{
-					vm.pushRunStack(0);
-				}
-				break;
-			default:
-				break;
+			vm.pushRunStack(evaluate(operator, argTwo, argOne));
 		}
 	}
 
@@ -135,6 +182,6 @@ public class BopCode extends ByteCode
 	@Override
 	public String toString()
 	{
-		return String.format("BOP %s", operator);
+		return String.format("BOP %s", operator == UNKNOWN ? unknownSymbol : SYMBOLS[operator]);
 	}
 }
@@ -0,0 +1,78 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.bytecode;
+
+/**
+ * A byte code that transfers control to a label, i.e. CALL, GOTO, and
+ * FALSEBRANCH. The Linker resolves the label to the program counter of its
+ * LABEL byte code once, so running it never parses the label.
+ *
+ * @author mandynoto
+ */
+public abstract class BranchCode extends ByteCode
+{
+
+	// The label this code transfers control to.
+	protected String label;
+	// The resolved address of the label, or -1 until it is resolved.
+	protected int address = -1;
+
+	/**
+	 * Returns the label this code transfers control to.
+	 *
+	 * @return the label of this code.
+	 */
+	public String getLabel()
+	{
+		return label;
+	}
+
+	/**
+	 * Returns the resolved address of the label of this code.
+	 *
+	 * @return the resolved address, or -1 if it is not resolved.
+	 */
+	public int getAddress()
+	{
+		return address;
+	}
+
+	/**
+	 * Sets the resolved address of the label of this code.
+	 *
+	 * @param address the specified address.
+	 */
+	public void setAddress(int address)
+	{
+		this.address = address;
+	}
+
+	/**
+	 * Returns the resolved address of the label of this code, or the label
+	 * itself if it is not resolved.
+	 *
+	 * @return the resolved address or the label, as a string.
+	 */
+	protected String getTarget()
+	{
+		if (address < 0)
+		{
+			return label;
+		}
+
+		return Integer.toString(address);
+	}
+
+	/**
+	 * Returns the address to transfer control to. An unresolved label is
+	 * parsed as a number, which fails for a name just like it always has.
+	 *
+	 * @return the address to transfer control to.
+	 */
+	protected int getTargetAddress()
+	{
+		return address >= 0 ? address : Integer.parseInt(label);
+	}
+}
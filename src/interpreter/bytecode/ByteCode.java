@@ -32,6 +32,19 @@ public abstract class ByteCode
 	 */
 	public abstract void init(ArrayList<String> byteCodeArgs);
 
+	/**
+	 * Initializes the contents of the specified, already decoded, byte code
+	 * arguments.
+	 *
+	 * Note: By default the arguments are handed to init as an array list.
+	 *
+	 * @param operands the specified byte code arguments.
+	 */
+	public void init(Operands operands)
+	{
+		init(operands.toList());
+	}
+
 	/**
 	 * Returns the name of the ByteCode.
 	 *
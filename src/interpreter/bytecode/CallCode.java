@@ -13,15 +13,13 @@ import java.util.ArrayList;
  *
  * @author mandynoto
  */
-public class CallCode extends ByteCode
+public class CallCode extends BranchCode
 {
 
-	// The name of the function.
-	private String functionName;
-	// The address of the function.
-	private String functionNameAddress;
 	// The argument/s passed into the function.
 	private ArrayList<String> functionArg;
+	// True if a RETURN follows this code in a function, so the callee can replace that function.
+	private boolean isTailCall;
 
 	/**
 	 * Assigns the first argument of the specified byteCodeArgs to
@@ -30,8 +28,19 @@ public class CallCode extends ByteCode
 	@Override
 	public void init(ArrayList<String> byteCodeArgs)
 	{
-		functionName = byteCodeArgs.get(0);
-		functionNameAddress = functionName;
+		label = byteCodeArgs.get(0);
+	}
+
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		label = operands.getName(0);
 	}
 
 	/**
@@ -41,12 +50,42 @@ public class CallCode extends ByteCode
 	 */
 	public String getFunctionNameAddress()
 	{
-		return functionNameAddress;
+		return getTarget();
+	}
+
+	/**
+	 * Returns the label of the function of this call code.
+	 *
+	 * @return the label of the function of this call code.
+	 */
+	public String getFunctionName()
+	{
+		return label;
 	}
 
 	public void setFunctionNameAddress(int i)
 	{
-		functionNameAddress = Integer.toString(i);
+		setAddress(i);
+	}
+
+	/**
+	 * Returns {@code true} if a RETURN follows this code in a function.
+	 *
+	 * @return {@code true} if this code is a tail call.
+	 */
+	public boolean isTailCall()
+	{
+		return isTailCall;
+	}
+
+	/**
+	 * Sets whether a RETURN follows this code in a function.
+	 *
+	 * @param isTailCall {@code true} if this code is a tail call.
+	 */
+	public void setTailCall(boolean isTailCall)
+	{
+		this.isTailCall = isTailCall;
 	}
 
 	/**
@@ -57,8 +96,12 @@ public class CallCode extends ByteCode
 	@Override
 	public void execute(VirtualMachine vm)
 	{
-		vm.savePC();
-		vm.changePC(Integer.parseInt(functionNameAddress));
+		// A tail call returns where the function it replaces would have.
+		if (!isTailCall || !vm.tailCall())
+		{
+			vm.savePC();
+		}
+		vm.changePC(getTargetAddress());
 		functionArg = vm.getArguments();
 	}
 
@@ -74,12 +117,12 @@ public class CallCode extends ByteCode
 		// one that does not take any arguments.
 		if (functionArg.isEmpty())
 		{
-			toReturn += String.format("%s", functionName);
+			toReturn += String.format("%s", label);
 			return toReturn;
 		}
 
-		toReturn += String.format("%s<<%s>>\t", functionName, functionNameAddress);
-		toReturn += String.format("%s(", functionName);
+		toReturn += String.format("%s<<%s>>\t", label, getFunctionNameAddress());
+		toReturn += String.format("%s(", label);
 		for (int i = 0; i < functionArg.size(); i++)
 		{
 			toReturn += functionArg.get(i);
@@ -15,7 +15,10 @@ import java.util.ArrayList;
 public class DumpCode extends ByteCode
 {
 
-	String arg;
+	// True for DUMP ON, false for DUMP OFF, and null for anything else.
+	Boolean isOn;
+	// The argument as written, kept only if it is neither ON nor OFF.
+	String unknownArg;
 
 	/**
 	 * Assigns the first argument of the specified array list to arg.
@@ -24,7 +27,38 @@ public class DumpCode extends ByteCode
 	 */
 	public void init(ArrayList<String> byteCodeArgs)
 	{
-		arg = byteCodeArgs.get(0);
+		setMode(byteCodeArgs.get(0));
+	}
+
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		setMode(operands.getName(0));
+	}
+
+	/**
+	 * Sets the mode of this code from the specified argument.
+	 *
+	 * @param arg the specified argument, ON or OFF.
+	 */
+	private void setMode(String arg)
+	{
+		if (arg.equals("ON"))
+		{
+			isOn = Boolean.TRUE;
+		} else if (arg.equals("OFF"))
+		{
+			isOn = Boolean.FALSE;
+		} else
+		{
+			unknownArg = arg;
+		}
 	}
 
 	/**
@@ -35,22 +69,28 @@ public class DumpCode extends ByteCode
 	 */
 	public void execute(VirtualMachine vm)
 	{
-		if (arg.equals("ON"))
-		{
-			vm.setDumpMode(true);
-		}
-		if (arg.equals("OFF"))
+		if (isOn != null)
 		{
-			vm.setDumpMode(false);
+			vm.setDumpMode(isOn);
 		}
 	}
 
+	/**
+	 * Returns {@code true} if this code is DUMP ON.
+	 *
+	 * @return {@code true} if this code turns dumping on.
+	 */
+	public boolean isOn()
+	{
+		return Boolean.TRUE.equals(isOn);
+	}
+
 	/**
 	 * Returns the string representation of initializing this code.
 	 */
 	@Override
 	public String toString()
 	{
-		return String.format("DUMP %s", arg);
+		return String.format("DUMP %s", isOn == null ? unknownArg : (isOn ? "ON" : "OFF"));
 	}
 }
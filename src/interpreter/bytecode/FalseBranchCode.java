@@ -14,12 +14,9 @@ import java.util.ArrayList;
  *
  * @author mandynoto
  */
-public class FalseBranchCode extends ByteCode
+public class FalseBranchCode extends BranchCode
 {
 
-	private String label;
-	private String labelAddress;
-
 	/**
 	 * Assigns the first argument of the specified array list to label.
 	 *
@@ -29,7 +26,18 @@ public class FalseBranchCode extends ByteCode
 	public void init(ArrayList<String> byteCodeArgs)
 	{
 		label = byteCodeArgs.get(0);
-		labelAddress = label;
+	}
+
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		label = operands.getName(0);
 	}
 
 	/**
@@ -39,7 +47,7 @@ public class FalseBranchCode extends ByteCode
 	 */
 	public String getLabelAddress()
 	{
-		return labelAddress;
+		return getTarget();
 	}
 
 	/**
@@ -49,7 +57,7 @@ public class FalseBranchCode extends ByteCode
 	 */
 	public void setLabelAddress(int labelAddress)
 	{
-		this.labelAddress = Integer.toString(labelAddress);
+		setAddress(labelAddress);
 	}
 
 	/**
@@ -63,7 +71,7 @@ public class FalseBranchCode extends ByteCode
 
 		if (top == 0)
 		{
-			vm.changePC(Integer.parseInt(labelAddress));
+			vm.changePC(getTargetAddress());
 		}
 	}
 
@@ -73,6 +81,6 @@ public class FalseBranchCode extends ByteCode
 	@Override
 	public String toString()
 	{
-		return String.format("FALSEBRANCH %s<<%s>>", label, labelAddress);
+		return String.format("FALSEBRANCH %s<<%s>>", label, getLabelAddress());
 	}
 }
@@ -0,0 +1,87 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.bytecode;
+
+import interpreter.VirtualMachine;
+
+import java.util.ArrayList;
+
+/**
+ * A superinstruction: a short sequence of byte codes run in one dispatch.
+ *
+ * It replaces the first byte code of the sequence, and the others stay in
+ * place after it, so every address of the program stays the same; running
+ * it moves the program counter to the last byte code of the sequence, which
+ * the virtual machine then steps past.
+ *
+ * @author mandynoto
+ */
+public abstract class FusedCode extends ByteCode
+{
+
+	// The byte codes this code runs, in order.
+	private final ByteCode[] codes;
+
+	/**
+	 * Constructs a code that runs the specified byte codes in one dispatch.
+	 *
+	 * @param codes the specified byte codes, in order.
+	 */
+	protected FusedCode(ByteCode... codes)
+	{
+		this.codes = codes;
+	}
+
+	/**
+	 * Intentionally unsupported since only the Fuser makes fused codes; the
+	 * CodeTable drops any code whose factory makes one, so no loader calls
+	 * this.
+	 */
+	@Override
+	public void init(ArrayList<String> byteCodeArgs)
+	{
+		throw new UnsupportedOperationException("A fused byte code is not loaded from a file");
+	}
+
+	/**
+	 * Returns the number of byte codes this code runs.
+	 *
+	 * @return the number of byte codes this code runs.
+	 */
+	public int getLength()
+	{
+		return codes.length;
+	}
+
+	/**
+	 * Moves the program counter of the specified virtual machine to the last
+	 * byte code of the sequence.
+	 *
+	 * @param vm the specified virtual machine.
+	 */
+	protected void skip(VirtualMachine vm)
+	{
+		vm.changePC(vm.peekProgramCounter() + codes.length - 1);
+	}
+
+	/**
+	 * Returns the string representation of the byte codes this code runs.
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder string = new StringBuilder();
+		for (ByteCode code : codes)
+		{
+			if (string.length() > 0)
+			{
+				string.append("; ");
+			}
+			string.append(code);
+		}
+
+		return string.toString();
+	}
+}
@@ -13,12 +13,9 @@ import java.util.ArrayList;
  *
  * @author mandynoto
  */
-public class GotoCode extends ByteCode
+public class GotoCode extends BranchCode
 {
 
-	private String label;
-	private String labelAddress;
-
 	/**
 	 * Assigns the first argument of the specified array list to labelAddress.
 	 *
@@ -28,7 +25,6 @@ public class GotoCode extends ByteCode
 	public void init(ArrayList<String> byteCodeArgs)
 	{
 		label = byteCodeArgs.get(0);
-		labelAddress = label;
 
 //		try 
 //		{
@@ -40,6 +36,18 @@ public class GotoCode extends ByteCode
 //		}
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		label = operands.getName(0);
+	}
+
 	/**
 	 * Returns the label address of this false branch code.
 	 *
@@ -47,7 +55,7 @@ public class GotoCode extends ByteCode
 	 */
 	public String getLabelAddress()
 	{
-		return labelAddress;
+		return getTarget();
 	}
 
 	/**
@@ -57,7 +65,7 @@ public class GotoCode extends ByteCode
 	 */
 	public void setLabelAddress(int labelAddress)
 	{
-		this.labelAddress = Integer.toString(labelAddress);
+		setAddress(labelAddress);
 	}
 
 	/**
@@ -66,7 +74,7 @@ public class GotoCode extends ByteCode
 	@Override
 	public void execute(VirtualMachine vm)
 	{
-		vm.changePC(Integer.parseInt(labelAddress));
+		vm.changePC(getTargetAddress());
 	}
 
 	/**
@@ -75,6 +83,6 @@ public class GotoCode extends ByteCode
 	@Override
 	public String toString()
 	{
-		return String.format("GOTO %s<<%s>>", label, labelAddress);
+		return String.format("GOTO %s<<%s>>", label, getLabelAddress());
 	}
 }
@@ -25,6 +25,18 @@ public class HaltCode extends ByteCode
 		// Intentionally left empty since this ends the virtual machine.
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		// Intentionally left empty since this ends the virtual machine.
+	}
+
 	/**
 	 * Ends the specified virtual machine, vm.
 	 *
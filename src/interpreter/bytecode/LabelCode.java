@@ -17,7 +17,8 @@ public class LabelCode extends ByteCode
 {
 
 	private String label;
-	private String labelAddress;
+	// The address of this label once known, or -1 before.
+	private int labelAddress = -1;
 	private boolean hasLabelAddress;
 
 	/**
@@ -29,7 +30,18 @@ public class LabelCode extends ByteCode
 	public void init(ArrayList<String> byteCodeArgs)
 	{
 		label = byteCodeArgs.get(0);
-		labelAddress = label;
+	}
+
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		label = operands.getName(0);
 	}
 
 	/**
@@ -39,7 +51,22 @@ public class LabelCode extends ByteCode
 	 */
 	public String getLabelAddress()
 	{
-		return labelAddress;
+		if (labelAddress < 0)
+		{
+			return label;
+		}
+
+		return Integer.toString(labelAddress);
+	}
+
+	/**
+	 * Returns the label of this label code.
+	 *
+	 * @return the label of this label code.
+	 */
+	public String getLabel()
+	{
+		return label;
 	}
 
 	/**
@@ -49,7 +76,7 @@ public class LabelCode extends ByteCode
 	 */
 	public void setLabelAddress(int labelAddress)
 	{
-		this.labelAddress = Integer.toString(labelAddress);
+		this.labelAddress = labelAddress;
 		hasLabelAddress = true;
 	}
 
@@ -60,7 +87,7 @@ public class LabelCode extends ByteCode
 	 */
 	public String getAddress()
 	{
-		return labelAddress;
+		return getLabelAddress();
 	}
 
 	/**
@@ -77,7 +104,7 @@ public class LabelCode extends ByteCode
 		}
 
 		hasLabelAddress = true;
-		labelAddress = String.valueOf(vm.peekProgramCounter());
+		labelAddress = vm.peekProgramCounter();
 	}
 
 	/**
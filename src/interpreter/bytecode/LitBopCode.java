@@ -0,0 +1,44 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.bytecode;
+
+import interpreter.VirtualMachine;
+
+/**
+ * LIT k; BOP op - replace the top of the stack with it op k, e.g. an add or
+ * a subtract with an immediate operand
+ *
+ * @author mandynoto
+ */
+public class LitBopCode extends FusedCode
+{
+
+	private final int value;
+	private final int operator;
+
+	/**
+	 * Constructs a code that runs the specified sequence in one dispatch.
+	 *
+	 * @param lit the specified LIT.
+	 * @param bop the specified BOP, whose operator is known.
+	 */
+	public LitBopCode(LitCode lit, BopCode bop)
+	{
+		super(lit, bop);
+		value = lit.getValue();
+		operator = bop.getOperator();
+	}
+
+	/**
+	 * Pops the top of the stack and pushes the result of the operator on it
+	 * and the literal.
+	 */
+	@Override
+	public void execute(VirtualMachine vm)
+	{
+		vm.pushRunStack(BopCode.evaluate(operator, vm.popRunStack(), value));
+		skip(vm);
+	}
+}
@@ -36,6 +36,23 @@ public class LitCode extends ByteCode
 		}
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		intArg = operands.getInt(0);
+
+		if (operands.size() > 1)
+		{
+			stringArg = operands.getName(1);
+		}
+	}
+
 	/**
 	 * Loads literal values which can optionally be initialized.
 	 */
@@ -46,6 +63,16 @@ public class LitCode extends ByteCode
 		vm.lit(intArg);
 	}
 
+	/**
+	 * Returns the value this code pushes.
+	 *
+	 * @return the value this code pushes.
+	 */
+	public int getValue()
+	{
+		return intArg;
+	}
+
 	/**
 	 * Returns the string representation of initializing this code.
 	 */
@@ -0,0 +1,45 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.bytecode;
+
+import interpreter.VirtualMachine;
+
+/**
+ * LOAD n; LIT k; BOP op - push the value in slot n of the frame op k
+ *
+ * @author mandynoto
+ */
+public class LoadBopCode extends FusedCode
+{
+
+	private final int offset;
+	private final int value;
+	private final int operator;
+
+	/**
+	 * Constructs a code that runs the specified sequence in one dispatch.
+	 *
+	 * @param load the specified LOAD.
+	 * @param lit the specified LIT.
+	 * @param bop the specified BOP, whose operator is known.
+	 */
+	public LoadBopCode(LoadCode load, LitCode lit, BopCode bop)
+	{
+		super(load, lit, bop);
+		offset = load.getOffset();
+		value = lit.getValue();
+		operator = bop.getOperator();
+	}
+
+	/**
+	 * Pushes the result of the operator on the loaded value and the literal.
+	 */
+	@Override
+	public void execute(VirtualMachine vm)
+	{
+		vm.pushRunStack(BopCode.evaluate(operator, vm.getValue(offset), value));
+		skip(vm);
+	}
+}
@@ -36,6 +36,19 @@ public class LoadCode extends ByteCode
 		varNameFromLoadedData = byteCodeArgs.get(1);
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		offsetNumber = operands.getInt(0);
+		varNameFromLoadedData = operands.getName(1);
+	}
+
 	/**
 	 * LOAD n <id>; push the value in the slot which is offset n from the start
 	 * of the frame onto the top of the stack; <id> is used as a comment, it’s
@@ -47,6 +60,27 @@ public class LoadCode extends ByteCode
 		vm.load(offsetNumber);
 	}
 
+	/**
+	 * Returns the offset of the value this code loads from the current frame.
+	 *
+	 * @return the offset of the value this code loads from the current frame.
+	 */
+	public int getOffset()
+	{
+		return offsetNumber;
+	}
+
+	/**
+	 * Returns the name of the variable this code loads, which is only a
+	 * comment.
+	 *
+	 * @return the name of the variable.
+	 */
+	public String getName()
+	{
+		return varNameFromLoadedData;
+	}
+
 	/**
 	 * Returns the string representation of initializing this code.
 	 */
@@ -0,0 +1,55 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.bytecode;
+
+import interpreter.VirtualMachine;
+
+/**
+ * LOAD n; LIT k; BOP op; FALSEBRANCH <label> - compare the value in slot n of
+ * the frame with k, and branch to <label> if the result is false (0)
+ *
+ * @author mandynoto
+ */
+public class LoadCompareBranchCode extends FusedCode
+{
+
+	private final int offset;
+	private final int value;
+	private final int operator;
+	private final int address;
+
+	/**
+	 * Constructs a code that runs the specified sequence in one dispatch.
+	 *
+	 * @param load the specified LOAD.
+	 * @param lit the specified LIT.
+	 * @param bop the specified BOP, whose operator is known.
+	 * @param branch the specified FALSEBRANCH, whose label is resolved.
+	 */
+	public LoadCompareBranchCode(LoadCode load, LitCode lit, BopCode bop, FalseBranchCode branch)
+	{
+		super(load, lit, bop, branch);
+		offset = load.getOffset();
+		value = lit.getValue();
+		operator = bop.getOperator();
+		address = branch.getAddress();
+	}
+
+	/**
+	 * Compares the loaded value with the literal, then branches or goes on
+	 * after the FALSEBRANCH, without touching the stack.
+	 */
+	@Override
+	public void execute(VirtualMachine vm)
+	{
+		if (BopCode.evaluate(operator, vm.getValue(offset), value) == 0)
+		{
+			vm.changePC(address);
+		} else
+		{
+			skip(vm);
+		}
+	}
+}
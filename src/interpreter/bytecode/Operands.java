@@ -0,0 +1,137 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.bytecode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Holds the already decoded arguments of one byte code: each argument as a
+ * shared name and, if it is an integer, as its value.
+ *
+ * Note: A loader reuses one instance for every line, so byte codes copy what
+ * they need in init and never keep a reference to it.
+ *
+ * @author mandynoto
+ */
+public final class Operands
+{
+
+	private String[] names = new String[4];
+	private int[] values = new int[4];
+	private boolean[] isNumbers = new boolean[4];
+	private int size;
+
+	/**
+	 * Removes every argument.
+	 */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Adds the specified argument, decoding its value if it is an integer.
+	 *
+	 * @param name the specified argument.
+	 */
+	public void add(String name)
+	{
+		try
+		{
+			add(name, Integer.parseInt(name), true);
+		} catch (NumberFormatException e)
+		{
+			add(name, 0, false);
+		}
+	}
+
+	/**
+	 * Adds the specified argument with its specified, already decoded value.
+	 *
+	 * @param name the specified argument.
+	 * @param value the specified value, ignored if it is not a number.
+	 * @param isNumber {@code true} if the argument is an integer.
+	 */
+	public void add(String name, int value, boolean isNumber)
+	{
+		if (size == names.length)
+		{
+			names = Arrays.copyOf(names, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+			isNumbers = Arrays.copyOf(isNumbers, size * 2);
+		}
+
+		names[size] = name;
+		values[size] = value;
+		isNumbers[size] = isNumber;
+		size += 1;
+	}
+
+	/**
+	 * Returns the number of arguments.
+	 *
+	 * @return the number of arguments.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the argument at the specified index.
+	 *
+	 * @param index the specified index.
+	 * @return the argument at the specified index.
+	 * @throws IndexOutOfBoundsException if there is no such argument.
+	 */
+	public String getName(int index)
+	{
+		return names[Objects.checkIndex(index, size)];
+	}
+
+	/**
+	 * Returns {@code true} if the argument at the specified index is an
+	 * integer.
+	 *
+	 * @param index the specified index.
+	 * @return {@code true} if the argument is an integer.
+	 * @throws IndexOutOfBoundsException if there is no such argument.
+	 */
+	public boolean isInt(int index)
+	{
+		return isNumbers[Objects.checkIndex(index, size)];
+	}
+
+	/**
+	 * Returns the integer value of the argument at the specified index.
+	 *
+	 * @param index the specified index.
+	 * @return the integer value of the argument at the specified index.
+	 * @throws IndexOutOfBoundsException if there is no such argument.
+	 * @throws NumberFormatException if the argument is not an integer.
+	 */
+	public int getInt(int index)
+	{
+		if (!isNumbers[Objects.checkIndex(index, size)])
+		{
+			throw new NumberFormatException("For input string: \"" + names[index] + "\"");
+		}
+
+		return values[index];
+	}
+
+	/**
+	 * Returns the arguments as a new array list, for byte codes that only
+	 * initialize from one.
+	 *
+	 * @return the arguments as a new array list.
+	 */
+	public ArrayList<String> toList()
+	{
+		return new ArrayList<>(Arrays.asList(names).subList(0, size));
+	}
+}
@@ -31,6 +31,18 @@ public class PopCode extends ByteCode
 		runtimeStackTopNLevels = Integer.parseInt(byteCodeArgs.get(0));
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		runtimeStackTopNLevels = operands.getInt(0);
+	}
+
 	/**
 	 * POP n: Pop top n levels of runtime stack
 	 *
@@ -41,6 +53,16 @@ public class PopCode extends ByteCode
 		vm.popTopNLevelsFromStack(runtimeStackTopNLevels);
 	}
 
+	/**
+	 * Returns the number of levels this code pops.
+	 *
+	 * @return the number of levels this code pops.
+	 */
+	public int getLevels()
+	{
+		return runtimeStackTopNLevels;
+	}
+
 	/**
 	 * Returns the string representation of initializing this code.
 	 */
@@ -5,9 +5,9 @@
 package interpreter.bytecode;
 
 import interpreter.VirtualMachine;
+import interpreter.engine.ConsoleIO;
 
 import java.util.ArrayList;
-import java.util.Scanner;
 
 /**
  * READ ; Read an integer; prompt the user for input; put the value just read on
@@ -27,6 +27,18 @@ public class ReadCode extends ByteCode
 		// Intentionally does nothing.
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		// Intentionally does nothing.
+	}
+
 	/**
 	 * READ ; Read an integer; prompt the user for input; put the value just
 	 * read on top of the stack
@@ -34,9 +46,7 @@ public class ReadCode extends ByteCode
 	@Override
 	public void execute(VirtualMachine vm)
 	{
-		Scanner scanner = new Scanner(System.in);
-		System.out.print("Input an integer: ");
-		int intValue = scanner.nextInt();
+		int intValue = ConsoleIO.read();
 
 		vm.pushRunStack(intValue);
 	}
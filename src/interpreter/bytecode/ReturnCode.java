@@ -43,6 +43,21 @@ public class ReturnCode extends ByteCode
 		}
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		if (operands.size() > 0)
+		{
+			functionName = operands.getName(0);
+		}
+	}
+
 	/**
 	 * Return from the current function by through the memory of the specified
 	 * virtual machine, vm.
@@ -33,6 +33,19 @@ public class StoreCode extends ByteCode
 		varName = byteCodeArgs.get(1);
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		offsetNumber = operands.getInt(0);
+		varName = operands.getName(1);
+	}
+
 	/**
 	 * STORE n <id> - pop the top of the stack; store value into the offset n
 	 * from the start of the frame; <id> is used as a comment, it’s the variable
@@ -45,6 +58,27 @@ public class StoreCode extends ByteCode
 		topOfStack = vm.peekRunStack();
 	}
 
+	/**
+	 * Returns the offset in the current frame this code stores into.
+	 *
+	 * @return the offset in the current frame this code stores into.
+	 */
+	public int getOffset()
+	{
+		return offsetNumber;
+	}
+
+	/**
+	 * Returns the name of the variable this code stores, which is only a
+	 * comment.
+	 *
+	 * @return the name of the variable.
+	 */
+	public String getName()
+	{
+		return varName;
+	}
+
 	/**
 	 * Returns the string representation of initializing this code.
 	 */
@@ -0,0 +1,42 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.bytecode;
+
+import interpreter.VirtualMachine;
+
+/**
+ * STORE n; LOAD n - copy the top of the stack into slot n of the frame,
+ * leaving it on the stack
+ *
+ * @author mandynoto
+ */
+public class StoreLoadCode extends FusedCode
+{
+
+	private final int offset;
+
+	/**
+	 * Constructs a code that runs the specified sequence in one dispatch.
+	 *
+	 * @param store the specified STORE.
+	 * @param load the specified LOAD of the same slot.
+	 */
+	public StoreLoadCode(StoreCode store, LoadCode load)
+	{
+		super(store, load);
+		offset = store.getOffset();
+	}
+
+	/**
+	 * Stores the top of the stack without popping it, like storing it and
+	 * loading it back.
+	 */
+	@Override
+	public void execute(VirtualMachine vm)
+	{
+		vm.setValue(offset, vm.peekRunStack());
+		skip(vm);
+	}
+}
@@ -5,6 +5,7 @@
 package interpreter.bytecode;
 
 import interpreter.VirtualMachine;
+import interpreter.engine.ConsoleIO;
 
 import java.util.ArrayList;
 
@@ -26,6 +27,18 @@ public class WriteCode extends ByteCode
 		// Intentionally does nothing.
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		// Intentionally does nothing.
+	}
+
 	/**
 	 * WRITE ; Write the value on top of the stack to output; leave the value on
 	 * top of the stack
@@ -34,7 +47,7 @@ public class WriteCode extends ByteCode
 	public void execute(VirtualMachine vm)
 	{
 		int topOfStack = vm.peekRunStack();
-		System.out.println(topOfStack);
+		ConsoleIO.write(topOfStack);
 	}
 
 	/**
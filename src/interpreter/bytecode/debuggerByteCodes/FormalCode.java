@@ -5,6 +5,7 @@
 package interpreter.bytecode.debuggerByteCodes;
 
 import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.Operands;
 
 import java.util.ArrayList;
 
@@ -37,6 +38,19 @@ public class FormalCode extends ByteCode
 		offsetNumber = Integer.parseInt(byteCodeArgs.get(1));
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		label = operands.getName(0);
+		offsetNumber = operands.getInt(1);
+	}
+
 	/**
 	 * Executes
 	 *
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 
 import interpreter.VirtualMachine;
 import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.Operands;
 import interpreter.debugger.DebugVM;
 
 /**
@@ -38,6 +39,50 @@ public class FunctionCode extends ByteCode
 		endLine = Integer.parseInt(byteCodeArgs.get(2));
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		functionName = operands.getName(0);
+		startLine = operands.getInt(1);
+		endLine = operands.getInt(2);
+	}
+
+	/**
+	 * Returns the name of the function this code begins.
+	 *
+	 * @return the name of the function.
+	 */
+	public String getFunctionName()
+	{
+		return functionName;
+	}
+
+	/**
+	 * Returns the line the function starts at in the source program.
+	 *
+	 * @return the line the function starts at.
+	 */
+	public int getStartLine()
+	{
+		return startLine;
+	}
+
+	/**
+	 * Returns the line the function ends at in the source program.
+	 *
+	 * @return the line the function ends at.
+	 */
+	public int getEndLine()
+	{
+		return endLine;
+	}
+
 	/**
 	 * Executes this.
 	 *
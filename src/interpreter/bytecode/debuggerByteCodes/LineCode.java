@@ -8,6 +8,7 @@ import java.util.ArrayList;
 
 import interpreter.VirtualMachine;
 import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.Operands;
 import interpreter.debugger.DebugVM;
 
 /**
@@ -32,6 +33,28 @@ public class LineCode extends ByteCode
 		srcCodeLineNumber = Integer.parseInt(byteCodeArgs.get(0));
 	}
 
+	/**
+	 * Initializes this code from the specified decoded arguments, like init
+	 * does from an array list.
+	 *
+	 * @param operands the specified decoded arguments.
+	 */
+	@Override
+	public void init(Operands operands)
+	{
+		srcCodeLineNumber = operands.getInt(0);
+	}
+
+	/**
+	 * Returns the line in the source program this code marks.
+	 *
+	 * @return the line in the source program.
+	 */
+	public int getLineNumber()
+	{
+		return srcCodeLineNumber;
+	}
+
 	/**
 	 * Executes this via the virtual machine.
 	 *
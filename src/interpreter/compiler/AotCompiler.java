@@ -0,0 +1,235 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.compiler;
+
+import interpreter.Program;
+import interpreter.StackMap;
+import interpreter.engine.LoweredProgram;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static interpreter.compiler.FunctionCompiler.*;
+
+/**
+ * Compiles a whole program ahead of time into a runnable JAR, e.g.
+ * java -jar fib.jar
+ *
+ * The JAR holds a Main class with one static method per function, which
+ * call each other directly, and the two classes of the interpreter they run
+ * on: FrameStack, and ConsoleIO, which prompts and prints exactly like READ
+ * and WRITE do.
+ *
+ * Note: Only a verified program without a DUMP that can run is compiled,
+ * since the JAR prints no DUMP output.
+ *
+ * @author mandynoto
+ */
+public class AotCompiler
+{
+
+	// The class that runs the program.
+	public static final String MAIN_CLASS = "Main";
+
+	// The classes of the interpreter the compiled program runs on.
+	private static final String[] RUNTIME_CLASSES =
+	{
+		"interpreter/engine/FrameStack", "interpreter/engine/ConsoleIO"
+	};
+
+	// The stack of the thread that runs the program, so deep recursion fits.
+	private static final int THREAD_STACK_SIZE = 1 << 30;
+
+	/**
+	 * Manages construction since this only holds static helpers.
+	 */
+	private AotCompiler()
+	{
+		// Intentionally left empty.
+	}
+
+	/**
+	 * Compiles the specified program into the specified JAR file.
+	 *
+	 * @param program the specified program.
+	 * @param jarFile the specified name of the JAR file.
+	 * @return {@code true} if the program could be compiled.
+	 * @throws IOException if the JAR file cannot be written.
+	 */
+	public static boolean compile(Program program, String jarFile) throws IOException
+	{
+		LoweredProgram loweredProgram = LoweredProgram.lower(program);
+		if (loweredProgram == null)
+		{
+			System.out.println("***Only a verified program without a DUMP can be compiled ahead of time");
+			return false;
+		}
+
+		byte[] mainClass = compileMain(loweredProgram);
+		if (mainClass == null)
+		{
+			return false;
+		}
+
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, MAIN_CLASS);
+
+		try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile), manifest))
+		{
+			jar.putNextEntry(new JarEntry(MAIN_CLASS + ".class"));
+			jar.write(mainClass);
+			jar.closeEntry();
+
+			for (String runtimeClass : RUNTIME_CLASSES)
+			{
+				try (InputStream in = AotCompiler.class.getResourceAsStream("/" + runtimeClass + ".class"))
+				{
+					if (in == null)
+					{
+						throw new IOException("Cannot find " + runtimeClass);
+					}
+
+					jar.putNextEntry(new JarEntry(runtimeClass + ".class"));
+					in.transferTo(jar);
+					jar.closeEntry();
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the Main class of the specified program, or null if one of its
+	 * functions cannot be compiled.
+	 *
+	 * @param program the specified lowered program.
+	 * @return the class file of Main, or null if it cannot be compiled.
+	 */
+	private static byte[] compileMain(LoweredProgram program)
+	{
+		StackMap stackMap = program.getStackMap();
+		List<Integer> entries = stackMap.getFunctionEntries();
+		ClassFileWriter classFile = new ClassFileWriter(MAIN_CLASS, "java/lang/Object", "java/lang/Runnable");
+
+		// Collect the program counters of every function, in order.
+		HashMap<Integer, Integer> indexes = new HashMap<>();
+		for (int i = 0; i < entries.size(); i++)
+		{
+			indexes.put(entries.get(i), i);
+		}
+		int[] counts = new int[entries.size() + 1];
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			if (stackMap.getFunction(pc) >= 0)
+			{
+				counts[indexes.get(stackMap.getFunction(pc)) + 1] += 1;
+			}
+		}
+		for (int i = 1; i < counts.length; i++)
+		{
+			counts[i] += counts[i - 1];
+		}
+		int[] starts = counts.clone();
+		int[] pcs = new int[counts[entries.size()]];
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			if (stackMap.getFunction(pc) >= 0)
+			{
+				pcs[starts[indexes.get(stackMap.getFunction(pc))]++] = pc;
+			}
+		}
+
+		try
+		{
+			for (int i = 0; i < entries.size(); i++)
+			{
+				int entry = entries.get(i);
+				int[] functionPCs = Arrays.copyOfRange(pcs, counts[i], counts[i + 1]);
+				FunctionCompiler compiler = new FunctionCompiler(program, entry, functionPCs, classFile, MAIN_CLASS,
+						FRAME_STACK, true);
+				if (!compiler.writeFunction())
+				{
+					System.out.printf("***Cannot compile the function at byte code %d ahead of time%n", entry);
+					return null;
+				}
+			}
+		} catch (IllegalStateException e)
+		{
+			System.out.println("**** " + e);
+			return null;
+		}
+
+		writeConstructor(classFile);
+		writeMain(classFile);
+		writeRun(classFile, stackMap.getStackCapacity());
+
+		return classFile.toByteArray();
+	}
+
+	/**
+	 * Writes the constructor of Main, which only calls Object's.
+	 */
+	private static void writeConstructor(ClassFileWriter classFile)
+	{
+		MethodCode code = new MethodCode();
+		code.write(ALOAD_0);
+		code.invoke(classFile, INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		code.write(RETURN_VOID);
+		classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1, code.toByteArray());
+	}
+
+	/**
+	 * Writes the main method, which runs Main on a thread with a large stack.
+	 */
+	private static void writeMain(ClassFileWriter classFile)
+	{
+		MethodCode code = new MethodCode();
+		code.write(NEW);
+		code.writeShort(classFile.classRef("java/lang/Thread"));
+		code.write(DUP);
+		code.write(ACONST_NULL);
+		code.write(NEW);
+		code.writeShort(classFile.classRef(MAIN_CLASS));
+		code.write(DUP);
+		code.invoke(classFile, INVOKESPECIAL, MAIN_CLASS, "<init>", "()V");
+		code.write(LDC_W);
+		code.writeShort(classFile.string(MAIN_CLASS));
+		code.pushInt(classFile, THREAD_STACK_SIZE);
+		code.write(I2L);
+		code.invoke(classFile, INVOKESPECIAL, "java/lang/Thread", "<init>",
+				"(Ljava/lang/ThreadGroup;Ljava/lang/Runnable;Ljava/lang/String;J)V");
+		code.invoke(classFile, INVOKEVIRTUAL, "java/lang/Thread", "start", "()V");
+		code.write(RETURN_VOID);
+		classFile.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "main",
+				"([Ljava/lang/String;)V", 8, 1, code.toByteArray());
+	}
+
+	/**
+	 * Writes the run method, which runs main's function on a new stack of
+	 * the specified capacity.
+	 */
+	private static void writeRun(ClassFileWriter classFile, int stackCapacity)
+	{
+		MethodCode code = new MethodCode();
+		code.write(NEW);
+		code.writeShort(classFile.classRef(FRAME_STACK.owner));
+		code.write(DUP);
+		code.pushInt(classFile, stackCapacity);
+		code.invoke(classFile, INVOKESPECIAL, FRAME_STACK.owner, "<init>", "(I)V");
+		code.invoke(classFile, INVOKESTATIC, MAIN_CLASS, getMethodName(0, true), FRAME_STACK.getDescriptor());
+		code.write(RETURN_VOID);
+		classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "run", "()V", 3, 1, code.toByteArray());
+	}
+}
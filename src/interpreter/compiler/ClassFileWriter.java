@@ -0,0 +1,347 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Writes a JVM class file with a constant pool, interfaces, and methods, but
+ * no fields or attributes besides each method's Code.
+ *
+ * It writes class file version 49, i.e. Java 5, which the JVM verifies by
+ * inference, so a method needs no stack map frames.
+ *
+ * @author mandynoto
+ */
+public class ClassFileWriter
+{
+
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_FINAL = 0x0010;
+	public static final int ACC_SUPER = 0x0020;
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int MAJOR_VERSION = 49;
+
+	// The tags of the constant pool entries.
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	// The constant pool, written as it grows, and the index of each entry.
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final DataOutputStream poolOut = new DataOutputStream(pool);
+	private final HashMap<String, Integer> poolIndexes = new HashMap<>();
+	private int poolCount = 1;
+
+	private final int thisClass;
+	private final int superClass;
+	private final int[] interfaces;
+	private final ArrayList<byte[]> methods = new ArrayList<>();
+
+	/**
+	 * Constructs a writer of the specified class, which extends the specified
+	 * class and implements the specified interfaces, all named internally,
+	 * e.g. java/lang/Object.
+	 *
+	 * @param name the specified internal name of the class.
+	 * @param superName the specified internal name of its super class.
+	 * @param interfaceNames the specified internal names of its interfaces.
+	 */
+	public ClassFileWriter(String name, String superName, String... interfaceNames)
+	{
+		thisClass = classRef(name);
+		superClass = classRef(superName);
+		interfaces = new int[interfaceNames.length];
+		for (int i = 0; i < interfaceNames.length; i++)
+		{
+			interfaces[i] = classRef(interfaceNames[i]);
+		}
+	}
+
+	/**
+	 * Returns the index of the specified UTF8 constant, adding it if needed.
+	 *
+	 * @param value the specified value.
+	 * @return the index of the constant.
+	 */
+	public int utf8(String value)
+	{
+		String key = "U" + value;
+		Integer index = poolIndexes.get(key);
+		if (index != null)
+		{
+			return index;
+		}
+
+		try
+		{
+			poolOut.writeByte(CONSTANT_UTF8);
+			poolOut.writeUTF(value);
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+
+		return addEntry(key);
+	}
+
+	/**
+	 * Returns the index of the specified integer constant, adding it if
+	 * needed.
+	 *
+	 * @param value the specified value.
+	 * @return the index of the constant.
+	 */
+	public int integer(int value)
+	{
+		String key = "I" + value;
+		Integer index = poolIndexes.get(key);
+		if (index != null)
+		{
+			return index;
+		}
+
+		writeEntry(CONSTANT_INTEGER, value >>> 16, value & 0xFFFF);
+
+		return addEntry(key);
+	}
+
+	/**
+	 * Returns the index of the specified string constant, adding it if
+	 * needed.
+	 *
+	 * @param value the specified value.
+	 * @return the index of the constant.
+	 */
+	public int string(String value)
+	{
+		String key = "S" + value;
+		Integer index = poolIndexes.get(key);
+		if (index != null)
+		{
+			return index;
+		}
+
+		int valueIndex = utf8(value);
+		writeEntry(CONSTANT_STRING, valueIndex);
+
+		return addEntry(key);
+	}
+
+	/**
+	 * Returns the index of the specified class constant, adding it if needed.
+	 *
+	 * @param name the specified internal name of the class.
+	 * @return the index of the constant.
+	 */
+	public int classRef(String name)
+	{
+		String key = "C" + name;
+		Integer index = poolIndexes.get(key);
+		if (index != null)
+		{
+			return index;
+		}
+
+		int nameIndex = utf8(name);
+		writeEntry(CONSTANT_CLASS, nameIndex);
+
+		return addEntry(key);
+	}
+
+	/**
+	 * Returns the index of the specified method constant, adding it if
+	 * needed.
+	 *
+	 * @param owner the specified internal name of the class of the method.
+	 * @param name the specified name of the method.
+	 * @param descriptor the specified descriptor of the method, e.g. (I)V.
+	 * @return the index of the constant.
+	 */
+	public int methodRef(String owner, String name, String descriptor)
+	{
+		return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+	}
+
+	/**
+	 * Returns the index of the specified interface method constant, adding it
+	 * if needed.
+	 *
+	 * @param owner the specified internal name of the interface.
+	 * @param name the specified name of the method.
+	 * @param descriptor the specified descriptor of the method.
+	 * @return the index of the constant.
+	 */
+	public int interfaceMethodRef(String owner, String name, String descriptor)
+	{
+		return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+	}
+
+	/**
+	 * Returns the index of the specified member constant, adding it if needed.
+	 */
+	private int memberRef(int tag, String owner, String name, String descriptor)
+	{
+		String key = tag + owner + "." + name + descriptor;
+		Integer index = poolIndexes.get(key);
+		if (index != null)
+		{
+			return index;
+		}
+
+		int classIndex = classRef(owner);
+		int nameAndTypeIndex = nameAndType(name, descriptor);
+		writeEntry(tag, classIndex, nameAndTypeIndex);
+
+		return addEntry(key);
+	}
+
+	/**
+	 * Returns the index of the specified name and type constant, adding it if
+	 * needed.
+	 */
+	private int nameAndType(String name, String descriptor)
+	{
+		String key = "N" + name + descriptor;
+		Integer index = poolIndexes.get(key);
+		if (index != null)
+		{
+			return index;
+		}
+
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		writeEntry(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+
+		return addEntry(key);
+	}
+
+	/**
+	 * Writes a constant pool entry of the specified tag with the specified
+	 * 16 bit values.
+	 */
+	private void writeEntry(int tag, int... values)
+	{
+		try
+		{
+			poolOut.writeByte(tag);
+			for (int value : values)
+			{
+				poolOut.writeShort(value);
+			}
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the index of the entry just written, remembering it by the
+	 * specified key.
+	 */
+	private int addEntry(String key)
+	{
+		int index = poolCount++;
+		if (index > 0xFFFF)
+		{
+			throw new IllegalStateException("The constant pool is full");
+		}
+		poolIndexes.put(key, index);
+
+		return index;
+	}
+
+	/**
+	 * Adds a method with the specified access, name, descriptor, and code.
+	 *
+	 * @param access the specified access flags, e.g. ACC_PUBLIC.
+	 * @param name the specified name of the method.
+	 * @param descriptor the specified descriptor of the method.
+	 * @param maxStack the specified deepest the operand stack gets.
+	 * @param maxLocals the specified number of local variable slots.
+	 * @param code the specified JVM byte codes of the method.
+	 */
+	public void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code)
+	{
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		int codeIndex = utf8("Code");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes))
+		{
+			out.writeShort(access);
+			out.writeShort(nameIndex);
+			out.writeShort(descriptorIndex);
+			// The Code attribute is the only attribute.
+			out.writeShort(1);
+			out.writeShort(codeIndex);
+			out.writeInt(12 + code.length);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(code.length);
+			out.write(code);
+			// No exception table and no attributes of the code.
+			out.writeShort(0);
+			out.writeShort(0);
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		methods.add(bytes.toByteArray());
+	}
+
+	/**
+	 * Returns the class file.
+	 *
+	 * @return the bytes of the class file.
+	 */
+	public byte[] toByteArray()
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes))
+		{
+			out.writeInt(MAGIC);
+			out.writeShort(0);
+			out.writeShort(MAJOR_VERSION);
+			out.writeShort(poolCount);
+			poolOut.flush();
+			pool.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaces.length);
+			for (int index : interfaces)
+			{
+				out.writeShort(index);
+			}
+			// No fields.
+			out.writeShort(0);
+			out.writeShort(methods.size());
+			for (byte[] method : methods)
+			{
+				out.write(method);
+			}
+			// No attributes of the class.
+			out.writeShort(0);
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.compiler;
+
+/**
+ * Defines one compiled class, so it can be unloaded with its function once
+ * nothing uses it.
+ *
+ * @author mandynoto
+ */
+class CompiledClassLoader extends ClassLoader
+{
+
+	/**
+	 * Constructs a loader that finds every other class through the loader of
+	 * the interpreter.
+	 */
+	CompiledClassLoader()
+	{
+		super(CompiledClassLoader.class.getClassLoader());
+	}
+
+	/**
+	 * Returns the class of the specified internal name from the specified
+	 * class file.
+	 *
+	 * @param name the specified internal name, e.g. interpreter/compiler/F42.
+	 * @param classFile the specified bytes of the class file.
+	 * @return the class.
+	 */
+	Class<?> define(String name, byte[] classFile)
+	{
+		return defineClass(name.replace('/', '.'), classFile, 0, classFile.length);
+	}
+}
@@ -0,0 +1,24 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.compiler;
+
+import interpreter.VirtualMachine;
+
+/**
+ * An X function compiled into a JVM class.
+ *
+ * @author mandynoto
+ */
+public interface CompiledFunction
+{
+
+	/**
+	 * Runs the function on the run time stack of the specified virtual
+	 * machine, from its LABEL through its RETURN, like a CALL of it does.
+	 *
+	 * @param vm the specified virtual machine.
+	 */
+	void execute(VirtualMachine vm);
+}
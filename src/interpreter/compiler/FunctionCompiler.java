@@ -0,0 +1,704 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.compiler;
+
+import interpreter.StackMap;
+import interpreter.bytecode.BopCode;
+import interpreter.engine.LoweredProgram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static interpreter.engine.LoweredProgram.*;
+
+/**
+ * Compiles one X function of a lowered program into a static JVM method,
+ * which runs the function on a run time stack passed to it: the virtual
+ * machine's, for a function compiled while the program runs, or a
+ * FrameStack, for a program compiled ahead of time.
+ *
+ * Within straight-line code, the values a byte code pushes are kept in JVM
+ * locals until one that needs the stack itself runs, e.g. an ARGS, a jump,
+ * or a POP; the depths of the stack map tell which frame values are on the
+ * stack and which are still in locals.
+ *
+ * A function is compiled only if every byte code it runs belongs to it, and
+ * it has no HALT, which only main may have.
+ *
+ * @author mandynoto
+ */
+class FunctionCompiler
+{
+
+	/**
+	 * The methods of a run time stack that compiled code calls, by what they
+	 * do. Both stacks also have newFrameAt, store, getValue, setValue, reset,
+	 * and returnValue.
+	 */
+	static final class StackRuntime
+	{
+
+		// The internal name of the class of the stack.
+		final String owner;
+		final String push;
+		final String pop;
+		final String peek;
+		final String popLevels;
+
+		StackRuntime(String owner, String push, String pop, String peek, String popLevels)
+		{
+			this.owner = owner;
+			this.push = push;
+			this.pop = pop;
+			this.peek = peek;
+			this.popLevels = popLevels;
+		}
+
+		/**
+		 * Returns the descriptor of a compiled function on this stack.
+		 */
+		String getDescriptor()
+		{
+			return "(L" + owner + ";)V";
+		}
+	}
+
+	// The virtual machine, whose CALL picks the compiled or the interpreted function.
+	static final StackRuntime VIRTUAL_MACHINE = new StackRuntime("interpreter/VirtualMachine",
+			"pushRunStack", "popRunStack", "peekRunStack", "popTopNLevelsFromStack");
+
+	// The stack of a program compiled ahead of time.
+	static final StackRuntime FRAME_STACK = new StackRuntime("interpreter/engine/FrameStack",
+			"push", "pop", "peek", "popLevels");
+
+	// The JVM byte codes this compiler writes.
+	static final int ACONST_NULL = 0x01;
+	static final int ICONST_0 = 0x03;
+	static final int BIPUSH = 0x10;
+	static final int SIPUSH = 0x11;
+	static final int LDC_W = 0x13;
+	static final int ILOAD = 0x15;
+	static final int ISTORE = 0x36;
+	static final int ALOAD_0 = 0x2a;
+	static final int ALOAD_1 = 0x2b;
+	static final int POP_INT = 0x57;
+	static final int DUP = 0x59;
+	static final int IADD = 0x60;
+	static final int ISUB = 0x64;
+	static final int IMUL = 0x68;
+	static final int IDIV = 0x6c;
+	static final int I2L = 0x85;
+	static final int IFEQ = 0x99;
+	static final int IF_ICMPEQ = 0x9f;
+	static final int IF_ICMPNE = 0xa0;
+	static final int IF_ICMPLT = 0xa1;
+	static final int IF_ICMPGE = 0xa2;
+	static final int IF_ICMPGT = 0xa3;
+	static final int IF_ICMPLE = 0xa4;
+	static final int GOTO_JUMP = 0xa7;
+	static final int RETURN_VOID = 0xb1;
+	static final int INVOKEVIRTUAL = 0xb6;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKESTATIC = 0xb8;
+	static final int NEW = 0xbb;
+
+	private static final String CONSOLE_IO = "interpreter/engine/ConsoleIO";
+
+	// The two JVM locals for the operands of a BOP, after the stack.
+	private static final int LEFT = 1;
+	private static final int RIGHT = 2;
+	// The first JVM local of the values not yet pushed on the run time stack.
+	private static final int FIRST_PENDING = 3;
+	// The most values kept in locals, so every local fits an ILOAD.
+	private static final int MAX_PENDING = 250;
+
+	private final LoweredProgram program;
+	private final StackMap stackMap;
+	private final int entry;
+	// The program counters of the function, in order.
+	private final int[] pcs;
+	private final ClassFileWriter classFile;
+	private final String className;
+	private final StackRuntime runtime;
+	// True if every function is a method of the class, instead of only this one.
+	private final boolean isWholeProgram;
+
+	// The method being written.
+	private final MethodCode code = new MethodCode();
+	// The offset in the method of each byte code, by its distance from the entry.
+	private final int[] offsets;
+	// True at each byte code a jump continues at, by its distance from the entry.
+	private final boolean[] isTarget;
+	// The jumps to patch once every offset is known, as {offset, pc}.
+	private final ArrayList<int[]> jumps = new ArrayList<>();
+	// The number of values on top of the frame that are kept in locals.
+	private int pending;
+	private int maxPending;
+
+	/**
+	 * Constructs a compiler of the function at the specified entry of the
+	 * specified program, made of the specified program counters, into a
+	 * method of the specified class.
+	 *
+	 * @param program the specified lowered program.
+	 * @param entry the specified entry, i.e. the LABEL of the function.
+	 * @param pcs the specified program counters of the function, in order.
+	 * @param classFile the specified writer of the class.
+	 * @param className the specified internal name of the class.
+	 * @param runtime the specified stack the method runs on.
+	 * @param isWholeProgram true if every function is a method of the class.
+	 */
+	FunctionCompiler(LoweredProgram program, int entry, int[] pcs, ClassFileWriter classFile, String className,
+			StackRuntime runtime, boolean isWholeProgram)
+	{
+		this.program = program;
+		this.stackMap = program.getStackMap();
+		this.entry = entry;
+		this.pcs = pcs;
+		this.classFile = classFile;
+		this.className = className;
+		this.runtime = runtime;
+		this.isWholeProgram = isWholeProgram;
+
+		int span = pcs.length == 0 ? 1 : pcs[pcs.length - 1] - entry + 2;
+		this.offsets = new int[span];
+		this.isTarget = new boolean[span];
+	}
+
+	/**
+	 * Returns the class file of the function at the specified entry of the
+	 * specified program, which implements CompiledFunction on the virtual
+	 * machine, or null if it cannot be compiled.
+	 *
+	 * @param program the specified lowered program.
+	 * @param entry the specified entry, i.e. the LABEL of the function.
+	 * @param className the specified internal name of the class.
+	 * @return the class file, or null if the function cannot be compiled.
+	 */
+	static byte[] compile(LoweredProgram program, int entry, String className)
+	{
+		StackMap stackMap = program.getStackMap();
+		int[] pcs = new int[16];
+		int count = 0;
+		for (int pc = entry; pc < program.getSize(); pc++)
+		{
+			if (stackMap.getFunction(pc) == entry)
+			{
+				if (count == pcs.length)
+				{
+					pcs = Arrays.copyOf(pcs, 2 * count);
+				}
+				pcs[count++] = pc;
+			}
+		}
+
+		ClassFileWriter classFile = new ClassFileWriter(className, "java/lang/Object", "interpreter/compiler/CompiledFunction");
+		FunctionCompiler compiler = new FunctionCompiler(program, entry, Arrays.copyOf(pcs, count), classFile,
+				className, VIRTUAL_MACHINE, false);
+		if (!compiler.writeFunction())
+		{
+			return null;
+		}
+
+		String descriptor = VIRTUAL_MACHINE.getDescriptor();
+		MethodCode constructor = new MethodCode();
+		constructor.write(ALOAD_0);
+		constructor.invoke(classFile, INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		constructor.write(RETURN_VOID);
+		classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1, constructor.toByteArray());
+
+		MethodCode execute = new MethodCode();
+		execute.write(ALOAD_1);
+		execute.invoke(classFile, INVOKESTATIC, className, getMethodName(entry, false), descriptor);
+		execute.write(RETURN_VOID);
+		classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "execute", descriptor, 1, 2, execute.toByteArray());
+
+		return classFile.toByteArray();
+	}
+
+	/**
+	 * Returns the name of the method of the function at the specified entry.
+	 *
+	 * @param entry the specified entry.
+	 * @param isWholeProgram true if every function is a method of the class.
+	 * @return the name of the method, e.g. function11, or run.
+	 */
+	static String getMethodName(int entry, boolean isWholeProgram)
+	{
+		return isWholeProgram ? "function" + entry : "run";
+	}
+
+	/**
+	 * Returns {@code true} if the byte code at the specified program counter
+	 * belongs to this function, and is written after its entry.
+	 */
+	private boolean isOwned(int pc)
+	{
+		return pc >= entry && pc < program.getSize() && stackMap.getFunction(pc) == entry;
+	}
+
+	/**
+	 * Adds the static method of this function to the class.
+	 *
+	 * @return {@code true} if the function could be compiled.
+	 */
+	boolean writeFunction()
+	{
+		int[] opcodes = program.getOpcodes();
+		int[] operands = program.getOperands();
+
+		// Like the virtual machine, a jump continues after its target.
+		for (int pc : pcs)
+		{
+			if (opcodes[pc] == GOTO || opcodes[pc] == FALSEBRANCH)
+			{
+				if (!isOwned(operands[pc] + 1))
+				{
+					return false;
+				}
+				isTarget[operands[pc] + 1 - entry] = true;
+			}
+		}
+
+		for (int pc : pcs)
+		{
+			if (isTarget[pc - entry])
+			{
+				flush();
+			}
+			offsets[pc - entry] = code.length();
+
+			int opcode = opcodes[pc];
+			int operand = operands[pc];
+			// The values of the frame that are on the run time stack.
+			int stacked = stackMap.getDepth(pc) - pending;
+			switch (opcode)
+			{
+				case NOP:
+					break;
+				case HALT:
+					if (entry != 0)
+					{
+						return false;
+					}
+					code.write(RETURN_VOID);
+					pending = 0;
+					continue;
+				case POP:
+					// A POP of the whole stack does nothing, so let the stack decide.
+					if (operand != 0)
+					{
+						flush();
+						callStack(runtime.popLevels, operand);
+					}
+					break;
+				case STORE:
+					if (pending == 0)
+					{
+						callStack("store", operand);
+					} else if (operand < stacked)
+					{
+						code.write(ALOAD_0);
+						code.pushInt(classFile, operand);
+						loadTop();
+						invokeStack("setValue", "(II)V");
+					} else
+					{
+						loadTop();
+						code.local(ISTORE, FIRST_PENDING + operand - stacked);
+					}
+					break;
+				case LOAD:
+					if (operand < stacked)
+					{
+						code.write(ALOAD_0);
+						code.pushInt(classFile, operand);
+						invokeStack("getValue", "(I)I");
+					} else
+					{
+						code.local(ILOAD, FIRST_PENDING + operand - stacked);
+					}
+					storePending();
+					break;
+				case LIT:
+					code.pushInt(classFile, operand);
+					storePending();
+					break;
+				case ARGS:
+					flush();
+					callStack("newFrameAt", operand);
+					break;
+				case READ:
+					code.invoke(classFile, INVOKESTATIC, CONSOLE_IO, "read", "()I");
+					storePending();
+					break;
+				case WRITE:
+					if (pending > 0)
+					{
+						code.local(ILOAD, FIRST_PENDING + pending - 1);
+					} else
+					{
+						code.write(ALOAD_0);
+						invokeStack(runtime.peek, "()I");
+					}
+					code.invoke(classFile, INVOKESTATIC, CONSOLE_IO, "write", "(I)V");
+					break;
+				case POP2:
+					loadTop();
+					code.write(POP_INT);
+					loadTop();
+					code.write(POP_INT);
+					break;
+				case FALSEBRANCH:
+					loadTop();
+					flush();
+					jump(IFEQ, operand + 1);
+					break;
+				case GOTO:
+					flush();
+					jump(GOTO_JUMP, operand + 1);
+					continue;
+				case CALL:
+					// The ARGS before it pushed every pending value already.
+					writeCall(operand);
+					break;
+				case RETURN:
+					// The frame is dropped, so only the return value is pushed.
+					code.write(ALOAD_0);
+					if (pending > 0)
+					{
+						loadTop();
+						invokeStack("returnValue", "(I)V");
+						pending = 0;
+					} else
+					{
+						invokeStack("reset", "()V");
+					}
+					code.write(RETURN_VOID);
+					continue;
+				default:
+					writeBop(opcode - BOP);
+					break;
+			}
+
+			// Fall into the next byte code, which is written right after.
+			if (!isOwned(pc + 1) || maxPending > MAX_PENDING)
+			{
+				return false;
+			}
+		}
+
+		if (code.length() > 0xFFFF || !patchJumps())
+		{
+			return false;
+		}
+
+		classFile.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+				getMethodName(entry, isWholeProgram), runtime.getDescriptor(), 8, FIRST_PENDING + maxPending,
+				code.toByteArray());
+
+		return true;
+	}
+
+	/**
+	 * Writes a CALL of the function at the specified entry: straight to its
+	 * method if it is in this class, otherwise through the virtual machine.
+	 */
+	private void writeCall(int target)
+	{
+		code.write(ALOAD_0);
+		if (isWholeProgram || target == entry)
+		{
+			code.invoke(classFile, INVOKESTATIC, className, getMethodName(target, isWholeProgram),
+					runtime.getDescriptor());
+		} else
+		{
+			code.pushInt(classFile, target);
+			invokeStack("callFunction", "(I)V");
+		}
+	}
+
+	/**
+	 * Writes a BOP of the specified operator, which takes the right value,
+	 * then the left one, and keeps the result in a local.
+	 */
+	private void writeBop(int operator)
+	{
+		loadTop();
+		code.local(ISTORE, RIGHT);
+		loadTop();
+		code.local(ISTORE, LEFT);
+
+		switch (operator)
+		{
+			case BopCode.ADD:
+				writeArithmetic(IADD);
+				break;
+			case BopCode.SUBTRACT:
+				writeArithmetic(ISUB);
+				break;
+			case BopCode.MULTIPLY:
+				writeArithmetic(IMUL);
+				break;
+			case BopCode.DIVIDE:
+				writeArithmetic(IDIV);
+				break;
+			case BopCode.EQUAL:
+				writeComparison(IF_ICMPNE);
+				break;
+			case BopCode.NOT_EQUAL:
+				writeComparison(IF_ICMPEQ);
+				break;
+			case BopCode.LESS_EQUAL:
+				writeComparison(IF_ICMPGT);
+				break;
+			case BopCode.GREATER:
+				writeComparison(IF_ICMPLE);
+				break;
+			case BopCode.GREATER_EQUAL:
+				writeComparison(IF_ICMPLT);
+				break;
+			case BopCode.LESS:
+				writeComparison(IF_ICMPGE);
+				break;
+			case BopCode.OR:
+				// 1 if either value is 1, like BopCode.evaluate.
+				writeLogic(IF_ICMPEQ, 0);
+				break;
+			default:
+				// 1 if both values are 1.
+				writeLogic(IF_ICMPNE, 1);
+				break;
+		}
+		storePending();
+	}
+
+	/**
+	 * Writes the specified arithmetic of the left and the right value.
+	 */
+	private void writeArithmetic(int opcode)
+	{
+		code.local(ILOAD, LEFT);
+		code.local(ILOAD, RIGHT);
+		code.write(opcode);
+	}
+
+	/**
+	 * Writes a comparison of the left and the right value that gives 0 if the
+	 * specified jump is taken, and 1 otherwise.
+	 */
+	private void writeComparison(int falseJump)
+	{
+		code.local(ILOAD, LEFT);
+		code.local(ILOAD, RIGHT);
+		// Skip the 1 and its goto to the 0.
+		code.write(falseJump);
+		code.writeShort(7);
+		code.write(ICONST_0 + 1);
+		// Skip the 0.
+		code.write(GOTO_JUMP);
+		code.writeShort(4);
+		code.write(ICONST_0);
+	}
+
+	/**
+	 * Writes OR or AND of the left and the right value: a jump taken when a
+	 * value compares to 1 with the specified jump gives the opposite of the
+	 * specified result, and otherwise the result.
+	 */
+	private void writeLogic(int jump, int result)
+	{
+		code.local(ILOAD, LEFT);
+		code.write(ICONST_0 + 1);
+		code.write(jump);
+		code.writeShort(13);
+		code.local(ILOAD, RIGHT);
+		code.write(ICONST_0 + 1);
+		code.write(jump);
+		code.writeShort(7);
+		code.write(ICONST_0 + result);
+		code.write(GOTO_JUMP);
+		code.writeShort(4);
+		code.write(ICONST_0 + 1 - result);
+	}
+
+	/**
+	 * Writes code that leaves the top value of the frame on the operand
+	 * stack, taking it from a local or popping the run time stack.
+	 */
+	private void loadTop()
+	{
+		if (pending > 0)
+		{
+			pending -= 1;
+			code.local(ILOAD, FIRST_PENDING + pending);
+		} else
+		{
+			code.write(ALOAD_0);
+			invokeStack(runtime.pop, "()I");
+		}
+	}
+
+	/**
+	 * Writes code that keeps the value on the operand stack in the next
+	 * local, as the new top value of the frame.
+	 */
+	private void storePending()
+	{
+		code.local(ISTORE, FIRST_PENDING + pending);
+		pending += 1;
+		maxPending = Math.max(maxPending, pending);
+	}
+
+	/**
+	 * Writes code that pushes every value kept in locals on the run time
+	 * stack, bottom first.
+	 */
+	private void flush()
+	{
+		for (int i = 0; i < pending; i++)
+		{
+			code.write(ALOAD_0);
+			code.local(ILOAD, FIRST_PENDING + i);
+			invokeStack(runtime.push, "(I)V");
+		}
+		pending = 0;
+	}
+
+	/**
+	 * Writes a call of the specified method of the stack with the specified
+	 * int argument.
+	 */
+	private void callStack(String method, int argument)
+	{
+		code.write(ALOAD_0);
+		code.pushInt(classFile, argument);
+		invokeStack(method, "(I)V");
+	}
+
+	/**
+	 * Writes an invoke of the specified method of the stack.
+	 */
+	private void invokeStack(String method, String descriptor)
+	{
+		code.invoke(classFile, INVOKEVIRTUAL, runtime.owner, method, descriptor);
+	}
+
+	/**
+	 * Writes the specified jump to the byte code at the specified program
+	 * counter, to be patched once its offset is known.
+	 */
+	private void jump(int opcode, int pc)
+	{
+		jumps.add(new int[]
+		{
+			code.length(), pc
+		});
+		code.write(opcode);
+		code.writeShort(0);
+	}
+
+	/**
+	 * Patches every jump with the offset of its target.
+	 *
+	 * @return {@code true} if every offset fits in a jump.
+	 */
+	private boolean patchJumps()
+	{
+		for (int[] jump : jumps)
+		{
+			int offset = offsets[jump[1] - entry] - jump[0];
+			if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+			{
+				return false;
+			}
+			code.patchShort(jump[0] + 1, offset);
+		}
+
+		return true;
+	}
+
+	/**
+	 * The JVM byte codes of a method being written.
+	 */
+	static final class MethodCode
+	{
+
+		private byte[] bytes = new byte[256];
+		private int length;
+
+		int length()
+		{
+			return length;
+		}
+
+		void write(int value)
+		{
+			if (length == bytes.length)
+			{
+				bytes = Arrays.copyOf(bytes, 2 * length);
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		void writeShort(int value)
+		{
+			write(value >> 8);
+			write(value);
+		}
+
+		void patchShort(int offset, int value)
+		{
+			bytes[offset] = (byte) (value >> 8);
+			bytes[offset + 1] = (byte) value;
+		}
+
+		/**
+		 * Writes the specified load or store of the specified local.
+		 */
+		void local(int opcode, int index)
+		{
+			write(opcode);
+			write(index);
+		}
+
+		/**
+		 * Writes the shortest push of the specified int.
+		 */
+		void pushInt(ClassFileWriter classFile, int value)
+		{
+			if (value >= -1 && value <= 5)
+			{
+				write(ICONST_0 + value);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+			{
+				write(BIPUSH);
+				write(value);
+			} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+			{
+				write(SIPUSH);
+				writeShort(value);
+			} else
+			{
+				write(LDC_W);
+				writeShort(classFile.integer(value));
+			}
+		}
+
+		/**
+		 * Writes the specified invoke of the specified method.
+		 */
+		void invoke(ClassFileWriter classFile, int opcode, String owner, String name, String descriptor)
+		{
+			write(opcode);
+			writeShort(classFile.methodRef(owner, name, descriptor));
+		}
+
+		byte[] toByteArray()
+		{
+			return Arrays.copyOf(bytes, length);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.compiler;
+
+import interpreter.Program;
+import interpreter.engine.LoweredProgram;
+
+/**
+ * Counts the calls of every function of a program, and compiles a function
+ * into a JVM class once it is called often enough.
+ *
+ * Note: Only a verified program without a DUMP that can run is compiled,
+ * since a compiled function prints no DUMP output.
+ *
+ * @author mandynoto
+ */
+public class JitCompiler
+{
+
+	// The calls of a function before it is compiled, unless told otherwise.
+	public static final int DEFAULT_THRESHOLD = 1000;
+
+	private final Program program;
+	private final int threshold;
+
+	// The program lowered when the first function gets hot, or null before.
+	private LoweredProgram loweredProgram;
+	// The calls of each function so far, by its entry.
+	private int[] callCounts;
+	// The compiled function at each entry, or null if it is not compiled.
+	private CompiledFunction[] functions;
+	// True at each entry whose function cannot be compiled.
+	private boolean[] isRefused;
+
+	/**
+	 * Constructs a compiler of the hot functions of the specified program,
+	 * which compiles a function on the specified call.
+	 *
+	 * @param program the specified program.
+	 * @param threshold the specified number of calls.
+	 */
+	public JitCompiler(Program program, int threshold)
+	{
+		this.program = program;
+		this.threshold = Math.max(1, threshold);
+	}
+
+	/**
+	 * Counts a call of the function at the specified entry, and returns the
+	 * function compiled if it is hot.
+	 *
+	 * @param entry the specified entry, i.e. the LABEL the CALL jumps to.
+	 * @return the compiled function, or null if it should be interpreted.
+	 */
+	public CompiledFunction enter(int entry)
+	{
+		if (callCounts == null)
+		{
+			int size = program.getSize();
+			callCounts = new int[size];
+			functions = new CompiledFunction[size];
+			isRefused = new boolean[size];
+		}
+
+		CompiledFunction function = functions[entry];
+		if (function != null || isRefused[entry])
+		{
+			return function;
+		}
+
+		callCounts[entry] += 1;
+		if (callCounts[entry] < threshold)
+		{
+			return null;
+		}
+
+		function = compile(entry);
+		functions[entry] = function;
+		isRefused[entry] = function == null;
+
+		return function;
+	}
+
+	/**
+	 * Returns the number of functions compiled so far.
+	 *
+	 * @return the number of compiled functions.
+	 */
+	public int getCompiledCount()
+	{
+		int count = 0;
+		if (functions != null)
+		{
+			for (CompiledFunction function : functions)
+			{
+				count += function != null ? 1 : 0;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the function at the specified entry compiled and loaded, or
+	 * null if it cannot be compiled.
+	 *
+	 * @param entry the specified entry.
+	 * @return the compiled function, or null if it cannot be compiled.
+	 */
+	private CompiledFunction compile(int entry)
+	{
+		if (loweredProgram == null)
+		{
+			loweredProgram = LoweredProgram.lower(program);
+		}
+		if (loweredProgram == null)
+		{
+			return null;
+		}
+
+		String className = "interpreter/compiler/Function" + entry;
+		try
+		{
+			byte[] classFile = FunctionCompiler.compile(loweredProgram, entry, className);
+			if (classFile == null)
+			{
+				return null;
+			}
+
+			Class<?> type = new CompiledClassLoader().define(className, classFile);
+
+			return (CompiledFunction) type.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError | IllegalStateException e)
+		{
+			// The function keeps running in the interpreter, like before.
+			return null;
+		}
+	}
+}
@@ -6,7 +6,9 @@ package interpreter.debugger;
 
 import interpreter.ByteCodeLoader;
 import interpreter.CodeTable;
+import interpreter.bytecode.ByteCode;
 import java.io.IOException;
+import java.util.function.Supplier;
 
 /**
  * Enables byte code loader to identify debugging byte codes.
@@ -31,21 +33,15 @@ public class DebugByteCodeLoader extends ByteCodeLoader
 	}
 
 	/**
-	 * Returns the debugger byte code mapping based on the specified code name.
+	 * Returns the debugger byte code factory based on the specified code name.
 	 *
 	 * @param code the specified code name
-	 * @return the debugger byte code based on the specified code name.
+	 * @return the debugger byte code factory based on the specified code name.
 	 */
 	@Override
-	protected String getCodeClass(String code)
+	protected Supplier<ByteCode> getCodeFactory(String code)
 	{
-		if (code.matches("FORMAL|FUNCTION|LINE|LIT|POP|RETURN"))
-		{
-			return "debuggerByteCodes." + CodeTable.get(code);
-		} else
-		{
-			return CodeTable.get(code);
-		}
+		return CodeTable.getDebug(code);
 	}
 
 }
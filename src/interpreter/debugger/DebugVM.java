@@ -8,10 +8,14 @@ import interpreter.Program;
 import interpreter.RunTimeStack;
 import interpreter.VirtualMachine;
 import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.debuggerByteCodes.FunctionCode;
+import interpreter.bytecode.debuggerByteCodes.LineCode;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Executes a source program in debug mode.
@@ -29,7 +33,7 @@ public class DebugVM extends VirtualMachine
 	private boolean isChangedLine;
 	protected boolean isTracing;
 
-	private final List<DebugSourceLineMapEntry> sourceCode;
+	private List<DebugSourceLineMapEntry> sourceCode;
 	private final Stack<FunctionEnvironmentRecord> environmentStack;
 
 	/**
@@ -82,6 +86,108 @@ public class DebugVM extends VirtualMachine
 
 	}
 
+	/**
+	 * Swaps in the specified program and source code, moving the current
+	 * program counter and every return address with the specified mapping
+	 * from old program counters to new ones.
+	 *
+	 * Note: The caller makes sure no running function changed, so the frames,
+	 * the run time stack, and each function's variables stay as they are.
+	 * Only line numbers that moved are updated.
+	 *
+	 * @param program the specified program.
+	 * @param sourceCode the specified source code.
+	 * @param programCounters the specified mapping of program counters.
+	 */
+	public void reload(Program program, List<DebugSourceLineMapEntry> sourceCode, IntUnaryOperator programCounters)
+	{
+		HashMap<String, FunctionCode> functions = new HashMap<>();
+		for (int address = 0; address < program.getSize(); address++)
+		{
+			if (program.getCode(address) instanceof FunctionCode)
+			{
+				FunctionCode function = (FunctionCode) program.getCode(address);
+				functions.put(function.getFunctionName(), function);
+			}
+		}
+
+		// Walk the frames from the innermost out, each with its program counter.
+		int frame = environmentStack.size() - 1;
+		int oldPC = pc;
+		for (int i = returnAddrs.size(); i >= 0 && frame >= 0; i--, frame--)
+		{
+			FunctionEnvironmentRecord record = environmentStack.elementAt(frame);
+			int newPC = programCounters.applyAsInt(oldPC);
+
+			int oldLine = getLineBefore(this.program, oldPC);
+			int newLine = getLineBefore(program, newPC);
+			if (oldLine > 0 && newLine > 0)
+			{
+				record.setCurrentLineNumber(record.getCurrentLineNumber() + newLine - oldLine);
+			}
+
+			FunctionCode function = functions.get(record.getFunctionName());
+			if (function != null)
+			{
+				record.setFunctionStartLineNumber(function.getStartLine());
+				record.setFunctionEndLineNumber(function.getEndLine());
+			}
+
+			if (i > 0)
+			{
+				oldPC = returnAddrs.elementAt(i - 1);
+			}
+		}
+
+		for (int i = 0; i < returnAddrs.size(); i++)
+		{
+			returnAddrs.set(i, programCounters.applyAsInt(returnAddrs.elementAt(i)));
+		}
+		pc = programCounters.applyAsInt(pc);
+
+		this.program = program;
+		this.sourceCode = sourceCode;
+	}
+
+	/**
+	 * Returns the source line of the nearest LINE code at or before the
+	 * specified program counter of the specified program.
+	 *
+	 * @param program the specified program.
+	 * @param address the specified program counter.
+	 * @return the source line, or -1 if there is no such LINE code.
+	 */
+	private static int getLineBefore(Program program, int address)
+	{
+		for (int i = Math.min(address, program.getSize() - 1); i >= 0; i--)
+		{
+			if (program.getCode(i) instanceof LineCode)
+			{
+				return ((LineCode) program.getCode(i)).getLineNumber();
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the program counters of every frame, from the current one out:
+	 * the current program counter and then each return address.
+	 *
+	 * @return the program counters of every frame.
+	 */
+	public int[] getFrameProgramCounters()
+	{
+		int[] programCounters = new int[returnAddrs.size() + 1];
+		programCounters[0] = pc;
+		for (int i = 1; i < programCounters.length; i++)
+		{
+			programCounters[i] = returnAddrs.elementAt(returnAddrs.size() - i);
+		}
+
+		return programCounters;
+	}
+
 	/**
 	 * Returns {@code true} if the specified size of the environment stack is valid.
 	 *
@@ -414,6 +520,24 @@ public class DebugVM extends VirtualMachine
 		}
 	}
 
+	/**
+	 * Replaces the current function with the callee of a tail call, along
+	 * with its record, since the callee adds a record of its own.
+	 *
+	 * @return {@code true} if the current frame was replaced.
+	 */
+	@Override
+	public boolean tailCall()
+	{
+		if (!super.tailCall())
+		{
+			return false;
+		}
+
+		environmentStack.pop();
+		return true;
+	}
+
 	/**
 	 * Removes the function record from the active environment stack.
 	 */
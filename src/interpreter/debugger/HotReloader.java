@@ -0,0 +1,446 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.debugger;
+
+import interpreter.BinaryCodeFile;
+import interpreter.ByteCodeTokenizer;
+import interpreter.CodeTable;
+import interpreter.ConstantPool;
+import interpreter.Program;
+import interpreter.bytecode.Operands;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Watches the .x and .x.cod pair of a debugging session, and swaps the
+ * functions that changed into the running DebugVM.
+ *
+ * Functions are told apart by the name of their FUNCTION code and the range
+ * from their LABEL to their last RETURN. A function whose byte codes are the
+ * same apart from line numbers is unchanged, so its frames keep running at
+ * the same place in the new program. A reload that changes a function with
+ * a frame on the stack waits until that function returns.
+ *
+ * @author mandynoto
+ */
+public class HotReloader
+{
+
+	private final String codeFile;
+	private final String sourceFile;
+	// The last modified times of the files when they were last read.
+	private long codeModified;
+	private long sourceModified;
+	// The functions of the program being debugged.
+	private FunctionIndex functions;
+
+	// A reload waiting for a changed function to return, or null if none is.
+	private FunctionIndex pendingFunctions;
+	private Program pendingProgram;
+	private List<DebugSourceLineMapEntry> pendingSourceCode;
+	// The function the pending reload last waited for.
+	private String blockingFunction;
+
+	/**
+	 * Constructs a reloader of the specified code and source files, which the
+	 * program being debugged was just loaded from.
+	 *
+	 * @param codeFile the specified .x.cod file.
+	 * @param sourceFile the specified .x file.
+	 * @throws IOException if the code file cannot be read.
+	 */
+	public HotReloader(String codeFile, String sourceFile) throws IOException
+	{
+		this.codeFile = codeFile;
+		this.sourceFile = sourceFile;
+		this.codeModified = new File(codeFile).lastModified();
+		this.sourceModified = new File(sourceFile).lastModified();
+		this.functions = new FunctionIndex(codeFile);
+	}
+
+	/**
+	 * Reloads the program of the specified virtual machine if its files
+	 * changed since they were last read, or if an earlier reload is waiting.
+	 *
+	 * @param vm the specified debugging virtual machine.
+	 * @return {@code true} if a new program was swapped in.
+	 */
+	public boolean reloadIfChanged(DebugVM vm)
+	{
+		long newCodeModified = new File(codeFile).lastModified();
+		long newSourceModified = new File(sourceFile).lastModified();
+		if (newCodeModified != codeModified || newSourceModified != sourceModified)
+		{
+			codeModified = newCodeModified;
+			sourceModified = newSourceModified;
+			if (!read())
+			{
+				return false;
+			}
+		} else if (pendingProgram == null)
+		{
+			return false;
+		}
+
+		TreeSet<String> changed = functions.getChanged(pendingFunctions);
+
+		// A program that has not started has no frames to keep.
+		int[] programCounters = vm.getFrameProgramCounters();
+		if (programCounters.length > 1 || programCounters[0] > 0)
+		{
+			for (int programCounter : programCounters)
+			{
+				String owner = functions.getOwner(programCounter);
+				if (changed.contains(owner))
+				{
+					if (!owner.equals(blockingFunction))
+					{
+						System.out.printf("***%s changed while it is running; it is reloaded once it returns\n\n", getName(owner));
+						blockingFunction = owner;
+					}
+					return false;
+				}
+			}
+		}
+
+		FunctionIndex oldFunctions = functions;
+		FunctionIndex newFunctions = pendingFunctions;
+		List<DebugSourceLineMapEntry> sourceCode = pendingSourceCode;
+		keepBreakPoints(vm, sourceCode);
+		vm.reload(pendingProgram, sourceCode,
+				programCounter -> newFunctions.getProgramCounter(oldFunctions.getOwner(programCounter), oldFunctions.getOrdinal(programCounter)));
+
+		functions = newFunctions;
+		pendingFunctions = null;
+		pendingProgram = null;
+		pendingSourceCode = null;
+		blockingFunction = null;
+
+		ArrayList<String> names = new ArrayList<>();
+		for (String name : changed)
+		{
+			names.add(name.isEmpty() ? "top level" : getName(name));
+		}
+		System.out.printf("****Reloaded %s: %s****\n\n", sourceFile,
+				names.isEmpty() ? "no function changed" : "changed " + String.join(", ", names));
+
+		return true;
+	}
+
+	/**
+	 * Reads the changed files into the pending reload.
+	 *
+	 * @return {@code true} if both files were read and the program loaded.
+	 */
+	private boolean read()
+	{
+		try
+		{
+			FunctionIndex newFunctions = new FunctionIndex(codeFile);
+			List<DebugSourceLineMapEntry> sourceCode = DebugSourceReader.load(sourceFile);
+			Program program = new DebugByteCodeLoader(codeFile).loadCodes();
+			if (program == null)
+			{
+				return false;
+			}
+
+			pendingFunctions = newFunctions;
+			pendingProgram = program;
+			pendingSourceCode = sourceCode;
+			blockingFunction = null;
+			return true;
+		} catch (IOException e)
+		{
+			System.out.println("***Could not reload " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the break points of the specified virtual machine on the same
+	 * lines of the specified new source code, looking for the nearest line
+	 * with the same text if the line moved.
+	 *
+	 * @param vm the specified debugging virtual machine.
+	 * @param sourceCode the specified new source code.
+	 */
+	private static void keepBreakPoints(DebugVM vm, List<DebugSourceLineMapEntry> sourceCode)
+	{
+		for (int line = 1; line <= vm.getSourceCodeLineCount(); line++)
+		{
+			if (!vm.isABreakPoint(line))
+			{
+				continue;
+			}
+
+			String text = vm.getSourceLine(line);
+			for (int distance = 0; distance < sourceCode.size(); distance++)
+			{
+				int before = line - 1 - distance;
+				int after = line - 1 + distance;
+				if (before >= 0 && before < sourceCode.size() && sourceCode.get(before).getSourceLine().equals(text))
+				{
+					sourceCode.get(before).setBreakPoint(true);
+					break;
+				}
+				if (after >= 0 && after < sourceCode.size() && sourceCode.get(after).getSourceLine().equals(text))
+				{
+					sourceCode.get(after).setBreakPoint(true);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the specified function name without its label suffix, e.g. fib
+	 * for fib<<2>>.
+	 *
+	 * @param name the specified function name.
+	 * @return the function name without its label suffix.
+	 */
+	private static String getName(String name)
+	{
+		return name.split("<<")[0];
+	}
+
+	/**
+	 * The function each byte code of a .x.cod file belongs to, and the byte
+	 * codes of each function.
+	 */
+	private static class FunctionIndex
+	{
+
+		// The function owning each byte code, or "" outside every function.
+		private final String[] owners;
+		// The position of each byte code among those of its function.
+		private final int[] ordinals;
+		// The program counters of the byte codes of each function.
+		private final HashMap<String, ArrayList<Integer>> programCounters = new HashMap<>();
+		// The byte codes of each function, without line numbers, as text.
+		private final HashMap<String, String> bodies = new HashMap<>();
+
+		/**
+		 * Indexes the functions of the specified code file.
+		 *
+		 * @param codeFile the specified code file.
+		 * @throws IOException if the code file cannot be read.
+		 */
+		FunctionIndex(String codeFile) throws IOException
+		{
+			ArrayList<String> codes = new ArrayList<>();
+			ArrayList<List<String>> arguments = new ArrayList<>();
+			BinaryCodeFile.CodeConsumer consumer = (code, operands, address) ->
+			{
+				// Count byte codes the way the debug loader does.
+				if (CodeTable.getDebug(code) != null)
+				{
+					codes.add(code);
+					arguments.add(operands.toList());
+				}
+			};
+
+			if (BinaryCodeFile.isBinary(codeFile))
+			{
+				BinaryCodeFile.read(codeFile, new ConstantPool(), consumer);
+			} else
+			{
+				try ( InputStream input = BinaryCodeFile.openStream(codeFile))
+				{
+					ByteCodeTokenizer tokenizer = new ByteCodeTokenizer(input, new ConstantPool());
+					Operands operands = new Operands();
+					String code;
+					while ((code = tokenizer.next(operands)) != null)
+					{
+						consumer.accept(code, operands, -1);
+					}
+				} catch (UncheckedIOException e)
+				{
+					throw e.getCause();
+				}
+			}
+
+			owners = new String[codes.size()];
+			ordinals = new int[codes.size()];
+			Arrays.fill(owners, "");
+
+			// Fill the outer functions first, so nested ones own their own codes.
+			ArrayList<int[]> ranges = new ArrayList<>();
+			ArrayList<String> names = new ArrayList<>();
+			for (int pc = 0; pc < codes.size(); pc++)
+			{
+				if (codes.get(pc).equals("FUNCTION") && !arguments.get(pc).isEmpty())
+				{
+					String name = arguments.get(pc).get(0);
+					ranges.add(new int[]
+					{
+						getStart(codes, pc), getEnd(codes, arguments, pc, name), names.size()
+					});
+					names.add(name);
+				}
+			}
+			ranges.sort(Comparator.comparingInt(range -> range[0] - range[1]));
+			for (int[] range : ranges)
+			{
+				Arrays.fill(owners, range[0], range[1], names.get(range[2]));
+			}
+
+			HashMap<String, StringBuilder> texts = new HashMap<>();
+			for (int pc = 0; pc < codes.size(); pc++)
+			{
+				ArrayList<Integer> pcs = programCounters.computeIfAbsent(owners[pc], name -> new ArrayList<>());
+				ordinals[pc] = pcs.size();
+				pcs.add(pc);
+
+				StringBuilder text = texts.computeIfAbsent(owners[pc], name -> new StringBuilder());
+				text.append(codes.get(pc));
+				// Line numbers move with every edit above them, so leave them out.
+				List<String> args = arguments.get(pc);
+				int count = codes.get(pc).equals("LINE") ? 0 : codes.get(pc).equals("FUNCTION") ? 1 : args.size();
+				for (int i = 0; i < Math.min(count, args.size()); i++)
+				{
+					text.append(' ').append(args.get(i));
+				}
+				text.append('\n');
+			}
+			texts.forEach((name, text) -> bodies.put(name, text.toString()));
+		}
+
+		/**
+		 * Returns the program counter of the LABEL before the FUNCTION at the
+		 * specified program counter, skipping the LINE codes between them.
+		 *
+		 * @param codes the specified mnemonics.
+		 * @param pc the specified program counter of the FUNCTION.
+		 * @return the first program counter of the function.
+		 */
+		private static int getStart(List<String> codes, int pc)
+		{
+			int start = pc;
+			while (start > 0 && codes.get(start - 1).equals("LINE"))
+			{
+				start -= 1;
+			}
+			if (start > 0 && codes.get(start - 1).equals("LABEL"))
+			{
+				start -= 1;
+			}
+
+			return start;
+		}
+
+		/**
+		 * Returns the program counter after the last RETURN of the function
+		 * named by the FUNCTION at the specified program counter: its last
+		 * RETURN naming it, else its first RETURN, else the program end.
+		 *
+		 * @param codes the specified mnemonics.
+		 * @param arguments the specified arguments.
+		 * @param pc the specified program counter of the FUNCTION.
+		 * @param name the specified function name.
+		 * @return the program counter after the function.
+		 */
+		private static int getEnd(List<String> codes, List<List<String>> arguments, int pc, String name)
+		{
+			for (int end = codes.size() - 1; end > pc; end--)
+			{
+				if (codes.get(end).equals("RETURN") && arguments.get(end).contains(name))
+				{
+					return end + 1;
+				}
+			}
+
+			for (int end = pc + 1; end < codes.size() && !codes.get(end).equals("FUNCTION"); end++)
+			{
+				if (codes.get(end).equals("RETURN"))
+				{
+					return end + 1;
+				}
+			}
+
+			return codes.size();
+		}
+
+		/**
+		 * Returns the function owning the byte code at the specified program
+		 * counter.
+		 *
+		 * @param pc the specified program counter.
+		 * @return the function, or "" outside every function.
+		 */
+		String getOwner(int pc)
+		{
+			return pc < owners.length ? owners[pc] : "";
+		}
+
+		/**
+		 * Returns the position of the byte code at the specified program
+		 * counter among those of its function.
+		 *
+		 * @param pc the specified program counter.
+		 * @return the position within its function.
+		 */
+		int getOrdinal(int pc)
+		{
+			return pc < ordinals.length ? ordinals[pc] : 0;
+		}
+
+		/**
+		 * Returns the program counter of the byte code at the specified
+		 * position of the specified function.
+		 *
+		 * @param owner the specified function.
+		 * @param ordinal the specified position within the function.
+		 * @return the program counter, or 0 if there is no such byte code.
+		 */
+		int getProgramCounter(String owner, int ordinal)
+		{
+			ArrayList<Integer> pcs = programCounters.get(owner);
+			if (pcs == null || ordinal >= pcs.size())
+			{
+				return 0;
+			}
+
+			return pcs.get(ordinal);
+		}
+
+		/**
+		 * Returns the functions whose byte codes differ from those of the
+		 * specified index, including the ones only one of them has.
+		 *
+		 * @param other the specified index.
+		 * @return the names of the functions that changed.
+		 */
+		TreeSet<String> getChanged(FunctionIndex other)
+		{
+			TreeSet<String> changed = new TreeSet<>();
+			for (String name : bodies.keySet())
+			{
+				if (!bodies.get(name).equals(other.bodies.get(name)))
+				{
+					changed.add(name);
+				}
+			}
+			for (String name : other.bodies.keySet())
+			{
+				if (!bodies.containsKey(name))
+				{
+					changed.add(name);
+				}
+			}
+
+			return changed;
+		}
+	}
+}
@@ -5,6 +5,7 @@
 package interpreter.debugger.ui;
 
 import interpreter.debugger.DebugVM;
+import interpreter.debugger.HotReloader;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -39,6 +40,19 @@ public class DebugConsoleUI
 	 * @param virtualMachine the specified debugging virtual machine.
 	 */
 	public static void showPrompt(DebugVM virtualMachine)
+	{
+		showPrompt(virtualMachine, null);
+	}
+
+	/**
+	 * Prompts the user for commands with the help of the specified debugging
+	 * virtual machine, swapping in the functions the specified reloader finds
+	 * changed before each prompt.
+	 *
+	 * @param virtualMachine the specified debugging virtual machine.
+	 * @param reloader the specified reloader, or null for none.
+	 */
+	public static void showPrompt(DebugVM virtualMachine, HotReloader reloader)
 	{
 		vm = virtualMachine;
 		isHalted = false;
@@ -53,6 +67,11 @@ public class DebugConsoleUI
 		{
 			try
 			{
+				if (reloader != null && reloader.reloadIfChanged(vm))
+				{
+					showFunctionSourceCode();
+				}
+
 				System.out.printf("Type ? for help\n");
 				System.out.printf(promptIndicator + " ");
 				BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
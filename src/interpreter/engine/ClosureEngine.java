@@ -0,0 +1,375 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.engine;
+
+import interpreter.bytecode.BopCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static interpreter.engine.LoweredProgram.*;
+
+/**
+ * Runs a program compiled into closures: each basic block becomes an array
+ * of steps with their operands bound, and an exit that returns the next
+ * block itself, so control flow never looks up a program counter.
+ *
+ * A CALL pushes the block after it and continues with the function's block;
+ * a RETURN continues with the block it pops, so deep recursion uses no more
+ * of the Java stack than a loop does.
+ *
+ * It prints exactly what the VirtualMachine prints for the same program.
+ *
+ * @author mandynoto
+ */
+public class ClosureEngine
+{
+
+	/**
+	 * A byte code that does not transfer control, with its operand bound.
+	 */
+	interface Step
+	{
+
+		void execute(FrameStack stack);
+	}
+
+	/**
+	 * The byte code that ends a block.
+	 */
+	interface Exit
+	{
+
+		/**
+		 * Returns the block to run next, or null to halt.
+		 */
+		Block next(ClosureEngine engine);
+	}
+
+	/**
+	 * A run of steps that is only entered at its first step, and its exit.
+	 */
+	static final class Block
+	{
+
+		private Step[] steps;
+		private Exit exit;
+
+		/**
+		 * Runs this block and returns the block to run next.
+		 *
+		 * @param engine the specified engine running the block.
+		 * @return the block to run next, or null to halt.
+		 */
+		Block run(ClosureEngine engine)
+		{
+			FrameStack stack = engine.stack;
+			for (Step step : steps)
+			{
+				step.execute(stack);
+			}
+
+			return exit.next(engine);
+		}
+	}
+
+	// The first block of the program.
+	private final Block entry;
+	// The starting capacity of the run time stack.
+	private final int stackCapacity;
+
+	private FrameStack stack;
+	// The block each CALL returns to, innermost last.
+	private Block[] returnBlocks;
+	private int callDepth;
+
+	/**
+	 * Constructs an engine that runs the specified lowered program, compiling
+	 * it into closures.
+	 *
+	 * @param program the specified lowered program.
+	 */
+	public ClosureEngine(LoweredProgram program)
+	{
+		this.entry = compile(program);
+		this.stackCapacity = program.getStackMap().getStackCapacity();
+	}
+
+	/**
+	 * Executes the program until it halts.
+	 */
+	public void executeProgram()
+	{
+		stack = new FrameStack(stackCapacity);
+		returnBlocks = new Block[16];
+		callDepth = 0;
+
+		Block block = entry;
+		while (block != null)
+		{
+			block = block.run(this);
+		}
+	}
+
+	/**
+	 * Saves the specified block to continue with once a function returns.
+	 *
+	 * @param block the specified block.
+	 */
+	private void pushReturn(Block block)
+	{
+		if (callDepth == returnBlocks.length)
+		{
+			returnBlocks = Arrays.copyOf(returnBlocks, 2 * callDepth);
+		}
+		returnBlocks[callDepth++] = block;
+	}
+
+	/**
+	 * Returns the block to continue with after the current function returns.
+	 *
+	 * @return the block to continue with.
+	 */
+	private Block popReturn()
+	{
+		Block block = returnBlocks[--callDepth];
+		returnBlocks[callDepth] = null;
+
+		return block;
+	}
+
+	/**
+	 * Returns the first block of the specified program, compiled into
+	 * closures.
+	 *
+	 * @param program the specified lowered program.
+	 * @return the first block of the program.
+	 */
+	private static Block compile(LoweredProgram program)
+	{
+		int[] opcodes = program.getOpcodes();
+		int[] operands = program.getOperands();
+		int size = program.getSize();
+
+		// A block starts at the first byte code, every target, and after every exit.
+		Block[] blocks = new Block[size];
+		blocks[0] = new Block();
+		for (int pc = 0; pc < size; pc++)
+		{
+			int opcode = opcodes[pc];
+			if (opcode == GOTO || opcode == FALSEBRANCH || opcode == CALL)
+			{
+				int target = getTarget(opcode, operands[pc]);
+				if (blocks[target] == null)
+				{
+					blocks[target] = new Block();
+				}
+			}
+			if (isExit(opcode) && pc + 1 < size && blocks[pc + 1] == null)
+			{
+				blocks[pc + 1] = new Block();
+			}
+		}
+
+		ArrayList<Step> steps = new ArrayList<>();
+		for (int start = 0; start < size; start++)
+		{
+			Block block = blocks[start];
+			if (block == null)
+			{
+				continue;
+			}
+
+			steps.clear();
+			int pc = start;
+			while (pc < size && !isExit(opcodes[pc]) && (pc == start || blocks[pc] == null))
+			{
+				Step step = compileStep(opcodes[pc], operands[pc]);
+				if (step != null)
+				{
+					steps.add(step);
+				}
+				pc += 1;
+			}
+
+			block.steps = steps.toArray(new Step[0]);
+			block.exit = compileExit(blocks, pc, size, opcodes, operands);
+		}
+
+		return blocks[0];
+	}
+
+	/**
+	 * Returns the program counter the specified jump to the specified address
+	 * continues at: a CALL runs the address itself, while a GOTO or a
+	 * FALSEBRANCH continues after it, like they do on the VirtualMachine.
+	 *
+	 * @param opcode the specified opcode of the jump.
+	 * @param address the specified address.
+	 * @return the program counter the jump continues at.
+	 */
+	private static int getTarget(int opcode, int address)
+	{
+		return opcode == CALL ? address : address + 1;
+	}
+
+	/**
+	 * Returns {@code true} if the specified opcode ends a block.
+	 *
+	 * @param opcode the specified opcode.
+	 * @return {@code true} if the opcode ends a block.
+	 */
+	private static boolean isExit(int opcode)
+	{
+		return opcode == HALT || opcode == GOTO || opcode == FALSEBRANCH || opcode == CALL || opcode == RETURN;
+	}
+
+	/**
+	 * Returns the exit of a block at the specified program counter: the byte
+	 * code that ends the block, or a fall into the block that starts there.
+	 *
+	 * @param blocks the specified blocks, by their first program counter.
+	 * @param pc the specified program counter.
+	 * @param size the specified size of the program.
+	 * @param opcodes the specified opcodes of the program.
+	 * @param operands the specified operands of the program.
+	 * @return the exit of the block.
+	 */
+	private static Exit compileExit(Block[] blocks, int pc, int size, int[] opcodes, int[] operands)
+	{
+		if (pc == size)
+		{
+			return engine ->
+			{
+				throw new IndexOutOfBoundsException("Ran past the last byte code " + (size - 1));
+			};
+		}
+
+		Block next = pc + 1 < size ? blocks[pc + 1] : null;
+		switch (opcodes[pc])
+		{
+			case HALT:
+				return engine -> null;
+			case GOTO:
+			{
+				Block target = blocks[getTarget(GOTO, operands[pc])];
+				return engine -> target;
+			}
+			case FALSEBRANCH:
+			{
+				Block target = blocks[getTarget(FALSEBRANCH, operands[pc])];
+				if (next != null)
+				{
+					return engine -> engine.stack.pop() == 0 ? target : next;
+				}
+				Exit fallThrough = compileExit(blocks, size, size, opcodes, operands);
+				return engine -> engine.stack.pop() == 0 ? target : fallThrough.next(engine);
+			}
+			case CALL:
+			{
+				// Control lands on the function's LABEL, and comes back after the CALL.
+				Block target = blocks[operands[pc]];
+				return engine ->
+				{
+					engine.pushReturn(next);
+					return target;
+				};
+			}
+			case RETURN:
+				return engine ->
+				{
+					engine.stack.reset();
+					Block block = engine.popReturn();
+					if (block == null)
+					{
+						throw new IndexOutOfBoundsException("Ran past the last byte code " + (size - 1));
+					}
+					return block;
+				};
+			default:
+				// The block runs into the block that starts here.
+				Block block = blocks[pc];
+				return engine -> block;
+		}
+	}
+
+	/**
+	 * Returns the specified byte code that does not transfer control as a
+	 * step, or null if it does nothing.
+	 *
+	 * @param opcode the specified opcode.
+	 * @param operand the specified operand.
+	 * @return the step, or null if the byte code does nothing.
+	 */
+	private static Step compileStep(int opcode, int operand)
+	{
+		switch (opcode)
+		{
+			case NOP:
+				return null;
+			case POP:
+				return stack -> stack.popLevels(operand);
+			case STORE:
+				return stack -> stack.store(operand);
+			case LOAD:
+				return stack -> stack.load(operand);
+			case LIT:
+				return stack -> stack.push(operand);
+			case ARGS:
+				return stack -> stack.newFrameAt(operand);
+			case READ:
+				return stack -> stack.push(ConsoleIO.read());
+			case WRITE:
+				return stack -> ConsoleIO.write(stack.peek());
+			case POP2:
+				return stack ->
+				{
+					stack.pop();
+					stack.pop();
+				};
+			default:
+				return compileBop(opcode - BOP);
+		}
+	}
+
+	/**
+	 * Returns a step for the specified operator, which pops the right value,
+	 * then the left one, and pushes the result.
+	 *
+	 * @param operator the specified operator code.
+	 * @return the step of the operator.
+	 */
+	private static Step compileBop(int operator)
+	{
+		switch (operator)
+		{
+			case BopCode.ADD:
+				return stack -> stack.push(stack.pop() + stack.pop());
+			case BopCode.MULTIPLY:
+				return stack -> stack.push(stack.pop() * stack.pop());
+			case BopCode.SUBTRACT:
+				return stack ->
+				{
+					int right = stack.pop();
+					stack.push(stack.pop() - right);
+				};
+			case BopCode.LESS_EQUAL:
+				return stack ->
+				{
+					int right = stack.pop();
+					stack.push(stack.pop() <= right ? 1 : 0);
+				};
+			case BopCode.EQUAL:
+				return stack -> stack.push(stack.pop() == stack.pop() ? 1 : 0);
+			default:
+				return stack ->
+				{
+					int right = stack.pop();
+					int left = stack.pop();
+					stack.push(BopCode.evaluate(operator, left, right));
+				};
+		}
+	}
+}
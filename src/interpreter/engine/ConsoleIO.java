@@ -0,0 +1,50 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.engine;
+
+import java.util.Scanner;
+
+/**
+ * Reads and writes the integers of READ and WRITE, so every engine prompts
+ * and prints exactly like the byte codes do.
+ *
+ * @author mandynoto
+ */
+public final class ConsoleIO
+{
+
+	/**
+	 * Manages construction since this only holds static helpers.
+	 */
+	private ConsoleIO()
+	{
+		// Intentionally left empty.
+	}
+
+	/**
+	 * Prompts the user for an integer and returns it.
+	 *
+	 * Note: Each read uses its own scanner, like READ always has.
+	 *
+	 * @return the integer the user typed.
+	 */
+	public static int read()
+	{
+		Scanner scanner = new Scanner(System.in);
+		System.out.print("Input an integer: ");
+
+		return scanner.nextInt();
+	}
+
+	/**
+	 * Prints the specified value on its own line.
+	 *
+	 * @param value the specified value.
+	 */
+	public static void write(int value)
+	{
+		System.out.println(value);
+	}
+}
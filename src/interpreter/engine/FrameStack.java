@@ -0,0 +1,189 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.engine;
+
+import java.util.Arrays;
+
+/**
+ * The run time stack of an engine, kept in primitive arrays: the values, and
+ * the frame pointers that mark where each frame begins.
+ *
+ * It behaves like RunTimeStack, without boxing a value or a frame pointer.
+ *
+ * @author mandynoto
+ */
+public final class FrameStack
+{
+
+	// The values of every frame, from main's first value up.
+	private int[] values;
+	private int size;
+	// The index where each frame begins; main's frame begins at 0.
+	private int[] frames;
+	private int frameCount;
+
+	/**
+	 * Constructs a stack with room for the specified number of values, that
+	 * holds main's frame.
+	 *
+	 * @param capacity the specified number of values.
+	 */
+	public FrameStack(int capacity)
+	{
+		values = new int[Math.max(16, capacity)];
+		frames = new int[16];
+		frameCount = 1;
+	}
+
+	/**
+	 * Pushes the specified value.
+	 *
+	 * @param value the specified value.
+	 */
+	public void push(int value)
+	{
+		if (size == values.length)
+		{
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * Pops and returns the top value.
+	 *
+	 * @return the top value.
+	 */
+	public int pop()
+	{
+		if (size == 0)
+		{
+			throw new IndexOutOfBoundsException("The run time stack is empty");
+		}
+
+		return values[--size];
+	}
+
+	/**
+	 * Returns the top value.
+	 *
+	 * @return the top value.
+	 */
+	public int peek()
+	{
+		if (size == 0)
+		{
+			throw new IndexOutOfBoundsException("The run time stack is empty");
+		}
+
+		return values[size - 1];
+	}
+
+	/**
+	 * Pops the top specified number of values, unless that would empty the
+	 * stack, like RunTimeStack does for POP.
+	 *
+	 * @param levels the specified number of values.
+	 */
+	public void popLevels(int levels)
+	{
+		if (levels > 0 && levels < size)
+		{
+			size -= levels;
+		}
+	}
+
+	/**
+	 * Returns the number of values in every frame.
+	 *
+	 * @return the number of values.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Pushes the value at the specified offset of the current frame.
+	 *
+	 * @param offset the specified offset.
+	 */
+	public void load(int offset)
+	{
+		push(values[frames[frameCount - 1] + offset]);
+	}
+
+	/**
+	 * Pops the top value into the specified offset of the current frame.
+	 *
+	 * @param offset the specified offset.
+	 */
+	public void store(int offset)
+	{
+		int value = pop();
+		values[frames[frameCount - 1] + offset] = value;
+	}
+
+	/**
+	 * Returns the value at the specified offset of the current frame, without
+	 * pushing it.
+	 *
+	 * @param offset the specified offset.
+	 * @return the value at the offset.
+	 */
+	public int getValue(int offset)
+	{
+		return values[frames[frameCount - 1] + offset];
+	}
+
+	/**
+	 * Sets the value at the specified offset of the current frame to the
+	 * specified value.
+	 *
+	 * @param offset the specified offset.
+	 * @param value the specified value.
+	 */
+	public void setValue(int offset, int value)
+	{
+		values[frames[frameCount - 1] + offset] = value;
+	}
+
+	/**
+	 * Begins a frame holding the top specified number of values.
+	 *
+	 * @param offset the specified number of values.
+	 */
+	public void newFrameAt(int offset)
+	{
+		if (frameCount == frames.length)
+		{
+			frames = Arrays.copyOf(frames, 2 * frameCount);
+		}
+		frames[frameCount++] = size - offset;
+	}
+
+	/**
+	 * Ends the current frame, leaving its top value as the return value on
+	 * the frame below.
+	 */
+	public void reset()
+	{
+		int value = pop();
+		size = Math.min(size, frames[--frameCount]);
+		push(value);
+	}
+
+	/**
+	 * Ends the current frame with the specified return value, like pushing it
+	 * and then resetting.
+	 *
+	 * @param value the specified return value.
+	 */
+	public void returnValue(int value)
+	{
+		size = Math.min(size, frames[--frameCount]);
+		push(value);
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.engine;
+
+import interpreter.Program;
+import interpreter.StackMap;
+import interpreter.bytecode.*;
+
+/**
+ * A program lowered into parallel arrays of opcodes and operands, for engines
+ * that run without a byte code object per step.
+ *
+ * Only verified programs made of the built-in byte codes, without a DUMP
+ * that can run, are lowered; the others run on the VirtualMachine, which
+ * prints DUMP output and reports bad programs like it always has.
+ *
+ * @author mandynoto
+ */
+public final class LoweredProgram
+{
+
+	// The opcodes, one per byte code.
+	public static final int NOP = 0;
+	public static final int HALT = 1;
+	public static final int POP = 2;
+	public static final int FALSEBRANCH = 3;
+	public static final int GOTO = 4;
+	public static final int STORE = 5;
+	public static final int LOAD = 6;
+	public static final int LIT = 7;
+	public static final int ARGS = 8;
+	public static final int CALL = 9;
+	public static final int RETURN = 10;
+	public static final int READ = 11;
+	public static final int WRITE = 12;
+	// A BOP whose operator is not known pops two values and pushes nothing.
+	public static final int POP2 = 13;
+	// A BOP's opcode is its operator plus this.
+	public static final int BOP = 14;
+
+	// The mnemonic of each opcode, for messages.
+	private static final String[] NAMES =
+	{
+		"LABEL", "HALT", "POP", "FALSEBRANCH", "GOTO", "STORE", "LOAD", "LIT",
+		"ARGS", "CALL", "RETURN", "READ", "WRITE", "BOP"
+	};
+
+	private final int[] opcodes;
+	private final int[] operands;
+	private final StackMap stackMap;
+
+	/**
+	 * Constructs a lowered program from the specified opcodes and operands.
+	 *
+	 * @param opcodes the specified opcodes.
+	 * @param operands the specified operands.
+	 * @param stackMap the specified stack map of the program.
+	 */
+	private LoweredProgram(int[] opcodes, int[] operands, StackMap stackMap)
+	{
+		this.opcodes = opcodes;
+		this.operands = operands;
+		this.stackMap = stackMap;
+	}
+
+	/**
+	 * Returns the specified program lowered, or null if it cannot be: it is
+	 * not verified, a DUMP can run, or it has a byte code that is not built
+	 * in, e.g. a debugger byte code.
+	 *
+	 * @param program the specified program.
+	 * @return the lowered program, or null if it cannot be lowered.
+	 */
+	public static LoweredProgram lower(Program program)
+	{
+		StackMap stackMap = program.getStackMap();
+		if (stackMap == null || stackMap.hasDump())
+		{
+			return null;
+		}
+
+		int size = program.getSize();
+		int[] opcodes = new int[size];
+		int[] operands = new int[size];
+		for (int pc = 0; pc < size; pc++)
+		{
+			ByteCode byteCode = program.getCode(pc);
+			Class<?> type = byteCode.getClass();
+
+			if (type == LabelCode.class || type == DumpCode.class)
+			{
+				// A DUMP that never runs does nothing.
+				opcodes[pc] = NOP;
+			} else if (type == HaltCode.class)
+			{
+				opcodes[pc] = HALT;
+			} else if (type == PopCode.class)
+			{
+				opcodes[pc] = POP;
+				operands[pc] = ((PopCode) byteCode).getLevels();
+			} else if (type == FalseBranchCode.class || type == GotoCode.class || type == CallCode.class)
+			{
+				opcodes[pc] = type == CallCode.class ? CALL : type == GotoCode.class ? GOTO : FALSEBRANCH;
+				operands[pc] = ((BranchCode) byteCode).getAddress();
+			} else if (type == StoreCode.class)
+			{
+				opcodes[pc] = STORE;
+				operands[pc] = ((StoreCode) byteCode).getOffset();
+			} else if (type == LoadCode.class)
+			{
+				opcodes[pc] = LOAD;
+				operands[pc] = ((LoadCode) byteCode).getOffset();
+			} else if (type == LitCode.class)
+			{
+				opcodes[pc] = LIT;
+				operands[pc] = ((LitCode) byteCode).getValue();
+			} else if (type == ArgsCode.class)
+			{
+				opcodes[pc] = ARGS;
+				operands[pc] = ((ArgsCode) byteCode).getArgCount();
+			} else if (type == ReturnCode.class)
+			{
+				opcodes[pc] = RETURN;
+			} else if (type == ReadCode.class)
+			{
+				opcodes[pc] = READ;
+			} else if (type == WriteCode.class)
+			{
+				opcodes[pc] = WRITE;
+			} else if (type == BopCode.class)
+			{
+				int operator = ((BopCode) byteCode).getOperator();
+				opcodes[pc] = operator == BopCode.UNKNOWN ? POP2 : BOP + operator;
+			} else
+			{
+				return null;
+			}
+		}
+
+		return new LoweredProgram(opcodes, operands, stackMap);
+	}
+
+	/**
+	 * Returns the opcodes of this program, one per byte code.
+	 *
+	 * @return the opcodes of this program.
+	 */
+	public int[] getOpcodes()
+	{
+		return opcodes;
+	}
+
+	/**
+	 * Returns the operands of this program, one per byte code: the address
+	 * of a jump, the offset of a LOAD or STORE, the value of a LIT, the count
+	 * of a POP or ARGS, or 0.
+	 *
+	 * @return the operands of this program.
+	 */
+	public int[] getOperands()
+	{
+		return operands;
+	}
+
+	/**
+	 * Returns what the Verifier learned about this program.
+	 *
+	 * @return the stack map of this program.
+	 */
+	public StackMap getStackMap()
+	{
+		return stackMap;
+	}
+
+	/**
+	 * Returns the number of byte codes in this program.
+	 *
+	 * @return the number of byte codes in this program.
+	 */
+	public int getSize()
+	{
+		return opcodes.length;
+	}
+
+	/**
+	 * Returns the mnemonic of the specified opcode.
+	 *
+	 * @param opcode the specified opcode.
+	 * @return the mnemonic of the opcode.
+	 */
+	public static String getName(int opcode)
+	{
+		return opcode == POP2 ? "BOP" : NAMES[Math.min(opcode, BOP)];
+	}
+}
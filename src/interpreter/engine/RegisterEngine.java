@@ -0,0 +1,217 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.engine;
+
+import interpreter.Program;
+import interpreter.VirtualMachine;
+import interpreter.bytecode.BopCode;
+
+import java.util.Arrays;
+
+import static interpreter.engine.RegisterProgram.*;
+
+/**
+ * Runs a register program in one loop that switches on each opcode, reading
+ * and writing the registers of the current frame in place of pushing and
+ * popping a run time stack.
+ *
+ * A DUMP ON hands the program to the VirtualMachine: the stack it would hold
+ * there is rebuilt from the registers, and it runs, and dumps, from the DUMP
+ * on.
+ *
+ * It prints exactly what the VirtualMachine prints for the same program.
+ *
+ * @author mandynoto
+ */
+public class RegisterEngine
+{
+
+	private final RegisterProgram program;
+	// The byte codes the program came from, for the VirtualMachine.
+	private final Program byteCodes;
+
+	/**
+	 * Constructs an engine that runs the specified register program, which
+	 * came from the specified program.
+	 *
+	 * @param program the specified register program.
+	 * @param byteCodes the specified program it came from.
+	 */
+	public RegisterEngine(RegisterProgram program, Program byteCodes)
+	{
+		this.program = program;
+		this.byteCodes = byteCodes;
+	}
+
+	/**
+	 * Executes the program until it halts.
+	 */
+	public void executeProgram()
+	{
+		int[] opcodes = program.getOpcodes();
+		int[] as = program.getA();
+		int[] bs = program.getB();
+		int[] cs = program.getC();
+		int[] constants = program.getConstants();
+		int[] registers = new int[Math.max(16, program.getMainFrameSize())];
+		int frame = 0;
+		// The instruction each CALL returns to, and the frame of its caller, innermost last.
+		int[] calls = new int[32];
+		int callDepth = 0;
+
+		int index = 0;
+		while (true)
+		{
+			switch (opcodes[index])
+			{
+				case MOVE:
+					registers[frame + as[index]] = get(registers, frame, constants, bs[index]);
+					index += 1;
+					break;
+				case JUMP:
+					index = as[index];
+					break;
+				case JUMP_IF_ZERO:
+					index = get(registers, frame, constants, bs[index]) == 0 ? as[index] : index + 1;
+					break;
+				case CALL:
+				{
+					int callee = frame + as[index];
+					if (callee + cs[index] > registers.length)
+					{
+						registers = Arrays.copyOf(registers, Math.max(2 * registers.length, callee + cs[index]));
+					}
+					if (2 * callDepth == calls.length)
+					{
+						calls = Arrays.copyOf(calls, 2 * calls.length);
+					}
+					calls[2 * callDepth] = index + 1;
+					calls[2 * callDepth + 1] = frame;
+					callDepth += 1;
+					frame = callee;
+					index = bs[index];
+					break;
+				}
+				case TAIL_CALL:
+				{
+					int size = frame + as[index] + cs[index];
+					if (size > registers.length)
+					{
+						registers = Arrays.copyOf(registers, Math.max(2 * registers.length, size));
+					}
+					System.arraycopy(registers, frame + as[index], registers, frame, cs[index]);
+					index = bs[index];
+					break;
+				}
+				case RETURN:
+					registers[frame] = get(registers, frame, constants, bs[index]);
+					callDepth -= 1;
+					index = calls[2 * callDepth];
+					frame = calls[2 * callDepth + 1];
+					break;
+				case READ:
+					registers[frame + as[index]] = ConsoleIO.read();
+					index += 1;
+					break;
+				case WRITE:
+					ConsoleIO.write(get(registers, frame, constants, bs[index]));
+					index += 1;
+					break;
+				case HALT:
+					return;
+				case DEOPTIMIZE:
+					deoptimize(index, registers, frame, calls, callDepth);
+					return;
+				case FAIL:
+					throw new IndexOutOfBoundsException("Ran past the last byte code " + (byteCodes.getSize() - 1));
+				case BOP + BopCode.ADD:
+					registers[frame + as[index]] = get(registers, frame, constants, bs[index])
+							+ get(registers, frame, constants, cs[index]);
+					index += 1;
+					break;
+				case BOP + BopCode.SUBTRACT:
+					registers[frame + as[index]] = get(registers, frame, constants, bs[index])
+							- get(registers, frame, constants, cs[index]);
+					index += 1;
+					break;
+				case BOP + BopCode.MULTIPLY:
+					registers[frame + as[index]] = get(registers, frame, constants, bs[index])
+							* get(registers, frame, constants, cs[index]);
+					index += 1;
+					break;
+				case BRANCH_UNLESS + BopCode.LESS:
+					index = get(registers, frame, constants, bs[index]) < get(registers, frame, constants, cs[index])
+							? index + 1 : as[index];
+					break;
+				case BRANCH_UNLESS + BopCode.LESS_EQUAL:
+					index = get(registers, frame, constants, bs[index]) <= get(registers, frame, constants, cs[index])
+							? index + 1 : as[index];
+					break;
+				case BRANCH_UNLESS + BopCode.GREATER_EQUAL:
+					index = get(registers, frame, constants, bs[index]) >= get(registers, frame, constants, cs[index])
+							? index + 1 : as[index];
+					break;
+				case BRANCH_UNLESS + BopCode.EQUAL:
+					index = get(registers, frame, constants, bs[index]) == get(registers, frame, constants, cs[index])
+							? index + 1 : as[index];
+					break;
+				default:
+				{
+					int opcode = opcodes[index];
+					int left = get(registers, frame, constants, bs[index]);
+					int right = get(registers, frame, constants, cs[index]);
+					if (opcode >= BRANCH_UNLESS)
+					{
+						index = BopCode.evaluate(opcode - BRANCH_UNLESS, left, right) != 0 ? index + 1 : as[index];
+					} else
+					{
+						registers[frame + as[index]] = BopCode.evaluate(opcode - BOP, left, right);
+						index += 1;
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of the specified operand: a register of the frame
+	 * that starts at the specified index, or a constant.
+	 */
+	private static int get(int[] registers, int frame, int[] constants, int operand)
+	{
+		return operand >= 0 ? registers[frame + operand] : constants[~operand];
+	}
+
+	/**
+	 * Runs the rest of the program on the VirtualMachine from the byte code
+	 * of the instruction at the specified index, with the stack it would hold
+	 * there.
+	 *
+	 * @param index the specified index of the instruction.
+	 * @param registers the specified registers.
+	 * @param frame the specified index of the current frame's first register.
+	 * @param calls the specified instruction each CALL returns to, and the
+	 * frame of its caller.
+	 * @param callDepth the specified number of calls.
+	 */
+	private void deoptimize(int index, int[] registers, int frame, int[] calls, int callDepth)
+	{
+		// Every frame below the current one is in its registers, since a CALL leaves nothing remembered.
+		int[] frameValues = program.getFrame(index, registers, frame);
+		int[] values = Arrays.copyOf(registers, frame + frameValues.length);
+		System.arraycopy(frameValues, 0, values, frame, frameValues.length);
+
+		int[] frames = new int[callDepth];
+		int[] returnAddrs = new int[callDepth];
+		for (int i = 0; i < callDepth; i++)
+		{
+			frames[i] = i + 1 < callDepth ? calls[2 * (i + 1) + 1] : frame;
+			returnAddrs[i] = program.getPC(calls[2 * i] - 1);
+		}
+
+		new VirtualMachine(byteCodes).resumeProgram(program.getPC(index), values, frames, returnAddrs);
+	}
+}
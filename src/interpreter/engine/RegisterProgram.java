@@ -0,0 +1,645 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.engine;
+
+import interpreter.Program;
+import interpreter.StackMap;
+import interpreter.bytecode.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A program translated from stacks into registers: the value at each depth
+ * of a frame is the register of that number, i.e. a slot of the frame, and
+ * every instruction names the registers it reads and writes.
+ *
+ * LIT and LOAD translate to nothing; the value they push is remembered as a
+ * constant or a copy of a register until it is needed in its own register,
+ * so LOAD 0 i; LIT 1; BOP +; STORE 0 i becomes the one instruction
+ * r0 = r0 + 1. Every value is in its own register where blocks meet, at a
+ * CALL, and before the register it copies changes.
+ *
+ * Each instruction keeps the byte code it came from, and the values that
+ * were only remembered there, so the stack the VirtualMachine would hold
+ * before that byte code can be rebuilt exactly, e.g. for a DUMP.
+ *
+ * Note: An operand is a register if it is not negative, and otherwise the
+ * constant at its complement, i.e. ~operand.
+ *
+ * @author mandynoto
+ */
+public final class RegisterProgram
+{
+
+	// The opcodes, with what they do to registers a, b, and c.
+	// r[a] = b
+	public static final int MOVE = 0;
+	// Continue at a.
+	public static final int JUMP = 1;
+	// Continue at a if b is 0.
+	public static final int JUMP_IF_ZERO = 2;
+	// Call the function at b with a frame of c registers from r[a].
+	public static final int CALL = 3;
+	// Return b into the first register of the frame.
+	public static final int RETURN = 4;
+	// r[a] = a value the user types.
+	public static final int READ = 5;
+	// Print b.
+	public static final int WRITE = 6;
+	public static final int HALT = 7;
+	// Stop, so the VirtualMachine runs from the byte code, i.e. a DUMP ON.
+	public static final int DEOPTIMIZE = 8;
+	// Control ran past the last byte code.
+	public static final int FAIL = 9;
+	// Move the c registers from r[a] to the frame's first, and continue at b.
+	public static final int TAIL_CALL = 10;
+	// r[a] = b op c; a BOP's opcode is its operator plus this.
+	public static final int BOP = 11;
+	// Continue at a unless b op c; a BOP that a FALSEBRANCH tests is its operator plus this.
+	public static final int BRANCH_UNLESS = BOP + 12;
+
+	// The mnemonic of each opcode below BOP, for reports.
+	private static final String[] NAMES =
+	{
+		"MOVE", "JUMP", "JUMP_IF_ZERO", "CALL", "RETURN", "READ", "WRITE", "HALT", "DEOPTIMIZE", "FAIL", "TAIL_CALL"
+	};
+
+	private final int[] opcodes;
+	private final int[] a;
+	private final int[] b;
+	private final int[] c;
+	private final int[] constants;
+	// The byte code each instruction came from.
+	private final int[] pcs;
+	// The values only remembered before each instruction, as pairs of depth and operand, or null.
+	private final int[][] remembered;
+	private final StackMap stackMap;
+	// The number of byte codes translated.
+	private final int codeCount;
+
+	/**
+	 * Constructs a register program from the specified translator.
+	 *
+	 * @param translator the specified translator, done translating.
+	 */
+	private RegisterProgram(Translator translator)
+	{
+		int count = translator.count;
+		this.opcodes = Arrays.copyOf(translator.opcodes, count);
+		this.a = Arrays.copyOf(translator.a, count);
+		this.b = Arrays.copyOf(translator.b, count);
+		this.c = Arrays.copyOf(translator.c, count);
+		this.constants = Arrays.copyOf(translator.constants, translator.constantCount);
+		this.pcs = Arrays.copyOf(translator.pcs, count);
+		this.remembered = Arrays.copyOf(translator.remembered, count);
+		this.stackMap = translator.stackMap;
+		this.codeCount = translator.program.getSize();
+	}
+
+	/**
+	 * Returns the specified program translated into registers, or null if it
+	 * cannot be: it is not verified, or it has a byte code that is not built
+	 * in, e.g. a debugger byte code, or a BOP whose operator is not known.
+	 *
+	 * @param program the specified program.
+	 * @return the register program, or null if it cannot be translated.
+	 */
+	public static RegisterProgram translate(Program program)
+	{
+		StackMap stackMap = program.getStackMap();
+		if (stackMap == null || program.getSize() == 0)
+		{
+			return null;
+		}
+
+		Translator translator = new Translator(program, stackMap);
+
+		return translator.translate() ? new RegisterProgram(translator) : null;
+	}
+
+	/**
+	 * Returns the opcodes of this program, one per instruction.
+	 *
+	 * @return the opcodes of this program.
+	 */
+	public int[] getOpcodes()
+	{
+		return opcodes;
+	}
+
+	/**
+	 * Returns the first operand of each instruction: the register it writes,
+	 * or where it continues.
+	 *
+	 * @return the first operands of this program.
+	 */
+	public int[] getA()
+	{
+		return a;
+	}
+
+	/**
+	 * Returns the second operand of each instruction: the value it reads
+	 * first, or the function it calls.
+	 *
+	 * @return the second operands of this program.
+	 */
+	public int[] getB()
+	{
+		return b;
+	}
+
+	/**
+	 * Returns the third operand of each instruction: the value it reads
+	 * second, or the frame size of the function it calls.
+	 *
+	 * @return the third operands of this program.
+	 */
+	public int[] getC()
+	{
+		return c;
+	}
+
+	/**
+	 * Returns the constants the operands of this program refer to.
+	 *
+	 * @return the constants of this program.
+	 */
+	public int[] getConstants()
+	{
+		return constants;
+	}
+
+	/**
+	 * Returns the number of registers main's frame needs.
+	 *
+	 * @return the frame size of main.
+	 */
+	public int getMainFrameSize()
+	{
+		return stackMap.getMaxDepth(0);
+	}
+
+	/**
+	 * Returns the number of instructions in this program.
+	 *
+	 * @return the number of instructions in this program.
+	 */
+	public int getSize()
+	{
+		return opcodes.length;
+	}
+
+	/**
+	 * Returns the program counter of the byte code the instruction at the
+	 * specified index came from.
+	 *
+	 * @param index the specified index.
+	 * @return the program counter of the byte code.
+	 */
+	public int getPC(int index)
+	{
+		return pcs[index];
+	}
+
+	/**
+	 * Returns the values of the current frame as the VirtualMachine holds
+	 * them before the byte code the instruction at the specified index came
+	 * from, given the specified registers, whose frame starts at the
+	 * specified index.
+	 *
+	 * @param index the specified index of the instruction.
+	 * @param registers the specified registers.
+	 * @param frame the specified index of the frame's first register.
+	 * @return the values of the frame, its first value first.
+	 */
+	public int[] getFrame(int index, int[] registers, int frame)
+	{
+		int[] values = Arrays.copyOfRange(registers, frame, frame + stackMap.getDepth(pcs[index]));
+		int[] pairs = remembered[index];
+		if (pairs != null)
+		{
+			for (int i = 0; i < pairs.length; i += 2)
+			{
+				int operand = pairs[i + 1];
+				values[pairs[i]] = operand >= 0 ? registers[frame + operand] : constants[~operand];
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Returns a report of how many instructions the byte codes became.
+	 *
+	 * @return a report of this program.
+	 */
+	public String getReport()
+	{
+		int[] counts = new int[BOP + 1];
+		for (int opcode : opcodes)
+		{
+			counts[Math.min(opcode, BOP)] += 1;
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append("****Register program****\n");
+		for (int opcode = 0; opcode < counts.length; opcode++)
+		{
+			if (counts[opcode] > 0)
+			{
+				report.append(String.format("%s: %d\n", opcode == BOP ? "BOP" : NAMES[opcode], counts[opcode]));
+			}
+		}
+		report.append(String.format("Translated %d byte codes into %d instructions\n", codeCount, opcodes.length));
+
+		return report.toString();
+	}
+
+	/**
+	 * Translates a program one byte code at a time, remembering what each
+	 * depth of the frame holds.
+	 */
+	private static final class Translator
+	{
+
+		// The value at a depth that is in its own register.
+		private static final int IN_REGISTER = Integer.MIN_VALUE;
+
+		private final Program program;
+		private final StackMap stackMap;
+
+		private int[] opcodes = new int[64];
+		private int[] a = new int[64];
+		private int[] b = new int[64];
+		private int[] c = new int[64];
+		private int[] pcs = new int[64];
+		private int[][] remembered = new int[64][];
+		private int count;
+
+		private int[] constants = new int[16];
+		private int constantCount;
+		private final HashMap<Integer, Integer> constantIndices = new HashMap<>();
+
+		// The operand of the value at each depth, or IN_REGISTER.
+		private final int[] values;
+		private int depth;
+		// The byte code being translated, and the values only remembered before it.
+		private int pc;
+		private int[] pairs;
+		// The last instruction if it is a BOP, whose result can be written elsewhere, or -1.
+		private int lastResult = -1;
+		// The argument count of the last ARGS.
+		private int argCount;
+
+		/**
+		 * Constructs a translator of the specified program with the specified
+		 * stack map.
+		 */
+		Translator(Program program, StackMap stackMap)
+		{
+			this.program = program;
+			this.stackMap = stackMap;
+
+			int maxDepth = 0;
+			for (int entry : stackMap.getFunctionEntries())
+			{
+				maxDepth = Math.max(maxDepth, stackMap.getMaxDepth(entry));
+			}
+			values = new int[maxDepth + 1];
+		}
+
+		/**
+		 * Translates the program, and returns whether it could.
+		 *
+		 * @return {@code true} if every byte code was translated.
+		 */
+		boolean translate()
+		{
+			int size = program.getSize();
+			boolean[] isJoin = new boolean[size + 1];
+			for (int i = 0; i < size; i++)
+			{
+				ByteCode code = program.getCode(i);
+				if (code instanceof CallCode)
+				{
+					isJoin[((CallCode) code).getAddress()] = true;
+					isJoin[i + 1] = true;
+				} else if (code instanceof BranchCode)
+				{
+					isJoin[((BranchCode) code).getAddress() + 1] = true;
+				}
+			}
+
+			// The first instruction of each byte code, to resolve jumps.
+			int[] indices = new int[size + 1];
+			boolean isFallThrough = false;
+			for (pc = 0; pc < size; pc++)
+			{
+				int codeDepth = stackMap.getDepth(pc);
+				if (codeDepth < 0)
+				{
+					isFallThrough = false;
+					continue;
+				}
+
+				if (!isFallThrough)
+				{
+					depth = codeDepth;
+					Arrays.fill(values, 0, depth, IN_REGISTER);
+				} else if (isJoin[pc])
+				{
+					remember();
+					storeAll();
+				}
+				if (!isFallThrough || isJoin[pc])
+				{
+					lastResult = -1;
+				}
+				if (depth != codeDepth)
+				{
+					return false;
+				}
+
+				indices[pc] = count;
+				remember();
+				ByteCode code = program.getCode(pc);
+				if (!isTranslatable(code))
+				{
+					return false;
+				}
+				isFallThrough = translate(code);
+			}
+
+			// Running past the last byte code, or jumping there, fails.
+			pc = size;
+			pairs = null;
+			indices[size] = count;
+			emit(FAIL, 0, 0, 0);
+
+			for (int i = 0; i < count; i++)
+			{
+				int opcode = opcodes[i];
+				if (opcode == JUMP || opcode == JUMP_IF_ZERO || opcode >= BRANCH_UNLESS)
+				{
+					a[i] = indices[a[i]];
+				} else if (opcode == CALL || opcode == TAIL_CALL)
+				{
+					b[i] = indices[b[i]];
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Returns {@code true} if the specified byte code can be translated.
+		 */
+		private static boolean isTranslatable(ByteCode code)
+		{
+			Class<?> type = code.getClass();
+			if (type == BopCode.class)
+			{
+				return ((BopCode) code).getOperator() != BopCode.UNKNOWN;
+			}
+
+			return type == LabelCode.class || type == DumpCode.class || type == HaltCode.class || type == PopCode.class
+					|| type == FalseBranchCode.class || type == GotoCode.class || type == CallCode.class
+					|| type == StoreCode.class || type == LoadCode.class || type == LitCode.class
+					|| type == ArgsCode.class || type == ReturnCode.class || type == ReadCode.class
+					|| type == WriteCode.class;
+		}
+
+		/**
+		 * Translates the specified byte code, and returns whether control
+		 * continues to the byte code after it.
+		 *
+		 * @param code the specified byte code.
+		 * @return {@code true} if control can continue after the byte code.
+		 */
+		private boolean translate(ByteCode code)
+		{
+			if (code instanceof LitCode)
+			{
+				values[depth++] = constant(((LitCode) code).getValue());
+			} else if (code instanceof LoadCode)
+			{
+				int offset = ((LoadCode) code).getOffset();
+				values[depth++] = values[offset] == IN_REGISTER ? offset : values[offset];
+			} else if (code instanceof StoreCode)
+			{
+				int offset = ((StoreCode) code).getOffset();
+				int result = lastResult;
+				int value = pop();
+				int before = count;
+				storeCopies(offset);
+
+				// The BOP that computed the value writes it where it is stored instead.
+				if (value == depth && result >= 0 && a[result] == depth && count == before)
+				{
+					a[result] = offset;
+				} else if (value != offset)
+				{
+					emit(MOVE, offset, value, 0);
+				}
+				values[offset] = IN_REGISTER;
+			} else if (code instanceof PopCode)
+			{
+				int levels = ((PopCode) code).getLevels();
+				// Main's frame is the whole stack, like the Verifier takes it.
+				depth = levels < depth || stackMap.getFunction(pc) != 0 ? depth - levels : depth;
+				lastResult = -1;
+			} else if (code instanceof BopCode)
+			{
+				int right = pop();
+				int left = pop();
+				storeCopies(depth);
+				emit(BOP + ((BopCode) code).getOperator(), depth, left, right);
+				values[depth++] = IN_REGISTER;
+				lastResult = count - 1;
+			} else if (code instanceof FalseBranchCode)
+			{
+				int landing = ((FalseBranchCode) code).getAddress() + 1;
+				int result = lastResult;
+				int condition = pop();
+				int before = count;
+				storeAll();
+
+				// The BOP that computed the condition branches itself.
+				if (condition == depth && result >= 0 && a[result] == depth && count == before)
+				{
+					opcodes[result] += BRANCH_UNLESS - BOP;
+					a[result] = landing;
+					lastResult = -1;
+				} else
+				{
+					emit(JUMP_IF_ZERO, landing, condition, 0);
+				}
+			} else if (code instanceof GotoCode)
+			{
+				storeAll();
+				emit(JUMP, ((GotoCode) code).getAddress() + 1, 0, 0);
+				return false;
+			} else if (code instanceof ArgsCode)
+			{
+				// The arguments become the first registers of the callee's frame.
+				storeAll();
+				argCount = ((ArgsCode) code).getArgCount();
+			} else if (code instanceof CallCode)
+			{
+				int entry = ((CallCode) code).getAddress();
+				depth -= argCount;
+				if (((CallCode) code).isTailCall())
+				{
+					// The callee's frame replaces this one, and returns where it would have.
+					emit(TAIL_CALL, depth, entry, stackMap.getMaxDepth(entry));
+					return false;
+				}
+				emit(CALL, depth, entry, stackMap.getMaxDepth(entry));
+				values[depth++] = IN_REGISTER;
+			} else if (code instanceof ReturnCode)
+			{
+				emit(RETURN, 0, pop(), 0);
+				return false;
+			} else if (code instanceof ReadCode)
+			{
+				storeCopies(depth);
+				emit(READ, depth, 0, 0);
+				values[depth++] = IN_REGISTER;
+			} else if (code instanceof WriteCode)
+			{
+				int value = values[depth - 1];
+				emit(WRITE, 0, value == IN_REGISTER ? depth - 1 : value, 0);
+			} else if (code instanceof HaltCode)
+			{
+				emit(HALT, 0, 0, 0);
+				return false;
+			} else if (code instanceof DumpCode && ((DumpCode) code).isOn())
+			{
+				emit(DEOPTIMIZE, 0, 0, 0);
+				return false;
+			}
+
+			// LABEL, and a DUMP that does not turn dumping on, do nothing.
+			return true;
+		}
+
+		/**
+		 * Pops the top value, and returns its operand.
+		 */
+		private int pop()
+		{
+			int value = values[--depth];
+
+			return value == IN_REGISTER ? depth : value;
+		}
+
+		/**
+		 * Returns the operand of the specified constant.
+		 */
+		private int constant(int value)
+		{
+			Integer index = constantIndices.get(value);
+			if (index == null)
+			{
+				if (constantCount == constants.length)
+				{
+					constants = Arrays.copyOf(constants, 2 * constantCount);
+				}
+				index = constantCount;
+				constants[constantCount++] = value;
+				constantIndices.put(value, index);
+			}
+
+			return ~index;
+		}
+
+		/**
+		 * Moves every value that is only remembered into its own register.
+		 */
+		private void storeAll()
+		{
+			for (int i = 0; i < depth; i++)
+			{
+				if (values[i] != IN_REGISTER)
+				{
+					emit(MOVE, i, values[i], 0);
+					values[i] = IN_REGISTER;
+				}
+			}
+		}
+
+		/**
+		 * Moves every value that is remembered as a copy of the specified
+		 * register into its own register, before the register changes.
+		 */
+		private void storeCopies(int register)
+		{
+			for (int i = 0; i < depth; i++)
+			{
+				if (values[i] == register)
+				{
+					emit(MOVE, i, register, 0);
+					values[i] = IN_REGISTER;
+				}
+			}
+		}
+
+		/**
+		 * Remembers the values that are only remembered before the byte code
+		 * being translated, for the instructions it emits.
+		 */
+		private void remember()
+		{
+			int remembered = 0;
+			for (int i = 0; i < depth; i++)
+			{
+				remembered += values[i] != IN_REGISTER ? 1 : 0;
+			}
+			if (remembered == 0)
+			{
+				pairs = null;
+				return;
+			}
+
+			pairs = new int[2 * remembered];
+			int next = 0;
+			for (int i = 0; i < depth; i++)
+			{
+				if (values[i] != IN_REGISTER)
+				{
+					pairs[next++] = i;
+					pairs[next++] = values[i];
+				}
+			}
+		}
+
+		/**
+		 * Adds an instruction of the specified opcode and operands.
+		 */
+		private void emit(int opcode, int first, int second, int third)
+		{
+			if (count == opcodes.length)
+			{
+				opcodes = Arrays.copyOf(opcodes, 2 * count);
+				a = Arrays.copyOf(a, 2 * count);
+				b = Arrays.copyOf(b, 2 * count);
+				c = Arrays.copyOf(c, 2 * count);
+				pcs = Arrays.copyOf(pcs, 2 * count);
+				remembered = Arrays.copyOf(remembered, 2 * count);
+			}
+
+			opcodes[count] = opcode;
+			a[count] = first;
+			b[count] = second;
+			c[count] = third;
+			pcs[count] = pc;
+			remembered[count] = pairs;
+			count += 1;
+			lastResult = -1;
+		}
+	}
+}
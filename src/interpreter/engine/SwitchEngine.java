@@ -0,0 +1,113 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.engine;
+
+import interpreter.bytecode.BopCode;
+
+import java.util.Arrays;
+
+import static interpreter.engine.LoweredProgram.*;
+
+/**
+ * Runs a lowered program in one loop that switches on each opcode, over a
+ * primitive run time stack.
+ *
+ * It prints exactly what the VirtualMachine prints for the same program.
+ *
+ * @author mandynoto
+ */
+public class SwitchEngine
+{
+
+	private final LoweredProgram program;
+
+	/**
+	 * Constructs an engine that runs the specified lowered program.
+	 *
+	 * @param program the specified lowered program.
+	 */
+	public SwitchEngine(LoweredProgram program)
+	{
+		this.program = program;
+	}
+
+	/**
+	 * Executes the program until it halts.
+	 */
+	public void executeProgram()
+	{
+		int[] opcodes = program.getOpcodes();
+		int[] operands = program.getOperands();
+		FrameStack stack = new FrameStack(program.getStackMap().getStackCapacity());
+		int[] returnAddrs = new int[16];
+		int callDepth = 0;
+
+		int pc = 0;
+		while (true)
+		{
+			int operand = operands[pc];
+			switch (opcodes[pc])
+			{
+				case NOP:
+					break;
+				case HALT:
+					return;
+				case POP:
+					stack.popLevels(operand);
+					break;
+				case FALSEBRANCH:
+					if (stack.pop() == 0)
+					{
+						pc = operand;
+					}
+					break;
+				case GOTO:
+					pc = operand;
+					break;
+				case STORE:
+					stack.store(operand);
+					break;
+				case LOAD:
+					stack.load(operand);
+					break;
+				case LIT:
+					stack.push(operand);
+					break;
+				case ARGS:
+					stack.newFrameAt(operand);
+					break;
+				case CALL:
+					if (callDepth == returnAddrs.length)
+					{
+						returnAddrs = Arrays.copyOf(returnAddrs, 2 * callDepth);
+					}
+					returnAddrs[callDepth++] = pc;
+					// Control lands on the function's LABEL, like it does for CallCode.
+					pc = operand;
+					continue;
+				case RETURN:
+					stack.reset();
+					pc = returnAddrs[--callDepth];
+					break;
+				case READ:
+					stack.push(ConsoleIO.read());
+					break;
+				case WRITE:
+					ConsoleIO.write(stack.peek());
+					break;
+				case POP2:
+					stack.pop();
+					stack.pop();
+					break;
+				default:
+					int right = stack.pop();
+					int left = stack.pop();
+					stack.push(BopCode.evaluate(opcodes[pc] - BOP, left, right));
+					break;
+			}
+			pc += 1;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+
+/**
+ * Lays out each if and else so the branch a profile ran more often falls
+ * through: when the FALSEBRANCH of
+ *
+ * condition; FALSEBRANCH else; then; GOTO continue; else; continue
+ *
+ * jumped more often than not, the comparison is inverted and the branches
+ * swap places:
+ *
+ * inverse; FALSEBRANCH then; else; GOTO continue; then; continue
+ *
+ * Note: Only codes with a profile are laid out, and only branches that
+ * nothing else jumps into, whose condition ends in a comparison.
+ *
+ * @author mandynoto
+ */
+public class BlockLayout implements Pass
+{
+
+	/**
+	 * Returns the name of this pass.
+	 */
+	@Override
+	public String getName()
+	{
+		return "block layout";
+	}
+
+	/**
+	 * Swaps the branches of every if and else of the specified codes whose
+	 * else ran more often than its then.
+	 */
+	@Override
+	public int run(CodeList codes)
+	{
+		if (!codes.isProfiled())
+		{
+			return 0;
+		}
+
+		int changed = 0;
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			if (codes.get(pc) instanceof FalseBranchCode)
+			{
+				changed += swap(codes, pc);
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Swaps the branches of the if and else of the FALSEBRANCH at the
+	 * specified program counter of the specified codes if its else ran more
+	 * often, and returns how many byte codes that changed.
+	 *
+	 * @param codes the specified codes.
+	 * @param test the specified program counter of the FALSEBRANCH.
+	 * @return the number of byte codes changed.
+	 */
+	private static int swap(CodeList codes, int test)
+	{
+		FalseBranchCode branch = (FalseBranchCode) codes.get(test);
+		long runs = codes.getCount(test);
+		long jumps = codes.getTaken(test);
+		int bop = codes.previous(test);
+		if (jumps <= runs - jumps || bop < 0 || codes.get(bop).getClass() != BopCode.class
+				|| !CodeList.INVERSES.containsKey(((BopCode) codes.get(bop)).getOperator()) || codes.isEntered(test))
+		{
+			return 0;
+		}
+
+		// The then runs from after the FALSEBRANCH to a GOTO past the else.
+		int thenStart = codes.next(test);
+		int elseStart = codes.next(branch.getAddress());
+		if (elseStart <= thenStart || elseStart >= codes.size())
+		{
+			return 0;
+		}
+		int thenEnd = codes.previous(elseStart);
+		if (thenEnd <= thenStart || !(codes.get(thenEnd) instanceof GotoCode))
+		{
+			return 0;
+		}
+		int end = codes.next(((GotoCode) codes.get(thenEnd)).getAddress());
+		if (end <= elseStart || end >= codes.size())
+		{
+			return 0;
+		}
+
+		// Only the FALSEBRANCH enters the branches from outside them.
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			if (!(codes.get(pc) instanceof BranchCode) || pc == test)
+			{
+				continue;
+			}
+
+			BranchCode jump = (BranchCode) codes.get(pc);
+			boolean isInside = pc > test && pc < end;
+			int landing = jump instanceof CallCode ? codes.getCallTarget(jump.getAddress()) : codes.next(jump.getAddress());
+			if ((jump instanceof CallCode || !isInside) && landing > test && landing < end)
+			{
+				return 0;
+			}
+		}
+
+		// The else, a GOTO past the then, and the then without its GOTO.
+		ArrayList<Integer> order = new ArrayList<>();
+		for (int pc = elseStart; pc < end; pc = codes.next(pc))
+		{
+			order.add(pc);
+		}
+		order.add(-1);
+		for (int pc = thenStart; pc < thenEnd; pc = codes.next(pc))
+		{
+			order.add(pc);
+		}
+
+		// Where each byte code of the branches goes; a jump to the old GOTO goes past the then.
+		int[] newPCs = new int[end - test];
+		int slot = test + 1;
+		for (int pc : order)
+		{
+			if (pc >= 0)
+			{
+				newPCs[pc - test] = slot;
+			}
+			slot += 1;
+		}
+		newPCs[thenEnd - test] = end;
+
+		ByteCode[] newCodes = new ByteCode[order.size()];
+		long[] newCounts = new long[order.size()];
+		long[] newTaken = new long[order.size()];
+		for (int i = 0; i < order.size(); i++)
+		{
+			int pc = order.get(i);
+			if (pc < 0)
+			{
+				newCodes[i] = CodeList.retarget((BranchCode) codes.get(thenEnd), end - 1);
+				newCounts[i] = jumps;
+				continue;
+			}
+
+			ByteCode code = codes.get(pc);
+			if (code instanceof BranchCode && !(code instanceof CallCode))
+			{
+				// A GOTO or FALSEBRANCH continues after its address.
+				int landing = codes.next(((BranchCode) code).getAddress());
+				code = CodeList.retarget((BranchCode) code, (landing > test && landing < end ? newPCs[landing - test] : landing) - 1);
+			}
+			newCodes[i] = code;
+			newCounts[i] = codes.getCount(pc);
+			newTaken[i] = codes.getTaken(pc);
+		}
+
+		for (int pc = test + 1; pc < end; pc++)
+		{
+			codes.remove(pc);
+		}
+		for (int i = 0; i < newCodes.length; i++)
+		{
+			codes.set(test + 1 + i, newCodes[i]);
+			codes.setCount(test + 1 + i, newCounts[i], newTaken[i]);
+		}
+		codes.set(bop, CodeList.newBop(CodeList.INVERSES.get(((BopCode) codes.get(bop)).getOperator())));
+		codes.set(test, CodeList.retarget(branch, newPCs[thenStart - test] - 1));
+		codes.setCount(test, runs, runs - jumps);
+		codes.findEntries();
+
+		return newCodes.length + 2;
+	}
+}
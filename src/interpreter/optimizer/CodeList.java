@@ -0,0 +1,582 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.Profile;
+import interpreter.Program;
+import interpreter.StackMap;
+import interpreter.VerificationException;
+import interpreter.Verifier;
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The byte codes of a program while the Optimizer rewrites them.
+ *
+ * A removed byte code leaves a hole, so every address stays the same while
+ * the passes run; jumps keep their addresses, and continue at the first byte
+ * code after their target that is not removed. The holes are closed, and
+ * the addresses moved, only once every pass is done.
+ *
+ * Note: A rewritten jump is a new byte code, so the program the codes came
+ * from is never changed.
+ *
+ * The counts of the program's profile, if it has one, move along with the
+ * byte codes, so every pass sees how often each of them ran.
+ *
+ * @author mandynoto
+ */
+public final class CodeList
+{
+
+	// The byte code that fills a hole while the codes are verified.
+	private static final ByteCode HOLE = new LabelCode();
+
+	// The inverse of each comparison, by its operator.
+	static final Map<Integer, Integer> INVERSES = Map.of(
+			BopCode.EQUAL, BopCode.NOT_EQUAL, BopCode.NOT_EQUAL, BopCode.EQUAL,
+			BopCode.LESS, BopCode.GREATER_EQUAL, BopCode.GREATER_EQUAL, BopCode.LESS,
+			BopCode.LESS_EQUAL, BopCode.GREATER, BopCode.GREATER, BopCode.LESS_EQUAL);
+
+	private ByteCode[] codes;
+	// True at each program counter that is entered other than from the byte code before it.
+	private boolean[] isEntry;
+	// What the Verifier learned about the codes as they are, or null until asked.
+	private StackMap stackMap;
+	// The times each byte code ran, and each FALSEBRANCH jumped, or null without a profile.
+	private long[] counts;
+	private long[] taken;
+
+	/**
+	 * Constructs the byte codes of the specified program.
+	 *
+	 * @param program the specified program.
+	 */
+	CodeList(Program program)
+	{
+		codes = program.toArray();
+		isEntry = new boolean[codes.length + 1];
+
+		Profile profile = program.getProfile();
+		if (profile != null && profile.getSize() == codes.length)
+		{
+			counts = new long[codes.length];
+			taken = new long[codes.length];
+			for (int pc = 0; pc < codes.length; pc++)
+			{
+				counts[pc] = profile.getCount(pc);
+				taken[pc] = profile.getTaken(pc);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of program counters, removed or not.
+	 *
+	 * @return the number of program counters.
+	 */
+	public int size()
+	{
+		return codes.length;
+	}
+
+	/**
+	 * Returns the byte code at the specified program counter.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the byte code, or null if it is removed.
+	 */
+	public ByteCode get(int pc)
+	{
+		return codes[pc];
+	}
+
+	/**
+	 * Replaces the byte code at the specified program counter with the
+	 * specified one.
+	 *
+	 * @param pc the specified program counter.
+	 * @param code the specified byte code.
+	 */
+	public void set(int pc, ByteCode code)
+	{
+		codes[pc] = code;
+		stackMap = null;
+	}
+
+	/**
+	 * Returns {@code true} if the program the codes came from has a profile.
+	 *
+	 * @return {@code true} if the codes are profiled.
+	 */
+	public boolean isProfiled()
+	{
+		return counts != null;
+	}
+
+	/**
+	 * Returns the times the byte code at the specified program counter ran in
+	 * the profile, or 0 if there is none.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the times the byte code ran.
+	 */
+	public long getCount(int pc)
+	{
+		return counts != null ? counts[pc] : 0;
+	}
+
+	/**
+	 * Returns the times the FALSEBRANCH at the specified program counter
+	 * jumped in the profile, or 0 if there is none.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the times the byte code jumped.
+	 */
+	public long getTaken(int pc)
+	{
+		return taken != null ? taken[pc] : 0;
+	}
+
+	/**
+	 * Sets the times the byte code at the specified program counter ran, and
+	 * jumped if it is a FALSEBRANCH, when the codes are profiled.
+	 *
+	 * @param pc the specified program counter.
+	 * @param count the specified times it ran.
+	 * @param jumps the specified times it jumped.
+	 */
+	public void setCount(int pc, long count, long jumps)
+	{
+		if (counts != null)
+		{
+			counts[pc] = count;
+			taken[pc] = jumps;
+		}
+	}
+
+	/**
+	 * Removes the byte code at the specified program counter; the first byte
+	 * code of the program is never removed, so a jump always lands after it.
+	 *
+	 * @param pc the specified program counter.
+	 * @return {@code true} if the byte code was removed.
+	 */
+	public boolean remove(int pc)
+	{
+		if (pc == 0 || codes[pc] == null)
+		{
+			return false;
+		}
+
+		codes[pc] = null;
+		stackMap = null;
+		return true;
+	}
+
+	/**
+	 * Inserts the specified byte codes before the one at the specified
+	 * program counter, moving the address of every jump past them.
+	 *
+	 * The jumps of the inserted codes are given as if nothing was inserted.
+	 *
+	 * @param pc the specified program counter.
+	 * @param isJumpTarget {@code true} if the jumps that landed on the byte
+	 * code at the program counter land on the inserted codes instead, or
+	 * {@code false} if the inserted codes are only reached from the byte code
+	 * before them.
+	 * @param inserted the specified byte codes.
+	 */
+	public void insert(int pc, boolean isJumpTarget, ByteCode... inserted)
+	{
+		insert(new int[]
+		{
+			pc
+		}, isJumpTarget, new ByteCode[][]
+		{
+			inserted
+		});
+	}
+
+	/**
+	 * Inserts each of the specified blocks of byte codes before the one at the
+	 * program counter of the same index, like insert does with one block.
+	 *
+	 * @param pcs the specified program counters, in increasing order.
+	 * @param isJumpTarget {@code true} if the jumps that landed on the byte
+	 * code at each program counter land on its block instead.
+	 * @param inserted the specified blocks of byte codes.
+	 */
+	public void insert(int[] pcs, boolean isJumpTarget, ByteCode[][] inserted)
+	{
+		// The codes inserted before each block, and in all.
+		int[] before = new int[pcs.length + 1];
+		for (int i = 0; i < pcs.length; i++)
+		{
+			before[i + 1] = before[i] + inserted[i].length;
+		}
+		ByteCode[] oldCodes = codes;
+		ByteCode[] newCodes = new ByteCode[oldCodes.length + before[pcs.length]];
+		int from = 0;
+		for (int i = 0; i < pcs.length; i++)
+		{
+			System.arraycopy(oldCodes, from, newCodes, from + before[i], pcs[i] - from);
+			System.arraycopy(inserted[i], 0, newCodes, pcs[i] + before[i], inserted[i].length);
+			from = pcs[i];
+		}
+		System.arraycopy(oldCodes, from, newCodes, from + before[pcs.length], oldCodes.length - from);
+
+		// The inserted codes run as often as the byte code they come before.
+		if (counts != null)
+		{
+			long[] newCounts = new long[newCodes.length];
+			long[] newTaken = new long[newCodes.length];
+			from = 0;
+			for (int i = 0; i <= pcs.length; i++)
+			{
+				int to = i < pcs.length ? pcs[i] : oldCodes.length;
+				System.arraycopy(counts, from, newCounts, from + before[i], to - from);
+				System.arraycopy(taken, from, newTaken, from + before[i], to - from);
+				if (i < pcs.length)
+				{
+					Arrays.fill(newCounts, pcs[i] + before[i], pcs[i] + before[i + 1], to < oldCodes.length ? counts[to] : 0);
+				}
+				from = to;
+			}
+			counts = newCounts;
+			taken = newTaken;
+		}
+
+		for (int i = 0; i < newCodes.length; i++)
+		{
+			if (!(newCodes[i] instanceof BranchCode))
+			{
+				continue;
+			}
+
+			// Where the jump lands among the old codes, and how far that moved.
+			BranchCode branch = (BranchCode) newCodes[i];
+			boolean isCall = branch instanceof CallCode;
+			int landing = isCall ? getCallTarget(branch.getAddress()) : next(branch.getAddress());
+			int block = Arrays.binarySearch(pcs, landing);
+			int shift = block >= 0 ? before[isJumpTarget ? block : block + 1] : before[-block - 1];
+			if (shift > 0)
+			{
+				newCodes[i] = retarget(branch, isCall ? landing + shift : landing + shift - 1);
+			}
+		}
+
+		codes = newCodes;
+		isEntry = new boolean[codes.length + 1];
+		findEntries();
+		stackMap = null;
+	}
+
+	/**
+	 * Returns what the Verifier learns about the codes as they are, where a
+	 * hole does nothing, or null if it rejects them.
+	 *
+	 * @return the stack map of the codes, or null if they are rejected.
+	 */
+	public StackMap getStackMap()
+	{
+		if (stackMap == null)
+		{
+			Program program = new Program();
+			for (ByteCode code : codes)
+			{
+				program.add(code != null ? code : HOLE);
+			}
+
+			try
+			{
+				stackMap = Verifier.verify(program);
+			} catch (VerificationException e)
+			{
+				return null;
+			}
+		}
+
+		return stackMap;
+	}
+
+	/**
+	 * Returns the program counter of the first byte code after the specified
+	 * one that is not removed.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the program counter of the next byte code, or the size if there
+	 * is none.
+	 */
+	public int next(int pc)
+	{
+		int next = pc + 1;
+		while (next < codes.length && codes[next] == null)
+		{
+			next += 1;
+		}
+
+		return next;
+	}
+
+	/**
+	 * Returns the program counter of the last byte code before the specified
+	 * one that is not removed.
+	 *
+	 * @param pc the specified program counter.
+	 * @return the program counter of the previous byte code, or -1 if there
+	 * is none.
+	 */
+	public int previous(int pc)
+	{
+		int previous = pc - 1;
+		while (previous >= 0 && codes[previous] == null)
+		{
+			previous -= 1;
+		}
+
+		return previous;
+	}
+
+	/**
+	 * Returns the program counter a CALL to the specified address runs
+	 * first, i.e. the address itself unless it is removed.
+	 *
+	 * @param address the specified address.
+	 * @return the program counter the CALL runs first.
+	 */
+	public int getCallTarget(int address)
+	{
+		return codes[address] != null ? address : next(address);
+	}
+
+	/**
+	 * Returns {@code true} if control can reach the byte code at the
+	 * specified program counter other than from the byte code before it,
+	 * e.g. from a jump, as of the last findEntries.
+	 *
+	 * @param pc the specified program counter.
+	 * @return {@code true} if the byte code is entered by a jump.
+	 */
+	public boolean isEntered(int pc)
+	{
+		// A jump to a removed byte code lands on the next one.
+		for (int entry = pc; entry >= 0; entry--)
+		{
+			if (entry < pc && codes[entry] != null)
+			{
+				return false;
+			}
+			if (isEntry[entry])
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Finds every program counter that is entered other than from the byte
+	 * code before it: the start, the landing of every jump, and the return
+	 * from every CALL.
+	 */
+	void findEntries()
+	{
+		Arrays.fill(isEntry, false);
+		isEntry[0] = true;
+		for (int pc = 0; pc < codes.length; pc++)
+		{
+			if (codes[pc] instanceof CallCode)
+			{
+				isEntry[((BranchCode) codes[pc]).getAddress()] = true;
+				isEntry[pc + 1] = true;
+			} else if (codes[pc] instanceof BranchCode)
+			{
+				isEntry[((BranchCode) codes[pc]).getAddress() + 1] = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the specified jump that jumps to the specified
+	 * address instead.
+	 *
+	 * @param branch the specified jump.
+	 * @param address the specified address.
+	 * @return the new jump.
+	 */
+	public static BranchCode retarget(BranchCode branch, int address)
+	{
+		BranchCode copy;
+		if (branch instanceof CallCode)
+		{
+			copy = new CallCode();
+		} else if (branch instanceof GotoCode)
+		{
+			copy = new GotoCode();
+		} else
+		{
+			copy = new FalseBranchCode();
+		}
+
+		return init(copy, branch.getLabel(), address);
+	}
+
+	/**
+	 * Returns a new GOTO to the specified label at the specified address.
+	 *
+	 * @param label the specified label.
+	 * @param address the specified address.
+	 * @return the new GOTO.
+	 */
+	public static GotoCode newGoto(String label, int address)
+	{
+		return init(new GotoCode(), label, address);
+	}
+
+	/**
+	 * Returns the specified jump initialized to the specified label at the
+	 * specified address.
+	 */
+	private static <T extends BranchCode> T init(T branch, String label, int address)
+	{
+		branch.init(new ArrayList<>(List.of(label)));
+		branch.setAddress(address);
+
+		return branch;
+	}
+
+	/**
+	 * Returns a new LIT byte code that pushes the specified value.
+	 *
+	 * @param value the specified value.
+	 * @return the new LIT byte code.
+	 */
+	public static LitCode newLit(int value)
+	{
+		LitCode lit = new LitCode();
+		lit.init(new ArrayList<>(List.of(Integer.toString(value))));
+
+		return lit;
+	}
+
+	/**
+	 * Returns a new LOAD of the specified slot, named by the specified name.
+	 *
+	 * @param offset the specified slot.
+	 * @param name the specified name.
+	 * @return the new LOAD byte code.
+	 */
+	public static LoadCode newLoad(int offset, String name)
+	{
+		LoadCode load = new LoadCode();
+		load.init(new ArrayList<>(List.of(Integer.toString(offset), name)));
+
+		return load;
+	}
+
+	/**
+	 * Returns a new STORE into the specified slot, named by the specified
+	 * name.
+	 *
+	 * @param offset the specified slot.
+	 * @param name the specified name.
+	 * @return the new STORE byte code.
+	 */
+	public static StoreCode newStore(int offset, String name)
+	{
+		StoreCode store = new StoreCode();
+		store.init(new ArrayList<>(List.of(Integer.toString(offset), name)));
+
+		return store;
+	}
+
+	/**
+	 * Returns a new BOP of the specified operator.
+	 *
+	 * @param operator the specified operator.
+	 * @return the new BOP byte code.
+	 */
+	public static BopCode newBop(int operator)
+	{
+		BopCode bop = new BopCode();
+		bop.init(new ArrayList<>(List.of(BopCode.getSymbol(operator))));
+
+		return bop;
+	}
+
+	/**
+	 * Returns a new POP of the specified number of levels.
+	 *
+	 * @param levels the specified number of levels.
+	 * @return the new POP byte code.
+	 */
+	public static PopCode newPop(int levels)
+	{
+		PopCode pop = new PopCode();
+		pop.init(new ArrayList<>(List.of(Integer.toString(levels))));
+
+		return pop;
+	}
+
+	/**
+	 * Adds the byte codes that are not removed to the specified empty
+	 * program, moving the address of every jump to where its target lands
+	 * now, and gives it the counts of the codes as its profile.
+	 *
+	 * @param program the specified empty program.
+	 * @return the program.
+	 */
+	Program toProgram(Program program)
+	{
+		int[] newPCs = new int[codes.length + 1];
+		int size = 0;
+		for (int pc = 0; pc < codes.length; pc++)
+		{
+			newPCs[pc] = size;
+			size += codes[pc] != null ? 1 : 0;
+		}
+		newPCs[codes.length] = size;
+
+		if (counts != null)
+		{
+			long[] newCounts = new long[size];
+			long[] newTaken = new long[size];
+			for (int pc = 0; pc < codes.length; pc++)
+			{
+				if (codes[pc] != null)
+				{
+					newCounts[newPCs[pc]] = counts[pc];
+					newTaken[newPCs[pc]] = taken[pc];
+				}
+			}
+			program.setProfile(new Profile(newCounts, newTaken));
+		}
+
+		for (ByteCode code : codes)
+		{
+			if (code instanceof CallCode)
+			{
+				code = retarget((BranchCode) code, newPCs[getCallTarget(((BranchCode) code).getAddress())]);
+			} else if (code instanceof BranchCode)
+			{
+				// GOTO and FALSEBRANCH continue after their address.
+				code = retarget((BranchCode) code, newPCs[next(((BranchCode) code).getAddress())] - 1);
+			}
+
+			if (code != null)
+			{
+				program.add(code);
+			}
+		}
+
+		return program;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.bytecode.*;
+
+/**
+ * Folds operators on literals, e.g. LIT 2; LIT 3; BOP * into LIT 6, and
+ * branches on a literal, e.g. LIT 0; FALSEBRANCH else into GOTO else.
+ *
+ * A division by a literal zero is left alone, so it still fails when it
+ * runs, and so is a sequence that a jump enters in the middle.
+ *
+ * @author mandynoto
+ */
+public class ConstantFolding implements Pass
+{
+
+	/**
+	 * Returns the name of this pass.
+	 */
+	@Override
+	public String getName()
+	{
+		return "constant folding";
+	}
+
+	/**
+	 * Folds every operator and branch on literals of the specified codes.
+	 */
+	@Override
+	public int run(CodeList codes)
+	{
+		int changed = 0;
+		// The first byte code is never removed, so folding starts after it.
+		for (int pc = 1; pc < codes.size(); pc++)
+		{
+			if (!isLit(codes, pc))
+			{
+				continue;
+			}
+
+			int second = codes.next(pc);
+			if (second >= codes.size() || codes.isEntered(second))
+			{
+				continue;
+			}
+
+			if (codes.get(second) instanceof FalseBranchCode)
+			{
+				// A false literal always branches, and a true one never does.
+				if (((LitCode) codes.get(pc)).getValue() == 0)
+				{
+					BranchCode branch = (BranchCode) codes.get(second);
+					codes.set(second, CodeList.newGoto(branch.getLabel(), branch.getAddress()));
+				} else
+				{
+					codes.remove(second);
+				}
+				codes.remove(pc);
+				changed += 2;
+				continue;
+			}
+
+			int third = codes.next(second);
+			if (!isLit(codes, second) || third >= codes.size() || codes.isEntered(third)
+					|| codes.get(third).getClass() != BopCode.class)
+			{
+				continue;
+			}
+
+			int operator = ((BopCode) codes.get(third)).getOperator();
+			int left = ((LitCode) codes.get(pc)).getValue();
+			int right = ((LitCode) codes.get(second)).getValue();
+			if (operator == BopCode.UNKNOWN || (operator == BopCode.DIVIDE && right == 0))
+			{
+				continue;
+			}
+
+			// The result takes the place of the BOP, so it can fold again with what follows.
+			codes.set(third, CodeList.newLit(BopCode.evaluate(operator, left, right)));
+			codes.remove(pc);
+			codes.remove(second);
+			changed += 3;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns {@code true} if the byte code at the specified program counter
+	 * is a LIT.
+	 */
+	private static boolean isLit(CodeList codes, int pc)
+	{
+		return codes.get(pc) != null && codes.get(pc).getClass() == LitCode.class;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayDeque;
+
+/**
+ * Removes the byte codes control never reaches, e.g. the POP after a
+ * RETURN, by following every path from the start and from every CALL.
+ *
+ * @author mandynoto
+ */
+public class DeadCodeRemoval implements Pass
+{
+
+	/**
+	 * Returns the name of this pass.
+	 */
+	@Override
+	public String getName()
+	{
+		return "dead code removal";
+	}
+
+	/**
+	 * Removes every byte code of the specified codes that is not reached.
+	 */
+	@Override
+	public int run(CodeList codes)
+	{
+		boolean[] isReached = new boolean[codes.size() + 1];
+		ArrayDeque<Integer> work = new ArrayDeque<>();
+		isReached[0] = true;
+		work.push(0);
+
+		while (!work.isEmpty())
+		{
+			int pc = work.pop();
+			ByteCode code = codes.get(pc);
+			if (code instanceof HaltCode || code instanceof ReturnCode)
+			{
+				continue;
+			}
+
+			if (code instanceof CallCode)
+			{
+				// The CALL comes back to the byte code after it.
+				reach(isReached, work, codes.getCallTarget(((CallCode) code).getAddress()));
+				reach(isReached, work, codes.next(pc));
+			} else if (code instanceof GotoCode)
+			{
+				reach(isReached, work, codes.next(((GotoCode) code).getAddress()));
+			} else if (code instanceof FalseBranchCode)
+			{
+				reach(isReached, work, codes.next(((FalseBranchCode) code).getAddress()));
+				reach(isReached, work, codes.next(pc));
+			} else
+			{
+				reach(isReached, work, codes.next(pc));
+			}
+		}
+
+		int changed = 0;
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			if (!isReached[pc] && codes.remove(pc))
+			{
+				changed += 1;
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Marks the specified program counter reached, and follows it if it was
+	 * not reached before.
+	 */
+	private static void reach(boolean[] isReached, ArrayDeque<Integer> work, int pc)
+	{
+		// Running past the last byte code reaches nothing.
+		if (!isReached[pc])
+		{
+			isReached[pc] = true;
+			if (pc < isReached.length - 1)
+			{
+				work.push(pc);
+			}
+		}
+	}
+}
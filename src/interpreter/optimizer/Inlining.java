@@ -0,0 +1,395 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.StackMap;
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Copies the body of a small function that never calls itself, even through
+ * other functions, into its callers in place of their ARGS and CALL, so no
+ * frame is pushed or popped for it.
+ *
+ * The arguments the caller pushed become the first slots of the inlined
+ * frame: every LOAD and STORE of the body moves up by the caller's depth
+ * below them. A RETURN stores its value into the first of those slots, pops
+ * the rest of the inlined frame, and jumps past the CALL it replaces. So the
+ * inlined byte codes LOAD, STORE, and POP slots above the caller's frame:
+ * a later pass that follows the stack, e.g. LoopOptimization, must not take
+ * them for an expression of the caller.
+ *
+ * With a profile, only the calls that ran are inlined, the most frequent
+ * first, and larger functions are inlined into them.
+ *
+ * Note: Only functions of plain byte codes are inlined. A function with the
+ * debugger's byte codes, e.g. FUNCTION and LINE, keeps its CALL, so a
+ * debugging session still shows its frame on the call stack.
+ *
+ * @author mandynoto
+ */
+public class Inlining implements Pass
+{
+
+	// The most byte codes, not counting labels, of a function that is inlined,
+	// and of one inlined where a profile shows the call ran.
+	private static final int MAX_INLINED_SIZE = 16;
+	private static final int MAX_PROFILED_INLINED_SIZE = 32;
+
+	/**
+	 * Returns the name of this pass.
+	 */
+	@Override
+	public String getName()
+	{
+		return "inlining";
+	}
+
+	/**
+	 * Inlines the calls of the specified codes to small functions that never
+	 * call themselves, until the codes have grown by as many byte codes as
+	 * they had.
+	 */
+	@Override
+	public int run(CodeList codes)
+	{
+		int changed = 0;
+		int budget = 0;
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			budget += codes.get(pc) != null ? 1 : 0;
+		}
+
+		boolean isNested = true;
+		while (budget > 0 && isNested)
+		{
+			// The inlined calls that call an inlinable function are inlined with the next stack map.
+			StackMap stackMap = codes.getStackMap();
+			if (stackMap == null)
+			{
+				return changed;
+			}
+
+			HashMap<Integer, List<Integer>> bodies = findInlinable(codes, stackMap,
+					codes.isProfiled() ? MAX_PROFILED_INLINED_SIZE : MAX_INLINED_SIZE);
+
+			// A profile inlines only the calls that ran, the most frequent first.
+			ArrayList<Integer> calls = new ArrayList<>();
+			for (int pc = 0; pc < codes.size(); pc++)
+			{
+				if (codes.get(pc) instanceof CallCode && bodies.containsKey(((CallCode) codes.get(pc)).getAddress())
+						&& stackMap.getFunction(pc) >= 0 && (!codes.isProfiled() || codes.getCount(pc) > 0))
+				{
+					calls.add(pc);
+				}
+			}
+			if (codes.isProfiled())
+			{
+				calls.sort((a, b) -> Long.compare(codes.getCount(b), codes.getCount(a)));
+			}
+
+			ArrayList<Site> sites = new ArrayList<>();
+			isNested = false;
+			for (int i = 0; i < calls.size() && budget > 0; i++)
+			{
+				int pc = calls.get(i);
+				Site site = newSite(codes, stackMap, pc, bodies.get(((CallCode) codes.get(pc)).getAddress()));
+				if (site != null && site.codes.length <= budget)
+				{
+					sites.add(site);
+					budget -= site.codes.length;
+					for (ByteCode code : site.codes)
+					{
+						isNested |= code instanceof CallCode && bodies.containsKey(((CallCode) code).getAddress());
+					}
+				}
+			}
+			if (sites.isEmpty())
+			{
+				return changed;
+			}
+			sites.sort((a, b) -> Integer.compare(a.args, b.args));
+
+			changed += inline(codes, sites);
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns the byte codes of each function of the specified codes that can
+	 * be inlined, by its entry: it is small, made of plain byte codes, and
+	 * never calls itself.
+	 *
+	 * @param codes the specified codes.
+	 * @param stackMap the specified stack map of the codes.
+	 * @param maxSize the specified most byte codes of a small function.
+	 * @return the program counters of each inlinable function, in order.
+	 */
+	private static HashMap<Integer, List<Integer>> findInlinable(CodeList codes, StackMap stackMap, int maxSize)
+	{
+		HashMap<Integer, List<Integer>> bodies = new HashMap<>();
+		HashMap<Integer, List<Integer>> callees = new HashMap<>();
+		HashMap<Integer, Integer> sizes = new HashMap<>();
+		for (int entry : stackMap.getFunctionEntries())
+		{
+			bodies.put(entry, new ArrayList<>());
+			callees.put(entry, new ArrayList<>());
+			sizes.put(entry, 0);
+		}
+
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			int function = stackMap.getFunction(pc);
+			ByteCode code = codes.get(pc);
+			if (function <= 0 || code == null)
+			{
+				continue;
+			}
+
+			if (code instanceof CallCode)
+			{
+				callees.get(function).add(((CallCode) code).getAddress());
+			}
+			if (!isPlain(code))
+			{
+				bodies.remove(function);
+			}
+			if (!bodies.containsKey(function))
+			{
+				continue;
+			}
+			if (!(code instanceof LabelCode))
+			{
+				sizes.put(function, sizes.get(function) + 1);
+			}
+			bodies.get(function).add(pc);
+		}
+
+		bodies.remove(0);
+		bodies.keySet().removeIf(entry -> sizes.get(entry) > maxSize || isRecursive(entry, callees));
+
+		return bodies;
+	}
+
+	/**
+	 * Returns {@code true} if the specified byte code can be copied into
+	 * another function, i.e. it is one the compiler emits outside a
+	 * debugging session.
+	 */
+	private static boolean isPlain(ByteCode code)
+	{
+		Class<?> type = code.getClass();
+
+		return type == LabelCode.class || type == LitCode.class || type == LoadCode.class || type == StoreCode.class
+				|| type == BopCode.class || type == PopCode.class || type == ArgsCode.class || type == CallCode.class
+				|| type == ReturnCode.class || type == FalseBranchCode.class || type == GotoCode.class
+				|| type == ReadCode.class || type == WriteCode.class || type == HaltCode.class;
+	}
+
+	/**
+	 * Returns {@code true} if the function at the specified entry can call
+	 * itself through the specified callees of each function.
+	 */
+	private static boolean isRecursive(int entry, HashMap<Integer, List<Integer>> callees)
+	{
+		ArrayList<Integer> work = new ArrayList<>(callees.get(entry));
+		HashMap<Integer, Boolean> isVisited = new HashMap<>();
+		while (!work.isEmpty())
+		{
+			int function = work.remove(work.size() - 1);
+			if (function == entry)
+			{
+				return true;
+			}
+			if (isVisited.put(function, true) == null && callees.containsKey(function))
+			{
+				work.addAll(callees.get(function));
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the byte codes that replace the ARGS and the specified CALL of
+	 * the specified codes with the specified body of the function it calls,
+	 * or null if the call cannot be inlined.
+	 *
+	 * @param codes the specified codes.
+	 * @param stackMap the specified stack map of the codes.
+	 * @param call the specified program counter of the CALL.
+	 * @param body the specified program counters of the function.
+	 * @return the inlined call, or null if it cannot be inlined.
+	 */
+	private static Site newSite(CodeList codes, StackMap stackMap, int call, List<Integer> body)
+	{
+		CallCode callCode = (CallCode) codes.get(call);
+		int entry = callCode.getAddress();
+		int args = codes.previous(call);
+		if (args < 0 || !(codes.get(args) instanceof ArgsCode) || codes.isEntered(call)
+				|| ((ArgsCode) codes.get(args)).getArgCount() != stackMap.getArgCount(entry))
+		{
+			return null;
+		}
+		// The arguments are the slots from the base up.
+		int base = stackMap.getDepth(args) - stackMap.getArgCount(entry);
+		boolean isMain = stackMap.getFunction(call) == 0;
+
+		ArrayList<ByteCode> inlined = new ArrayList<>();
+		// Where the byte codes of each program counter of the body start among the inlined ones.
+		HashMap<Integer, Integer> starts = new HashMap<>();
+		// Each inlined GOTO and FALSEBRANCH, and the program counter it lands on, or -1 past the CALL.
+		ArrayList<int[]> jumps = new ArrayList<>();
+		int last = body.get(body.size() - 1);
+		for (int pc : body)
+		{
+			starts.put(pc, inlined.size());
+			ByteCode code = codes.get(pc);
+			if (code instanceof LoadCode)
+			{
+				inlined.add(CodeList.newLoad(base + ((LoadCode) code).getOffset(), ((LoadCode) code).getName()));
+			} else if (code instanceof StoreCode)
+			{
+				inlined.add(CodeList.newStore(base + ((StoreCode) code).getOffset(), ((StoreCode) code).getName()));
+			} else if (code instanceof PopCode)
+			{
+				// Main's POP only pops below the top of the whole stack, which a function's can reach.
+				int levels = ((PopCode) code).getLevels();
+				if (isMain && levels > 0 && levels >= base + stackMap.getDepth(pc))
+				{
+					return null;
+				}
+				inlined.add(code);
+			} else if (code instanceof CallCode)
+			{
+				inlined.add(CodeList.retarget((BranchCode) code, ((CallCode) code).getAddress()));
+			} else if (code instanceof BranchCode)
+			{
+				int landing = codes.next(((BranchCode) code).getAddress());
+				if (landing >= codes.size() || stackMap.getFunction(landing) != entry)
+				{
+					return null;
+				}
+				jumps.add(new int[]
+				{
+					inlined.size(), landing
+				});
+				inlined.add(code);
+			} else if (code instanceof ReturnCode)
+			{
+				// The value goes where the first argument was, and the rest of the frame goes.
+				int depth = stackMap.getDepth(pc);
+				if (depth > 1)
+				{
+					inlined.add(CodeList.newStore(base, callCode.getLabel()));
+				}
+				if (depth > 2)
+				{
+					inlined.add(CodeList.newPop(depth - 2));
+				}
+				if (pc != last)
+				{
+					jumps.add(new int[]
+					{
+						inlined.size(), -1
+					});
+					inlined.add(CodeList.newGoto(callCode.getLabel(), 0));
+				}
+			} else if (!(code instanceof LabelCode))
+			{
+				inlined.add(code);
+			}
+		}
+
+		// Each jump lands on where its program counter's byte codes start among the inlined ones.
+		for (int[] jump : jumps)
+		{
+			if (jump[1] >= 0)
+			{
+				jump[1] = starts.get(jump[1]);
+				if (jump[1] == inlined.size())
+				{
+					return null;
+				}
+			}
+		}
+
+		return new Site(args, call, inlined.toArray(new ByteCode[0]), jumps);
+	}
+
+	/**
+	 * Replaces the ARGS and the CALL of each of the specified sites of the
+	 * specified codes with its inlined byte codes, and returns how many byte
+	 * codes that changed.
+	 *
+	 * @param codes the specified codes.
+	 * @param sites the specified sites, in order.
+	 * @return the number of byte codes changed.
+	 */
+	private static int inline(CodeList codes, List<Site> sites)
+	{
+		int[] pcs = new int[sites.size()];
+		ByteCode[][] inlined = new ByteCode[sites.size()][];
+		for (int i = 0; i < sites.size(); i++)
+		{
+			pcs[i] = sites.get(i).args;
+			inlined[i] = sites.get(i).codes;
+		}
+		// Jumps that landed on an ARGS land on its inlined codes instead.
+		codes.insert(pcs, true, inlined);
+
+		int changed = 0;
+		int before = 0;
+		for (Site site : sites)
+		{
+			int start = site.args + before;
+			int count = site.codes.length;
+			int call = site.call + before + count;
+			codes.remove(start + count);
+			codes.remove(call);
+			for (int[] jump : site.jumps)
+			{
+				BranchCode branch = (BranchCode) codes.get(start + jump[0]);
+				// A GOTO or FALSEBRANCH continues after its address; past the CALL is after the removed CALL.
+				int address = jump[1] >= 0 ? start + jump[1] - 1 : call;
+				codes.set(start + jump[0], CodeList.retarget(branch, address));
+			}
+
+			before += count;
+			changed += count + 2;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * A call to inline: its ARGS and CALL, the byte codes that replace them,
+	 * and each of their jumps as {index, index it lands on, or -1 past the
+	 * CALL}.
+	 */
+	private static final class Site
+	{
+
+		private final int args;
+		private final int call;
+		private final ByteCode[] codes;
+		private final List<int[]> jumps;
+
+		/**
+		 * Constructs a call to inline from the specified parts.
+		 */
+		Site(int args, int call, ByteCode[] codes, List<int[]> jumps)
+		{
+			this.args = args;
+			this.call = call;
+			this.codes = codes;
+			this.jumps = jumps;
+		}
+	}
+}
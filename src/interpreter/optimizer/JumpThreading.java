@@ -0,0 +1,85 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.bytecode.*;
+
+/**
+ * Threads jumps through GOTO chains, so a GOTO or FALSEBRANCH that lands on
+ * a GOTO jumps straight to where the chain ends, and removes a GOTO that
+ * lands on the byte code right after it.
+ *
+ * @author mandynoto
+ */
+public class JumpThreading implements Pass
+{
+
+	/**
+	 * Returns the name of this pass.
+	 */
+	@Override
+	public String getName()
+	{
+		return "jump threading";
+	}
+
+	/**
+	 * Threads every GOTO and FALSEBRANCH of the specified codes.
+	 */
+	@Override
+	public int run(CodeList codes)
+	{
+		int changed = 0;
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			ByteCode code = codes.get(pc);
+			if (!(code instanceof GotoCode || code instanceof FalseBranchCode))
+			{
+				continue;
+			}
+
+			BranchCode branch = (BranchCode) code;
+			int address = getFinalAddress(codes, branch.getAddress());
+			if (address != branch.getAddress())
+			{
+				branch = CodeList.retarget(branch, address);
+				codes.set(pc, branch);
+				changed += 1;
+			}
+
+			// A GOTO to the next byte code does nothing.
+			if (code instanceof GotoCode && codes.next(address) == codes.next(pc) && codes.remove(pc))
+			{
+				changed += 1;
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns the address a jump to the specified address ends up at after
+	 * every GOTO it lands on.
+	 *
+	 * @param codes the specified codes.
+	 * @param address the specified address.
+	 * @return the address at the end of the chain.
+	 */
+	private static int getFinalAddress(CodeList codes, int address)
+	{
+		// A chain longer than the program is a loop of GOTOs, which stays as it is.
+		for (int steps = 0; steps < codes.size(); steps++)
+		{
+			int landing = codes.next(address);
+			if (landing >= codes.size() || !(codes.get(landing) instanceof GotoCode))
+			{
+				return address;
+			}
+			address = ((GotoCode) codes.get(landing)).getAddress();
+		}
+
+		return address;
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.bytecode.LabelCode;
+
+/**
+ * Removes every LABEL, which only records its address for DUMP output when
+ * it runs; the jumps to a label land on the byte code after it instead.
+ *
+ * @author mandynoto
+ */
+public class LabelElision implements Pass
+{
+
+	/**
+	 * Returns the name of this pass.
+	 */
+	@Override
+	public String getName()
+	{
+		return "label elision";
+	}
+
+	/**
+	 * Removes every LABEL of the specified codes.
+	 */
+	@Override
+	public int run(CodeList codes)
+	{
+		int changed = 0;
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			if (codes.get(pc) instanceof LabelCode && codes.remove(pc))
+			{
+				changed += 1;
+			}
+		}
+
+		return changed;
+	}
+}
@@ -0,0 +1,671 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.StackMap;
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optimizes while loops, i.e. a LABEL, a condition that ends in a
+ * FALSEBRANCH out of the loop, a body, and a GOTO back to the LABEL:
+ *
+ * Invariant computations, made of LIT, BOP, and LOAD of the slots of the
+ * frame the loop never stores, are computed once before the loop into new
+ * slots of the frame, and a POP after the loop removes them. A slot above
+ * the frame, e.g. of a call inlined into the loop, is never invariant.
+ *
+ * An induction variable, stepped by a literal once per iteration, that is
+ * multiplied by a literal often enough is strength reduced: the product is
+ * kept in a new slot that is stepped along with the variable.
+ *
+ * The loop is rotated: the GOTO back becomes a copy of the condition that
+ * branches back to the body, so each iteration takes one branch, not two.
+ *
+ * Note: Only innermost loops are optimized in a round, so an outer loop is
+ * optimized in the next round, once its inner loops are rotated.
+ *
+ * @author mandynoto
+ */
+public class LoopOptimization implements Pass
+{
+
+	// The uses of a product of an induction variable that pay for stepping a
+	// slot with it, since stepping it runs four byte codes per iteration.
+	private static final int MIN_REDUCED_USES = 3;
+
+	/**
+	 * Returns the name of this pass.
+	 */
+	@Override
+	public String getName()
+	{
+		return "loop optimization";
+	}
+
+	/**
+	 * Optimizes every innermost while loop of the specified codes.
+	 */
+	@Override
+	public int run(CodeList codes)
+	{
+		List<int[]> loops = findInnermostLoops(codes);
+		if (loops.isEmpty())
+		{
+			return 0;
+		}
+
+		// A loop only moves the byte codes after its header, so the stack map
+		// of the codes before it stays right.
+		StackMap stackMap = codes.getStackMap();
+		if (stackMap == null)
+		{
+			return 0;
+		}
+
+		int changed = 0;
+		int changedFrom = codes.size();
+		for (int[] loop : loops)
+		{
+			if (loop[1] >= changedFrom)
+			{
+				continue;
+			}
+
+			int count = optimize(codes, stackMap, loop[0], loop[1]);
+			if (count > 0)
+			{
+				changed += count;
+				changedFrom = loop[0];
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns every loop of the specified codes that holds no other loop, as
+	 * {header, back edge}, from the last header to the first.
+	 *
+	 * @param codes the specified codes.
+	 * @return the innermost loops.
+	 */
+	private static List<int[]> findInnermostLoops(CodeList codes)
+	{
+		ArrayList<int[]> loops = new ArrayList<>();
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			if (codes.get(pc) instanceof GotoCode)
+			{
+				int header = codes.next(((GotoCode) codes.get(pc)).getAddress());
+				if (header <= pc)
+				{
+					loops.add(new int[]
+					{
+						header, pc
+					});
+				}
+			}
+		}
+
+		ArrayList<int[]> innermost = new ArrayList<>();
+		for (int[] loop : loops)
+		{
+			boolean isInnermost = true;
+			for (int[] other : loops)
+			{
+				if (other != loop && other[0] >= loop[0] && other[1] < loop[1])
+				{
+					isInnermost = false;
+				}
+			}
+			if (isInnermost)
+			{
+				innermost.add(loop);
+			}
+		}
+		innermost.sort((a, b) -> Integer.compare(b[0], a[0]));
+
+		return innermost;
+	}
+
+	/**
+	 * Optimizes the loop of the specified codes from the specified header to
+	 * the specified GOTO back to it, and returns how many byte codes that
+	 * changed, or 0 if it is not a while loop.
+	 *
+	 * @param codes the specified codes.
+	 * @param stackMap the specified stack map of the loop as it is.
+	 * @param header the specified program counter of the header.
+	 * @param backEdge the specified program counter of the GOTO back.
+	 * @return the number of byte codes changed.
+	 */
+	private static int optimize(CodeList codes, StackMap stackMap, int header, int backEdge)
+	{
+		// The condition runs straight from the header to a FALSEBRANCH out of the loop.
+		int test = header;
+		while (test < backEdge && !isJump(codes.get(test)))
+		{
+			ByteCode code = codes.get(test);
+			if (code instanceof ReturnCode || code instanceof HaltCode || (test > header && codes.isEntered(test)))
+			{
+				return 0;
+			}
+			test = codes.next(test);
+		}
+		if (test >= backEdge || !(codes.get(test) instanceof FalseBranchCode) || codes.isEntered(test))
+		{
+			return 0;
+		}
+		int exit = codes.next(((FalseBranchCode) codes.get(test)).getAddress());
+		int depth = stackMap.getDepth(header);
+		int preheader = codes.previous(header);
+		if (exit <= backEdge || depth < 0 || preheader < 0 || !isFallThrough(codes.get(preheader)))
+		{
+			return 0;
+		}
+
+		// The loop is only entered at its header, from the byte code before it.
+		boolean canHoist = depth > 0;
+		for (int pc = 0; pc < codes.size(); pc++)
+		{
+			if (!(codes.get(pc) instanceof BranchCode))
+			{
+				continue;
+			}
+
+			BranchCode branch = (BranchCode) codes.get(pc);
+			boolean isInside = pc >= header && pc <= backEdge;
+			if (branch instanceof CallCode)
+			{
+				int target = codes.getCallTarget(branch.getAddress());
+				if (target >= header && target <= backEdge)
+				{
+					return 0;
+				}
+				continue;
+			}
+
+			int landing = codes.next(branch.getAddress());
+			boolean landsInside = landing >= header && landing <= backEdge;
+			if (!isInside && landsInside)
+			{
+				return 0;
+			}
+			// The new slots are removed at the exit, so every way out must go there.
+			if (isInside ? !landsInside && landing != exit : landing == exit)
+			{
+				canHoist = false;
+			}
+		}
+		int beforeExit = codes.previous(exit);
+		canHoist &= beforeExit == backEdge || !isFallThrough(codes.get(beforeExit));
+
+		// In main the frame is the whole stack, so more slots could make a POP that did nothing pop.
+		boolean[] isStored = new boolean[depth + 1];
+		for (int pc = header; pc <= backEdge; pc = codes.next(pc))
+		{
+			ByteCode code = codes.get(pc);
+			if (code instanceof StoreCode && ((StoreCode) code).getOffset() < depth)
+			{
+				isStored[((StoreCode) code).getOffset()] = true;
+			} else if (code instanceof PopCode && stackMap.getFunction(header) == 0)
+			{
+				int levels = ((PopCode) code).getLevels();
+				canHoist &= levels == 0 || levels < stackMap.getDepth(pc);
+			}
+		}
+
+		int changed = 0;
+		int slots = 0;
+		ArrayList<ByteCode> preheaderCodes = new ArrayList<>();
+		ArrayList<ByteCode> stepCodes = new ArrayList<>();
+		int step = -1;
+		if (canHoist)
+		{
+			List<int[]> invariants = findInvariants(codes, header, backEdge, depth, isStored);
+			int[] induction = findInduction(codes, header, backEdge, depth, isStored);
+			HashMap<Integer, List<Integer>> products = induction == null ? new HashMap<>()
+					: findProducts(codes, header, backEdge, induction);
+			products.values().removeIf(uses -> uses.size() < MIN_REDUCED_USES);
+
+			// Every slot at or above the header's depth moves up past the new slots.
+			int newSlots = countKeys(codes, invariants) + products.size();
+			if (newSlots > 0)
+			{
+				shiftSlots(codes, header, backEdge, depth, newSlots);
+			}
+
+			// Each distinct invariant computation gets one slot.
+			LinkedHashMap<String, Integer> invariantSlots = new LinkedHashMap<>();
+			for (int[] invariant : invariants)
+			{
+				String key = getKey(codes, invariant[0], invariant[1]);
+				Integer slot = invariantSlots.get(key);
+				if (slot == null)
+				{
+					slot = depth + slots++;
+					invariantSlots.put(key, slot);
+					for (int pc = invariant[0]; pc <= invariant[1]; pc = codes.next(pc))
+					{
+						preheaderCodes.add(codes.get(pc));
+					}
+				}
+				changed += replace(codes, invariant[0], invariant[1], CodeList.newLoad(slot, "invariant"));
+			}
+
+			for (Map.Entry<Integer, List<Integer>> product : products.entrySet())
+			{
+				int slot = depth + slots++;
+				int factor = product.getKey();
+				ByteCode load = codes.get(induction[0]);
+				preheaderCodes.add(CodeList.newLoad(((LoadCode) load).getOffset(), ((LoadCode) load).getName()));
+				preheaderCodes.add(CodeList.newLit(factor));
+				preheaderCodes.add(CodeList.newBop(BopCode.MULTIPLY));
+				for (int use : product.getValue())
+				{
+					changed += replace(codes, use, codes.next(codes.next(use)), CodeList.newLoad(slot, "induction"));
+				}
+
+				// The product steps right after the variable does.
+				stepCodes.add(CodeList.newLoad(slot, "induction"));
+				stepCodes.add(CodeList.newLit(factor * induction[2]));
+				stepCodes.add(CodeList.newBop(BopCode.ADD));
+				stepCodes.add(CodeList.newStore(slot, "induction"));
+			}
+			step = induction == null ? -1 : induction[1];
+		}
+
+		// The exit removes the new slots; it is the only way out besides RETURN and HALT.
+		if (slots > 0)
+		{
+			codes.insert(exit, true, CodeList.newPop(slots));
+			changed += 1;
+		}
+		if (!stepCodes.isEmpty())
+		{
+			codes.insert(step + 1, false, stepCodes.toArray(new ByteCode[0]));
+			backEdge += stepCodes.size();
+			changed += stepCodes.size();
+		}
+
+		// The GOTO back becomes the condition again, branching back into the body.
+		ArrayList<ByteCode> rotated = new ArrayList<>();
+		for (int pc = header; pc < test; pc = codes.next(pc))
+		{
+			if (!(codes.get(pc) instanceof LabelCode))
+			{
+				rotated.add(codes.get(pc));
+			}
+		}
+		ByteCode last = rotated.isEmpty() ? null : rotated.get(rotated.size() - 1);
+		if (last != null && last.getClass() == BopCode.class && CodeList.INVERSES.containsKey(((BopCode) last).getOperator()))
+		{
+			rotated.set(rotated.size() - 1, CodeList.newBop(CodeList.INVERSES.get(((BopCode) last).getOperator())));
+		} else
+		{
+			// The condition is true exactly when it is not equal to 0.
+			rotated.add(CodeList.newLit(0));
+			rotated.add(CodeList.newBop(BopCode.EQUAL));
+		}
+		FalseBranchCode exitBranch = (FalseBranchCode) codes.get(test);
+		rotated.add(CodeList.retarget(exitBranch, test));
+		if (codes.next(backEdge) != codes.next(exitBranch.getAddress()))
+		{
+			rotated.add(CodeList.newGoto(exitBranch.getLabel(), exitBranch.getAddress()));
+		}
+		codes.insert(backEdge, true, rotated.toArray(new ByteCode[0]));
+		codes.remove(backEdge + rotated.size());
+		changed += rotated.size();
+
+		if (!preheaderCodes.isEmpty())
+		{
+			codes.insert(header, false, preheaderCodes.toArray(new ByteCode[0]));
+			changed += preheaderCodes.size();
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns the invariant computations of the specified loop that are worth
+	 * computing once, as {first, last} program counters, by following the
+	 * stack of each of its blocks.
+	 *
+	 * @param codes the specified codes.
+	 * @param header the specified header of the loop.
+	 * @param backEdge the specified GOTO back.
+	 * @param depth the specified depth of the frame at the header.
+	 * @param isStored true at each slot below the depth the loop stores.
+	 * @return the invariant computations.
+	 */
+	private static List<int[]> findInvariants(CodeList codes, int header, int backEdge, int depth, boolean[] isStored)
+	{
+		ArrayList<int[]> invariants = new ArrayList<>();
+		// Each value as {first pc, last pc, byte codes, 1 if invariant, 1 if a nonzero LIT}.
+		ArrayList<int[]> stack = new ArrayList<>();
+		int argCount = 0;
+
+		for (int pc = header; pc <= backEdge; pc = codes.next(pc))
+		{
+			ByteCode code = codes.get(pc);
+			if (pc > header && codes.isEntered(pc))
+			{
+				flush(stack, invariants);
+			}
+
+			if (code.getClass() == LitCode.class)
+			{
+				int value = ((LitCode) code).getValue();
+				stack.add(new int[]
+				{
+					pc, pc, 1, 1, value != 0 ? 1 : 0
+				});
+			} else if (code.getClass() == LoadCode.class)
+			{
+				int offset = ((LoadCode) code).getOffset();
+				stack.add(new int[]
+				{
+					pc, pc, 1, offset < depth && !isStored[offset] ? 1 : 0, 0
+				});
+			} else if (code.getClass() == BopCode.class)
+			{
+				int operator = ((BopCode) code).getOperator();
+				int[] right = pop(stack);
+				int[] left = pop(stack);
+				// Only a division by a nonzero literal cannot fail before the loop runs, and only
+				// values whose byte codes follow each other are one computation: between them, e.g.
+				// an inlined call could STORE into and POP the slots of the stack above the frame.
+				if (left[3] == 1 && right[3] == 1 && operator != BopCode.UNKNOWN
+						&& (operator != BopCode.DIVIDE || right[4] == 1)
+						&& codes.next(left[1]) == right[0] && codes.next(right[1]) == pc)
+				{
+					stack.add(new int[]
+					{
+						left[0], pc, left[2] + right[2] + 1, 1, 0
+					});
+				} else
+				{
+					add(left, invariants);
+					add(right, invariants);
+					if (operator != BopCode.UNKNOWN)
+					{
+						stack.add(new int[5]);
+					}
+				}
+			} else if (code instanceof StoreCode || code instanceof FalseBranchCode || code instanceof ReturnCode)
+			{
+				add(pop(stack), invariants);
+			} else if (code instanceof ReadCode)
+			{
+				stack.add(new int[5]);
+			} else if (code instanceof ArgsCode)
+			{
+				argCount = ((ArgsCode) code).getArgCount();
+				for (int i = 0; i < argCount; i++)
+				{
+					add(pop(stack), invariants);
+				}
+			} else if (code instanceof CallCode)
+			{
+				stack.add(new int[5]);
+			} else if (code instanceof PopCode)
+			{
+				for (int i = 0; i < ((PopCode) code).getLevels(); i++)
+				{
+					add(pop(stack), invariants);
+				}
+			} else if (!(code instanceof WriteCode || code instanceof LabelCode))
+			{
+				flush(stack, invariants);
+			}
+
+			if (isJump(code) || code instanceof ReturnCode || code instanceof HaltCode)
+			{
+				flush(stack, invariants);
+			}
+		}
+
+		return invariants;
+	}
+
+	/**
+	 * Returns the top of the specified stack of values, or a value that is
+	 * not invariant if it holds none.
+	 */
+	private static int[] pop(ArrayList<int[]> stack)
+	{
+		return stack.isEmpty() ? new int[5] : stack.remove(stack.size() - 1);
+	}
+
+	/**
+	 * Adds the specified value to the specified invariant computations if it
+	 * is one of at least three byte codes.
+	 */
+	private static void add(int[] value, List<int[]> invariants)
+	{
+		if (value[3] == 1 && value[2] >= 3)
+		{
+			invariants.add(new int[]
+			{
+				value[0], value[1]
+			});
+		}
+	}
+
+	/**
+	 * Adds every value left on the specified stack to the specified invariant
+	 * computations, since a block ends there.
+	 */
+	private static void flush(ArrayList<int[]> stack, List<int[]> invariants)
+	{
+		for (int[] value : stack)
+		{
+			add(value, invariants);
+		}
+		stack.clear();
+	}
+
+	/**
+	 * Returns the induction variable of the specified loop as {LOAD pc, STORE
+	 * pc, step}: a slot stored once per iteration as LOAD n; LIT c; BOP +;
+	 * STORE n, or with BOP -, on the way to the GOTO back. Returns null if
+	 * there is none.
+	 *
+	 * @param codes the specified codes.
+	 * @param header the specified header of the loop.
+	 * @param backEdge the specified GOTO back.
+	 * @param depth the specified depth of the frame at the header.
+	 * @param isStored true at each slot below the depth the loop stores.
+	 * @return the induction variable, or null if there is none.
+	 */
+	private static int[] findInduction(CodeList codes, int header, int backEdge, int depth, boolean[] isStored)
+	{
+		// The step must run on every iteration: nothing jumps in or out after it.
+		int store = backEdge;
+		while (true)
+		{
+			store = codes.previous(store);
+			if (store <= header)
+			{
+				return null;
+			}
+
+			ByteCode code = codes.get(store);
+			if (code.getClass() == StoreCode.class)
+			{
+				break;
+			}
+			if (isJump(code) || code instanceof ReturnCode || code instanceof HaltCode || codes.isEntered(store))
+			{
+				return null;
+			}
+		}
+		if (codes.isEntered(store) || codes.isEntered(codes.next(store)) && codes.next(store) != backEdge)
+		{
+			return null;
+		}
+
+		// A slot above the frame, e.g. of an inlined call, is not there before the loop.
+		int slot = ((StoreCode) codes.get(store)).getOffset();
+		if (slot >= depth)
+		{
+			return null;
+		}
+		int bop = codes.previous(store);
+		int lit = codes.previous(bop);
+		int load = codes.previous(lit);
+		if (load <= header || codes.isEntered(bop) || codes.isEntered(lit) || codes.get(load).getClass() != LoadCode.class
+				|| ((LoadCode) codes.get(load)).getOffset() != slot || codes.get(lit).getClass() != LitCode.class
+				|| codes.get(bop).getClass() != BopCode.class)
+		{
+			return null;
+		}
+
+		int operator = ((BopCode) codes.get(bop)).getOperator();
+		int value = ((LitCode) codes.get(lit)).getValue();
+		if (operator != BopCode.ADD && operator != BopCode.SUBTRACT)
+		{
+			return null;
+		}
+
+		// The variable must be stored nowhere else in the loop.
+		for (int pc = header; pc <= backEdge; pc = codes.next(pc))
+		{
+			ByteCode code = codes.get(pc);
+			if (pc != store && code instanceof StoreCode && ((StoreCode) code).getOffset() == slot)
+			{
+				return null;
+			}
+		}
+
+		return new int[]
+		{
+			load, store, operator == BopCode.ADD ? value : -value
+		};
+	}
+
+	/**
+	 * Returns the uses of each product of the specified induction variable
+	 * in the specified loop, i.e. LOAD n; LIT c; BOP *, by the factor c.
+	 *
+	 * @param codes the specified codes.
+	 * @param header the specified header of the loop.
+	 * @param backEdge the specified GOTO back.
+	 * @param induction the specified induction variable.
+	 * @return the program counters of the LOAD of each use, by factor.
+	 */
+	private static HashMap<Integer, List<Integer>> findProducts(CodeList codes, int header, int backEdge, int[] induction)
+	{
+		int slot = ((LoadCode) codes.get(induction[0])).getOffset();
+		HashMap<Integer, List<Integer>> products = new HashMap<>();
+		for (int pc = header; pc <= backEdge; pc = codes.next(pc))
+		{
+			int lit = codes.next(pc);
+			int bop = lit < codes.size() ? codes.next(lit) : lit;
+			if (bop >= codes.size() || codes.get(pc).getClass() != LoadCode.class
+					|| ((LoadCode) codes.get(pc)).getOffset() != slot || codes.get(lit).getClass() != LitCode.class
+					|| codes.get(bop).getClass() != BopCode.class || codes.isEntered(lit) || codes.isEntered(bop)
+					|| ((BopCode) codes.get(bop)).getOperator() != BopCode.MULTIPLY)
+			{
+				continue;
+			}
+
+			products.computeIfAbsent(((LitCode) codes.get(lit)).getValue(), factor -> new ArrayList<>()).add(pc);
+		}
+
+		return products;
+	}
+
+	/**
+	 * Returns the number of distinct invariant computations of the specified
+	 * codes.
+	 */
+	private static int countKeys(CodeList codes, List<int[]> invariants)
+	{
+		HashMap<String, Integer> keys = new HashMap<>();
+		for (int[] invariant : invariants)
+		{
+			keys.put(getKey(codes, invariant[0], invariant[1]), 0);
+		}
+
+		return keys.size();
+	}
+
+	/**
+	 * Returns the byte codes from the specified first program counter to the
+	 * specified last one as a string, which is the same for the same
+	 * computation.
+	 */
+	private static String getKey(CodeList codes, int first, int last)
+	{
+		StringBuilder key = new StringBuilder();
+		for (int pc = first; pc <= last; pc = codes.next(pc))
+		{
+			key.append(codes.get(pc)).append('\n');
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * Moves every LOAD and STORE of a slot at or above the specified depth in
+	 * the specified loop up by the specified number of new slots.
+	 */
+	private static void shiftSlots(CodeList codes, int header, int backEdge, int depth, int newSlots)
+	{
+		for (int pc = header; pc <= backEdge; pc = codes.next(pc))
+		{
+			ByteCode code = codes.get(pc);
+			if (code.getClass() == LoadCode.class && ((LoadCode) code).getOffset() >= depth)
+			{
+				codes.set(pc, CodeList.newLoad(((LoadCode) code).getOffset() + newSlots, ((LoadCode) code).getName()));
+			} else if (code.getClass() == StoreCode.class && ((StoreCode) code).getOffset() >= depth)
+			{
+				codes.set(pc, CodeList.newStore(((StoreCode) code).getOffset() + newSlots, ((StoreCode) code).getName()));
+			}
+		}
+	}
+
+	/**
+	 * Replaces the byte codes from the specified first program counter to the
+	 * specified last one with the specified byte code, and returns how many
+	 * byte codes that changed.
+	 */
+	private static int replace(CodeList codes, int first, int last, ByteCode code)
+	{
+		int changed = 1;
+		for (int pc = codes.next(first); pc <= last; pc = codes.next(pc))
+		{
+			changed += codes.remove(pc) ? 1 : 0;
+		}
+		codes.set(first, code);
+
+		return changed;
+	}
+
+	/**
+	 * Returns {@code true} if the specified byte code is a GOTO or a
+	 * FALSEBRANCH.
+	 */
+	private static boolean isJump(ByteCode code)
+	{
+		return code instanceof GotoCode || code instanceof FalseBranchCode;
+	}
+
+	/**
+	 * Returns {@code true} if control can continue from the specified byte
+	 * code to the one after it.
+	 */
+	private static boolean isFallThrough(ByteCode code)
+	{
+		return !(code instanceof GotoCode || code instanceof ReturnCode || code instanceof HaltCode);
+	}
+}
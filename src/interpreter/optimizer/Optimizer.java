@@ -0,0 +1,167 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.Program;
+import interpreter.StackMap;
+import interpreter.VerificationException;
+import interpreter.Verifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs passes over a program between loading and running it, e.g.
+ * Optimizer.getDefault().optimize(program), until none of them changes it.
+ *
+ * Note: Only a verified program without a DUMP that can run is optimized,
+ * since DUMP output prints every byte code as it runs. The optimized program
+ * is verified again; if it is rejected, the program runs as it was loaded
+ * and the rejection goes to standard error, apart from the program's output.
+ *
+ * @author mandynoto
+ */
+public class Optimizer
+{
+
+	// The most times the passes run over a program.
+	private static final int MAX_ROUNDS = 8;
+
+	private final List<Pass> passes = new ArrayList<>();
+	// The byte codes each pass changed, and the nanoseconds it took, by pass.
+	private final List<Integer> changes = new ArrayList<>();
+	private final List<Long> times = new ArrayList<>();
+	private int rounds;
+	// Why the optimized program was rejected, or null if it was not.
+	private VerificationException rejection;
+	private int sizeBefore;
+	private int sizeAfter;
+
+	/**
+	 * Returns an optimizer with every pass: constant folding, jump threading,
+	 * dead code removal, inlining, loop optimization, block layout, and label
+	 * elision, in that order.
+	 *
+	 * @return an optimizer with every pass.
+	 */
+	public static Optimizer getDefault()
+	{
+		Optimizer optimizer = new Optimizer();
+		optimizer.add(new ConstantFolding());
+		optimizer.add(new JumpThreading());
+		optimizer.add(new DeadCodeRemoval());
+		optimizer.add(new Inlining());
+		optimizer.add(new LoopOptimization());
+		optimizer.add(new BlockLayout());
+		optimizer.add(new LabelElision());
+
+		return optimizer;
+	}
+
+	/**
+	 * Adds the specified pass, which runs after the passes added before it.
+	 *
+	 * @param pass the specified pass.
+	 */
+	public void add(Pass pass)
+	{
+		passes.add(pass);
+		changes.add(0);
+		times.add(0L);
+	}
+
+	/**
+	 * Returns the specified program optimized, or the program itself if it
+	 * cannot be.
+	 *
+	 * @param program the specified program.
+	 * @return the optimized program.
+	 */
+	public Program optimize(Program program)
+	{
+		// A program still streaming in is not verified, and asking its size would wait for the whole load.
+		StackMap stackMap = program.getStackMap();
+		if (stackMap == null)
+		{
+			return program;
+		}
+
+		sizeBefore = program.getSize();
+		sizeAfter = sizeBefore;
+		if (stackMap.hasDump() || program.getSize() == 0)
+		{
+			return program;
+		}
+
+		CodeList codes = new CodeList(program);
+		boolean isChanged = true;
+		while (isChanged && rounds < MAX_ROUNDS)
+		{
+			isChanged = false;
+			rounds += 1;
+			for (int i = 0; i < passes.size(); i++)
+			{
+				long start = System.nanoTime();
+				codes.findEntries();
+				int changed = passes.get(i).run(codes);
+				times.set(i, times.get(i) + System.nanoTime() - start);
+				changes.set(i, changes.get(i) + changed);
+				isChanged |= changed > 0;
+			}
+		}
+
+		Program optimized = codes.toProgram(new Program(program.getConstantPool()));
+		try
+		{
+			optimized.setStackMap(Verifier.verify(optimized));
+		} catch (VerificationException e)
+		{
+			// A rejected program is a bug of a pass, but the program still runs as it was loaded.
+			rejection = e;
+			System.err.println("**** " + e);
+			return program;
+		}
+		optimized.markTailCalls();
+
+		sizeAfter = optimized.getSize();
+
+		return optimized;
+	}
+
+	/**
+	 * Returns why the optimized program was rejected, or null if it was not.
+	 *
+	 * @return the rejection of the optimized program, or null if there is
+	 * none.
+	 */
+	public VerificationException getRejection()
+	{
+		return rejection;
+	}
+
+	/**
+	 * Returns a report of the byte codes each pass changed, and the time it
+	 * took.
+	 *
+	 * @return a report of the passes.
+	 */
+	public String getReport()
+	{
+		StringBuilder report = new StringBuilder();
+		report.append("****Optimizer****\n");
+		for (int i = 0; i < passes.size(); i++)
+		{
+			report.append(String.format("%s: %d byte codes in %d us\n", passes.get(i).getName(), changes.get(i),
+					times.get(i) / 1000));
+		}
+		report.append(String.format("Byte codes: %d before, %d after, in %d rounds\n", sizeBefore, sizeAfter, rounds));
+		if (rejection != null)
+		{
+			report.append("Rejected: ").append(rejection.getMessage()).append('\n');
+		}
+
+		return report.toString();
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+/**
+ * A pass of the Optimizer, which rewrites the byte codes of a program
+ * without changing what it prints.
+ *
+ * @author mandynoto
+ */
+public interface Pass
+{
+
+	/**
+	 * Returns the name of this pass, for the statistics.
+	 *
+	 * @return the name of this pass.
+	 */
+	String getName();
+
+	/**
+	 * Rewrites the specified byte codes, and returns how many of them it
+	 * changed or removed.
+	 *
+	 * @param codes the specified byte codes.
+	 * @return the number of byte codes changed or removed.
+	 */
+	int run(CodeList codes);
+}
@@ -0,0 +1,134 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles text code files into the binary format and reads them back.
+ *
+ * @author mandynoto
+ */
+public class BinaryCodeFileTest
+{
+
+	private static final int GENERATED = 50;
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the specified text code file compiled into a binary file that
+	 * is deleted on exit.
+	 */
+	static String compile(String file) throws IOException
+	{
+		Path binaryFile = Files.createTempFile("program-", ".x.bin");
+		binaryFile.toFile().deleteOnExit();
+		BinaryCodeFile.compile(file, binaryFile.toString());
+
+		return binaryFile.toString();
+	}
+
+	/**
+	 * Returns the tokens of each non-blank line of the specified text code
+	 * file.
+	 */
+	private static List<List<String>> getTextRecords(String file) throws IOException
+	{
+		List<List<String>> records = new ArrayList<>();
+		for (String line : Files.readAllLines(Paths.get(file)))
+		{
+			List<String> record = List.of(line.trim().split("\\s+"));
+			if (!line.isBlank())
+			{
+				records.add(record);
+			}
+		}
+
+		return records;
+	}
+
+	/**
+	 * Returns the mnemonic and arguments of each byte code of the specified
+	 * binary file.
+	 */
+	private static List<List<String>> getBinaryRecords(String binaryFile) throws IOException
+	{
+		List<List<String>> records = new ArrayList<>();
+		BinaryCodeFile.read(binaryFile, new ConstantPool(), (code, operands, address) ->
+		{
+			List<String> record = new ArrayList<>();
+			record.add(code);
+			record.addAll(operands.toList());
+			records.add(record);
+		});
+
+		return records;
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void binaryFileHoldsEveryToken(String program) throws IOException
+	{
+		String file = ProgramRunner.getResource(program);
+
+		assertEquals(getTextRecords(file), getBinaryRecords(compile(file)));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void binaryProgramPrintsTheSame(String program) throws IOException
+	{
+		String file = ProgramRunner.getResource(program);
+		Program binaryProgram = ProgramRunner.load(compile(file));
+
+		assertEquals(ProgramRunner.load(file).getSize(), binaryProgram.getSize());
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(binaryProgram, "vm"));
+	}
+
+	@Test
+	void generatedBinaryProgramsPrintTheSame() throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			String file = ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed));
+
+			assertEquals(getTextRecords(file), getBinaryRecords(compile(file)), file);
+			assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"),
+					ProgramRunner.run(ProgramRunner.load(compile(file)), "vm"), file);
+		}
+	}
+
+	@Test
+	void onlyTheBinaryFormatIsBinary() throws IOException
+	{
+		String file = ProgramRunner.getResource("branches.x.cod");
+		Path emptyFile = Files.createTempFile("empty-", ".x.cod");
+		emptyFile.toFile().deleteOnExit();
+
+		assertTrue(BinaryCodeFile.isBinary(compile(file)));
+		assertFalse(BinaryCodeFile.isBinary(file));
+		assertFalse(BinaryCodeFile.isBinary(emptyFile.toString()));
+	}
+}
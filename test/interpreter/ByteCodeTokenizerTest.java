@@ -0,0 +1,244 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.Operands;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tokenizes byte code text from bytes and checks it against StringTokenizer
+ * and Integer.parseInt, which the loader used before.
+ *
+ * @author mandynoto
+ */
+public class ByteCodeTokenizerTest
+{
+
+	private static final int GENERATED = 50;
+
+	/**
+	 * Returns a tokenizer over the specified text.
+	 */
+	private static ByteCodeTokenizer tokenize(String text)
+	{
+		return new ByteCodeTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), new ConstantPool());
+	}
+
+	/**
+	 * Returns each line of the specified text as the tokenizer reads it: its
+	 * mnemonic, then each argument with its value if it is an integer.
+	 */
+	private static List<String> getTokens(String text)
+	{
+		List<String> tokens = new ArrayList<>();
+		ByteCodeTokenizer tokenizer = tokenize(text);
+		Operands operands = new Operands();
+		String code;
+		while ((code = tokenizer.next(operands)) != null)
+		{
+			tokens.add(describe(code, operands));
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * Returns each line of the specified text as a tokenizer over a stream of
+	 * it, which reads at most the specified number of bytes at a time, reads
+	 * it, like getTokens.
+	 */
+	private static List<String> getStreamedTokens(String text, int readSize)
+	{
+		InputStream input = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))
+		{
+			@Override
+			public synchronized int read(byte[] bytes, int offset, int length)
+			{
+				return super.read(bytes, offset, Math.min(length, readSize));
+			}
+		};
+
+		List<String> tokens = new ArrayList<>();
+		ByteCodeTokenizer tokenizer = new ByteCodeTokenizer(input, new ConstantPool());
+		Operands operands = new Operands();
+		String code;
+		while ((code = tokenizer.next(operands)) != null)
+		{
+			tokens.add(describe(code, operands));
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * Returns each line of the specified text as StringTokenizer and
+	 * Integer.parseInt read it, like getTokens.
+	 */
+	private static List<String> getExpectedTokens(String text)
+	{
+		List<String> tokens = new ArrayList<>();
+		for (String line : text.split("\r\n|\r|\n"))
+		{
+			StringTokenizer tokenizer = new StringTokenizer(line, " \t\f");
+			if (!tokenizer.hasMoreTokens())
+			{
+				continue;
+			}
+
+			String code = tokenizer.nextToken();
+			Operands operands = new Operands();
+			while (tokenizer.hasMoreTokens())
+			{
+				operands.add(tokenizer.nextToken());
+			}
+			tokens.add(describe(code, operands));
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * Returns the specified mnemonic and operands, e.g. LIT 1=1 n.
+	 */
+	private static String describe(String code, Operands operands)
+	{
+		StringBuilder line = new StringBuilder(code);
+		for (int i = 0; i < operands.size(); i++)
+		{
+			line.append(' ').append(operands.getName(i));
+			if (operands.isInt(i))
+			{
+				line.append('=').append(operands.getInt(i));
+			}
+		}
+
+		return line.toString();
+	}
+
+	@Test
+	void generatedProgramsTokenizeLikeStringTokenizer()
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			String text = ProgramGenerator.generate(seed);
+
+			assertEquals(getExpectedTokens(text), getTokens(text));
+		}
+	}
+
+	/**
+	 * Reads of one and of seven bytes end inside tokens and between the \r
+	 * and \n of a line end.
+	 */
+	@Test
+	void streamedTextTokenizesLikeABuffer()
+	{
+		List<String> texts = new ArrayList<>();
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			texts.add(ProgramGenerator.generate(seed));
+		}
+		texts.add("\n  \t\nGOTO start<<1>>\r\n\r\nLABEL\tstart<<1>>  \rRETURN \nHALT");
+		texts.add("");
+
+		for (String text : texts)
+		{
+			assertEquals(getTokens(text), getStreamedTokens(text, 1));
+			assertEquals(getTokens(text), getStreamedTokens(text, 7));
+			assertEquals(getTokens(text), getStreamedTokens(text, Integer.MAX_VALUE));
+		}
+	}
+
+	@Test
+	void streamedLinesLongerThanTheWindowAreWhole()
+	{
+		String label = "f".repeat(200 * 1024);
+		String text = "LABEL " + label + "\nGOTO " + label + "\nHALT\n";
+
+		assertEquals(List.of("LABEL " + label, "GOTO " + label, "HALT"), getStreamedTokens(text, 4096));
+	}
+
+	@Test
+	void integersDecodeLikeParseInt()
+	{
+		String text = "LIT 1\nLIT -3\nLIT +4\nLIT 007\nLIT 2147483647\nLIT -2147483648\nLIT 2147483648\n"
+				+ "LIT 99999999999\nLIT -\nLIT 1x\nLOAD 0 n\nLIT 12345678901234567890\n";
+
+		assertEquals(getExpectedTokens(text), getTokens(text));
+	}
+
+	@Test
+	void blankLinesAndLineEndsAreSkipped()
+	{
+		String text = "\n  \t\nGOTO start<<1>>\r\n\r\nLABEL\tstart<<1>>  \rRETURN \nHALT";
+
+		assertEquals(List.of("GOTO start<<1>>", "LABEL start<<1>>", "RETURN", "HALT"), getTokens(text));
+		assertEquals(getExpectedTokens(text), getTokens(text));
+	}
+
+	@Test
+	void emptyTextHasNoCodes()
+	{
+		assertNull(tokenize("").next(new Operands()));
+		assertNull(tokenize(" \n\t\r\n").next(new Operands()));
+	}
+
+	@Test
+	void tokensAreShared()
+	{
+		ByteCodeTokenizer tokenizer = tokenize("LOAD 0 n\nLOAD 1 n\n");
+		Operands first = new Operands();
+		Operands second = new Operands();
+
+		assertSame(tokenizer.next(first), tokenizer.next(second));
+		assertSame(first.getName(1), second.getName(1));
+		assertTrue(first.isInt(0));
+		assertFalse(first.isInt(1));
+	}
+
+	/**
+	 * More distinct tokens than the first table holds.
+	 */
+	@Test
+	void manyTokensStayShared()
+	{
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 5000; i++)
+		{
+			text.append("LABEL f<<").append(i).append(">>\n");
+		}
+		text.append(text);
+
+		List<String> names = new ArrayList<>();
+		ByteCodeTokenizer tokenizer = tokenize(text.toString());
+		Operands operands = new Operands();
+		while (tokenizer.next(operands) != null)
+		{
+			names.add(operands.getName(0));
+		}
+
+		assertEquals(10000, names.size());
+		for (int i = 0; i < 5000; i++)
+		{
+			assertEquals("f<<" + i + ">>", names.get(i));
+			assertSame(names.get(i), names.get(i + 5000));
+		}
+	}
+}
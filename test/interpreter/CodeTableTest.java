@@ -0,0 +1,126 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.*;
+import interpreter.bytecode.debuggerByteCodes.FormalCode;
+import interpreter.bytecode.debuggerByteCodes.FunctionCode;
+import interpreter.bytecode.debuggerByteCodes.LineCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks the factories of the normal and the debugging CodeTable, and that
+ * programs load the same on several threads at once.
+ *
+ * @author mandynoto
+ */
+public class CodeTableTest
+{
+
+	private static final int THREADS = 8;
+
+	// Each code mapped to the class of the byte code it creates outside of the debugger.
+	private static final Map<String, Class<?>> CODES = Map.ofEntries(
+			Map.entry("ARGS", ArgsCode.class), Map.entry("BOP", BopCode.class), Map.entry("CALL", CallCode.class),
+			Map.entry("DUMP", DumpCode.class), Map.entry("FALSEBRANCH", FalseBranchCode.class),
+			Map.entry("GOTO", GotoCode.class), Map.entry("HALT", HaltCode.class), Map.entry("LABEL", LabelCode.class),
+			Map.entry("LIT", LitCode.class), Map.entry("LOAD", LoadCode.class), Map.entry("POP", PopCode.class),
+			Map.entry("READ", ReadCode.class), Map.entry("RETURN", ReturnCode.class),
+			Map.entry("STORE", StoreCode.class), Map.entry("WRITE", WriteCode.class));
+
+	@Test
+	void everyCodeHasItsFactory()
+	{
+		for (Map.Entry<String, Class<?>> code : CODES.entrySet())
+		{
+			assertEquals(code.getValue(), CodeTable.get(code.getKey()).get().getClass(), code.getKey());
+		}
+	}
+
+	@Test
+	void debuggingCodesOnlyRunInTheDebugger()
+	{
+		assertNull(CodeTable.get("FORMAL"));
+		assertNull(CodeTable.get("FUNCTION"));
+		assertNull(CodeTable.get("LINE"));
+		assertNull(CodeTable.get("NOSUCHCODE"));
+		assertNull(CodeTable.getDebug("NOSUCHCODE"));
+
+		assertEquals(FormalCode.class, CodeTable.getDebug("FORMAL").get().getClass());
+		assertEquals(FunctionCode.class, CodeTable.getDebug("FUNCTION").get().getClass());
+		assertEquals(LineCode.class, CodeTable.getDebug("LINE").get().getClass());
+		assertEquals(interpreter.bytecode.debuggerByteCodes.LitCode.class, CodeTable.getDebug("LIT").get().getClass());
+		assertEquals(interpreter.bytecode.debuggerByteCodes.PopCode.class, CodeTable.getDebug("POP").get().getClass());
+		assertEquals(interpreter.bytecode.debuggerByteCodes.ReturnCode.class,
+				CodeTable.getDebug("RETURN").get().getClass());
+		assertEquals(GotoCode.class, CodeTable.getDebug("GOTO").get().getClass());
+	}
+
+	/**
+	 * The test resources list TestCodeProvider as a ByteCodeProvider.
+	 */
+	@Test
+	void providersAddTheirCodes()
+	{
+		assertEquals(HaltCode.class, CodeTable.get("STOP").get().getClass());
+		assertEquals(HaltCode.class, CodeTable.getDebug("STOP").get().getClass());
+	}
+
+	/**
+	 * TestCodeProvider also adds LITBOP, whose byte code the loader could not
+	 * initialize from its line.
+	 */
+	@Test
+	void fusedCodesAreNotLoaded() throws IOException
+	{
+		assertNull(CodeTable.get("LITBOP"));
+		assertNull(CodeTable.getDebug("LITBOP"));
+		assertEquals("5\n", ProgramRunner.run(ProgramRunner.load(ProgramRunner.write("fused", "LIT 5\nLITBOP 1 +\n"
+				+ "WRITE\nHALT\n")), "vm"));
+	}
+
+	@Test
+	void programsLoadTheSameOnSeveralThreads() throws Exception
+	{
+		List<String> files = new ArrayList<>();
+		for (String program : ProgramRunner.PROGRAMS)
+		{
+			files.add(ProgramRunner.getResource(program));
+		}
+		for (int seed = 0; seed < THREADS * 4; seed++)
+		{
+			files.add(ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try
+		{
+			List<Future<List<String>>> loaded = new ArrayList<>();
+			for (String file : files)
+			{
+				loaded.add(executor.submit(() -> ProgramRunner.getCodeClasses(ProgramRunner.load(file))));
+			}
+			for (int i = 0; i < files.size(); i++)
+			{
+				assertEquals(ProgramRunner.getCodeClasses(ProgramRunner.load(files.get(i))), loaded.get(i).get(), files.get(i));
+			}
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+}
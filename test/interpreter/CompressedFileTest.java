@@ -0,0 +1,144 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.debugger.DebugByteCodeLoader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads gzip-compressed program files through every loader and checks them
+ * against the same programs loaded uncompressed.
+ *
+ * @author mandynoto
+ */
+public class CompressedFileTest
+{
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the specified file compressed with gzip into a file with the
+	 * specified suffix that is deleted on exit.
+	 */
+	private static String compress(String file, String suffix) throws IOException
+	{
+		Path compressedFile = Files.createTempFile("compressed-", suffix);
+		compressedFile.toFile().deleteOnExit();
+		try ( OutputStream output = new GZIPOutputStream(Files.newOutputStream(compressedFile)))
+		{
+			output.write(Files.readAllBytes(Paths.get(file)));
+		}
+
+		return compressedFile.toString();
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void compressedProgramsPrintTheSame(String program) throws Exception
+	{
+		String file = ProgramRunner.getResource(program);
+		String output = ProgramRunner.run(ProgramRunner.load(file), "vm");
+		// Compressed files are found by their contents, not their names.
+		String compressedFile = compress(file, ".x.cod");
+
+		assertEquals(output, ProgramRunner.run(ProgramRunner.load(compressedFile), "vm"));
+		assertEquals(output, ProgramRunner.run(ParallelLoadTest.loadInParallel(compressedFile), "vm"));
+		assertEquals(output, StreamingProgramTest.runStreamed(compressedFile));
+
+		CodeTable.init();
+		assertEquals(output, ProgramRunner.run(new ByteCodeLoader(compressedFile).loadLazyCodes(), "vm"));
+		CodeTable.init();
+		assertEquals(output, ProgramRunner.run(new ByteCodeLoader(compressedFile).linkCodes(List.of()), "vm"));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void compressedBinaryProgramsPrintTheSame(String program) throws IOException
+	{
+		String file = ProgramRunner.getResource(program);
+		String binaryFile = compress(BinaryCodeFileTest.compile(file), ".x.bin.gz");
+
+		assertTrue(BinaryCodeFile.isBinary(binaryFile));
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(ProgramRunner.load(binaryFile), "vm"));
+	}
+
+	@Test
+	void compressedFilesCompile() throws IOException
+	{
+		String file = ProgramRunner.getResource("nested-loops.x.cod");
+		Path binaryFile = Files.createTempFile("program-", ".x.bin");
+		binaryFile.toFile().deleteOnExit();
+		BinaryCodeFile.compile(compress(file, ".x.cod.gz"), binaryFile.toString());
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"),
+				ProgramRunner.run(ProgramRunner.load(binaryFile.toString()), "vm"));
+	}
+
+	@Test
+	void debugLoaderReadsCompressedFiles() throws IOException
+	{
+		String file = ProgramRunner.getResource("branches.x.cod");
+		CodeTable.init();
+		Program program = new DebugByteCodeLoader(file).loadCodes();
+		CodeTable.init();
+		Program compressedProgram = new DebugByteCodeLoader(compress(file, ".x.cod.gz")).loadCodes();
+
+		assertNotNull(compressedProgram);
+		assertEquals(ProgramRunner.getCodeClasses(program), ProgramRunner.getCodeClasses(compressedProgram));
+	}
+
+	/**
+	 * A file that has only the gzip magic bytes fails while its header is
+	 * read, after the stream of the file is opened.
+	 */
+	@Test
+	void truncatedFilesDoNotOpen() throws IOException
+	{
+		Path truncatedFile = Files.createTempFile("truncated-", ".x.cod.gz");
+		truncatedFile.toFile().deleteOnExit();
+		Files.write(truncatedFile, new byte[]
+		{
+			(byte) 0x1f, (byte) 0x8b
+		});
+
+		assertThrows(EOFException.class, () -> BinaryCodeFile.openStream(truncatedFile.toString()));
+	}
+
+	@Test
+	void onlyGzipFilesAreCompressed() throws IOException
+	{
+		String file = ProgramRunner.getResource("branches.x.cod");
+		Path emptyFile = Files.createTempFile("empty-", ".x.cod.gz");
+		emptyFile.toFile().deleteOnExit();
+
+		assertTrue(BinaryCodeFile.isCompressed(compress(file, ".x.cod")));
+		assertFalse(BinaryCodeFile.isCompressed(file));
+		assertFalse(BinaryCodeFile.isCompressed(emptyFile.toString()));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.CallCode;
+import interpreter.bytecode.FalseBranchCode;
+import interpreter.bytecode.GotoCode;
+import interpreter.bytecode.HaltCode;
+import interpreter.bytecode.LabelCode;
+import interpreter.bytecode.ReadCode;
+import interpreter.bytecode.WriteCode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the byte codes of a program share their names and that the
+ * byte codes without state are shared instances.
+ *
+ * @author mandynoto
+ */
+public class ConstantPoolTest
+{
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	@Test
+	void equalNamesAreShared()
+	{
+		ConstantPool constantPool = new ConstantPool();
+		String name = constantPool.intern(new String("fib<<2>>"));
+
+		assertSame(name, constantPool.intern(new String("fib<<2>>")));
+		assertNotSame(name, constantPool.intern(new String("fib<<3>>")));
+		assertEquals(2, constantPool.size());
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void labelsAreShared(String program) throws IOException
+	{
+		String file = ProgramRunner.getResource(program);
+		assertLabelsShared(ProgramRunner.load(file));
+		assertLabelsShared(ProgramRunner.load(BinaryCodeFileTest.compile(file)));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void codesWithoutStateAreShared(String program) throws IOException
+	{
+		Program loaded = ProgramRunner.load(ProgramRunner.getResource(program));
+		Map<Class<?>, ByteCode> shared = new HashMap<>();
+		for (int pc = 0; pc < loaded.getSize(); pc++)
+		{
+			ByteCode code = loaded.getCode(pc);
+			if (code instanceof HaltCode || code instanceof ReadCode || code instanceof WriteCode)
+			{
+				assertSame(shared.computeIfAbsent(code.getClass(), type -> code), code);
+			}
+		}
+	}
+
+	@Test
+	void memoryReportCountsSharedCodes() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("writes",
+				"READ\nWRITE\nWRITE\nLIT 2\nWRITE\nPOP 2\nREAD\nWRITE\nPOP 1\nHALT\n"));
+		int stateless = 0;
+		Map<Class<?>, ByteCode> shared = new HashMap<>();
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			ByteCode code = program.getCode(pc);
+			if (code instanceof HaltCode || code instanceof ReadCode || code instanceof WriteCode)
+			{
+				stateless += 1;
+				shared.put(code.getClass(), code);
+			}
+		}
+		int copies = stateless - shared.size();
+		assertTrue(copies > 0);
+
+		String report = program.getMemoryReport();
+		assertTrue(report.startsWith("****Program memory****\n"), report);
+		assertTrue(report.contains(String.format("Byte codes: %d (%d objects, %d shared)",
+				program.getSize(), program.getSize() - copies, copies)), report);
+	}
+
+	/**
+	 * Asserts that every label of the specified program, in a LABEL or in a
+	 * jump to it, is the same string.
+	 */
+	private static void assertLabelsShared(Program program)
+	{
+		Map<String, String> labels = new HashMap<>();
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			ByteCode code = program.getCode(pc);
+			String label = null;
+			if (code instanceof LabelCode)
+			{
+				label = ((LabelCode) code).getLabel();
+			} else if (code instanceof CallCode)
+			{
+				label = ((CallCode) code).getFunctionName();
+			} else if (code instanceof GotoCode)
+			{
+				label = ((GotoCode) code).getLabel();
+			} else if (code instanceof FalseBranchCode)
+			{
+				label = ((FalseBranchCode) code).getLabel();
+			}
+
+			if (label != null)
+			{
+				assertSame(labels.computeIfAbsent(label, name -> name), label, label);
+			}
+		}
+		assertTrue(labels.size() > 2);
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.engine.LoweredProgram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs every program on every engine and checks that each prints what it
+ * prints on the virtual machine.
+ *
+ * @author mandynoto
+ */
+public class EngineTest
+{
+
+	private static final int GENERATED = 50;
+
+	/**
+	 * Returns every program of the test resources with every engine.
+	 */
+	static List<Arguments> getProgramsAndEngines()
+	{
+		List<Arguments> arguments = new ArrayList<>();
+		for (String program : ProgramRunner.PROGRAMS)
+		{
+			for (String engine : ProgramRunner.ENGINES)
+			{
+				arguments.add(Arguments.of(program, engine));
+			}
+		}
+
+		return arguments;
+	}
+
+	/**
+	 * Returns every engine.
+	 */
+	static String[] getEngines()
+	{
+		return ProgramRunner.ENGINES;
+	}
+
+	@ParameterizedTest
+	@MethodSource("getProgramsAndEngines")
+	void programsPrintTheSame(String program, String engine) throws IOException
+	{
+		String file = ProgramRunner.getResource(program);
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(ProgramRunner.load(file), engine));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getEngines")
+	void generatedProgramsPrintTheSame(String engine) throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			String file = ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed));
+
+			assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(ProgramRunner.load(file), engine), file);
+		}
+	}
+
+	@Test
+	void onlyVerifiedProgramsAreLowered() throws IOException
+	{
+		String file = ProgramRunner.getResource("branches.x.cod");
+		Program program = ProgramRunner.load(file);
+		LoweredProgram loweredProgram = LoweredProgram.lower(program);
+
+		assertNotNull(loweredProgram);
+		assertEquals(program.getSize(), loweredProgram.getOpcodes().length);
+		assertEquals(program.getSize(), loweredProgram.getOperands().length);
+
+		program.setStackMap(null);
+		assertNull(LoweredProgram.lower(program));
+		assertNull(LoweredProgram.lower(ProgramRunner.load(ProgramRunner.write("dump", "DUMP ON\nHALT\n"))));
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.FusedCode;
+import interpreter.bytecode.LitBopCode;
+import interpreter.bytecode.LoadBopCode;
+import interpreter.bytecode.LoadCompareBranchCode;
+import interpreter.bytecode.StoreLoadCode;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fuses byte code sequences into superinstructions and checks which
+ * sequences are fused and what the fused programs print.
+ *
+ * @author mandynoto
+ */
+public class FuserTest
+{
+
+	@Test
+	void longestSequencesAreFused() throws IOException
+	{
+		// Counts down from 3, adding 10 to each value it writes.
+		Program program = ProgramRunner.load(ProgramRunner.write("loop", "LIT 3\nLABEL loop\nLOAD 0 n\nLIT 0\n"
+				+ "BOP >\nFALSEBRANCH done\nLOAD 0 n\nLIT 10\nBOP +\nWRITE\nPOP 1\nLOAD 0 n\nLIT 1\nBOP -\n"
+				+ "STORE 0 n\nLOAD 0 n\nPOP 1\nGOTO loop\nLABEL done\nHALT\n"));
+		List<String> classes = ProgramRunner.getCodeClasses(program);
+		Fuser fuser = new Fuser(program);
+
+		assertTrue(fuser.fuse());
+		assertEquals(classes.size(), program.getSize());
+		assertTrue(program.getCode(2) instanceof LoadCompareBranchCode);
+		assertTrue(program.getCode(6) instanceof LoadBopCode);
+		assertTrue(program.getCode(11) instanceof LoadBopCode);
+		assertTrue(program.getCode(14) instanceof StoreLoadCode);
+		assertEquals(4, ((FusedCode) program.getCode(2)).getLength());
+		// The codes a fused code covers stay in place, so addresses do not move.
+		assertEquals(classes.get(3), program.getCode(3).getClass().getName());
+		assertEquals("13\n12\n11\n", ProgramRunner.run(program, "vm"));
+
+		String report = fuser.getReport();
+		assertTrue(report.startsWith("****Fused byte codes****\n"), report);
+		assertTrue(report.contains("LOAD LIT BOP FALSEBRANCH: 1 of 1 sites\n"), report);
+		assertTrue(report.contains("LOAD LIT BOP: 2 of 3 sites\n"), report);
+		assertTrue(report.contains("STORE LOAD: 1 of 1 sites\n"), report);
+		assertTrue(report.contains("Fused 4 sequences, removing 8 of 20 dispatches\n"), report);
+	}
+
+	@Test
+	void immediateOperandsAreFused() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("lit", "READ\nLIT 2\nBOP *\nWRITE\nHALT\n"));
+
+		assertTrue(new Fuser(program).fuse());
+		assertTrue(program.getCode(1) instanceof LitBopCode);
+		assertEquals("Input an integer: 14\n", ProgramRunner.run(program, "vm"));
+	}
+
+	@Test
+	void unknownOperatorsAreNotFused() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("unknown", "LIT 1\nLIT 2\nBOP ?\nLIT 3\nWRITE\nHALT\n"));
+
+		assertTrue(new Fuser(program).fuse());
+		assertFalse(program.getCode(1) instanceof FusedCode);
+	}
+
+	@Test
+	void programsThatDumpAreLeftAlone() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("dump", "DUMP ON\nLIT 1\nLIT 2\nBOP +\nWRITE\nHALT\n"));
+		List<String> classes = ProgramRunner.getCodeClasses(program);
+
+		assertFalse(new Fuser(program).fuse());
+		assertEquals(classes, ProgramRunner.getCodeClasses(program));
+
+		program = ProgramRunner.load(ProgramRunner.getResource("branches.x.cod"));
+		program.setStackMap(null);
+		assertFalse(new Fuser(program).fuse());
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the interpreter refuses an unknown engine and options that
+ * would ignore each other, and exits with an error when it does.
+ *
+ * @author mandynoto
+ */
+public class InterpreterTest
+{
+
+	// How long the interpreter may take to print its usage.
+	private static final long TIMEOUT_SECONDS = 60;
+
+	@Test
+	void optionsThatWorkTogetherAreAccepted()
+	{
+		assertNull(Interpreter.checkOptions(Map.of()));
+		assertNull(Interpreter.checkOptions(Map.of("--engine", "register", "--stats", "")));
+		assertNull(Interpreter.checkOptions(Map.of("--jit", "", "--jit-threshold", "10", "--no-memo", "")));
+		assertNull(Interpreter.checkOptions(Map.of("--link", "lib.x.cod", "--prelude", "")));
+		assertNull(Interpreter.checkOptions(Map.of("--parallel", "", "--cache", "cache", "--fuse", "")));
+	}
+
+	@Test
+	void optionsThatIgnoreEachOtherAreRefused()
+	{
+		assertEquals("***Incorrect usage, --jit cannot be used with --fuse",
+				Interpreter.checkOptions(Map.of("--jit", "", "--fuse", "")));
+		assertEquals("***Incorrect usage, --lazy cannot be used with --stream",
+				Interpreter.checkOptions(Map.of("--lazy", "", "--stream", "")));
+		assertEquals("***Incorrect usage, --lazy cannot be used with --cache",
+				Interpreter.checkOptions(Map.of("--lazy", "", "--cache", "cache")));
+		assertEquals("***Incorrect usage, --stream cannot be used with --parallel",
+				Interpreter.checkOptions(Map.of("--stream", "", "--parallel", "")));
+		assertEquals("***Incorrect usage, --fuse cannot be used with --engine switch",
+				Interpreter.checkOptions(Map.of("--engine", "switch", "--fuse", "")));
+	}
+
+	@Test
+	void unknownEnginesExitWithTheUsage() throws IOException, InterruptedException
+	{
+		String file = ProgramRunner.write("halt", "HALT\n");
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"interpreter.Interpreter", "--engine", "stack", file)
+				.redirectErrorStream(true)
+				.start();
+		String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+		assertTrue(process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS), output);
+		assertEquals(1, process.exitValue(), output);
+		assertTrue(output.startsWith("***Unknown engine: stack, try: "), output);
+	}
+}
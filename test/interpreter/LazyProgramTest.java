@@ -0,0 +1,144 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads programs lazily and checks them against the same programs loaded at
+ * once, and which of their blocks a run parses.
+ *
+ * @author mandynoto
+ */
+public class LazyProgramTest
+{
+
+	private static final int GENERATED = 50;
+	// Writes 2, without ever calling unused.
+	private static final String UNUSED = "GOTO start\nLABEL unused\nLIT 1\nRETURN unused\nLABEL start\nLIT 2\n"
+			+ "WRITE\nHALT\n";
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the lazy program of the specified code file.
+	 */
+	private static LazyProgram loadLazy(String file) throws IOException
+	{
+		CodeTable.init();
+		Program program = new ByteCodeLoader(file).loadLazyCodes();
+		assertTrue(program instanceof LazyProgram, file);
+
+		return (LazyProgram) program;
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void lazyProgramsPrintTheSame(String program) throws IOException
+	{
+		String file = ProgramRunner.getResource(program);
+		Program loaded = ProgramRunner.load(file);
+		LazyProgram lazyProgram = loadLazy(file);
+
+		assertEquals(loaded.getSize(), lazyProgram.getSize());
+		assertEquals(ProgramRunner.run(loaded, "vm"), ProgramRunner.run(lazyProgram, "vm"));
+		assertEquals(ProgramRunner.getCodeClasses(loaded), ProgramRunner.getCodeClasses(lazyProgram));
+	}
+
+	@Test
+	void generatedLazyProgramsPrintTheSame() throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			String file = ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed));
+
+			assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(loadLazy(file), "vm"), file);
+		}
+	}
+
+	@Test
+	void onlyReachedBlocksAreParsed() throws IOException
+	{
+		LazyProgram program = loadLazy(ProgramRunner.write("unused", UNUSED));
+
+		assertEquals(8, program.getSize());
+		assertNull(program.getLoadedCode(0));
+		assertEquals("2\n", ProgramRunner.run(program, "vm"));
+		assertNotNull(program.getLoadedCode(0));
+		assertNull(program.getLoadedCode(1));
+		assertNull(program.getLoadedCode(3));
+		assertNotNull(program.getLoadedCode(4));
+		assertTrue(program.getMemoryReport().endsWith("Blocks loaded: 2 of 3\n"), program.getMemoryReport());
+	}
+
+	/**
+	 * Returns a new byte code of the specified code, initialized with the
+	 * specified arguments.
+	 */
+	private static ByteCode newCode(String code, String... args)
+	{
+		ByteCode byteCode = CodeTable.get(code).get();
+		byteCode.init(new ArrayList<>(List.of(args)));
+
+		return byteCode;
+	}
+
+	@Test
+	void replacingACodeParsesOnlyItsBlock() throws IOException
+	{
+		LazyProgram program = loadLazy(ProgramRunner.write("unused", UNUSED));
+		program.setCode(5, newCode("LIT", "3"));
+
+		assertNull(program.getLoadedCode(1));
+		assertNotNull(program.getLoadedCode(4));
+		assertEquals("3\n", ProgramRunner.run(program, "vm"));
+		assertTrue(program.getMemoryReport().endsWith("Blocks loaded: 2 of 3\n"), program.getMemoryReport());
+	}
+
+	@Test
+	void arrayHoldsEveryBlock() throws IOException
+	{
+		String file = ProgramRunner.write("unused", UNUSED);
+		LazyProgram program = loadLazy(file);
+		ByteCode[] codes = program.toArray();
+
+		assertEquals(8, codes.length);
+		assertEquals(ProgramRunner.getCodeClasses(ProgramRunner.load(file)), ProgramRunner.getCodeClasses(program));
+		assertTrue(program.getMemoryReport().endsWith("Blocks loaded: 3 of 3\n"), program.getMemoryReport());
+	}
+
+	@Test
+	void addedCodesRunAfterTheLastBlock() throws IOException
+	{
+		// The same program, with the end of main added after it is loaded.
+		LazyProgram program = loadLazy(ProgramRunner.write("added", "GOTO start\nLABEL unused\nLIT 1\n"
+				+ "RETURN unused\nLABEL start\nLIT 2\nWRITE\n"));
+		program.addAll(List.of(newCode("LIT", "4"), newCode("WRITE")));
+		program.add(newCode("HALT"));
+
+		assertEquals(10, program.getSize());
+		assertNull(program.getLoadedCode(1));
+		assertEquals("2\n4\n", ProgramRunner.run(program, "vm"));
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.BranchCode;
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.LabelCode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Resolves the labels of programs through a Linker and checks the labels
+ * no LABEL byte code defines.
+ *
+ * @author mandynoto
+ */
+public class LinkerTest
+{
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns what the loader prints for the specified code file, asserting
+	 * that it returns no program.
+	 */
+	private static String loadUnresolved(String file, boolean parallel)
+	{
+		CodeTable.init();
+		return ProgramRunner.capture(() ->
+		{
+			try
+			{
+				ByteCodeLoader loader = new ByteCodeLoader(file);
+				loader.setParallel(parallel);
+				assertNull(loader.loadCodes());
+			} catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	@Test
+	void labelsKeepTheirAddressesAsTheTableGrows()
+	{
+		Linker linker = new Linker(2);
+		for (int i = 0; i < 5000; i++)
+		{
+			linker.put("label<<" + i + ">>", i * 3);
+		}
+
+		assertEquals(5000, linker.getSize());
+		for (int i = 0; i < 5000; i++)
+		{
+			assertEquals(i * 3, linker.getAddress("label<<" + i + ">>"));
+		}
+		assertEquals(-1, linker.getAddress("label<<5000>>"));
+	}
+
+	@Test
+	void laterLabelsReplaceEarlierOnes()
+	{
+		Linker linker = new Linker();
+		linker.put("loop", 4);
+		linker.put("loop", 9);
+
+		assertEquals(1, linker.getSize());
+		assertEquals(9, linker.getAddress("loop"));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void jumpsLandOnTheirLabels(String program) throws IOException
+	{
+		Program loaded = ProgramRunner.load(ProgramRunner.getResource(program));
+		int branches = 0;
+		for (int pc = 0; pc < loaded.getSize(); pc++)
+		{
+			ByteCode byteCode = loaded.getCode(pc);
+			if (byteCode instanceof BranchCode)
+			{
+				BranchCode branch = (BranchCode) byteCode;
+				ByteCode target = loaded.getCode(branch.getAddress());
+
+				assertTrue(target instanceof LabelCode, branch.getLabel());
+				assertEquals(branch.getLabel(), ((LabelCode) target).getLabel());
+				branches += 1;
+			}
+		}
+		assertTrue(branches > 0);
+	}
+
+	@Test
+	void resolvedBranchesAreLeftAlone() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.getResource("branches.x.cod"));
+		Linker linker = new Linker();
+		linker.addLabels(program, 1, program.getSize());
+		BranchCode branch = (BranchCode) program.getCode(0);
+		int address = branch.getAddress();
+		linker.put(branch.getLabel(), address + 1);
+
+		assertEquals(List.of(), linker.link(program, 0, program.getSize()));
+		assertEquals(address, branch.getAddress());
+	}
+
+	@Test
+	void unresolvedLabelsAreReported() throws IOException
+	{
+		String file = ProgramRunner.write("unresolved", "GOTO start\nLABEL start\nARGS 0\nCALL missing\n"
+				+ "FALSEBRANCH nowhere\nHALT\n");
+		String expected = "***Unresolved label missing at byte code 3\n"
+				+ "***Unresolved label nowhere at byte code 4\n";
+
+		assertEquals(expected, loadUnresolved(file, false));
+		assertEquals(expected, loadUnresolved(file, true));
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.LabelCode;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Finds the pure functions of programs and checks that calls to them are
+ * answered from the cache without changing what the programs print.
+ *
+ * @author mandynoto
+ */
+public class MemoizerTest
+{
+
+	// Writes double(3) twice, then write(4), which is not pure, twice.
+	private static final String CALLS = "GOTO start\nLABEL double\nLOAD 0 x\nLIT 2\nBOP *\nRETURN double\n"
+			+ "LABEL write\nLOAD 0 x\nWRITE\nRETURN write\nLABEL start\nLIT 3\nARGS 1\nCALL double\nWRITE\nPOP 1\n"
+			+ "LIT 3\nARGS 1\nCALL double\nWRITE\nPOP 1\nLIT 4\nARGS 1\nCALL write\nPOP 1\nLIT 4\nARGS 1\n"
+			+ "CALL write\nPOP 1\nHALT\n";
+
+	/**
+	 * Returns the address of the LABEL of the specified function.
+	 */
+	private static int find(Program program, String label)
+	{
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			ByteCode code = program.getCode(pc);
+			if (code instanceof LabelCode && ((LabelCode) code).getLabel().equals(label))
+			{
+				return pc;
+			}
+		}
+
+		return -1;
+	}
+
+	@Test
+	void callsToPureFunctionsAreRemembered() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("calls", CALLS));
+		Memoizer memoizer = Memoizer.analyze(program);
+		assertNotNull(memoizer);
+		assertTrue(memoizer.isPure(find(program, "double")));
+		assertFalse(memoizer.isPure(find(program, "write")));
+
+		String output = ProgramRunner.capture(() ->
+		{
+			VirtualMachine vm = new VirtualMachine(program);
+			vm.setMemoizer(memoizer);
+			vm.executeProgram();
+		});
+
+		assertEquals("6\n6\n4\n4\n", output);
+		assertEquals("****Memoization****\nPure functions: 1 of 2\nCalls: 1 hits, 1 misses, 0 evicted\n",
+				memoizer.getReport());
+	}
+
+	@Test
+	void recursionIsMemoized() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.getResource("read-recursion.x.cod"));
+		Memoizer memoizer = Memoizer.analyze(program);
+
+		assertNotNull(memoizer);
+		assertTrue(memoizer.getReport().contains("Pure functions: 1 of 3\n"), memoizer.getReport());
+		assertEquals(ProgramRunner.run(program, "vm"), ProgramRunner.run(program, "memo"));
+	}
+
+	@Test
+	void programsThatCannotBeMemoizedAreLeftAlone() throws IOException
+	{
+		assertNull(Memoizer.analyze(ProgramRunner.load(ProgramRunner.write("dump", "DUMP ON\n" + CALLS))));
+		assertNull(Memoizer.analyze(ProgramRunner.load(ProgramRunner.write("impure", "GOTO start\nLABEL write\n"
+				+ "LOAD 0 x\nWRITE\nRETURN write\nLABEL start\nLIT 4\nARGS 1\nCALL write\nPOP 1\nHALT\n"))));
+
+		Program program = ProgramRunner.load(ProgramRunner.write("calls", CALLS));
+		program.setStackMap(null);
+		assertNull(Memoizer.analyze(program));
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.LabelCode;
+import interpreter.bytecode.ReadCode;
+import interpreter.bytecode.WriteCode;
+import interpreter.bytecode.debuggerByteCodes.FunctionCode;
+import interpreter.debugger.DebugByteCodeLoader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Links programs with their modules and the shared prelude, and checks them
+ * against the same programs loaded on their own.
+ *
+ * @author mandynoto
+ */
+public class ModuleLinkerTest
+{
+
+	// Prints the square of 3 through a function of another module.
+	private static final String MAIN = "GOTO start\nLABEL start\nLIT 3\nARGS 1\nCALL square\n"
+			+ "ARGS 1\nCALL Write\nGOTO done\nLABEL done\nHALT\n";
+	private static final String SQUARE = "LABEL square\nGOTO done\nLABEL done\nLOAD 0 x\nLOAD 0 x\n"
+			+ "BOP *\nRETURN square\n";
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the specified program file linked with the specified module
+	 * files and the prelude.
+	 */
+	private static Program link(String file, String... moduleFiles) throws IOException
+	{
+		CodeTable.init();
+		Program program = new ByteCodeLoader(file).linkCodes(List.of(moduleFiles));
+		assertNotNull(program, file);
+		assertNotNull(program.getStackMap(), file + " is not verified");
+
+		return program;
+	}
+
+	/**
+	 * Returns the labels of the specified program, in order.
+	 */
+	private static List<String> getLabels(Program program)
+	{
+		List<String> labels = new ArrayList<>();
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			if (program.getCode(pc) instanceof LabelCode)
+			{
+				labels.add(((LabelCode) program.getCode(pc)).getLabel());
+			}
+		}
+
+		return labels;
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void preludeProgramsPrintTheSame(String program) throws IOException
+	{
+		String file = ProgramRunner.getResource(program);
+		Program linked = link(file);
+		List<String> labels = getLabels(linked);
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(linked, "vm"));
+		assertEquals(1, labels.stream().filter("Read"::equals).count());
+		assertEquals(1, labels.stream().filter("Write"::equals).count());
+		assertEquals(List.of("Read", "Write"), labels.subList(labels.size() - 2, labels.size()));
+	}
+
+	@Test
+	void modulesCallEachOther() throws IOException
+	{
+		Program program = link(ProgramRunner.write("main", MAIN), ProgramRunner.write("square", SQUARE));
+
+		assertEquals("9\n", ProgramRunner.run(program, "vm"));
+		// Each module resolves its own label done.
+		assertEquals(2, getLabels(program).stream().filter("done"::equals).count());
+	}
+
+	@Test
+	void earlierModulesWin() throws IOException
+	{
+		String cube = SQUARE.replace("BOP *\n", "BOP *\nLOAD 0 x\nBOP *\n");
+		Program program = link(ProgramRunner.write("main", MAIN), ProgramRunner.write("square", SQUARE),
+				ProgramRunner.write("cube", cube));
+
+		assertEquals("9\n", ProgramRunner.run(program, "vm"));
+	}
+
+	@Test
+	void undefinedFunctionsAreReported() throws IOException
+	{
+		String file = ProgramRunner.write("main", MAIN);
+		CodeTable.init();
+		String output = ProgramRunner.capture(() ->
+		{
+			try
+			{
+				assertNull(new ByteCodeLoader(file).linkCodes(List.of()));
+			} catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		assertEquals("***Unresolved label square at byte code 4\n", output);
+	}
+
+	@Test
+	void linkingAgainLeavesEarlierProgramsAlone() throws IOException
+	{
+		Program first = link(ProgramRunner.getResource("read-recursion.x.cod"));
+		String output = ProgramRunner.run(first, "vm");
+		link(ProgramRunner.write("main", MAIN), ProgramRunner.write("square", SQUARE));
+		link(ProgramRunner.getResource("branches.x.cod"));
+
+		assertEquals(output, ProgramRunner.run(first, "vm"));
+	}
+
+	/**
+	 * Linking sets the addresses of the prelude's branches and marks its tail
+	 * calls, so each program gets byte codes of its own, but for the READ and
+	 * WRITE flyweights.
+	 */
+	@Test
+	void linkedProgramsShareNoPreludeCodes() throws IOException
+	{
+		Program first = link(ProgramRunner.getResource("read-recursion.x.cod"));
+		Program second = link(ProgramRunner.write("main", MAIN), ProgramRunner.write("square", SQUARE));
+		CodeTable.init();
+		ByteCodeLoader loader = new ByteCodeLoader(ProgramRunner.write("main", MAIN));
+		int size = Prelude.getCodes(loader).size();
+
+		assertNotSame(Prelude.getCodes(loader).get(0), Prelude.getCodes(loader).get(0));
+		for (int i = 1; i <= size; i++)
+		{
+			ByteCode byteCode = first.getCode(first.getSize() - i);
+			if (!(byteCode instanceof ReadCode || byteCode instanceof WriteCode))
+			{
+				assertNotSame(byteCode, second.getCode(second.getSize() - i));
+			}
+		}
+	}
+
+	@Test
+	void debugPreludeKeepsItsFunctionCodes() throws IOException
+	{
+		String file = ProgramRunner.getResource("branches.x.cod");
+		CodeTable.init();
+		Program program = new DebugByteCodeLoader(file).linkCodes(List.of());
+		assertNotNull(program);
+
+		boolean hasFunction = false;
+		for (int pc = program.getSize() - 12; pc < program.getSize(); pc++)
+		{
+			ByteCode byteCode = program.getCode(pc);
+			hasFunction |= byteCode instanceof FunctionCode;
+		}
+		assertTrue(hasFunction);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads text programs in chunks on several threads and checks that they are
+ * the programs the sequential loader loads.
+ *
+ * @author mandynoto
+ */
+public class ParallelLoadTest
+{
+
+	// Enough functions that the text of the big program spans several chunks.
+	private static final int FUNCTIONS = 6000;
+	private static final int GENERATED = 50;
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the program of the specified code file loaded in parallel.
+	 */
+	static Program loadInParallel(String file) throws IOException
+	{
+		CodeTable.init();
+		ByteCodeLoader loader = new ByteCodeLoader(file);
+		loader.setParallel(true);
+		Program program = loader.loadCodes();
+		assertNotNull(program, file);
+
+		return program;
+	}
+
+	/**
+	 * Asserts that the specified code file loads in parallel into the byte
+	 * codes it loads sequentially, and prints the same.
+	 */
+	private static void assertSameProgram(String file) throws IOException
+	{
+		Program program = ProgramRunner.load(file);
+		Program parallelProgram = loadInParallel(file);
+
+		assertEquals(ProgramRunner.getCodeClasses(program), ProgramRunner.getCodeClasses(parallelProgram), file);
+		assertEquals(ProgramRunner.run(program, "vm"), ProgramRunner.run(parallelProgram, "vm"), file);
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void programsLoadTheSameInParallel(String program) throws IOException
+	{
+		assertSameProgram(ProgramRunner.getResource(program));
+	}
+
+	@Test
+	void generatedProgramsLoadTheSameInParallel() throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			assertSameProgram(ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed)));
+		}
+	}
+
+	/**
+	 * Every function is called from the end of the program, so most calls
+	 * jump to a label of another chunk.
+	 */
+	@Test
+	void bigProgramLoadsTheSameInParallel() throws IOException
+	{
+		String codes = getBigProgram();
+		assertTrue(codes.length() > 4 * 64 * 1024);
+
+		String file = ProgramRunner.write("big", codes);
+		assertSameProgram(file);
+		assertEquals("17997000\n", ProgramRunner.run(loadInParallel(file), "vm"));
+	}
+
+	/**
+	 * Returns a program of many functions, each adding its number to its
+	 * argument, which are called one after another and print their sum.
+	 */
+	static String getBigProgram()
+	{
+		StringBuilder codes = new StringBuilder("GOTO start<<1>>\nLABEL Write\nLOAD 0 dummyFormal\nWRITE\nRETURN \n");
+		codes.append("LABEL start<<1>>\n");
+		for (int i = 0; i < FUNCTIONS; i++)
+		{
+			codes.append("GOTO continue<<").append(2 * i + 3).append(">>\n");
+			codes.append("LABEL f").append(i).append("<<").append(2 * i + 2).append(">>\n");
+			codes.append("LOAD 0 n\nLIT ").append(i).append("\nBOP +\n");
+			codes.append("RETURN f").append(i).append("<<").append(2 * i + 2).append(">>\n");
+			codes.append("LABEL continue<<").append(2 * i + 3).append(">>\n");
+		}
+		codes.append("LIT 0 sum\n");
+		for (int i = 0; i < FUNCTIONS; i++)
+		{
+			codes.append("LOAD 0 sum\nARGS 1\nCALL f").append(i).append("<<").append(2 * i + 2).append(">>\n");
+			codes.append("STORE 0 sum\n");
+		}
+		codes.append("LOAD 0 sum\nARGS 1\nCALL Write\nPOP 2\nHALT\n");
+
+		return codes.toString();
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.BopCode;
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.CallCode;
+import interpreter.optimizer.BlockLayout;
+import interpreter.optimizer.LabelElision;
+import interpreter.optimizer.Optimizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Records the profile of a program, saves it and reads it back like
+ * --profile-out and --profile-in do, and runs the program optimized against
+ * the profile against the program as it is loaded.
+ *
+ * @author mandynoto
+ */
+public class ProfileTest
+{
+
+	private static final int GENERATED = 200;
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the program of the specified code file with the profile of a
+	 * run of it, saved into a file and read back.
+	 */
+	private static Program loadProfiled(String file) throws IOException
+	{
+		Program program = ProgramRunner.load(file);
+		Path profileFile = Files.createTempFile("profile", ".txt");
+		try
+		{
+			ProgramRunner.record(ProgramRunner.load(file)).save(profileFile.toString(), program);
+			program.setProfile(Profile.load(profileFile.toString(), program));
+		} finally
+		{
+			Files.delete(profileFile);
+		}
+
+		return program;
+	}
+
+	/**
+	 * Asserts that the specified code file, optimized against its profile,
+	 * prints the same on the specified engine as it does on the virtual
+	 * machine as it is loaded.
+	 */
+	private static void assertSameOutput(String file, String engine) throws IOException
+	{
+		Program program = loadProfiled(file);
+		Program optimized = Optimizer.getDefault().optimize(program);
+
+		assertNotSame(program, optimized, file);
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(optimized, engine),
+				file + " on " + engine);
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void profiledProgramsPrintTheSame(String program) throws IOException
+	{
+		for (String engine : ProgramRunner.ENGINES)
+		{
+			assertSameOutput(ProgramRunner.getResource(program), engine);
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings =
+	{
+		"vm", "fuse"
+	})
+	void profiledGeneratedProgramsPrintTheSame(String engine) throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			assertSameOutput(ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed)), engine);
+		}
+	}
+
+	/**
+	 * The else of i < 5 runs on all but five iterations, so it falls through
+	 * once the branches are laid out, after the labels are elided like the
+	 * first round of the default optimizer does.
+	 */
+	@Test
+	void hotElseIsLaidOutFirst() throws IOException
+	{
+		String file = ProgramRunner.getResource("branches.x.cod");
+		Program program = loadProfiled(file);
+		Optimizer optimizer = new Optimizer();
+		optimizer.add(new LabelElision());
+		optimizer.add(new BlockLayout());
+		Program optimized = optimizer.optimize(program);
+
+		assertNotEquals(getCodes(program), getCodes(optimized));
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(optimized, "vm"));
+	}
+
+	/**
+	 * g has more byte codes than a function inlined without a profile, so only
+	 * the profile inlines its call, which ran.
+	 */
+	@Test
+	void hotCallIsInlined() throws IOException
+	{
+		String file = ProgramRunner.getResource("branches.x.cod");
+
+		assertTrue(getCodes(Optimizer.getDefault().optimize(ProgramRunner.load(file))).contains("CALL g"));
+		assertFalse(getCodes(Optimizer.getDefault().optimize(loadProfiled(file))).contains("CALL g"));
+	}
+
+	/**
+	 * Returns the kind of each byte code of the specified program, with the
+	 * operator of each BOP and the function of each CALL, e.g. CALL g.
+	 */
+	private static List<String> getCodes(Program program)
+	{
+		List<String> codes = new ArrayList<>();
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			ByteCode code = program.getCode(pc);
+			if (code instanceof CallCode)
+			{
+				codes.add("CALL " + ((CallCode) code).getLabel().replaceAll("<<.*", ""));
+			} else if (code instanceof BopCode)
+			{
+				codes.add("BOP " + ((BopCode) code).getOperator());
+			} else
+			{
+				codes.add(code.getClass().getSimpleName());
+			}
+		}
+
+		return codes;
+	}
+}
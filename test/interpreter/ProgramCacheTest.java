@@ -0,0 +1,167 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Loads programs through a ProgramCache, from its entries once they are
+ * stored, and checks when entries are replaced and evicted.
+ *
+ * @author mandynoto
+ */
+public class ProgramCacheTest
+{
+
+	// The mode of the entries ByteCodeLoader stores.
+	private static final String MODE = ByteCodeLoader.class.getName();
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the program of the specified code file loaded through the
+	 * specified cache.
+	 */
+	private static Program loadCached(String file, ProgramCache cache) throws IOException
+	{
+		CodeTable.init();
+		ByteCodeLoader loader = new ByteCodeLoader(file);
+		loader.setCache(cache);
+		Program program = loader.loadCodes();
+		assertNotNull(program, file);
+
+		return program;
+	}
+
+	/**
+	 * Returns the number of entries in the cache directory.
+	 */
+	private long getEntryCount() throws IOException
+	{
+		try ( Stream<Path> entries = Files.list(directory))
+		{
+			return entries.filter(entry -> entry.toString().endsWith(".xcache")).count();
+		}
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void cachedProgramsPrintTheSame(String program) throws IOException
+	{
+		String file = ProgramRunner.getResource(program);
+		ProgramCache cache = new ProgramCache(directory.toString(), ProgramCache.DEFAULT_MAX_BYTES);
+		String output = ProgramRunner.run(ProgramRunner.load(file), "vm");
+
+		assertNull(cache.find(cache.getKey(file, MODE)));
+		assertEquals(output, ProgramRunner.run(loadCached(file, cache), "vm"));
+		assertNotNull(cache.find(cache.getKey(file, MODE)));
+
+		Program cachedProgram = loadCached(file, cache);
+		assertEquals(ProgramRunner.getCodeClasses(ProgramRunner.load(file)), ProgramRunner.getCodeClasses(cachedProgram));
+		assertEquals(output, ProgramRunner.run(cachedProgram, "vm"));
+		assertEquals(1, getEntryCount());
+	}
+
+	@Test
+	void changedFileIsLoadedAgain() throws IOException
+	{
+		Path file = directory.resolve("program.x.cod");
+		Files.write(file, ProgramGenerator.generate(1).getBytes(StandardCharsets.UTF_8));
+		ProgramCache cache = new ProgramCache(directory.resolve("cache").toString(), ProgramCache.DEFAULT_MAX_BYTES);
+		String key = cache.getKey(file.toString(), MODE);
+		loadCached(file.toString(), cache);
+
+		Files.write(file, ProgramGenerator.generate(2).getBytes(StandardCharsets.UTF_8));
+		assertNotEquals(key, cache.getKey(file.toString(), MODE));
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file.toString()), "vm"),
+				ProgramRunner.run(loadCached(file.toString(), cache), "vm"));
+		assertNotNull(cache.find(key));
+		assertNotNull(cache.find(cache.getKey(file.toString(), MODE)));
+	}
+
+	@Test
+	void modesHaveTheirOwnEntries() throws IOException
+	{
+		String file = ProgramRunner.getResource("branches.x.cod");
+		ProgramCache cache = new ProgramCache(directory.toString(), ProgramCache.DEFAULT_MAX_BYTES);
+
+		assertEquals(cache.getKey(file, MODE), cache.getKey(file, MODE));
+		assertNotEquals(cache.getKey(file, MODE), cache.getKey(file, "interpreter.debugger.DebugByteCodeLoader"));
+	}
+
+	@Test
+	void damagedEntryIsReplaced() throws IOException
+	{
+		String file = ProgramRunner.getResource("nested-loops.x.cod");
+		ProgramCache cache = new ProgramCache(directory.toString(), ProgramCache.DEFAULT_MAX_BYTES);
+		loadCached(file, cache);
+		Path entry = cache.find(cache.getKey(file, MODE));
+		byte[] contents = Files.readAllBytes(entry);
+		Files.write(entry, new byte[]
+		{
+			contents[0], contents[1], contents[2], contents[3]
+		});
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(loadCached(file, cache), "vm"));
+		assertEquals(contents.length, Files.size(cache.find(cache.getKey(file, MODE))));
+	}
+
+	/**
+	 * The cache only holds all but one byte of three entries, so storing the
+	 * third evicts the one used longest ago.
+	 */
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() throws IOException
+	{
+		String[] files = new String[3];
+		Path[] entries = new Path[3];
+		ProgramCache unlimited = new ProgramCache(directory.resolve("unlimited").toString(), Long.MAX_VALUE);
+		long totalBytes = 0;
+		for (int i = 0; i < files.length; i++)
+		{
+			files[i] = ProgramRunner.write("seed" + i, ProgramGenerator.generate(i));
+			loadCached(files[i], unlimited);
+			totalBytes += Files.size(unlimited.find(unlimited.getKey(files[i], MODE)));
+		}
+
+		ProgramCache cache = new ProgramCache(directory.resolve("cache").toString(), totalBytes - 1);
+		for (int i = 0; i < 2; i++)
+		{
+			loadCached(files[i], cache);
+			entries[i] = cache.find(cache.getKey(files[i], MODE));
+		}
+		Files.setLastModifiedTime(entries[0], FileTime.fromMillis(2000000000000L));
+		Files.setLastModifiedTime(entries[1], FileTime.fromMillis(1000000000000L));
+		loadCached(files[2], cache);
+
+		assertNotNull(cache.find(cache.getKey(files[0], MODE)));
+		assertNull(cache.find(cache.getKey(files[1], MODE)));
+		assertNotNull(cache.find(cache.getKey(files[2], MODE)));
+	}
+}
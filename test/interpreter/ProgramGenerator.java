@@ -0,0 +1,370 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates random programs laid out like the compiler lays them out:
+ * functions with locals, while loops that count up to a literal, if and
+ * else, calls inside expressions, recursion that counts down to 0, and
+ * calls of Read and Write, e.g. ProgramGenerator.generate(16).
+ *
+ * Every program halts: a loop never stores its counter in its body, and a
+ * recursive function is called with a small literal. A division is only by
+ * a nonzero literal.
+ *
+ * @author mandynoto
+ */
+public final class ProgramGenerator
+{
+
+	private static final String[] OPERATORS =
+	{
+		"+", "-", "*", "/", "==", "!=", "<=", ">", ">=", "<", "|", "&"
+	};
+
+	// The deepest an if or a while is nested in a block.
+	private static final int MAX_NESTING = 2;
+
+	private final Random random;
+	private final List<String> codes = new ArrayList<>();
+	// The functions generated so far, which later byte codes can call.
+	private final List<Function> functions = new ArrayList<>();
+	private int label = 10;
+
+	/**
+	 * Constructs a generator with the specified seed.
+	 */
+	private ProgramGenerator(long seed)
+	{
+		random = new Random(seed);
+	}
+
+	/**
+	 * Returns the byte codes of the random program of the specified seed, one
+	 * per line.
+	 *
+	 * @param seed the specified seed.
+	 * @return the byte codes of the program.
+	 */
+	public static String generate(long seed)
+	{
+		return new ProgramGenerator(seed).generateProgram();
+	}
+
+	/**
+	 * Returns the byte codes of a random program.
+	 */
+	private String generateProgram()
+	{
+		add("GOTO start<<1>>");
+		add("LABEL Read", "READ", "RETURN ");
+		add("LABEL Write", "LOAD 0 dummyFormal", "WRITE", "RETURN ");
+		add("LABEL start<<1>>");
+
+		int functionCount = 1 + random.nextInt(5);
+		for (int i = 0; i < functionCount; i++)
+		{
+			generateFunction(i);
+		}
+
+		Scope scope = new Scope((String) null);
+		int globals = 1 + random.nextInt(3);
+		for (int i = 0; i < globals; i++)
+		{
+			add("LIT " + random.nextInt(6) + " g" + i);
+			scope.variables.add(i);
+		}
+		int statements = 2 + random.nextInt(5);
+		for (int i = 0; i < statements; i++)
+		{
+			generateStatement(scope, 0, false);
+		}
+		for (int variable : scope.variables)
+		{
+			add("LOAD " + variable + " g" + variable, "ARGS 1", "CALL Write", "POP 1");
+		}
+		add("POP " + globals, "HALT");
+
+		return String.join("\n", codes) + "\n";
+	}
+
+	/**
+	 * Generates the function of the specified index, skipped over by a GOTO
+	 * like the compiler does.
+	 */
+	private void generateFunction(int index)
+	{
+		boolean isRecursive = random.nextInt(10) < 3;
+		int args = 1 + random.nextInt(3);
+		String name = "f" + index + "<<" + newLabel() + ">>";
+		int skip = newLabel();
+		add("GOTO continue<<" + skip + ">>", "LABEL " + name);
+
+		Scope scope = new Scope(name);
+		for (int i = 0; i < args; i++)
+		{
+			scope.variables.add(i);
+		}
+		if (isRecursive)
+		{
+			// if a0 <= 0 return e else return e + f(a0 - 1, ...) or f(a0 - 1, ...)
+			int elseLabel = newLabel();
+			int continueLabel = newLabel();
+			add("LOAD 0 v0", "LIT 0", "BOP <=", "FALSEBRANCH else<<" + elseLabel + ">>");
+			generateExpression(scope, 2, false);
+			add("RETURN " + name, "POP 0", "GOTO continue<<" + continueLabel + ">>", "LABEL else<<" + elseLabel + ">>");
+			boolean isSum = random.nextBoolean();
+			if (isSum)
+			{
+				generateExpression(scope, 2, false);
+			}
+			add("LOAD 0 v0", "LIT 1", "BOP -");
+			for (int i = 1; i < args; i++)
+			{
+				generateExpression(scope, 1, false);
+			}
+			add("ARGS " + args, "CALL " + name);
+			if (isSum)
+			{
+				add("BOP +");
+			}
+			add("RETURN " + name, "POP 0", "LABEL continue<<" + continueLabel + ">>");
+		} else
+		{
+			generateBlock(scope, 0);
+		}
+		add("LIT 0 GRATIS-RETURN-VALUE", "RETURN " + name, "LABEL continue<<" + skip + ">>");
+
+		functions.add(new Function(name, args, isRecursive));
+	}
+
+	/**
+	 * Generates a block of the specified scope, nested the specified levels,
+	 * with its own locals that a POP removes.
+	 */
+	private void generateBlock(Scope outer, int nesting)
+	{
+		Scope scope = new Scope(outer);
+		int locals = random.nextInt(3);
+		for (int i = 0; i < locals; i++)
+		{
+			int variable = scope.variables.size();
+			add("LIT 0 v" + variable);
+			scope.variables.add(variable);
+		}
+
+		int statements = 1 + random.nextInt(4);
+		for (int i = 0; i < statements; i++)
+		{
+			// A RETURN ends the block.
+			if (generateStatement(scope, nesting, i == statements - 1))
+			{
+				break;
+			}
+		}
+		add("POP " + locals);
+	}
+
+	/**
+	 * Generates a statement of the specified scope, nested the specified
+	 * levels, and returns true if it is a RETURN, which may only be the
+	 * specified last statement of a block of a function.
+	 */
+	private boolean generateStatement(Scope scope, int nesting, boolean isLast)
+	{
+		int kind = random.nextInt(20);
+		List<Integer> assignable = scope.getAssignable();
+		if (scope.function != null && isLast && kind < 5)
+		{
+			generateExpression(scope, 3, true);
+			add("RETURN " + scope.function);
+			return true;
+		}
+		if (kind < 9 && !assignable.isEmpty())
+		{
+			int variable = assignable.get(random.nextInt(assignable.size()));
+			generateExpression(scope, 3, true);
+			add("STORE " + variable + " v" + variable);
+			return false;
+		}
+		if (kind < 12)
+		{
+			generateExpression(scope, 2, true);
+			add("ARGS 1", "CALL Write");
+			if (assignable.isEmpty())
+			{
+				add("POP 1");
+			} else
+			{
+				int variable = assignable.get(random.nextInt(assignable.size()));
+				add("STORE " + variable + " v" + variable);
+			}
+			return false;
+		}
+		if (nesting >= MAX_NESTING)
+		{
+			return false;
+		}
+
+		if (kind < 15)
+		{
+			int elseLabel = newLabel();
+			int continueLabel = newLabel();
+			generateExpression(scope, 2, true);
+			add("FALSEBRANCH else<<" + elseLabel + ">>");
+			generateBlock(scope, nesting + 1);
+			add("GOTO continue<<" + continueLabel + ">>", "LABEL else<<" + elseLabel + ">>");
+			generateBlock(scope, nesting + 1);
+			add("LABEL continue<<" + continueLabel + ">>");
+			return false;
+		}
+
+		// A while loop counts a new local up to a literal.
+		int counter = scope.variables.size();
+		int whileLabel = newLabel();
+		int continueLabel = newLabel();
+		Scope loop = new Scope(scope);
+		loop.variables.add(counter);
+		loop.counters.add(counter);
+		add("LIT 0 c" + counter, "LABEL while<<" + whileLabel + ">>");
+		add("LOAD " + counter + " c" + counter, "LIT " + (1 + random.nextInt(5)), "BOP <",
+				"FALSEBRANCH continue<<" + continueLabel + ">>");
+		generateBlock(loop, nesting + 1);
+		add("LOAD " + counter + " c" + counter, "LIT 1", "BOP +", "STORE " + counter + " c" + counter);
+		add("GOTO while<<" + whileLabel + ">>", "LABEL continue<<" + continueLabel + ">>", "POP 1");
+
+		return false;
+	}
+
+	/**
+	 * Generates an expression of the specified scope at most the specified
+	 * levels deep, which calls the functions so far if the specified flag is
+	 * set.
+	 */
+	private void generateExpression(Scope scope, int levels, boolean canCall)
+	{
+		int kind = random.nextInt(20);
+		if (levels <= 0 || kind < 6)
+		{
+			if (!scope.variables.isEmpty() && random.nextInt(10) < 6)
+			{
+				int variable = scope.variables.get(random.nextInt(scope.variables.size()));
+				add("LOAD " + variable + " v" + variable);
+			} else
+			{
+				add("LIT " + (random.nextInt(13) - 3));
+			}
+		} else if (canCall && kind < 9 && !functions.isEmpty())
+		{
+			Function function = functions.get(random.nextInt(functions.size()));
+			for (int i = 0; i < function.args; i++)
+			{
+				if (function.isRecursive && i == 0)
+				{
+					add("LIT " + random.nextInt(5));
+				} else
+				{
+					generateExpression(scope, levels - 1, true);
+				}
+			}
+			add("ARGS " + function.args, "CALL " + function.name);
+		} else if (kind < 10)
+		{
+			add("ARGS 0", "CALL Read");
+		} else if (kind < 11)
+		{
+			generateExpression(scope, levels - 1, canCall);
+			add("ARGS 1", "CALL Write");
+		} else
+		{
+			generateExpression(scope, levels - 1, canCall);
+			String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+			if (operator.equals("/"))
+			{
+				add("LIT " + (1 + random.nextInt(7)));
+			} else
+			{
+				generateExpression(scope, levels - 1, canCall);
+			}
+			add("BOP " + operator);
+		}
+	}
+
+	/**
+	 * Returns a new label number.
+	 */
+	private int newLabel()
+	{
+		label += 1;
+
+		return label;
+	}
+
+	/**
+	 * Adds the specified byte codes.
+	 */
+	private void add(String... lines)
+	{
+		for (String line : lines)
+		{
+			codes.add(line);
+		}
+	}
+
+	/**
+	 * The slots a block can load, and the loop counters it cannot store.
+	 */
+	private static final class Scope
+	{
+
+		private final String function;
+		private final List<Integer> variables = new ArrayList<>();
+		private final Set<Integer> counters = new HashSet<>();
+
+		Scope(String function)
+		{
+			this.function = function;
+		}
+
+		Scope(Scope outer)
+		{
+			function = outer.function;
+			variables.addAll(outer.variables);
+			counters.addAll(outer.counters);
+		}
+
+		List<Integer> getAssignable()
+		{
+			List<Integer> assignable = new ArrayList<>(variables);
+			assignable.removeAll(counters);
+
+			return assignable;
+		}
+	}
+
+	/**
+	 * A function generated so far.
+	 */
+	private static final class Function
+	{
+
+		private final String name;
+		private final int args;
+		private final boolean isRecursive;
+
+		Function(String name, int args, boolean isRecursive)
+		{
+			this.name = name;
+			this.args = args;
+			this.isRecursive = isRecursive;
+		}
+	}
+}
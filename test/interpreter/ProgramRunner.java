@@ -0,0 +1,278 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.compiler.JitCompiler;
+import interpreter.engine.ClosureEngine;
+import interpreter.engine.LoweredProgram;
+import interpreter.engine.RegisterEngine;
+import interpreter.engine.RegisterProgram;
+import interpreter.engine.SwitchEngine;
+import interpreter.optimizer.Optimizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Loads and runs programs for the tests, and returns what they print, so a
+ * program loaded or run one way can be compared against the program as the
+ * text loader loads it and the virtual machine runs it.
+ *
+ * Note: Every READ reads the same integer, so the same program always
+ * prints the same output.
+ *
+ * @author mandynoto
+ */
+public final class ProgramRunner
+{
+
+	// The engines a program can run on, e.g. run(program, "switch").
+	public static final String[] ENGINES =
+	{
+		"vm", "memo", "fuse", "switch", "closure", "register", "jit"
+	};
+
+	// The programs of the test resources, which every loader and engine runs.
+	public static final String[] PROGRAMS =
+	{
+		"branches.x.cod", "nested-loops.x.cod", "call-in-loop.x.cod", "inlined-calls.x.cod", "read-recursion.x.cod",
+		"tail-recursion.x.cod"
+	};
+
+	// The line every READ reads.
+	private static final byte[] INPUT = "7\n".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Manages construction since this only holds static helpers.
+	 */
+	private ProgramRunner()
+	{
+		// Intentionally left empty.
+	}
+
+	/**
+	 * Returns the file of the specified program of the test resources, e.g.
+	 * getResource("nested-loops.x.cod").
+	 *
+	 * @param name the specified name of the program.
+	 * @return the file of the program.
+	 */
+	public static String getResource(String name)
+	{
+		try
+		{
+			return Paths.get(ProgramRunner.class.getResource("/programs/" + name).toURI()).toString();
+		} catch (URISyntaxException e)
+		{
+			throw new IllegalArgumentException(name, e);
+		}
+	}
+
+	/**
+	 * Writes the specified byte codes into a new file that starts with the
+	 * specified name and is deleted on exit, and returns it.
+	 *
+	 * @param name the specified name, e.g. seed16.
+	 * @param codes the specified byte codes, one per line.
+	 * @return the file of the byte codes.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static String write(String name, String codes) throws IOException
+	{
+		Path file = Files.createTempFile(name + "-", ".x.cod");
+		file.toFile().deleteOnExit();
+		Files.write(file, codes.getBytes(StandardCharsets.UTF_8));
+
+		return file.toString();
+	}
+
+	/**
+	 * Returns the program of the specified code file.
+	 *
+	 * @param file the specified code file.
+	 * @return the program.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static Program load(String file) throws IOException
+	{
+		CodeTable.init();
+		Program program = new ByteCodeLoader(file).loadCodes();
+		assertNotNull(program, file);
+		assertNotNull(program.getStackMap(), file + " is not verified");
+
+		return program;
+	}
+
+	/**
+	 * Returns the program of the specified code file as the default
+	 * optimizer optimizes it.
+	 *
+	 * @param file the specified code file.
+	 * @return the optimized program.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static Program optimize(String file) throws IOException
+	{
+		return Optimizer.getDefault().optimize(load(file));
+	}
+
+	/**
+	 * Asserts that the specified code file prints the same on the specified
+	 * engine once it is optimized as it does on the virtual machine as it is
+	 * loaded.
+	 *
+	 * @param file the specified code file.
+	 * @param engine the specified engine.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static void assertSameOutput(String file, String engine) throws IOException
+	{
+		assertEquals(run(load(file), "vm"), run(optimize(file), engine), file + " on " + engine);
+	}
+
+	/**
+	 * Returns the class of each byte code of the specified program.
+	 *
+	 * @param program the specified program.
+	 * @return the class name of each byte code, in order.
+	 */
+	public static List<String> getCodeClasses(Program program)
+	{
+		List<String> codes = new ArrayList<>();
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			codes.add(program.getCode(pc).getClass().getName());
+		}
+
+		return codes;
+	}
+
+	/**
+	 * Runs the specified program on the specified engine and returns what it
+	 * printed.
+	 *
+	 * @param program the specified program.
+	 * @param engine the specified engine, one of the ENGINES.
+	 * @return the output of the program.
+	 */
+	public static String run(Program program, String engine)
+	{
+		return capture(() -> execute(program, engine));
+	}
+
+	/**
+	 * Runs the specified program on the virtual machine, like --profile-out
+	 * does, and returns how often each of its byte codes ran.
+	 *
+	 * @param program the specified program.
+	 * @return the profile of the program.
+	 */
+	public static Profile record(Program program)
+	{
+		Profile profile = new Profile(program.getSize());
+		VirtualMachine vm = new VirtualMachine(program);
+		vm.setProfile(profile);
+		capture(vm::executeProgram);
+
+		return profile;
+	}
+
+	/**
+	 * Runs the specified program with every READ reading the same line, and
+	 * returns what it printed.
+	 *
+	 * @param program the specified program.
+	 * @return the output of the program.
+	 */
+	public static String capture(Runnable program)
+	{
+		PrintStream out = System.out;
+		InputStream in = System.in;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output, true));
+		System.setIn(new RepeatedInput());
+		try
+		{
+			program.run();
+		} finally
+		{
+			System.setOut(out);
+			System.setIn(in);
+		}
+
+		return output.toString();
+	}
+
+	/**
+	 * Runs the specified program on the specified engine.
+	 */
+	private static void execute(Program program, String engine)
+	{
+		VirtualMachine vm = new VirtualMachine(program);
+		switch (engine)
+		{
+			case "vm":
+				break;
+			case "memo":
+				vm.setMemoizer(Memoizer.analyze(program));
+				break;
+			case "fuse":
+				vm.setMemoizer(Memoizer.analyze(program));
+				new Fuser(program).fuse();
+				break;
+			case "switch":
+				LoweredProgram loweredProgram = LoweredProgram.lower(program);
+				assertNotNull(loweredProgram);
+				new SwitchEngine(loweredProgram).executeProgram();
+				return;
+			case "closure":
+				loweredProgram = LoweredProgram.lower(program);
+				assertNotNull(loweredProgram);
+				new ClosureEngine(loweredProgram).executeProgram();
+				return;
+			case "register":
+				RegisterProgram registerProgram = RegisterProgram.translate(program);
+				assertNotNull(registerProgram);
+				new RegisterEngine(registerProgram, program).executeProgram();
+				return;
+			case "jit":
+				vm.setCompiler(new JitCompiler(program, 1));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown engine: " + engine);
+		}
+		vm.executeProgram();
+	}
+
+	/**
+	 * Reads the same line over and over.
+	 */
+	private static final class RepeatedInput extends InputStream
+	{
+
+		private int index;
+
+		@Override
+		public int read()
+		{
+			int value = INPUT[index];
+			index = (index + 1) % INPUT.length;
+
+			return value;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pushes, pops, and moves frames on the run time stack, past the capacity it
+ * was constructed with, and checks that slots outside of it are not read.
+ *
+ * @author mandynoto
+ */
+public class RunTimeStackTest
+{
+
+	@Test
+	void stackGrowsPastItsCapacity()
+	{
+		RunTimeStack stack = new RunTimeStack(0);
+		for (int i = 0; i < 100; i++)
+		{
+			stack.push(i);
+		}
+
+		assertEquals(100, stack.size());
+		assertEquals(99, stack.peek());
+		assertEquals(99, stack.pop());
+		assertEquals(42, stack.elementAt(42));
+		assertEquals(99, stack.size());
+	}
+
+	@Test
+	void framesHoldTheirOwnSlots()
+	{
+		RunTimeStack stack = new RunTimeStack(4);
+		stack.push(1);
+		stack.push(2);
+		stack.push(3);
+		stack.newFrameAt(1);
+
+		assertEquals(3, stack.load(0));
+		assertEquals(List.of("3", "3"), stack.getArguments());
+		stack.push(7);
+		assertEquals(7, stack.store(0));
+		assertEquals(7, stack.getValue(0));
+
+		// Returning leaves the top value where the frame began.
+		stack.load(0);
+		stack.reset();
+		assertEquals(3, stack.size());
+		assertEquals(7, stack.peek());
+		assertEquals(1, stack.frames());
+	}
+
+	@Test
+	void tailCallsMoveTheirFrameDown()
+	{
+		RunTimeStack stack = new RunTimeStack(8);
+		stack.push(1);
+		stack.push(2);
+		stack.push(3);
+		stack.newFrameAt(2);
+		stack.push(4);
+		stack.push(5);
+		stack.newFrameAt(2);
+		stack.replaceFrame();
+
+		assertEquals(3, stack.size());
+		assertEquals(1, stack.elementAt(0));
+		assertEquals(4, stack.getValue(0));
+		assertEquals(5, stack.getValue(1));
+		assertEquals(2, stack.frames());
+	}
+
+	@Test
+	void slotsPastTheTopAreNotRead()
+	{
+		RunTimeStack stack = new RunTimeStack(8);
+		stack.push(1);
+		stack.push(2);
+		stack.pop();
+
+		assertThrows(IndexOutOfBoundsException.class, () -> stack.load(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> stack.elementAt(1));
+		stack.pop();
+		assertThrows(IndexOutOfBoundsException.class, () -> stack.pop());
+		assertEquals(0, stack.size());
+	}
+}
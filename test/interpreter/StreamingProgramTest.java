@@ -0,0 +1,192 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.ByteCode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs programs while a loader thread still parses them, and checks that
+ * they print what they print once they are loaded.
+ *
+ * @author mandynoto
+ */
+public class StreamingProgramTest
+{
+
+	private static final int GENERATED = 50;
+	// How long the virtual machine may take to run what is parsed so far.
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the output of the specified code file run on the virtual
+	 * machine while a loader thread streams it in.
+	 */
+	static String runStreamed(String file) throws Exception
+	{
+		CodeTable.init();
+		ByteCodeLoader loader = new ByteCodeLoader(file);
+		StreamingProgram program = new StreamingProgram();
+		Thread thread = new Thread(() -> loader.streamCodes(program), "ByteCodeLoader");
+		thread.start();
+		String output = ProgramRunner.run(program, "vm");
+		thread.join();
+
+		return output;
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void streamedProgramsPrintTheSame(String program) throws Exception
+	{
+		String file = ProgramRunner.getResource(program);
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), runStreamed(file));
+	}
+
+	@Test
+	void streamedGeneratedProgramsPrintTheSame() throws Exception
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			String file = ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed));
+
+			assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), runStreamed(file), file);
+		}
+	}
+
+	/**
+	 * The virtual machine writes 5 while the rest of the program, up to its
+	 * HALT, is not parsed yet, and jumps forward to a label added later.
+	 */
+	@Test
+	void programRunsBeforeItIsLoaded() throws Exception
+	{
+		StreamingProgram program = new StreamingProgram();
+		add(program, "LIT", "5");
+		add(program, "WRITE");
+		add(program, "GOTO", "end<<1>>");
+
+		PrintStream out = System.out;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output, true));
+		Thread vm = new Thread(() -> new VirtualMachine(program).executeProgram(), "VirtualMachine");
+		try
+		{
+			vm.start();
+			long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (!output.toString().contains("5") && System.currentTimeMillis() < deadline)
+			{
+				Thread.sleep(10);
+			}
+			assertEquals("5\n", output.toString());
+			assertTrue(vm.isAlive());
+
+			add(program, "LIT", "6");
+			add(program, "WRITE");
+			add(program, "LABEL", "end<<1>>");
+			add(program, "HALT");
+			program.finish();
+			vm.join(TIMEOUT_MILLIS);
+		} finally
+		{
+			System.setOut(out);
+		}
+
+		assertEquals("5\n", output.toString());
+		assertFalse(vm.isAlive());
+	}
+
+	/**
+	 * --stream with no other option optimizes and memoizes the program before
+	 * it runs, neither of which may wait for the rest of it to be parsed.
+	 */
+	@Test
+	void streamRunsBeforeItIsLoaded() throws Exception
+	{
+		// The loader streams LIT 5, WRITE and a GOTO, and the rest only once 5 is written.
+		CountDownLatch isWritten = new CountDownLatch(1);
+		String file = ProgramRunner.write("stream", "HALT\n");
+		Interpreter interpreter = new Interpreter(file);
+		interpreter.options.put("--stream", "");
+		interpreter.bcl = new ByteCodeLoader(file)
+		{
+			@Override
+			public void streamCodes(StreamingProgram program)
+			{
+				add(program, "LIT", "5");
+				add(program, "WRITE");
+				add(program, "GOTO", "end<<1>>");
+				try
+				{
+					isWritten.await();
+				} catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				add(program, "LABEL", "end<<1>>");
+				add(program, "HALT");
+				program.finish();
+			}
+		};
+
+		PrintStream out = System.out;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output, true));
+		Thread run = new Thread(interpreter::run, "Interpreter");
+		try
+		{
+			run.start();
+			long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (!output.toString().contains("5") && System.currentTimeMillis() < deadline)
+			{
+				Thread.sleep(10);
+			}
+			assertEquals("5\n", output.toString());
+			assertTrue(run.isAlive());
+
+			isWritten.countDown();
+			run.join(TIMEOUT_MILLIS);
+		} finally
+		{
+			isWritten.countDown();
+			System.setOut(out);
+		}
+
+		assertFalse(run.isAlive());
+	}
+
+	/**
+	 * Adds a new byte code of the specified code, initialized with the
+	 * specified arguments, to the specified program.
+	 */
+	private static void add(Program program, String code, String... args)
+	{
+		ByteCode byteCode = CodeTable.get(code).get();
+		byteCode.init(new ArrayList<>(List.of(args)));
+		program.add(byteCode);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.CallCode;
+import interpreter.bytecode.ReturnCode;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Marks the calls a RETURN follows as tail calls, and checks that deep tail
+ * recursion runs in one frame on every engine.
+ *
+ * @author mandynoto
+ */
+public class TailCallTest
+{
+
+	// How deep the recursion goes.
+	private static final int DEPTH = 50000;
+
+	// Writes the sum of DEPTH down to 1, adding it up in acc one call at a time.
+	private static final String SUM = "GOTO start\nLABEL sum\nLOAD 0 n\nLIT 0\nBOP ==\nFALSEBRANCH more\n"
+			+ "LOAD 1 acc\nRETURN sum\nLABEL more\nLOAD 0 n\nLIT 1\nBOP -\nLOAD 1 acc\nLOAD 0 n\nBOP +\nARGS 2\n"
+			+ "CALL sum\nRETURN sum\nLABEL start\nLIT " + DEPTH + "\nLIT 0\nARGS 2\nCALL sum\nWRITE\nHALT\n";
+
+	/**
+	 * Returns every engine.
+	 */
+	static Stream<String> getEngines()
+	{
+		return Stream.of(ProgramRunner.ENGINES);
+	}
+
+	/**
+	 * Returns byte codes that count the specified depth down to 0 and halt
+	 * there, with every frame they made still on the stack.
+	 */
+	private static String count(int depth)
+	{
+		return "GOTO start\nLABEL count\nLOAD 0 n\nLIT 0\nBOP ==\nFALSEBRANCH more\nHALT\nLABEL more\n"
+				+ "LOAD 0 n\nLIT 1\nBOP -\nARGS 1\nCALL count\nRETURN count\nLABEL start\nLIT " + depth
+				+ "\nARGS 1\nCALL count\nHALT\n";
+	}
+
+	@Test
+	void callsFollowedByAReturnAreMarked() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("sum", SUM));
+
+		assertEquals(1, program.markTailCalls());
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			if (program.getCode(pc) instanceof CallCode)
+			{
+				// Only the CALL in sum is followed by a RETURN; main's is followed by WRITE.
+				CallCode callCode = (CallCode) program.getCode(pc);
+				assertEquals(program.getCode(pc + 1) instanceof ReturnCode, callCode.isTailCall(), "CALL at " + pc);
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@MethodSource("getEngines")
+	void deepTailRecursionPrintsTheSame(String engine) throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("sum", SUM));
+
+		assertEquals((long) DEPTH * (DEPTH + 1) / 2 + "\n", ProgramRunner.run(program, engine));
+	}
+
+	@Test
+	void tailCallsReplaceTheirFrame() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("count", count(DEPTH)));
+		VirtualMachine vm = new VirtualMachine(program);
+		vm.executeProgram();
+
+		// Only the argument of the last call is left, instead of one per call.
+		assertEquals(1, vm.runStackSize());
+		assertTrue(vm.hasPreviousProgramCounter());
+	}
+
+	@Test
+	void dumpingMakesOrdinaryCalls() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("count", "DUMP ON\n" + count(10)));
+		VirtualMachine vm = new VirtualMachine(program);
+		String output = ProgramRunner.capture(() -> vm.executeProgram());
+
+		assertFalse(output.isEmpty());
+		assertEquals(11, vm.runStackSize());
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import interpreter.bytecode.BopCode;
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.HaltCode;
+import interpreter.bytecode.LitBopCode;
+import interpreter.bytecode.LitCode;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Adds STOP, another name for HALT, to the CodeTable through the
+ * ByteCodeProvider service of the test resources, and LITBOP, a fused byte
+ * code the CodeTable does not take.
+ *
+ * @author mandynoto
+ */
+public class TestCodeProvider implements ByteCodeProvider
+{
+
+	@Override
+	public void registerCodes(Map<String, Supplier<ByteCode>> codeTable, boolean isDebugging)
+	{
+		codeTable.put("STOP", HaltCode::new);
+		codeTable.put("LITBOP", () -> new LitBopCode(new LitCode(), new BopCode()));
+	}
+}
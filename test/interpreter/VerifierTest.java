@@ -0,0 +1,183 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies programs at load time and checks the stack maps of the ones that
+ * are well formed and the errors of the ones that are not.
+ *
+ * @author mandynoto
+ */
+public class VerifierTest
+{
+
+	private static final int GENERATED = 50;
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns the stack map of the specified byte codes.
+	 */
+	private static StackMap verify(String codes) throws IOException
+	{
+		return ProgramRunner.load(ProgramRunner.write("verified", codes)).getStackMap();
+	}
+
+	/**
+	 * Asserts that the loader rejects the specified byte codes at the
+	 * specified program counter and returns what it printed.
+	 */
+	private static String assertRejected(String codes, int pc) throws IOException
+	{
+		String file = ProgramRunner.write("rejected", codes);
+		CodeTable.init();
+		Program[] program = new Program[1];
+		String output = ProgramRunner.capture(() ->
+		{
+			try
+			{
+				program[0] = new ByteCodeLoader(file).loadCodes();
+			} catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		assertNull(program[0], codes);
+		assertTrue(output.startsWith("**** interpreter.VerificationException: Byte code " + pc + ": "), output);
+		return output;
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void programsAreVerified(String program) throws IOException
+	{
+		Program loaded = ProgramRunner.load(ProgramRunner.getResource(program));
+		StackMap stackMap = loaded.getStackMap();
+
+		assertNotNull(stackMap);
+		assertEquals(loaded.getSize(), stackMap.getSize());
+		assertEquals(0, stackMap.getDepth(0));
+		assertEquals(0, stackMap.getFunction(0));
+		assertTrue(stackMap.getStackCapacity() >= stackMap.getMaxDepth(0));
+	}
+
+	@Test
+	void generatedProgramsAreVerified() throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			String file = ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed));
+
+			assertNotNull(ProgramRunner.load(file).getStackMap(), file);
+		}
+	}
+
+	@Test
+	void functionsHaveTheirOwnFrames() throws IOException
+	{
+		StackMap stackMap = verify("LIT 1\nLIT 2\nARGS 2\nCALL add\nWRITE\nHALT\n"
+				+ "LABEL add\nLOAD 0 a\nLOAD 1 b\nBOP +\nRETURN add\n");
+
+		assertEquals(2, stackMap.getFunctionEntries().size());
+		assertEquals(2, stackMap.getArgCount(6));
+		assertEquals(4, stackMap.getMaxDepth(6));
+		assertEquals(6, stackMap.getFunction(9));
+		assertEquals(3, stackMap.getDepth(10));
+		assertEquals(1, stackMap.getDepth(4));
+		// Main holds 2 values when add starts, and add takes them as its frame.
+		assertEquals(4, stackMap.getStackBound());
+		assertEquals(4, stackMap.getStackCapacity());
+	}
+
+	@Test
+	void recursionLeavesTheStackUnbounded() throws IOException
+	{
+		StackMap stackMap = ProgramRunner.load(ProgramRunner.getResource("read-recursion.x.cod")).getStackMap();
+
+		assertEquals(-1, stackMap.getStackBound());
+		assertTrue(stackMap.getStackCapacity() > 0);
+	}
+
+	@Test
+	void mainPopsOnlyLessThanTheWholeStack() throws IOException
+	{
+		StackMap stackMap = verify("LIT 1\nLIT 2\nPOP 2\nWRITE\nPOP 1\nHALT\n");
+
+		assertEquals(2, stackMap.getDepth(3));
+		assertEquals(1, stackMap.getDepth(5));
+	}
+
+	/**
+	 * BOP ? pops both values and pushes nothing, on the virtual machine and
+	 * on the switch engine, which lowers it to a POP of two.
+	 */
+	@Test
+	void unknownOperatorsPopBothValues() throws IOException
+	{
+		String codes = "LIT 1\nLIT 2\nLIT 3\nBOP ?\nWRITE\nHALT\n";
+		StackMap stackMap = verify(codes);
+
+		assertEquals(3, stackMap.getDepth(3));
+		assertEquals(1, stackMap.getDepth(4));
+		String file = ProgramRunner.write("unknown", codes);
+		assertEquals("1\n", ProgramRunner.run(ProgramRunner.load(file), "vm"));
+		assertEquals("1\n", ProgramRunner.run(ProgramRunner.load(file), "switch"));
+
+		assertRejected("LIT 1\nLIT 2\nBOP ?\nWRITE\nHALT\n", 3);
+		assertRejected("LIT 1\nLIT 2\nBOP ?\nLOAD 0 n\nHALT\n", 3);
+	}
+
+	@Test
+	void malformedProgramsAreRejected() throws IOException
+	{
+		assertRejected("LIT 1\nBOP +\nHALT\n", 1);
+		assertRejected("LIT 1\nLOAD 1 n\nHALT\n", 1);
+		assertRejected("LIT 1\nSTORE 0 n\nHALT\n", 1);
+		assertRejected("LIT 1\nRETURN\n", 1);
+		assertRejected("LIT 1\nARGS 1\nHALT\n", 1);
+		assertRejected("LIT 1\nWRITE\n", 1);
+		assertRejected("LIT 1\nFALSEBRANCH end\nLIT 2\nLABEL end\nHALT\n", 3);
+		assertRejected("ARGS 0\nCALL f\nHALT\nLABEL f\nRETURN f\n", 4);
+		assertRejected("LIT 1\nLIT 2\nARGS 1\nCALL f\nARGS 2\nCALL f\nHALT\nLABEL f\nRETURN f\n", 5);
+		assertRejected("", 0);
+	}
+
+	@Test
+	void errorsNameTheProblem() throws IOException
+	{
+		assertTrue(assertRejected("LIT 1\nBOP +\nHALT\n", 1).contains("BOP needs 2 values but the frame holds 1"));
+		assertTrue(assertRejected("LIT 1\nRETURN\n", 1).contains("RETURN outside of a function"));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void verifiedProgramsPrintTheSame(String program) throws IOException
+	{
+		Program loaded = ProgramRunner.load(ProgramRunner.getResource(program));
+		Program unverified = ProgramRunner.load(ProgramRunner.getResource(program));
+		unverified.setStackMap(null);
+
+		assertEquals(ProgramRunner.run(unverified, "vm"), ProgramRunner.run(loaded, "vm"));
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.compiler;
+
+import interpreter.Program;
+import interpreter.ProgramRunner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles programs ahead of time into JARs, runs each JAR in its own JVM,
+ * and checks that it prints what the program prints on the virtual machine.
+ *
+ * @author mandynoto
+ */
+public class AotCompilerTest
+{
+
+	// How long a compiled program may take to run.
+	private static final long TIMEOUT_SECONDS = 60;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Returns the programs of the test resources.
+	 */
+	static String[] getPrograms()
+	{
+		return ProgramRunner.PROGRAMS;
+	}
+
+	/**
+	 * Returns what the specified JAR prints when every line it reads is 7.
+	 */
+	private String runJar(Path jarFile) throws IOException, InterruptedException
+	{
+		// Each READ reads through its own Scanner, which buffers ahead.
+		Path input = directory.resolve("input.txt");
+		Files.write(input, "7\n".repeat(512 * 1024).getBytes(StandardCharsets.US_ASCII));
+		Path output = directory.resolve("output.txt");
+
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		Process process = new ProcessBuilder(java, "-jar", jarFile.toString())
+				.redirectInput(input.toFile())
+				.redirectOutput(output.toFile())
+				.redirectErrorStream(true)
+				.start();
+		assertTrue(process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS), jarFile.toString());
+		assertEquals(0, process.exitValue(), Files.readString(output));
+
+		return Files.readString(output);
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void compiledProgramsPrintTheSame(String program) throws Exception
+	{
+		String file = ProgramRunner.getResource(program);
+		Path jarFile = directory.resolve(program + ".jar");
+
+		assertTrue(AotCompiler.compile(ProgramRunner.load(file), jarFile.toString()));
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), runJar(jarFile));
+	}
+
+	@Test
+	void programsWithADumpAreRefused() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("dump", "DUMP ON\nLIT 1\nWRITE\nHALT\n"));
+		Path jarFile = directory.resolve("dump.jar");
+		boolean[] isCompiled = new boolean[1];
+		String output = ProgramRunner.capture(() ->
+		{
+			try
+			{
+				isCompiled[0] = AotCompiler.compile(program, jarFile.toString());
+			} catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		assertFalse(isCompiled[0]);
+		assertEquals("***Only a verified program without a DUMP can be compiled ahead of time\n", output);
+		assertFalse(Files.exists(jarFile));
+	}
+}
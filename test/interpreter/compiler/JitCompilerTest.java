@@ -0,0 +1,87 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.compiler;
+
+import interpreter.Program;
+import interpreter.ProgramRunner;
+import interpreter.VirtualMachine;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles the hot functions of programs and checks what they print and
+ * which functions are compiled.
+ *
+ * @author mandynoto
+ */
+public class JitCompilerTest
+{
+
+	/**
+	 * Returns the output of the specified program run with the specified
+	 * compiler.
+	 */
+	private static String run(Program program, JitCompiler compiler)
+	{
+		return ProgramRunner.capture(() ->
+		{
+			VirtualMachine vm = new VirtualMachine(program);
+			vm.setCompiler(compiler);
+			vm.executeProgram();
+		});
+	}
+
+	@Test
+	void hotFunctionsAreCompiled() throws IOException
+	{
+		String file = ProgramRunner.getResource("read-recursion.x.cod");
+		Program program = ProgramRunner.load(file);
+		JitCompiler compiler = new JitCompiler(program, 1);
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), run(program, compiler));
+		assertTrue(compiler.getCompiledCount() > 0);
+	}
+
+	@Test
+	void coldFunctionsAreInterpreted() throws IOException
+	{
+		String file = ProgramRunner.getResource("read-recursion.x.cod");
+		Program program = ProgramRunner.load(file);
+		JitCompiler compiler = new JitCompiler(program, Integer.MAX_VALUE);
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), run(program, compiler));
+		assertEquals(0, compiler.getCompiledCount());
+	}
+
+	@Test
+	void functionsThatHaltAreNotCompiled() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("halt", "LIT 4\nARGS 1\nCALL stop\nHALT\n"
+				+ "LABEL stop\nLOAD 0 n\nWRITE\nHALT\nRETURN stop\n"));
+		JitCompiler compiler = new JitCompiler(program, 1);
+
+		assertEquals("4\n", run(program, compiler));
+		assertNull(compiler.enter(4));
+		assertEquals(0, compiler.getCompiledCount());
+	}
+
+	@Test
+	void unverifiedProgramsAreInterpreted() throws IOException
+	{
+		String file = ProgramRunner.getResource("call-in-loop.x.cod");
+		Program program = ProgramRunner.load(file);
+		program.setStackMap(null);
+		JitCompiler compiler = new JitCompiler(program, 1);
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), run(program, compiler));
+		assertEquals(0, compiler.getCompiledCount());
+	}
+}
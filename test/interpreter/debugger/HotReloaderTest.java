@@ -0,0 +1,155 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.debugger;
+
+import interpreter.CodeTable;
+import interpreter.Program;
+import interpreter.ProgramRunner;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Debugs fib.x, changes its files while it is stopped at a break point, and
+ * checks what the reloaded session runs.
+ *
+ * @author mandynoto
+ */
+public class HotReloaderTest
+{
+
+	// The line of main that writes fib(read()).
+	private static final int WRITE_LINE = 13;
+	// The first line of fib's body.
+	private static final int FIB_LINE = 3;
+
+	@TempDir
+	Path directory;
+
+	private Path codeFile;
+	private Path sourceFile;
+	private DebugVM vm;
+	private HotReloader reloader;
+
+	@BeforeEach
+	void startDebugging() throws IOException, URISyntaxException
+	{
+		codeFile = directory.resolve("fib.x.cod");
+		sourceFile = directory.resolve("fib.x");
+		Files.copy(Paths.get(HotReloaderTest.class.getResource("/debug/fib.x.cod").toURI()), codeFile);
+		Files.copy(Paths.get(HotReloaderTest.class.getResource("/debug/fib.x").toURI()), sourceFile);
+
+		CodeTable.init();
+		Program program = new DebugByteCodeLoader(codeFile.toString()).loadCodes();
+		assertNotNull(program);
+		vm = new DebugVM(program, DebugSourceReader.load(sourceFile.toString()));
+		reloader = new HotReloader(codeFile.toString(), sourceFile.toString());
+	}
+
+	/**
+	 * Continues the session until it stops, and returns what it printed.
+	 */
+	private String resume()
+	{
+		return ProgramRunner.capture(() ->
+		{
+			vm.setStepStyle("continue");
+			vm.executeProgram();
+		});
+	}
+
+	/**
+	 * Replaces the first occurrence of the specified text of the code file,
+	 * and moves its last modified time on so the change is seen.
+	 */
+	private void edit(String text, String replacement) throws IOException
+	{
+		String codes = new String(Files.readAllBytes(codeFile), StandardCharsets.UTF_8);
+		assertTrue(codes.contains(text), text);
+		Files.write(codeFile, codes.replaceFirst(Pattern.quote(text), replacement).getBytes(StandardCharsets.UTF_8));
+		FileTime modified = Files.getLastModifiedTime(codeFile);
+		Files.setLastModifiedTime(codeFile, FileTime.fromMillis(modified.toMillis() + 10000));
+	}
+
+	/**
+	 * Returns what the reloader prints when it swaps in a new program, and
+	 * asserts that it does.
+	 */
+	private String reload()
+	{
+		boolean[] isReloaded = new boolean[1];
+		String output = ProgramRunner.capture(() -> isReloaded[0] = reloader.reloadIfChanged(vm));
+		assertTrue(isReloaded[0], output);
+
+		return output;
+	}
+
+	@Test
+	void unchangedFilesAreNotReloaded()
+	{
+		vm.setBreakPoint(WRITE_LINE - 1, true);
+		resume();
+
+		assertFalse(reloader.reloadIfChanged(vm));
+		assertEquals("Input an integer: 13\n", resume());
+	}
+
+	@Test
+	void changedFunctionRunsAfterItIsReloaded() throws IOException
+	{
+		vm.setBreakPoint(WRITE_LINE - 1, true);
+		resume();
+		assertEquals(WRITE_LINE, vm.getCurrentLine());
+
+		// A new function above fib moves every byte code after it.
+		edit("LABEL fib<<2>>\n", "LABEL unused<<9>>\nLINE 2\nFUNCTION unused<<9>> 2 2\nLIT 0\n"
+				+ "RETURN unused<<9>>\nLABEL fib<<2>>\n");
+		edit("LIT 1\nRETURN fib<<2>>", "LIT 2\nRETURN fib<<2>>");
+
+		assertEquals("****Reloaded " + sourceFile + ": changed fib, unused****\n\n", reload());
+		assertEquals(WRITE_LINE, vm.getCurrentLine());
+		// fib(1) is 2 now, so fib(7) is 18 rather than 13.
+		assertEquals("Input an integer: 18\n", resume());
+		assertFalse(vm.isRunning());
+	}
+
+	@Test
+	void runningFunctionIsReloadedOnceItReturns() throws IOException
+	{
+		vm.setBreakPoint(FIB_LINE - 1, true);
+		resume();
+		assertEquals("fib", vm.getFunctionCurrentName().split("<<")[0]);
+		int[] programCounters = vm.getFrameProgramCounters();
+
+		edit("LIT 1\nRETURN fib<<2>>", "LIT 2\nRETURN fib<<2>>");
+		String output = ProgramRunner.capture(() -> assertFalse(reloader.reloadIfChanged(vm)));
+		assertEquals("***fib changed while it is running; it is reloaded once it returns\n\n", output);
+		assertEquals(programCounters[0], vm.getFrameProgramCounters()[0]);
+
+		vm.setBreakPoint(FIB_LINE - 1, false);
+		vm.setBreakPoint(WRITE_LINE, true);
+		assertEquals("13\n", resume());
+		assertEquals(WRITE_LINE + 1, vm.getCurrentLine());
+		assertTrue(reload().contains("changed fib"));
+		assertEquals(WRITE_LINE + 1, vm.getCurrentLine());
+		assertEquals("", resume());
+		assertFalse(vm.isRunning());
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.engine;
+
+import interpreter.Program;
+import interpreter.ProgramRunner;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Translates programs into their register form and checks the instructions
+ * it takes, and that the register engine hands a DUMP to the virtual machine
+ * with every frame as the virtual machine would hold it.
+ *
+ * @author mandynoto
+ */
+public class RegisterProgramTest
+{
+
+	/**
+	 * Asserts that the specified byte codes print the same on the register
+	 * engine as on the virtual machine.
+	 */
+	private static void assertSameOutput(String codes) throws IOException
+	{
+		String file = ProgramRunner.write("register", codes);
+
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(ProgramRunner.load(file), "register"));
+	}
+
+	@Test
+	void literalsAndLoadsBecomeOperands() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.getResource("read-recursion.x.cod"));
+		RegisterProgram registerProgram = RegisterProgram.translate(program);
+
+		assertNotNull(registerProgram);
+		assertTrue(registerProgram.getSize() < program.getSize(), registerProgram.getReport());
+		assertTrue(registerProgram.getReport().endsWith(String.format("Translated %d byte codes into %d instructions\n",
+				program.getSize(), registerProgram.getSize())), registerProgram.getReport());
+	}
+
+	@Test
+	void dumpInMainIsHandedToTheVirtualMachine() throws IOException
+	{
+		assertSameOutput("GOTO start\nLABEL start\nLIT 0 x\nLIT 1\nLIT 2\nDUMP ON\nBOP +\nSTORE 0 x\n"
+				+ "LOAD 0 x\nWRITE\nDUMP OFF\nHALT\n");
+	}
+
+	@Test
+	void dumpInAFunctionKeepsEveryFrame() throws IOException
+	{
+		assertSameOutput("GOTO start\nLABEL start\nLIT 4 n\nLIT 6\nLOAD 0 n\nARGS 1\nCALL f\nBOP +\nWRITE\nHALT\n"
+				+ "LABEL f\nLOAD 0 x\nLIT 3\nDUMP ON\nBOP *\nRETURN f\n");
+	}
+
+	@Test
+	void unverifiedProgramsAreNotTranslated() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.getResource("branches.x.cod"));
+		program.setStackMap(null);
+
+		assertNull(RegisterProgram.translate(program));
+	}
+}
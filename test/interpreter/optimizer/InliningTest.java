@@ -0,0 +1,115 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.Program;
+import interpreter.ProgramGenerator;
+import interpreter.ProgramRunner;
+import interpreter.bytecode.CallCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+/**
+ * Runs programs whose small functions are inlined against the programs as
+ * they are loaded, with the calls inside loops and their values used in
+ * arithmetic.
+ *
+ * @author mandynoto
+ */
+public class InliningTest
+{
+
+	// The programs that call small functions inside a loop, and each function that is inlined.
+	private static final String[][] PROGRAMS =
+	{
+		{
+			"call-in-loop.x.cod", "first"
+		},
+		{
+			"inlined-calls.x.cod", "sq", "abs", "f"
+		}
+	};
+	private static final int GENERATED = 200;
+
+	/**
+	 * Returns every program with inlined calls on every engine.
+	 */
+	static Stream<Arguments> getPrograms()
+	{
+		List<Arguments> arguments = new ArrayList<>();
+		for (String[] program : PROGRAMS)
+		{
+			for (String engine : ProgramRunner.ENGINES)
+			{
+				arguments.add(Arguments.of(program[0], engine));
+			}
+		}
+
+		return arguments.stream();
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void inlinedCallsPrintTheSame(String program, String engine) throws IOException
+	{
+		ProgramRunner.assertSameOutput(ProgramRunner.getResource(program), engine);
+	}
+
+	@Test
+	void callsInLoopsAreInlined() throws IOException
+	{
+		for (String[] program : PROGRAMS)
+		{
+			Program optimized = ProgramRunner.optimize(ProgramRunner.getResource(program[0]));
+			for (int pc = 0; pc < optimized.getSize(); pc++)
+			{
+				if (!(optimized.getCode(pc) instanceof CallCode))
+				{
+					continue;
+				}
+
+				String label = ((CallCode) optimized.getCode(pc)).getLabel();
+				for (int i = 1; i < program.length; i++)
+				{
+					assertFalse(label.startsWith(program[i] + "<<"), program[0] + " still calls " + label);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inlines into the loops that LoopOptimization optimizes, with no other
+	 * pass between them; a program the optimizer rejects is the program
+	 * itself.
+	 */
+	@Test
+	void inlinedLoopsPrintTheSame() throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			String file = ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed));
+			Optimizer optimizer = new Optimizer();
+			optimizer.add(new Inlining());
+			optimizer.add(new LoopOptimization());
+			Program program = ProgramRunner.load(file);
+			Program optimized = optimizer.optimize(program);
+
+			assertNotSame(program, optimized, file);
+			assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(optimized, "vm"), file);
+		}
+	}
+}
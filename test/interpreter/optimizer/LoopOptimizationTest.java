@@ -0,0 +1,141 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.Program;
+import interpreter.ProgramRunner;
+import interpreter.bytecode.BopCode;
+import interpreter.bytecode.ByteCode;
+import interpreter.bytecode.FalseBranchCode;
+import interpreter.bytecode.GotoCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs programs with while loops optimized against the programs as they are
+ * loaded, and checks what the loop optimization makes of a small loop.
+ *
+ * @author mandynoto
+ */
+public class LoopOptimizationTest
+{
+
+	// The programs with loops.
+	private static final String[] PROGRAMS =
+	{
+		"nested-loops.x.cod", "call-in-loop.x.cod", "inlined-calls.x.cod", "read-recursion.x.cod"
+	};
+
+	// Writes k * 3 while i counts from 0 to 3.
+	private static final String LOOP = "GOTO start\nLABEL start\nLIT 0 i\nLIT 5 k\nLABEL loop\nLOAD 0 i\nLIT 4\n"
+			+ "BOP <\nFALSEBRANCH done\nLOAD 1 k\nLIT 3\nBOP *\nWRITE\nPOP 1\nLOAD 0 i\nLIT 1\nBOP +\nSTORE 0 i\n"
+			+ "GOTO loop\nLABEL done\nHALT\n";
+
+	/**
+	 * Returns every program with loops on every engine.
+	 */
+	static Stream<Arguments> getPrograms()
+	{
+		List<Arguments> arguments = new ArrayList<>();
+		for (String program : PROGRAMS)
+		{
+			for (String engine : ProgramRunner.ENGINES)
+			{
+				arguments.add(Arguments.of(program, engine));
+			}
+		}
+
+		return arguments.stream();
+	}
+
+	/**
+	 * Returns the program counter of the first byte code of the specified
+	 * program that matches the specified class.
+	 */
+	private static int find(Program program, Class<? extends ByteCode> type)
+	{
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			if (type.isInstance(program.getCode(pc)))
+			{
+				return pc;
+			}
+		}
+
+		return -1;
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void optimizedLoopsPrintTheSame(String program, String engine) throws IOException
+	{
+		ProgramRunner.assertSameOutput(ProgramRunner.getResource(program), engine);
+	}
+
+	@Test
+	void invariantsAreHoistedAndLoopsRotated() throws IOException
+	{
+		String file = ProgramRunner.write("loop", LOOP);
+		Program program = ProgramRunner.optimize(file);
+
+		assertEquals("15\n15\n15\n15\n", ProgramRunner.run(program, "vm"));
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(program, "vm"));
+
+		// k * 3 is computed once, before the first test of the condition.
+		int multiply = -1;
+		for (int pc = 0; pc < program.getSize(); pc++)
+		{
+			ByteCode byteCode = program.getCode(pc);
+			if (byteCode instanceof BopCode && ((BopCode) byteCode).getOperator() == BopCode.MULTIPLY)
+			{
+				assertEquals(-1, multiply);
+				multiply = pc;
+			}
+		}
+		assertTrue(multiply >= 0 && multiply < find(program, FalseBranchCode.class));
+
+		// The GOTO back is gone; only the GOTO start of the program is left.
+		assertEquals(0, find(program, GotoCode.class));
+		for (int pc = 1; pc < program.getSize(); pc++)
+		{
+			assertFalse(program.getCode(pc) instanceof GotoCode, "GOTO at " + pc);
+		}
+	}
+
+	/**
+	 * g0 = g1 * first(7, 100, 5) in a loop: the inlined call STOREs into and
+	 * POPs slots above the frame between g1 and the BOP, so g1 * 7 is not
+	 * invariant.
+	 */
+	@Test
+	void inlinedCallIsNotHoisted() throws IOException
+	{
+		Program program = ProgramRunner.optimize(ProgramRunner.getResource("call-in-loop.x.cod"));
+
+		assertEquals("200\n", ProgramRunner.run(program, "vm"));
+	}
+
+	@Test
+	void loopOptimizationIsReported() throws IOException
+	{
+		Optimizer optimizer = Optimizer.getDefault();
+		optimizer.optimize(ProgramRunner.load(ProgramRunner.write("loop", LOOP)));
+
+		assertTrue(optimizer.getReport().contains("loop optimization: "), optimizer.getReport());
+		assertFalse(optimizer.getReport().contains("loop optimization: 0 byte codes"), optimizer.getReport());
+	}
+}
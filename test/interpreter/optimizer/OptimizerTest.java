@@ -0,0 +1,228 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package interpreter.optimizer;
+
+import interpreter.Program;
+import interpreter.ProgramGenerator;
+import interpreter.ProgramRunner;
+import interpreter.bytecode.LoadCode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs optimized programs on every engine against the programs as they are
+ * loaded, checks what each pass leaves of small programs, and that a
+ * rejected program runs as it was loaded without printing into its output.
+ *
+ * @author mandynoto
+ */
+public class OptimizerTest
+{
+
+	private static final int GENERATED = 200;
+	// What is left of main once it is folded into one value that is written.
+	private static final List<String> FOLDED = List.of("interpreter.bytecode.GotoCode", "interpreter.bytecode.LitCode",
+			"interpreter.bytecode.WriteCode", "interpreter.bytecode.HaltCode");
+
+	/**
+	 * Loads every slot from far above its frame, so the verifier rejects the
+	 * program.
+	 */
+	private static final class BrokenPass implements Pass
+	{
+
+		@Override
+		public String getName()
+		{
+			return "broken";
+		}
+
+		@Override
+		public int run(CodeList codes)
+		{
+			int changed = 0;
+			for (int pc = 0; pc < codes.size(); pc++)
+			{
+				if (codes.get(pc) instanceof LoadCode)
+				{
+					codes.set(pc, CodeList.newLoad(1000, "broken"));
+					changed += 1;
+				}
+			}
+
+			return changed;
+		}
+	}
+
+	/**
+	 * Returns every program of the test resources on every engine.
+	 */
+	static Stream<Arguments> getPrograms()
+	{
+		List<Arguments> arguments = new ArrayList<>();
+		for (String program : ProgramRunner.PROGRAMS)
+		{
+			for (String engine : ProgramRunner.ENGINES)
+			{
+				arguments.add(Arguments.of(program, engine));
+			}
+		}
+
+		return arguments.stream();
+	}
+
+	/**
+	 * Returns every engine.
+	 */
+	static Stream<String> getEngines()
+	{
+		return Stream.of(ProgramRunner.ENGINES);
+	}
+
+	/**
+	 * Returns the specified byte codes of main as the default optimizer
+	 * optimizes them, after the GOTO start every program begins with.
+	 */
+	private static Program optimize(String codes) throws IOException
+	{
+		return ProgramRunner.optimize(ProgramRunner.write("optimized", "GOTO start\nLABEL start\n" + codes));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getPrograms")
+	void optimizedProgramsPrintTheSame(String program, String engine) throws IOException
+	{
+		ProgramRunner.assertSameOutput(ProgramRunner.getResource(program), engine);
+	}
+
+	@ParameterizedTest
+	@MethodSource("getEngines")
+	void optimizedGeneratedProgramsPrintTheSame(String engine) throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			ProgramRunner.assertSameOutput(ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed)), engine);
+		}
+	}
+
+	@Test
+	void optimizedProgramsAreVerified() throws IOException
+	{
+		for (String program : ProgramRunner.PROGRAMS)
+		{
+			String file = ProgramRunner.getResource(program);
+			Optimizer optimizer = Optimizer.getDefault();
+			Program optimized = optimizer.optimize(ProgramRunner.load(file));
+
+			assertNull(optimizer.getRejection(), program);
+			assertNotNull(optimized.getStackMap(), program);
+			assertTrue(optimized.getSize() <= ProgramRunner.load(file).getSize(), program);
+		}
+	}
+
+	@Test
+	void optimizedGeneratedProgramsAreVerified() throws IOException
+	{
+		for (int seed = 0; seed < GENERATED; seed++)
+		{
+			String file = ProgramRunner.write("seed" + seed, ProgramGenerator.generate(seed));
+			Optimizer optimizer = Optimizer.getDefault();
+			optimizer.optimize(ProgramRunner.load(file));
+
+			assertNull(optimizer.getRejection(), file);
+		}
+	}
+
+	@Test
+	void constantsAreFolded() throws IOException
+	{
+		Program program = optimize("LIT 2\nLIT 3\nBOP *\nLIT 1\nBOP +\nWRITE\nHALT\n");
+
+		assertEquals(FOLDED, ProgramRunner.getCodeClasses(program));
+		assertEquals("7\n", ProgramRunner.run(program, "vm"));
+	}
+
+	@Test
+	void deadBranchesAndJumpsAreRemoved() throws IOException
+	{
+		Program program = optimize("LIT 0\nFALSEBRANCH else\nLIT 1\nWRITE\nGOTO done\nLABEL else\nGOTO next\n"
+				+ "LABEL next\nLIT 2\nWRITE\nLABEL done\nHALT\n");
+
+		assertEquals("2\n", ProgramRunner.run(program, "vm"));
+		assertEquals(FOLDED, ProgramRunner.getCodeClasses(program));
+	}
+
+	@Test
+	void reportCountsEveryPass() throws IOException
+	{
+		Optimizer optimizer = Optimizer.getDefault();
+		Program program = ProgramRunner.load(ProgramRunner.write("optimized", "GOTO start\nLABEL start\nLIT 2\nLIT 3\n"
+				+ "BOP *\nWRITE\nHALT\n"));
+		optimizer.optimize(program);
+		String report = optimizer.getReport();
+
+		assertTrue(report.startsWith("****Optimizer****\n"), report);
+		assertTrue(report.contains("Byte codes: 7 before, 4 after, in "), report);
+	}
+
+	@Test
+	void programsThatCannotBeOptimizedAreLeftAlone() throws IOException
+	{
+		Program program = ProgramRunner.load(ProgramRunner.write("dump", "DUMP ON\nLIT 2\nLIT 3\nBOP *\nWRITE\nHALT\n"));
+		assertSame(program, Optimizer.getDefault().optimize(program));
+
+		program = ProgramRunner.load(ProgramRunner.getResource("branches.x.cod"));
+		program.setStackMap(null);
+		assertSame(program, Optimizer.getDefault().optimize(program));
+	}
+
+	@Test
+	void rejectedProgramRunsAsLoaded() throws IOException
+	{
+		String file = ProgramRunner.getResource("nested-loops.x.cod");
+		Program program = ProgramRunner.load(file);
+		Optimizer optimizer = new Optimizer();
+		optimizer.add(new BrokenPass());
+
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output, true));
+		System.setErr(new PrintStream(errors, true));
+		Program optimized;
+		try
+		{
+			optimized = optimizer.optimize(program);
+		} finally
+		{
+			System.setOut(out);
+			System.setErr(err);
+		}
+
+		assertSame(program, optimized);
+		assertNotNull(optimizer.getRejection());
+		assertEquals("", output.toString());
+		assertTrue(errors.toString().startsWith("**** interpreter.VerificationException"));
+		assertTrue(optimizer.getReport().contains("Rejected: "));
+		assertEquals(ProgramRunner.run(ProgramRunner.load(file), "vm"), ProgramRunner.run(optimized, "vm"));
+	}
+}